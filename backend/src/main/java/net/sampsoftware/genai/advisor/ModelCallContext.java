@@ -0,0 +1,75 @@
+package net.sampsoftware.genai.advisor;
+
+import net.sampsoftware.genai.model.ModelConfiguration;
+
+/**
+ * Thread-bound attribution for model calls. Code that calls a model on behalf of an item or
+ * batch opens a scope around the call, and {@link ModelCallLoggingAdvisor} records the ids on
+ * the logged {@code model_calls} row. The item's type, when the caller has the item loaded,
+ * travels along for per-type bookkeeping such as learned output lengths. An optional stage,
+ * such as one chunk of a long input, is appended to the row's request context. The model
+ * configuration of the call is bound separately, by the router that picks the configuration
+ * serving it.
+ */
+public final class ModelCallContext {
+
+    private static final ThreadLocal<Attribution> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<ModelConfiguration> CONFIGURATION = new ThreadLocal<>();
+
+    public record Attribution(Long itemId, String itemType, Long batchId, String stage) {}
+
+    private ModelCallContext() {
+    }
+
+    public static Attribution current() {
+        return CURRENT.get();
+    }
+
+    public static ModelConfiguration configuration() {
+        return CONFIGURATION.get();
+    }
+
+    /**
+     * Record model calls on this thread against the configuration until the scope is closed
+     */
+    public static Scope configure(ModelConfiguration modelConfiguration) {
+        ModelConfiguration previous = CONFIGURATION.get();
+        CONFIGURATION.set(modelConfiguration);
+        return () -> {
+            if (previous != null) {
+                CONFIGURATION.set(previous);
+            } else {
+                CONFIGURATION.remove();
+            }
+        };
+    }
+
+    /**
+     * Attribute model calls on this thread to the item and batch until the scope is closed
+     */
+    public static Scope open(Long itemId, Long batchId) {
+        return open(itemId, null, batchId, null);
+    }
+
+    public static Scope open(Long itemId, String itemType, Long batchId) {
+        return open(itemId, itemType, batchId, null);
+    }
+
+    public static Scope open(Long itemId, String itemType, Long batchId, String stage) {
+        Attribution previous = CURRENT.get();
+        CURRENT.set(new Attribution(itemId, itemType, batchId, stage));
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sampsoftware.genai.model.ModelCall;
 import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.service.ChatProviderRegistry;
 import net.sampsoftware.genai.service.ModelCallService;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -19,6 +20,7 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -29,17 +31,20 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ModelCallLoggingAdvisor {
 
+    private static final Set<String> ROUTING_CLASSES = Set.of("ChatProviderRegistry", "ChatRouter");
+
     private final ObjectMapper objectMapper;
     private final ModelCallService modelCallService;
 
-    @Around("execution(* org.springframework.ai.chat.client.ChatClient.*(..)) || " +
-            "execution(* org.springframework.ai.chat.model.ChatModel.*(..))")
+    // Every chat client, including ones built per provider outside the context, is called here
+    @Around("execution(* net.sampsoftware.genai.service.ChatProviderRegistry.call(..))")
     public Object logModelCall(ProceedingJoinPoint joinPoint) throws Throwable {
 
         String correlationId = UUID.randomUUID().toString();
         Instant startTime = Instant.now();
         Instant apiStartTime = null;
         Instant apiEndTime = null;
+        ModelCallContext.Attribution attribution = ModelCallContext.current();
 
         try {
             ModelCall.ModelCallBuilder callBuilder = ModelCall.builder()
@@ -65,12 +70,18 @@ public class ModelCallLoggingAdvisor {
                         .modelProvider(modelConfig.getModel().getModelProvider());
             }
 
-            String provider = determineProvider(joinPoint.getTarget());
+            String provider = determineProvider(joinPoint.getArgs());
             callBuilder.provider(provider);
 
-            String context = determineRequestContext();
+            String context = determineRequestContext(attribution);
             callBuilder.requestContext(context);
 
+            if (attribution != null) {
+                callBuilder
+                        .itemId(attribution.itemId())
+                        .batchId(attribution.batchId());
+            }
+
             // Execute the actual API call
             apiStartTime = Instant.now();
             Object result = joinPoint.proceed();
@@ -122,8 +133,11 @@ public class ModelCallLoggingAdvisor {
                     .errorMessage(e.getMessage())
                     .errorClass(e.getClass().getSimpleName())
                     .errorStacktrace(getStackTrace(e))
-                    .provider(determineProvider(joinPoint.getTarget()))
-                    .requestContext(determineRequestContext())
+                    .modelConfiguration(extractModelConfiguration(joinPoint.getArgs()))
+                    .provider(determineProvider(joinPoint.getArgs()))
+                    .requestContext(determineRequestContext(attribution))
+                    .itemId(attribution != null ? attribution.itemId() : null)
+                    .batchId(attribution != null ? attribution.batchId() : null)
                     .build();
 
             CompletableFuture.runAsync(() -> modelCallService.saveAsync(failedCall));
@@ -337,23 +351,31 @@ public class ModelCallLoggingAdvisor {
         return null;
     }
 
-    private String determineProvider(Object target) {
-        String className = target.getClass().getSimpleName().toLowerCase();
-        if (className.contains("openai")) return "openai";
-        if (className.contains("ollama")) return "ollama";
-        if (className.contains("anthropic")) return "anthropic";
-        if (className.contains("azure")) return "azure";
-        return "unknown";
+    private String determineProvider(Object[] args) {
+        return Arrays.stream(args)
+                .filter(ChatProviderRegistry.ChatProvider.class::isInstance)
+                .map(arg -> ((ChatProviderRegistry.ChatProvider) arg).name())
+                .findFirst()
+                .orElse("unknown");
     }
 
-    private String determineRequestContext() {
+    private String determineRequestContext(ModelCallContext.Attribution attribution) {
+        String context = "unknown";
         StackTraceElement[] stack = Thread.currentThread().getStackTrace();
         for (StackTraceElement element : stack) {
-            if (element.getClassName().contains("sampsoftware.genai.service")) {
-                return element.getClassName().substring(element.getClassName().lastIndexOf('.') + 1);
+            String className = element.getClassName();
+            if (className.contains("sampsoftware.genai.service")) {
+                String simpleName = className.substring(className.lastIndexOf('.') + 1);
+                int proxy = simpleName.indexOf("$$");
+                if (ROUTING_CLASSES.contains(proxy >= 0 ? simpleName.substring(0, proxy) : simpleName)) {
+                    // The caller, not the routing in between
+                    continue;
+                }
+                context = simpleName;
+                break;
             }
         }
-        return "unknown";
+        return attribution != null && attribution.stage() != null ? context + ": " + attribution.stage() : context;
     }
 
     private Prompt extractPrompt(Object[] args) {
@@ -365,9 +387,8 @@ public class ModelCallLoggingAdvisor {
     }
 
     private ModelConfiguration extractModelConfiguration(Object[] args) {
-        // This would need to be enhanced based on how you pass model configuration
-        // Could be via thread local, request context, or method parameter
-        return null;
+        // Chat model arguments carry no configuration; ChatRouter binds the one it routed to
+        return ModelCallContext.configuration();
     }
 
     private String getStackTrace(Exception e) {
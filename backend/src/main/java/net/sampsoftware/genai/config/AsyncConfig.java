@@ -2,28 +2,94 @@ package net.sampsoftware.genai.config;
 
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
 public class AsyncConfig implements AsyncConfigurer {
 
+    @Value("${genai.async.core-pool-size:5}")
+    private int corePoolSize;
+
+    @Value("${genai.async.max-pool-size:10}")
+    private int maxPoolSize;
+
+    @Value("${genai.async.queue-capacity:25}")
+    private int queueCapacity;
+
+    @Value("${genai.model-calls.concurrency:8}")
+    private int modelCallConcurrency;
+
+    @Value("${genai.background.concurrency:2}")
+    private int backgroundConcurrency;
+
+    @Value("${genai.background.queue-capacity:16}")
+    private int backgroundQueueCapacity;
+
     @Override
     public Executor getAsyncExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(10);
-        executor.setQueueCapacity(25);
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
         executor.setThreadNamePrefix("book-processor-");
         executor.initialize();
         return executor;
     }
 
+    /**
+     * Executor of Spring MVC async requests such as streamed responses, sized by
+     * {@code spring.task.execution.pool}. Declared here because Boot's own
+     * {@code applicationTaskExecutor} backs off once any other executor bean exists, and MVC
+     * would then start a thread per request.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Workers for model calls fanned out within a request or task. There is no queue: when all
+     * workers are busy the submitting thread makes the call itself, so tasks that fan out again
+     * cannot starve waiting for their own sub-calls.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor modelCallExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(modelCallConcurrency);
+        executor.setMaxPoolSize(modelCallConcurrency);
+        executor.setQueueCapacity(0);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("model-call-");
+        return executor;
+    }
+
+    /**
+     * Housekeeping that runs after a request has been answered, such as re-embedding changed
+     * owners or refreshing cached stats. Small and bounded, so it never competes with request
+     * threads or the common pool; callers handle a rejected task by leaving the work for the
+     * next trigger.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor backgroundExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(backgroundConcurrency);
+        executor.setMaxPoolSize(backgroundConcurrency);
+        executor.setQueueCapacity(backgroundQueueCapacity);
+        executor.setThreadNamePrefix("background-");
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
@@ -24,19 +24,23 @@ public class BatchSummaryController {
     @PostMapping
     public ResponseEntity<BatchSummaryResponse> generateSummaries(@RequestBody BatchSummaryRequest request) {
         log.debug("Starting batch summary generation with model config {}", request.modelConfigurationId());
+        // Outside the try, so invalid options reach the exception handler as a 400
+        var options = options(request.canonicalOnly(), request.packed(), request.mode(), request.dryRun());
 
         try {
             BatchSummaryResponse response = itemSummaryService.generateSummariesForAllItems(
                     request.prompt(),
+                    request.promptId(),
                     request.modelConfigurationId(),
-                    request.itemTypes()
+                    request.itemTypes(),
+                    options
             );
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error generating batch summaries: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
-                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage()));
+                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage(), 0, null));
         }
     }
 
@@ -48,19 +52,22 @@ public class BatchSummaryController {
             @RequestBody BatchSummaryForItemsRequest request) {
 
         log.debug("Starting batch summary generation for {} specific items", request.itemIds().size());
+        var options = options(request.canonicalOnly(), request.packed(), request.mode(), request.dryRun());
 
         try {
             BatchSummaryResponse response = itemSummaryService.generateSummariesForItems(
                     request.itemIds(),
                     request.prompt(),
-                    request.modelConfigurationId()
+                    request.promptId(),
+                    request.modelConfigurationId(),
+                    options
             );
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error generating summaries for specific items: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError()
-                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage()));
+                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage(), 0, null));
         }
     }
 
@@ -73,38 +80,64 @@ public class BatchSummaryController {
             @RequestBody BatchSummaryForCollectionRequest request) {
 
         log.debug("Starting batch summary generation for collection {}", collectionId);
+        var options = options(request.canonicalOnly(), request.packed(), request.mode(), request.dryRun());
 
         try {
             BatchSummaryResponse response = itemSummaryService.generateSummariesForCollection(
                     collectionId,
                     request.prompt(),
-                    request.modelConfigurationId()
+                    request.promptId(),
+                    request.modelConfigurationId(),
+                    request.depth(),
+                    options
             );
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error generating summaries for collection {}: {}", collectionId, e.getMessage(), e);
             return ResponseEntity.internalServerError()
-                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage()));
+                    .body(new BatchSummaryResponse(0, 1, List.of(), e.getMessage(), 0, null));
         }
     }
 
+    private static AsyncItemSummaryService.BatchOptions options(Boolean canonicalOnly, Boolean packed, String mode,
+                                                                Boolean dryRun) {
+        return new AsyncItemSummaryService.BatchOptions(Boolean.TRUE.equals(canonicalOnly), Boolean.TRUE.equals(packed),
+                AsyncItemSummaryService.Mode.fromString(mode), Boolean.TRUE.equals(dryRun));
+    }
+
     // Request DTOs
 
     /**
-     * Request for summarizing specific items
+     * Request for summarizing specific items; {@code promptId} selects a stored prompt instead of
+     * {@code prompt} text, {@code canonicalOnly} skips items resolved as duplicates of another item,
+     * {@code packed} summarizes several items per model call, and {@code mode} ({@code full},
+     * {@code skip-unchanged} or {@code stale-only}) selects which items get a new summary;
+     * {@code dryRun} returns the estimated calls, tokens, cost and duration without calling the model
      */
     record BatchSummaryForItemsRequest(
             List<Long> itemIds,
             String prompt,
-            Long modelConfigurationId
+            Integer promptId,
+            Long modelConfigurationId,
+            Boolean canonicalOnly,
+            Boolean packed,
+            String mode,
+            Boolean dryRun
     ) {}
 
     /**
-     * Request for summarizing items in a collection
+     * Request for summarizing items in a collection; {@code depth} reaches into nested
+     * collections (omit for direct members only), other fields as for specific items
      */
     record BatchSummaryForCollectionRequest(
             String prompt,
-            Long modelConfigurationId
+            Integer promptId,
+            Long modelConfigurationId,
+            Integer depth,
+            Boolean canonicalOnly,
+            Boolean packed,
+            String mode,
+            Boolean dryRun
     ) {}
 }
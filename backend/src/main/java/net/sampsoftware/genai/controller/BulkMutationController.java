@@ -0,0 +1,99 @@
+package net.sampsoftware.genai.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.service.BulkMutationService;
+import net.sampsoftware.genai.service.BulkMutationService.DeleteResult;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Set-based purges of items, summaries and relationships
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/bulk")
+@RequiredArgsConstructor
+public class BulkMutationController {
+
+    private final BulkMutationService bulkMutationService;
+
+    record IdsRequest(List<Long> ids) {}
+
+    /**
+     * Delete items with their model calls, summaries and relationships
+     */
+    @PostMapping("/items/delete")
+    public ResponseEntity<DeleteResult> deleteItems(@RequestBody IdsRequest request) {
+        log.debug("Bulk deleting {} items", request.ids() != null ? request.ids().size() : 0);
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteItems(ids(request)));
+        } catch (Exception e) {
+            log.error("Error bulk deleting items: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/items/type/{itemType}")
+    public ResponseEntity<DeleteResult> deleteItemsByType(@PathVariable String itemType) {
+        log.debug("Bulk deleting items of type {}", itemType);
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteItemsByType(itemType));
+        } catch (Exception e) {
+            log.error("Error deleting items of type {}: {}", itemType, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/summaries/delete")
+    public ResponseEntity<DeleteResult> deleteSummaries(@RequestBody IdsRequest request) {
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteSummaries(ids(request)));
+        } catch (Exception e) {
+            log.error("Error bulk deleting summaries: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/summaries/batch/{batchId}")
+    public ResponseEntity<DeleteResult> deleteSummariesForBatch(@PathVariable Long batchId) {
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteSummariesForBatch(batchId));
+        } catch (Exception e) {
+            log.error("Error deleting summaries for batch {}: {}", batchId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/summaries/older-than")
+    public ResponseEntity<DeleteResult> deleteSummariesOlderThan(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cutoff) {
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteSummariesOlderThan(cutoff));
+        } catch (Exception e) {
+            log.error("Error deleting summaries older than {}: {}", cutoff, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Delete every relationship touching any of the items
+     */
+    @PostMapping("/relationships/delete-for-items")
+    public ResponseEntity<DeleteResult> deleteRelationshipsForItems(@RequestBody IdsRequest request) {
+        try {
+            return ResponseEntity.ok(bulkMutationService.deleteRelationshipsForItems(ids(request)));
+        } catch (Exception e) {
+            log.error("Error bulk deleting relationships: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    private static List<Long> ids(IdsRequest request) {
+        return request.ids() != null ? request.ids() : List.of();
+    }
+}
@@ -0,0 +1,72 @@
+package net.sampsoftware.genai.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.service.CollectionHierarchyService;
+import net.sampsoftware.genai.service.CollectionMembershipIndex;
+import net.sampsoftware.genai.util.IdBitmap;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collection membership lookups and set algebra over collections, served from the
+ * in-memory membership index.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/collections")
+@RequiredArgsConstructor
+public class CollectionController {
+
+    private final CollectionMembershipIndex collectionMembershipIndex;
+    private final CollectionHierarchyService collectionHierarchyService;
+
+    public record CollectionMembers(Long collectionId, long count, long[] itemIds) {}
+
+    public record CollectionQueryResult(long count, long[] itemIds) {}
+
+    /**
+     * Members of a collection; {@code depth} > 1 includes members of nested collections
+     */
+    @GetMapping("/{collectionId}/members")
+    public ResponseEntity<CollectionMembers> getMembers(
+            @PathVariable Long collectionId,
+            @RequestParam(required = false) Integer depth) {
+        IdBitmap members = collectionHierarchyService.members(collectionId, depth);
+        return ResponseEntity.ok(new CollectionMembers(collectionId, members.cardinality(), members.toArray()));
+    }
+
+    @GetMapping("/{collectionId}/contains/{itemId}")
+    public ResponseEntity<Boolean> contains(@PathVariable Long collectionId, @PathVariable Long itemId) {
+        return ResponseEntity.ok(collectionMembershipIndex.contains(collectionId, itemId));
+    }
+
+    /**
+     * Items in all of {@code allOf}, in any of {@code anyOf}, and in none of {@code noneOf}
+     */
+    @GetMapping("/query")
+    public ResponseEntity<CollectionQueryResult> query(
+            @RequestParam(required = false) List<Long> allOf,
+            @RequestParam(required = false) List<Long> anyOf,
+            @RequestParam(required = false) List<Long> noneOf) {
+        log.debug("Collection query allOf={} anyOf={} noneOf={}", allOf, anyOf, noneOf);
+        IdBitmap result = collectionMembershipIndex.query(allOf, anyOf, noneOf);
+        return ResponseEntity.ok(new CollectionQueryResult(result.cardinality(), result.toArray()));
+    }
+
+    /**
+     * Recompute the collection closure table from the relationships
+     */
+    @PostMapping("/closure/rebuild")
+    public ResponseEntity<Map<String, Long>> rebuildClosure() {
+        try {
+            return ResponseEntity.ok(Map.of("rows", collectionHierarchyService.rebuildClosure()));
+        } catch (Exception e) {
+            log.error("Error rebuilding collection closure: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
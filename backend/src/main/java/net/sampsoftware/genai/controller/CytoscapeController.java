@@ -3,11 +3,26 @@ package net.sampsoftware.genai.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sampsoftware.genai.dto.CytoscapeDto;
+import net.sampsoftware.genai.service.CollectionHierarchyService;
+import net.sampsoftware.genai.service.ColumnarGraphWriter;
 import net.sampsoftware.genai.service.CytoscapeService;
+import net.sampsoftware.genai.service.DataVersionService;
+import net.sampsoftware.genai.service.GraphLayoutService;
+import net.sampsoftware.genai.service.GraphSnapshotCache;
+import net.sampsoftware.genai.service.GraphStatsService;
+import net.sampsoftware.genai.service.GraphStreamService;
+import net.sampsoftware.genai.service.GraphStreamService.GraphFields;
+import net.sampsoftware.genai.service.GraphStreamService.GraphSpec;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 @RestController
@@ -16,16 +31,24 @@ import java.util.List;
 public class CytoscapeController {
 
     private final CytoscapeService cytoscapeService;
+    private final CollectionHierarchyService collectionHierarchyService;
+    private final GraphLayoutService graphLayoutService;
+    private final GraphStreamService graphStreamService;
+    private final DataVersionService dataVersionService;
+    private final GraphSnapshotCache graphSnapshotCache;
+    private final GraphStatsService graphStatsService;
 
     /**
      * Get graph of all items and their summaries
      */
     @GetMapping("/items-summaries")
-    public ResponseEntity<CytoscapeDto> getItemsSummariesGraph() {
+    public ResponseEntity<CytoscapeDto> getItemsSummariesGraph(
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
         log.debug("Requested items-summaries graph");
         try {
-            CytoscapeDto graph = cytoscapeService.getItemsSummariesGraph();
-            return ResponseEntity.ok(graph);
+            return cachedGraph(request, "items-summaries:" + layout,
+                    () -> withLayout(layout, "items-summaries", cytoscapeService.getItemsSummariesGraph()));
         } catch (Exception e) {
             log.error("Error generating items-summaries graph: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -36,11 +59,13 @@ public class CytoscapeController {
      * Get graph showing relationships between items
      */
     @GetMapping("/items-relationships")
-    public ResponseEntity<CytoscapeDto> getItemsRelationshipsGraph() {
+    public ResponseEntity<CytoscapeDto> getItemsRelationshipsGraph(
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
         log.debug("Requested items-relationships graph");
         try {
-            CytoscapeDto graph = cytoscapeService.getItemsRelationshipsGraph();
-            return ResponseEntity.ok(graph);
+            return cachedGraph(request, "items-relationships:" + layout,
+                    () -> withLayout(layout, "items-relationships", cytoscapeService.getItemsRelationshipsGraph()));
         } catch (Exception e) {
             log.error("Error generating items-relationships graph: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -51,11 +76,16 @@ public class CytoscapeController {
      * Get graph for a specific collection of items
      */
     @GetMapping("/collection/{collectionId}")
-    public ResponseEntity<CytoscapeDto> getCollectionGraph(@PathVariable Long collectionId) {
-        log.debug("Requested collection graph for collection {}", collectionId);
+    public ResponseEntity<CytoscapeDto> getCollectionGraph(
+            @PathVariable Long collectionId,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
+        log.debug("Requested collection graph for collection {} (depth {})", collectionId, depth);
         try {
-            CytoscapeDto graph = cytoscapeService.getCollectionGraph(collectionId);
-            return ResponseEntity.ok(graph);
+            String graphKey = "collection:" + collectionId + ":" + depth;
+            return cachedGraph(request, graphKey + ":" + layout,
+                    () -> withLayout(layout, graphKey, cytoscapeService.getCollectionGraph(collectionId, depth)));
         } catch (Exception e) {
             log.error("Error generating collection graph for {}: {}", collectionId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -68,12 +98,16 @@ public class CytoscapeController {
     @GetMapping("/items-by-type")
     public ResponseEntity<CytoscapeDto> getGraphByItemTypes(
             @RequestParam List<String> itemTypes,
-            @RequestParam(defaultValue = "false") boolean includeRelationships) {
+            @RequestParam(defaultValue = "false") boolean includeRelationships,
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
 
         log.debug("Requested graph for item types: {} (relationships: {})", itemTypes, includeRelationships);
         try {
-            CytoscapeDto graph = cytoscapeService.getGraphByItemTypes(itemTypes, includeRelationships);
-            return ResponseEntity.ok(graph);
+            String graphKey = "items-by-type:" + itemTypes + ":" + includeRelationships;
+            return cachedGraph(request, graphKey + ":" + layout,
+                    () -> withLayout(layout, graphKey,
+                            cytoscapeService.getGraphByItemTypes(itemTypes, includeRelationships)));
         } catch (Exception e) {
             log.error("Error generating graph for item types {}: {}", itemTypes, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -84,11 +118,15 @@ public class CytoscapeController {
      * Get graph for items with summaries from a specific model
      */
     @GetMapping("/model/{modelId}")
-    public ResponseEntity<CytoscapeDto> getGraphByModel(@PathVariable Long modelId) {
+    public ResponseEntity<CytoscapeDto> getGraphByModel(
+            @PathVariable Long modelId,
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
         log.debug("Requested graph for model {}", modelId);
         try {
-            CytoscapeDto graph = cytoscapeService.getGraphByModel(modelId);
-            return ResponseEntity.ok(graph);
+            String graphKey = "model:" + modelId;
+            return cachedGraph(request, graphKey + ":" + layout,
+                    () -> withLayout(layout, graphKey, cytoscapeService.getGraphByModel(modelId)));
         } catch (Exception e) {
             log.error("Error generating graph for model {}: {}", modelId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -101,27 +139,105 @@ public class CytoscapeController {
     @GetMapping("/comprehensive")
     public ResponseEntity<CytoscapeDto> getComprehensiveGraph(
             @RequestParam(defaultValue = "100") int maxItems,
-            @RequestParam(required = false) List<String> itemTypes) {
+            @RequestParam(required = false) List<String> itemTypes,
+            @RequestParam(defaultValue = "false") boolean layout,
+            WebRequest request) {
 
         log.debug("Requested comprehensive graph (maxItems: {}, types: {})", maxItems, itemTypes);
         try {
-            CytoscapeDto graph = cytoscapeService.getComprehensiveGraph(maxItems, itemTypes);
-            return ResponseEntity.ok(graph);
+            String graphKey = "comprehensive:" + maxItems + ":" + itemTypes;
+            return cachedGraph(request, graphKey + ":" + layout,
+                    () -> withLayout(layout, graphKey, cytoscapeService.getComprehensiveGraph(maxItems, itemTypes)));
         } catch (Exception e) {
             log.error("Error generating comprehensive graph: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    // === STREAMING ENDPOINTS ===
+    // Same graphs as above, written row by row; details only contain the requested fields.
+    // Sending Accept: application/vnd.genai.cytoscape-columnar selects the compact encoding.
+
+    @GetMapping("/stream/items-summaries")
+    public ResponseEntity<StreamingResponseBody> streamItemsSummariesGraph(
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request, GraphSpec.itemsSummaries(), fields);
+    }
+
+    @GetMapping("/stream/items-relationships")
+    public ResponseEntity<StreamingResponseBody> streamItemsRelationshipsGraph(
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request, GraphSpec.itemsRelationships(), fields);
+    }
+
+    @GetMapping("/stream/collection/{collectionId}")
+    public ResponseEntity<StreamingResponseBody> streamCollectionGraph(
+            @PathVariable Long collectionId,
+            @RequestParam(required = false) Integer depth,
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request,
+                GraphSpec.collection(collectionHierarchyService.subtreeQuery(collectionId, depth)), fields);
+    }
+
+    @GetMapping("/stream/items-by-type")
+    public ResponseEntity<StreamingResponseBody> streamGraphByItemTypes(
+            @RequestParam List<String> itemTypes,
+            @RequestParam(defaultValue = "false") boolean includeRelationships,
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request, GraphSpec.itemTypes(itemTypes, includeRelationships), fields);
+    }
+
+    @GetMapping("/stream/model/{modelId}")
+    public ResponseEntity<StreamingResponseBody> streamGraphByModel(
+            @PathVariable Long modelId,
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request, GraphSpec.model(modelId), fields);
+    }
+
+    @GetMapping("/stream/comprehensive")
+    public ResponseEntity<StreamingResponseBody> streamComprehensiveGraph(
+            @RequestParam(defaultValue = "100") int maxItems,
+            @RequestParam(required = false) List<String> itemTypes,
+            @RequestParam(required = false) List<String> fields,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            WebRequest request) {
+        return streamGraph(accept, request, GraphSpec.comprehensive(maxItems, itemTypes), fields);
+    }
+
+    /**
+     * Get the details of a single node by its cytoscape id (item-N or summary-N)
+     */
+    @GetMapping("/node/{nodeId}")
+    public ResponseEntity<Object> getNodeDetails(@PathVariable String nodeId, WebRequest request) {
+        log.debug("Requested details for node {}", nodeId);
+        String etag = etag("node:" + nodeId, dataVersionService.currentVersion());
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return cytoscapeService.getNodeDetails(nodeId)
+                .map(details -> ResponseEntity.ok().eTag(etag).body(details))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     /**
      * Get available item types for filtering
      */
     @GetMapping("/item-types")
-    public ResponseEntity<List<String>> getAvailableItemTypes() {
+    public ResponseEntity<List<String>> getAvailableItemTypes(WebRequest request) {
         log.debug("Requested available item types");
         try {
-            List<String> itemTypes = cytoscapeService.getAvailableItemTypes();
-            return ResponseEntity.ok(itemTypes);
+            return conditional(request, "item-types", dataVersionService.currentVersion(),
+                    cytoscapeService::getAvailableItemTypes);
         } catch (Exception e) {
             log.error("Error getting available item types: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
@@ -132,17 +248,93 @@ public class CytoscapeController {
      * Get statistics about the graph data
      */
     @GetMapping("/stats")
-    public ResponseEntity<GraphStats> getGraphStats() {
+    public ResponseEntity<GraphStats> getGraphStats(WebRequest request) {
         log.debug("Requested graph statistics");
         try {
-            GraphStats stats = cytoscapeService.getGraphStats();
-            return ResponseEntity.ok(stats);
+            GraphStatsService.StatsSnapshot snapshot = graphStatsService.getStats();
+            return conditional(request, "stats", snapshot.version(), snapshot::stats);
         } catch (Exception e) {
             log.error("Error getting graph stats: {}", e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    private ResponseEntity<StreamingResponseBody> streamGraph(String accept, WebRequest request,
+                                                              GraphSpec spec, List<String> fields) {
+        boolean columnar = acceptsColumnar(accept);
+        GraphFields selected = GraphFields.parse(fields);
+        String etag = etag("stream:" + spec.itemIdsSql() + List.of(spec.itemIdArgs()) + ":" + spec.summaries()
+                + ":" + spec.relationships() + ":" + (columnar ? "columnar" : selected), dataVersionService.currentVersion());
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        log.debug("Streaming graph {} (columnar: {}, fields: {})", spec.itemIdsSql(), columnar, fields);
+        StreamingResponseBody body = out -> {
+            try {
+                if (columnar) {
+                    graphStreamService.writeColumnar(spec, out);
+                } else {
+                    graphStreamService.writeJson(spec, selected, out);
+                }
+            } catch (Exception e) {
+                // Headers are already committed, so the client sees a truncated document
+                log.error("Error streaming graph: {}", e.getMessage(), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(columnar ? ColumnarGraphWriter.MEDIA_TYPE : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .eTag(etag)
+                .body(body);
+    }
+
+    /**
+     * Only an explicit request for the columnar type selects it; wildcards keep JSON
+     */
+    private static boolean acceptsColumnar(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(type -> type.getQualityValue() > 0 && !type.isWildcardSubtype()
+                            && type.isCompatibleWith(ColumnarGraphWriter.MEDIA_TYPE));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Serve a graph from the snapshot cache, or 304 when the client already has this version
+     */
+    private ResponseEntity<CytoscapeDto> cachedGraph(WebRequest request, String key, Supplier<CytoscapeDto> builder) {
+        long version = dataVersionService.currentVersion();
+        return conditional(request, key, version, () -> graphSnapshotCache.get(key, version, builder));
+    }
+
+    private <T> ResponseEntity<T> conditional(WebRequest request, String key, long version, Supplier<T> body) {
+        String etag = etag(key, version);
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(body.get());
+    }
+
+    /**
+     * Strong ETag from the data version and the representation key
+     */
+    private static String etag(String key, long version) {
+        return "\"" + Long.toHexString(version) + "-" + Integer.toHexString(key.hashCode()) + "\"";
+    }
+
+    /**
+     * Attach server-side positions when requested, so clients can use the preset layout
+     */
+    private CytoscapeDto withLayout(boolean layout, String graphKey, CytoscapeDto graph) {
+        return layout ? graphLayoutService.applyLayout(graphKey, graph) : graph;
+    }
+
     /**
      * Statistics about the graph data
      */
@@ -0,0 +1,76 @@
+package net.sampsoftware.genai.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.service.EmbeddingService;
+import net.sampsoftware.genai.service.EmbeddingService.OwnerType;
+import net.sampsoftware.genai.service.SimilarityService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintenance of the stored item and summary embeddings and the similarity indexes over them
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/embeddings")
+@RequiredArgsConstructor
+public class EmbeddingController {
+
+    private final EmbeddingService embeddingService;
+    private final SimilarityService similarityService;
+
+    /**
+     * Embed new and changed items and/or summaries; {@code force} re-embeds everything
+     *
+     * @param target {@code items}, {@code summaries} or {@code all}
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<List<EmbeddingService.RefreshResult>> refresh(
+            @RequestParam(defaultValue = "all") String target,
+            @RequestParam(defaultValue = "false") boolean force) {
+        List<OwnerType> types = ownerTypes(target);
+        try {
+            List<EmbeddingService.RefreshResult> results = new ArrayList<>();
+            for (OwnerType type : types) {
+                results.add(embeddingService.refresh(type, force));
+            }
+            return ResponseEntity.ok(results);
+        } catch (Exception e) {
+            log.error("Error refreshing embeddings: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Rebuild the in-memory similarity index from the stored embeddings
+     */
+    @PostMapping("/index/rebuild")
+    public ResponseEntity<Map<String, Integer>> rebuildIndex(@RequestParam(defaultValue = "all") String target) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (OwnerType type : ownerTypes(target)) {
+            sizes.put(type.code(), similarityService.rebuild(type));
+        }
+        return ResponseEntity.ok(sizes);
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<EmbeddingService.EmbeddingStats> stats() {
+        return ResponseEntity.ok(embeddingService.stats());
+    }
+
+    private static List<OwnerType> ownerTypes(String target) {
+        return switch (target.toLowerCase()) {
+            case "items" -> List.of(OwnerType.ITEM);
+            case "summaries" -> List.of(OwnerType.SUMMARY);
+            case "all" -> List.of(OwnerType.values());
+            default -> throw new ValidationException("target", target);
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package net.sampsoftware.genai.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.service.EntityResolutionService;
+import net.sampsoftware.genai.service.EntityResolutionService.ResolutionResult;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Resolution of items that describe the same entity into {@code same_as} links
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/entity-resolution")
+@RequiredArgsConstructor
+public class EntityResolutionController {
+
+    private final EntityResolutionService entityResolutionService;
+
+    /**
+     * Match items of the given types (all when omitted) and link duplicates to their canonical
+     * item; {@code dryRun} (the default) only reports matches and merge proposals
+     */
+    @PostMapping("/run")
+    public ResponseEntity<ResolutionResult> run(
+            @RequestParam(required = false) List<String> itemType,
+            @RequestParam(defaultValue = "true") boolean dryRun) {
+        log.debug("Resolving entities for types {} (dry run: {})", itemType, dryRun);
+        try {
+            return ResponseEntity.ok(entityResolutionService.resolve(
+                    itemType == null ? List.of() : itemType, dryRun));
+        } catch (Exception e) {
+            log.error("Error resolving entities: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
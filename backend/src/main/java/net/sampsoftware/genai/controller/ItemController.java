@@ -1,9 +1,19 @@
 package net.sampsoftware.genai.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.ValidationException;
 import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.service.ItemPatchService;
+import net.sampsoftware.genai.service.ItemPatchService.AttributePatch;
+import net.sampsoftware.genai.service.ItemPatchService.BulkPatchResult;
+import net.sampsoftware.genai.service.ItemPatchService.PatchedItem;
 import net.sampsoftware.genai.service.ItemService;
+import net.sampsoftware.genai.service.SimilarityService;
+import net.sampsoftware.genai.service.SimilarityService.SimilarItem;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -15,7 +25,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
 
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
     private final ItemService itemService;
+    private final ItemPatchService itemPatchService;
+    private final SimilarityService similarityService;
 
     @GetMapping
     public ResponseEntity<List<Item>> getAllItems(
@@ -65,6 +79,32 @@ public class ItemController {
         }
     }
 
+    /**
+     * Apply an RFC 7396 merge patch to the item's attributes. An {@code If-Match} header with
+     * the item version makes the update conditional (409 on mismatch).
+     */
+    @PatchMapping(value = "/{id}/attributes", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<PatchedItem> patchAttributes(
+            @PathVariable Long id,
+            @RequestBody JsonNode patch,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        log.debug("Patching attributes of item {} (If-Match: {})", id, ifMatch);
+
+        PatchedItem patched = itemPatchService.patchAttributes(id, patch, parseVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag("\"" + patched.version() + "\"")
+                .body(patched);
+    }
+
+    /**
+     * Merge-patch the attributes of many items in one statement
+     */
+    @PatchMapping(value = "/attributes", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkPatchResult> patchAttributes(@RequestBody List<AttributePatch> patches) {
+        log.debug("Patching attributes of {} items", patches.size());
+        return ResponseEntity.ok(itemPatchService.patchAttributes(patches));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteItem(@PathVariable Long id) {
         log.debug("Deleting item with id: {}", id);
@@ -96,6 +136,30 @@ public class ItemController {
         return ResponseEntity.ok(items);
     }
 
+    /**
+     * Items most similar to the given one by embedding, optionally restricted to item types
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarItem>> getSimilarItems(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "20") int k,
+            @RequestParam(required = false) List<String> itemType) {
+        log.debug("Finding {} items similar to {} (types: {})", k, id, itemType);
+        return ResponseEntity.ok(similarityService.similarItems(id, k, itemType));
+    }
+
+    /**
+     * Items whose embedding is closest to the embedding of free text
+     */
+    @GetMapping("/similar")
+    public ResponseEntity<List<SimilarItem>> searchSimilarItems(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int k,
+            @RequestParam(required = false) List<String> itemType) {
+        log.debug("Finding {} items similar to text (types: {})", k, itemType);
+        return ResponseEntity.ok(similarityService.searchItems(q, k, itemType));
+    }
+
     @GetMapping("/creators")
     public ResponseEntity<List<String>> getAllCreators() {
         log.debug("Getting all creators");
@@ -111,4 +175,23 @@ public class ItemController {
         List<String> years = itemService.getAllCreatedYears();
         return ResponseEntity.ok(years);
     }
+
+    /**
+     * Version from an If-Match entity tag such as {@code "3"} or {@code W/"3"}
+     */
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        tag = tag.replace("\"", "");
+        try {
+            return Long.parseLong(tag);
+        } catch (NumberFormatException e) {
+            throw new ValidationException(HttpHeaders.IF_MATCH, ifMatch);
+        }
+    }
 }
@@ -2,11 +2,17 @@ package net.sampsoftware.genai.controller;
 
 import lombok.RequiredArgsConstructor;
 import net.sampsoftware.genai.dto.ModelConfigurationDto;
+import net.sampsoftware.genai.exception.ConflictException;
+import net.sampsoftware.genai.exception.ValidationException;
 import net.sampsoftware.genai.mapper.ModelConfigurationMapper;
 import net.sampsoftware.genai.model.ModelConfiguration;
 import net.sampsoftware.genai.repository.ModelConfigurationRepository;
+import net.sampsoftware.genai.service.CallProfileRegistry;
+import net.sampsoftware.genai.service.ChatRouter;
+import net.sampsoftware.genai.service.OutputLengthModel;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,6 +27,9 @@ public class ModelConfigurationController extends CrudDtoController<ModelConfigu
 
     private final ModelConfigurationRepository configRepository;
     private final ModelConfigurationMapper configMapper;
+    private final OutputLengthModel outputLengthModel;
+    private final CallProfileRegistry callProfileRegistry;
+    private final ChatRouter chatRouter;
 
     @Override
     protected JpaRepository<ModelConfiguration, Long> getRepository() {
@@ -47,6 +56,67 @@ public class ModelConfigurationController extends CrudDtoController<ModelConfigu
             .orElse(ResponseEntity.notFound().build());
     }
 
+    @Override
+    @PostMapping
+    public ResponseEntity<ModelConfigurationDto> create(@RequestBody ModelConfigurationDto dto) {
+        var config = toEntity(dto);
+        config.setVersion(null);
+        callProfileRegistry.validate(config);
+        return ResponseEntity.ok(toDto(configRepository.save(config)));
+    }
+
+    /**
+     * Update from the version the client read; a configuration changed since then is a 409
+     */
+    @Override
+    @PutMapping("/{id}")
+    public ResponseEntity<ModelConfigurationDto> update(@PathVariable Long id, @RequestBody ModelConfigurationDto dto) {
+        var existing = configRepository.findById(id);
+        if (existing.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (dto.version() == null) {
+            throw new ValidationException("Updating a model configuration needs the version it was read at");
+        }
+        if (!dto.version().equals(existing.get().getVersion())) {
+            throw conflict(id, existing.get().getVersion(), dto.version());
+        }
+        var config = toEntity(dto);
+        config.setId(id);
+        callProfileRegistry.validate(config);
+        try {
+            return ResponseEntity.ok(toDto(configRepository.saveAndFlush(config)));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // Written by someone else between the check and the update
+            throw conflict(id, null, dto.version());
+        }
+    }
+
+    private static ConflictException conflict(Long id, Long current, Long expected) {
+        return new ConflictException(current == null
+                ? String.format("Model configuration %d changed since version %d", id, expected)
+                : String.format("Model configuration %d is at version %d, expected %d", id, current, expected));
+    }
+
+    /**
+     * Latency, error rate and rate-limit headroom of grouped and recently routed configurations
+     */
+    @GetMapping("/routing")
+    public List<ChatRouter.RouteStatus> routing() {
+        return chatRouter.status();
+    }
+
+    /**
+     * Learned completion lengths of the configuration and the output limits they suggest
+     */
+    @GetMapping("/{id}/output-length")
+    public ResponseEntity<List<OutputLengthModel.Suggestion>> outputLength(@PathVariable Long id) {
+        return configRepository.findByIdWithModel(id)
+            .map(outputLengthModel::suggestions)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
     @Override
     @GetMapping
     public List<ModelConfigurationDto> list() {
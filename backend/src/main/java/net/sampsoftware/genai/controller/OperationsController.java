@@ -10,6 +10,8 @@ import net.sampsoftware.genai.service.OperationsService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 @Slf4j
 @RestController
 @RequestMapping("/api/operations")
@@ -24,6 +26,9 @@ public class OperationsController {
         log.debug("Executing operation: {} for collection: {}", request.operationId(), request.collectionId());
 
         try {
+            if (dryRun(request)) {
+                return handleDryRun(request);
+            }
             switch (request.operationId()) {
                 case "summarize_each":
                     return handleSummarizeEach(request);
@@ -63,7 +68,8 @@ public class OperationsController {
 
         var result = operationsService.summarizeEachInCollection(
                 request.modelConfigurationId(),
-                request.collectionId()
+                request.collectionId(),
+                canonicalOnly(request)
         );
 
         ObjectNode resultNode = objectMapper.createObjectNode();
@@ -95,6 +101,9 @@ public class OperationsController {
         resultNode.put("summaryId", result.summaryId());
         resultNode.put("collectionId", result.collectionId());
         resultNode.put("entityCount", result.entityCount());
+        resultNode.put("levels", result.levels());
+        resultNode.put("nodesGenerated", result.nodesGenerated());
+        resultNode.put("nodesReused", result.nodesReused());
 
         return ResponseEntity.ok(new OperationResponse(
                 request.operationId(),
@@ -111,19 +120,11 @@ public class OperationsController {
             );
         }
 
-        // Extract relationship types from parameters
-        var relationshipTypes = java.util.List.of("similar_themes", "influenced_by", "contrasts_with");
-        if (request.parameters() != null && request.parameters().has("relationshipTypes")) {
-            relationshipTypes = objectMapper.convertValue(
-                    request.parameters().get("relationshipTypes"),
-                    java.util.List.class
-            );
-        }
-
         var result = operationsService.generateRelationships(
                 request.modelConfigurationId(),
                 request.collectionId(),
-                relationshipTypes
+                relationshipTypes(request),
+                canonicalOnly(request)
         );
 
         ObjectNode resultNode = objectMapper.createObjectNode();
@@ -139,4 +140,62 @@ public class OperationsController {
                 resultNode
         ));
     }
+
+    /**
+     * Estimated calls, tokens, cost and duration of the operation, without calling the model
+     */
+    private ResponseEntity<OperationResponse> handleDryRun(OperationRequest request) {
+        if (request.collectionId() == null) {
+            return ResponseEntity.badRequest().body(
+                    new OperationResponse(request.operationId(), "error", "Collection ID is required", null)
+            );
+        }
+
+        BatchEstimate estimate = switch (request.operationId()) {
+            case "summarize_each" -> operationsService.estimateSummarizeEach(
+                    request.modelConfigurationId(), request.collectionId(), canonicalOnly(request));
+            case "summarize_group" -> operationsService.estimateSummarizeCollection(
+                    request.modelConfigurationId(), request.collectionId());
+            case "generate_relationships" -> operationsService.estimateGenerateRelationships(
+                    request.modelConfigurationId(), request.collectionId(), relationshipTypes(request),
+                    canonicalOnly(request));
+            default -> null;
+        };
+        if (estimate == null) {
+            return ResponseEntity.badRequest().body(new OperationResponse(
+                    request.operationId(), "error", "Unknown operation: " + request.operationId(), null));
+        }
+
+        return ResponseEntity.ok(new OperationResponse(
+                request.operationId(),
+                "success",
+                String.format("Dry run: %d calls estimated", estimate.calls()),
+                objectMapper.valueToTree(estimate)
+        ));
+    }
+
+    /**
+     * Relationship types from parameters, or the default set
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> relationshipTypes(OperationRequest request) {
+        if (request.parameters() != null && request.parameters().has("relationshipTypes")) {
+            return objectMapper.convertValue(request.parameters().get("relationshipTypes"), List.class);
+        }
+        return List.of("similar_themes", "influenced_by", "contrasts_with");
+    }
+
+    /**
+     * Whether to estimate the operation instead of running it
+     */
+    private static boolean dryRun(OperationRequest request) {
+        return request.parameters() != null && request.parameters().path("dryRun").asBoolean(false);
+    }
+
+    /**
+     * Whether to skip items resolved as duplicates of another item
+     */
+    private static boolean canonicalOnly(OperationRequest request) {
+        return request.parameters() != null && request.parameters().path("canonicalOnly").asBoolean(false);
+    }
 }
@@ -3,6 +3,9 @@ package net.sampsoftware.genai.controller;
 import lombok.RequiredArgsConstructor;
 import net.sampsoftware.genai.dto.RelationshipRecord;
 import net.sampsoftware.genai.model.Relationship;
+import net.sampsoftware.genai.service.BulkRelationshipService;
+import net.sampsoftware.genai.service.BulkRelationshipService.BulkWriteResult;
+import net.sampsoftware.genai.service.BulkRelationshipService.ConflictMode;
 import net.sampsoftware.genai.service.RelationshipService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,6 +18,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class RelationshipController {
     private final RelationshipService relationshipService;
+    private final BulkRelationshipService bulkRelationshipService;
+
+    record BulkRelationshipRequest(List<RelationshipRecord> relationships, ConflictMode onConflict) {}
 
     @PostMapping
     public ResponseEntity<RelationshipRecord> createRelationship(@RequestBody RelationshipRecord record) {
@@ -23,6 +29,17 @@ public class RelationshipController {
         return ResponseEntity.ok(toRecord(created));
     }
 
+    /**
+     * Create or de-duplicate many relationships in one call. {@code onConflict} is
+     * {@code IGNORE} (default) or {@code MERGE_ATTRIBUTES}.
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkWriteResult> createRelationships(@RequestBody BulkRelationshipRequest request) {
+        ConflictMode mode = request.onConflict() != null ? request.onConflict() : ConflictMode.IGNORE;
+        List<RelationshipRecord> relationships = request.relationships() != null ? request.relationships() : List.of();
+        return ResponseEntity.ok(bulkRelationshipService.write(relationships, mode));
+    }
+
     @GetMapping("/item/{itemId}")
     public ResponseEntity<List<RelationshipRecord>> getRelationshipsForItem(
             @PathVariable Long itemId) {
@@ -6,6 +6,8 @@ import net.sampsoftware.genai.dto.SummaryRecords.DetailedSummaryRecord;
 import net.sampsoftware.genai.dto.SummaryRecords.SummaryRecord;
 import net.sampsoftware.genai.exception.ResourceNotFoundException;
 import net.sampsoftware.genai.model.Summary;
+import net.sampsoftware.genai.service.SimilarityService;
+import net.sampsoftware.genai.service.SimilarityService.SimilarSummary;
 import net.sampsoftware.genai.service.SummaryService;
 
 import org.springframework.http.HttpStatus;
@@ -24,6 +26,7 @@ import java.util.List;
 public class SummaryController {
 
     private final SummaryService summaryService;
+    private final SimilarityService similarityService;
 
     /**
      * Get summaries for specific items by ID
@@ -129,6 +132,26 @@ public class SummaryController {
         }
     }
 
+    /**
+     * Summaries most similar to the given one by embedding, optionally restricted to the
+     * types of their items
+     */
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<SimilarSummary>> getSimilarSummaries(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "20") int k,
+            @RequestParam(required = false) List<String> itemType) {
+        return ResponseEntity.ok(similarityService.similarSummaries(id, k, itemType));
+    }
+
+    @GetMapping("/similar")
+    public ResponseEntity<List<SimilarSummary>> searchSimilarSummaries(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int k,
+            @RequestParam(required = false) List<String> itemType) {
+        return ResponseEntity.ok(similarityService.searchSummaries(q, k, itemType));
+    }
+
     /**
      * Create a new summary
      */
@@ -0,0 +1,66 @@
+package net.sampsoftware.genai.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.service.SummaryDuplicateService;
+import net.sampsoftware.genai.service.SummaryDuplicateService.CollapseResult;
+import net.sampsoftware.genai.service.SummaryDuplicateService.DuplicateCluster;
+import net.sampsoftware.genai.service.SummaryDuplicateService.IndexResult;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Near-duplicate summary clusters and their collapse
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/summaries/duplicates")
+@RequiredArgsConstructor
+public class SummaryDuplicateController {
+
+    private final SummaryDuplicateService summaryDuplicateService;
+
+    /**
+     * Clusters of summaries whose estimated content similarity is at least {@code threshold}
+     *
+     * @param sameItem only group summaries of the same item
+     */
+    @GetMapping
+    public ResponseEntity<List<DuplicateCluster>> getClusters(
+            @RequestParam(defaultValue = "0.8") double threshold,
+            @RequestParam(defaultValue = "true") boolean sameItem,
+            @RequestParam(required = false) Long itemId,
+            @RequestParam(defaultValue = "100") int limit) {
+        List<DuplicateCluster> clusters = summaryDuplicateService.clusters(threshold, sameItem, itemId);
+        return ResponseEntity.ok(clusters.subList(0, Math.min(Math.max(limit, 0), clusters.size())));
+    }
+
+    /**
+     * Keep the newest summary of each cluster and delete the others; {@code dryRun} (the
+     * default) only reports what would be deleted
+     */
+    @PostMapping("/collapse")
+    public ResponseEntity<CollapseResult> collapse(
+            @RequestParam(defaultValue = "0.8") double threshold,
+            @RequestParam(defaultValue = "true") boolean sameItem,
+            @RequestParam(required = false) Long itemId,
+            @RequestParam(defaultValue = "true") boolean dryRun) {
+        log.debug("Collapsing duplicate summaries at threshold {} (dry run: {})", threshold, dryRun);
+        return ResponseEntity.ok(summaryDuplicateService.collapse(threshold, sameItem, itemId, dryRun));
+    }
+
+    /**
+     * Sign summaries written before duplicate detection existed; {@code force} re-signs all
+     */
+    @PostMapping("/reindex")
+    public ResponseEntity<IndexResult> reindex(@RequestParam(defaultValue = "false") boolean force) {
+        try {
+            return ResponseEntity.ok(summaryDuplicateService.reindex(force));
+        } catch (Exception e) {
+            log.error("Error indexing summary signatures: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
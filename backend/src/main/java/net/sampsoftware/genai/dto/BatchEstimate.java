@@ -0,0 +1,18 @@
+package net.sampsoftware.genai.dto;
+
+/**
+ * Predicted size of a batch that was planned but not sent. Cost is null when the model has no
+ * prices; {@code limitedBy} names what bounds the wall-clock time ({@code concurrency},
+ * {@code tokens-per-minute} or {@code requests-per-minute}).
+ */
+public record BatchEstimate(
+        int calls,
+        long inputTokens,
+        long outputTokens,
+        Double estimatedCost,
+        long wallClockMs,
+        long wallClockP90Ms,
+        int concurrency,
+        String limitedBy,
+        int historySamples
+) {}
@@ -5,5 +5,10 @@ import java.util.List;
 public record BatchSummaryRequest(
         Long modelConfigurationId,
         String prompt,
-        List<String> itemTypes  // Add itemTypes field
+        Integer promptId,
+        List<String> itemTypes,  // Add itemTypes field
+        Boolean canonicalOnly,
+        Boolean packed,
+        String mode,
+        Boolean dryRun
 ) {}
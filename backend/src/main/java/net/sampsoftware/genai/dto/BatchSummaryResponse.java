@@ -6,5 +6,7 @@ public record BatchSummaryResponse(
         int successCount,
         int failureCount,
         List<Long> summaryIds,  // Add summaryIds field
-        String message          // Add message field
+        String message,         // Add message field
+        int skippedCount,       // Items whose latest summary is still current
+        BatchEstimate estimate  // Set by dry runs instead of summaries
 ) {}
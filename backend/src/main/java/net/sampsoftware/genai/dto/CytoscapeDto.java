@@ -27,9 +27,22 @@ public class CytoscapeDto {
     @NoArgsConstructor
     @AllArgsConstructor
     @Builder
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     public static class CytoscapeNode {
         private NodeData data;
         private String classes;
+        private Position position;
+    }
+
+    /**
+     * Pre-computed node coordinates for the cytoscape {@code preset} layout
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Position {
+        private double x;
+        private double y;
     }
 
     @Data
@@ -13,5 +13,6 @@ public record ModelConfigurationDto(
         Instant createdAt,
         Double costPer1kInputTokens,
         Double costPer1kOutputTokens,
-        Integer contextLength
+        Integer contextLength,
+        Long version  // Required on update; a stale version is rejected with 409
 ) {}
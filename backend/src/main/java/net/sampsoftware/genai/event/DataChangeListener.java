@@ -0,0 +1,57 @@
+package net.sampsoftware.genai.event;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.Model;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.model.Relationship;
+import net.sampsoftware.genai.model.Summary;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that turns entity writes into {@link DataChangedEvent}s
+ */
+@Component
+@RequiredArgsConstructor
+public class DataChangeListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void onCreated(Object entity) {
+        publish(entity, DataChangedEvent.ChangeKind.CREATED);
+    }
+
+    @PostUpdate
+    public void onUpdated(Object entity) {
+        publish(entity, DataChangedEvent.ChangeKind.UPDATED);
+    }
+
+    @PostRemove
+    public void onDeleted(Object entity) {
+        publish(entity, DataChangedEvent.ChangeKind.DELETED);
+    }
+
+    private void publish(Object entity, DataChangedEvent.ChangeKind kind) {
+        eventPublisher.publishEvent(DataChangedEvent.of(entity, idOf(entity), kind));
+    }
+
+    private static Long idOf(Object entity) {
+        if (entity instanceof Item item) {
+            return item.getId();
+        } else if (entity instanceof Relationship relationship) {
+            return relationship.getId();
+        } else if (entity instanceof Summary summary) {
+            return summary.getId();
+        } else if (entity instanceof ModelConfiguration configuration) {
+            return configuration.getId();
+        } else if (entity instanceof Model model) {
+            return model.getId();
+        }
+        return null;
+    }
+}
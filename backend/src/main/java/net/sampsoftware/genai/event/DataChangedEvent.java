@@ -0,0 +1,28 @@
+package net.sampsoftware.genai.event;
+
+import java.util.List;
+
+/**
+ * Published whenever items, relationships, summaries, models or model configurations are written.
+ * Single-entity changes carry the entity; bulk changes carry only the affected ids.
+ */
+public record DataChangedEvent(
+        Class<?> entityType,
+        ChangeKind kind,
+        List<Long> ids,
+        Object entity
+) {
+    public enum ChangeKind { CREATED, UPDATED, DELETED }
+
+    public static DataChangedEvent of(Object entity, Long id, ChangeKind kind) {
+        return new DataChangedEvent(entity.getClass(), kind, id != null ? List.of(id) : List.of(), entity);
+    }
+
+    public static DataChangedEvent bulk(Class<?> entityType, ChangeKind kind, List<Long> ids) {
+        return new DataChangedEvent(entityType, kind, ids, null);
+    }
+
+    public boolean concerns(Class<?> type) {
+        return type.isAssignableFrom(entityType);
+    }
+}
@@ -0,0 +1,11 @@
+package net.sampsoftware.genai.event;
+
+import java.util.List;
+
+/**
+ * Published after stored embeddings were written or removed for the given owners
+ *
+ * @param ownerType {@code item} or {@code summary}
+ */
+public record EmbeddingsChangedEvent(String ownerType, String provider, List<Long> ownerIds, boolean removed) {
+}
@@ -0,0 +1,9 @@
+package net.sampsoftware.genai.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class ConflictException extends GenaiException {
+    public ConflictException(String message) {
+        super(message, HttpStatus.CONFLICT, "VERSION_CONFLICT");
+    }
+}
@@ -7,6 +7,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import net.sampsoftware.genai.event.DataChangeListener;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
  * Replaces separate Book, Person, RankedBook, etc. models
  */
 @Entity
+@EntityListeners(DataChangeListener.class)
 @Table(name = "items")
 @Data
 @NoArgsConstructor
@@ -54,6 +56,13 @@ public class Item {
     @Builder.Default
     private JsonNode attributes = JsonNodeFactory.instance.objectNode();
 
+    /**
+     * Optimistic lock version; attribute patches bump it in SQL as well
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
@@ -2,8 +2,10 @@ package net.sampsoftware.genai.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import net.sampsoftware.genai.event.DataChangeListener;
 
 @Entity
+@EntityListeners(DataChangeListener.class)
 @Table(
         name = "model",
         uniqueConstraints = {
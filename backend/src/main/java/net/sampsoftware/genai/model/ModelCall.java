@@ -116,6 +116,12 @@ public class ModelCall {
     @Column(name = "batch_id")
     private Long batchId;
 
+    /**
+     * Item the call was made for, if any; removed together with the item
+     */
+    @Column(name = "item_id")
+    private Long itemId;
+
     // Changed: Now NOT NULL in schema, so ensure it's always set
     @Builder.Default
     @Column(name = "created_at", nullable = false)
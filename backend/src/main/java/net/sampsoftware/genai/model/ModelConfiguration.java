@@ -3,12 +3,14 @@ package net.sampsoftware.genai.model;
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.*;
 import lombok.*;
+import net.sampsoftware.genai.event.DataChangeListener;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
 import java.time.Instant;
 
 @Entity
+@EntityListeners(DataChangeListener.class)
 @Table(name = "model_configuration")
 @Getter
 @Setter
@@ -33,4 +35,11 @@ public class ModelConfiguration {
 
     @Builder.Default
     private Instant createdAt = Instant.now();
+
+    /**
+     * Optimistic lock version; call profiles are compiled once per version
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
 }
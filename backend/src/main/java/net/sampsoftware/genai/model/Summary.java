@@ -3,6 +3,7 @@ package net.sampsoftware.genai.model;
 import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.persistence.*;
 import lombok.*;
+import net.sampsoftware.genai.event.DataChangeListener;
 import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
@@ -10,6 +11,7 @@ import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(DataChangeListener.class)
 @Table(name = "summaries")
 @Data
 @NoArgsConstructor
@@ -39,6 +41,12 @@ public class Summary {
     @JdbcTypeCode(SqlTypes.JSON)
     private JsonNode metadata;
 
+    /**
+     * Hash of the rendered item, prompt and model options the summary was generated from
+     */
+    @Column(name = "input_fingerprint", length = 64)
+    private String inputFingerprint;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
@@ -95,6 +95,9 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     @Query("SELECT COUNT(i) FROM Item i WHERE i.itemType = :itemType")
     Long countByItemType(@Param("itemType") String itemType);
 
+    @Query("SELECT i.itemType, COUNT(i) FROM Item i GROUP BY i.itemType ORDER BY i.itemType")
+    List<Object[]> countGroupedByItemType();
+
     // === SEARCH METHODS ===
 
     @Query("SELECT i FROM Item i WHERE " +
@@ -106,11 +109,6 @@ public interface ItemRepository extends JpaRepository<Item, Long> {
     List<Item> searchItems(@Param("itemType") String itemType,
                            @Param("searchTerm") String searchTerm);
 
-    // === BULK OPERATIONS ===
-
-    @Query("DELETE FROM Item i WHERE i.itemType = :itemType")
-    void deleteAllByItemType(@Param("itemType") String itemType);
-
     // === HELPER METHOD IMPLEMENTATIONS ===
 
     default List<Item> findByItemTypeAndCreator(String itemType, String creator) {
@@ -74,6 +74,34 @@ public interface ModelCallRepository extends JpaRepository<ModelCall, Long> {
     @Query("SELECT mc FROM ModelCall mc WHERE mc.tokenUsage IS NOT NULL ORDER BY mc.createdAt DESC")
     List<ModelCall> findCallsWithTokenUsage();
 
+    /**
+     * Sample count, mean completion tokens and median and 90th percentile API latency of the
+     * most recent successful calls with a model configuration
+     */
+    @Query(value = "SELECT COUNT(*), AVG(CAST(token_usage ->> 'completionTokens' AS double precision)), " +
+            "percentile_cont(0.5) WITHIN GROUP (ORDER BY api_duration_ms), " +
+            "percentile_cont(0.9) WITHIN GROUP (ORDER BY api_duration_ms) " +
+            "FROM (SELECT token_usage, api_duration_ms FROM model_calls " +
+            "WHERE success = true AND model_configuration_id = :configId AND api_duration_ms IS NOT NULL " +
+            "ORDER BY created_at DESC LIMIT :limit) recent", nativeQuery = true)
+    List<Object[]> getRecentCallStats(@Param("configId") Long configId, @Param("limit") int limit);
+
+    /**
+     * Item type, system prompt key (first 16 hex digits of the MD5 of the leading system
+     * message, empty without one) and completion tokens of the most recent successful calls
+     * with a model configuration
+     */
+    @Query(value = "SELECT COALESCE(i.item_type, ''), " +
+            "CASE WHEN recent.prompt_json -> 'messages' -> 0 ->> 'messageType' = 'SystemMessage' " +
+            "THEN left(md5(recent.prompt_json -> 'messages' -> 0 ->> 'text'), 16) ELSE '' END, " +
+            "CAST(recent.token_usage ->> 'completionTokens' AS integer) " +
+            "FROM (SELECT item_id, prompt_json, token_usage FROM model_calls " +
+            "WHERE success = true AND model_configuration_id = :configId " +
+            "AND token_usage ->> 'completionTokens' IS NOT NULL " +
+            "ORDER BY created_at DESC LIMIT :limit) recent " +
+            "LEFT JOIN items i ON i.id = recent.item_id", nativeQuery = true)
+    List<Object[]> getRecentCompletionTokens(@Param("configId") Long configId, @Param("limit") int limit);
+
     // Batch analysis
     @Query("SELECT mc.batchId, COUNT(mc), AVG(mc.durationMs), SUM(CASE WHEN mc.success = true THEN 1 ELSE 0 END) " +
             "FROM ModelCall mc WHERE mc.batchId IS NOT NULL " +
@@ -6,7 +6,9 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface RelationshipRepository extends JpaRepository<Relationship, Long> {
@@ -17,6 +19,11 @@ public interface RelationshipRepository extends JpaRepository<Relationship, Long
 
     List<Relationship> findByTargetItemId(Long targetItemId);
 
+    List<Relationship> findBySourceItemIdIn(Collection<Long> sourceItemIds);
+
+    Optional<Relationship> findBySourceItemIdAndTargetItemIdAndRelationshipType(
+            Long sourceItemId, Long targetItemId, String relationshipType);
+
     @Query("SELECT r FROM Relationship r WHERE " +
             "r.sourceItemId = :itemId OR r.targetItemId = :itemId")
     List<Relationship> findByItemId(@Param("itemId") Long itemId);
@@ -54,6 +61,9 @@ public interface RelationshipRepository extends JpaRepository<Relationship, Long
     @Query("SELECT r.relationshipType, COUNT(r) FROM Relationship r GROUP BY r.relationshipType")
     List<Object[]> countByRelationshipType();
 
+    @Query("SELECT COUNT(r) FROM Relationship r WHERE r.relationshipType = :relationshipType")
+    long countOfRelationshipType(@Param("relationshipType") String relationshipType);
+
     @Query("SELECT COUNT(DISTINCT r.sourceItemId) + COUNT(DISTINCT r.targetItemId) FROM Relationship r")
     long countDistinctItems();
 }
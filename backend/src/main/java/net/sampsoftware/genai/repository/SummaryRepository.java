@@ -27,6 +27,16 @@ public interface SummaryRepository extends JpaRepository<Summary, Long> {
 
     List<Summary> findByBatchIdIsNull();
 
+    /**
+     * Item id and input fingerprint of the latest summary of each item by a model configuration;
+     * the ids are bound as one array, so any number of items fits the bind parameter limit
+     */
+    @Query(value = "SELECT DISTINCT ON (item_id) item_id, input_fingerprint FROM summaries " +
+            "WHERE model_configuration_id = :modelConfigurationId AND item_id = ANY(CAST(:itemIds AS bigint[])) " +
+            "ORDER BY item_id, created_at DESC", nativeQuery = true)
+    List<Object[]> findLatestFingerprints(@Param("modelConfigurationId") Long modelConfigurationId,
+                                          @Param("itemIds") Long[] itemIds);
+
     @Query("SELECT s FROM Summary s WHERE s.modelConfiguration.id = :modelConfigurationId")
     List<Summary> findByModelConfigurationId(@Param("modelConfigurationId") Long modelConfigurationId);
 
@@ -190,12 +200,6 @@ public interface SummaryRepository extends JpaRepository<Summary, Long> {
             @Param("outdatedModelConfigs") List<Long> outdatedModelConfigs
     );
 
-    /**
-     * Delete summaries older than specified date
-     */
-    @Query("DELETE FROM Summary s WHERE s.createdAt < :cutoffDate")
-    int deleteOldSummaries(@Param("cutoffDate") LocalDateTime cutoffDate);
-
     /**
      * Delete summaries for specific items
      */
@@ -1,12 +1,11 @@
 // backend/src/main/java/net/sampsoftware/genai/service/AIService.java
 package net.sampsoftware.genai.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sampsoftware.genai.model.ModelConfiguration;
-import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.messages.SystemMessage;
@@ -18,25 +17,34 @@ import org.springframework.stereotype.Service;
 @Slf4j
 public class AIService extends BaseAiApiService {
 
-    private final OpenAiChatModel chatModel;
+    private final ChatRouter chatRouter;
+    private final TokenizerService tokenizerService;
+    private final OutputLengthModel outputLengthModel;
+    private final CallProfileRegistry callProfileRegistry;
 
     public String generateResponse(String promptText, ModelConfiguration modelConfig) {
-        OpenAiChatOptions options = buildChatOptions(modelConfig);
+        CallProfileRegistry.CallProfile profile = callProfileRegistry.profile(modelConfig);
+        OpenAiChatOptions options = profile.chatOptions();
+        OutputLengthModel.Key lengthKey = outputLengthModel.key(modelConfig, null);
+        TokenizerService.TokenBudget budget = tokenizerService.preflight(modelConfig,
+                outputLimit(options, profile, lengthKey), promptText);
 
         return executeApiCall(() -> {
             UserMessage userMessage = new UserMessage(promptText);
             Prompt prompt = new Prompt(userMessage, options);
-            return chatModel.call(prompt).getResult().getOutput().getText();
+            return callUntilComplete(prompt, profile, budget, lengthKey).getResult().getOutput().getText();
         });
     }
 
     public ChatResponse generateFullResponse(String promptText, ModelConfiguration modelConfig) {
-        OpenAiChatOptions options = buildChatOptions(modelConfig);
+        CallProfileRegistry.CallProfile profile = callProfileRegistry.profile(modelConfig);
+        OpenAiChatOptions options = profile.chatOptions();
+        TokenizerService.TokenBudget budget = tokenizerService.preflight(modelConfig, promptText);
 
         try {
             UserMessage userMessage = new UserMessage(promptText);
             Prompt prompt = new Prompt(userMessage, options);
-            return chatModel.call(prompt);
+            return chatRouter.call(prompt, profile, budget);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -44,61 +52,99 @@ public class AIService extends BaseAiApiService {
 
     public String generateResponse(String systemPrompt, String userPrompt,
                                    ModelConfiguration modelConfig) {
-        OpenAiChatOptions options = buildChatOptions(modelConfig);
+        CallProfileRegistry.CallProfile profile = callProfileRegistry.profile(modelConfig);
+        OpenAiChatOptions options = profile.chatOptions();
+        OutputLengthModel.Key lengthKey = outputLengthModel.key(modelConfig, systemPrompt);
+        TokenizerService.TokenBudget budget = tokenizerService.preflight(modelConfig,
+                outputLimit(options, profile, lengthKey), systemPrompt, userPrompt);
 
         return executeApiCall(() -> {
             SystemMessage systemMessage = new SystemMessage(systemPrompt);
             UserMessage userMessage = new UserMessage(userPrompt);
             Prompt prompt = new Prompt(java.util.List.of(systemMessage, userMessage), options);
-            return chatModel.call(prompt).getResult().getOutput().getText();
+            return callUntilComplete(prompt, profile, budget, lengthKey).getResult().getOutput().getText();
         });
     }
 
-    private OpenAiChatOptions buildChatOptions(ModelConfiguration modelConfig) {
-        if (modelConfig == null || modelConfig.getModelConfig() == null) {
-            return OpenAiChatOptions.builder().build();
-        }
-
-        JsonNode configNode = modelConfig.getModelConfig();
-
-        OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions.builder();
-        
-        // Set the model name from the configuration
-        if (modelConfig.getModel() != null && modelConfig.getModel().getModelName() != null) {
-            String modelName = modelConfig.getModel().getModelName();
-            // Convert display name to API model name
-            String apiModelName = convertToApiModelName(modelName);
-            log.debug("Using model: {} (converted from: {})", apiModelName, modelName);
-            optionsBuilder.model(apiModelName);
-        }
-
-        if (configNode.has("temperature")) {
-            optionsBuilder.temperature(configNode.get("temperature").doubleValue());
+    /**
+     * Generate a response constrained to {@code jsonSchema} (a JSON schema whose root is an
+     * object), with {@code maxTokens} overriding the configured output limit when set
+     */
+    public String generateStructuredResponse(String systemPrompt, String userPrompt,
+                                             ModelConfiguration modelConfig, String jsonSchema,
+                                             Integer maxTokens) {
+        CallProfileRegistry.CallProfile profile = callProfileRegistry.profile(modelConfig);
+        OpenAiChatOptions options = profile.chatOptions();
+        options.setResponseFormat(new ResponseFormat(ResponseFormat.Type.JSON_SCHEMA, jsonSchema));
+        if (maxTokens != null) {
+            options.setMaxTokens(maxTokens);
         }
+        TokenizerService.TokenBudget budget = maxTokens == null
+                ? tokenizerService.preflight(modelConfig, systemPrompt, userPrompt)
+                : tokenizerService.preflight(modelConfig, maxTokens, systemPrompt, userPrompt);
 
-        if (configNode.has("top_p")) {
-            optionsBuilder.topP(configNode.get("top_p").doubleValue());
-        }
+        return executeApiCall(() -> {
+            SystemMessage systemMessage = new SystemMessage(systemPrompt);
+            UserMessage userMessage = new UserMessage(userPrompt);
+            Prompt prompt = new Prompt(java.util.List.of(systemMessage, userMessage), options);
+            return chatRouter.call(prompt, profile, budget).getResult().getOutput().getText();
+        });
+    }
 
-        if (configNode.has("max_tokens")) {
-            optionsBuilder.maxTokens(configNode.get("max_tokens").intValue());
+    /**
+     * Output limit of the call: the learned one, set on {@code options}, when it is tighter than
+     * the configured one
+     */
+    private int outputLimit(OpenAiChatOptions options, CallProfileRegistry.CallProfile profile,
+                            OutputLengthModel.Key lengthKey) {
+        Integer learned = outputLengthModel.limit(lengthKey, profile.configuration());
+        if (learned == null) {
+            return profile.maxOutputTokens();
         }
+        options.setMaxTokens(learned);
+        return learned;
+    }
 
-        if (configNode.has("frequency_penalty")) {
-            optionsBuilder.frequencyPenalty(configNode.get("frequency_penalty").doubleValue());
+    /**
+     * Call the model and, while the response was cut off by a learned limit below the
+     * configured one, again with twice the limit; complete lengths are fed back to the model
+     */
+    private ChatResponse callUntilComplete(Prompt prompt, CallProfileRegistry.CallProfile profile,
+                                           TokenizerService.TokenBudget budget, OutputLengthModel.Key lengthKey) {
+        ChatResponse response = chatRouter.call(prompt, profile, budget);
+        int configured = profile.maxOutputTokens();
+        while (truncated(response) && prompt.getOptions() instanceof OpenAiChatOptions options
+                && options.getMaxTokens() != null && options.getMaxTokens() < configured) {
+            int raised = Math.min(Math.min(configured, options.getMaxTokens() * 2),
+                    budget.contextLength() - budget.inputTokens());
+            if (raised <= options.getMaxTokens()) {
+                break;
+            }
+            log.debug("Response cut off at {} tokens by the learned limit; retrying with {}",
+                    options.getMaxTokens(), raised);
+            OpenAiChatOptions retryOptions = options.copy();
+            retryOptions.setMaxTokens(raised);
+            prompt = new Prompt(prompt.getInstructions(), retryOptions);
+            budget = new TokenizerService.TokenBudget(budget.model(), budget.contextLength(),
+                    budget.inputTokens(), raised, budget.exact());
+            response = chatRouter.call(prompt, profile, budget);
         }
-
-        if (configNode.has("presence_penalty")) {
-            optionsBuilder.presencePenalty(configNode.get("presence_penalty").doubleValue());
+        if (!truncated(response) && response.getMetadata() != null && response.getMetadata().getUsage() != null
+                && response.getMetadata().getUsage().getCompletionTokens() != null) {
+            outputLengthModel.record(lengthKey, response.getMetadata().getUsage().getCompletionTokens());
         }
+        return response;
+    }
 
-        return optionsBuilder.build();
+    private static boolean truncated(ChatResponse response) {
+        return response.getResult() != null && response.getResult().getMetadata() != null
+                && "length".equalsIgnoreCase(response.getResult().getMetadata().getFinishReason());
     }
-    
+
     /**
      * Convert display model names to OpenAI API model names
      */
-    private String convertToApiModelName(String displayName) {
+    static String convertToApiModelName(String displayName) {
         if (displayName == null) {
             return "gpt-3.5-turbo"; // fallback
         }
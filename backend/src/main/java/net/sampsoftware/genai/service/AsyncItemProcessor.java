@@ -1,14 +1,20 @@
 package net.sampsoftware.genai.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.advisor.ModelCallContext;
 import net.sampsoftware.genai.model.Item;
 import net.sampsoftware.genai.model.ModelConfiguration;
 import net.sampsoftware.genai.model.Summary;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @Slf4j
@@ -16,8 +22,32 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class AsyncItemProcessor {
 
+    private static final String PACK_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "summaries": {
+              "type": "array",
+              "items": {
+                "type": "object",
+                "properties": {
+                  "id": {"type": "integer"},
+                  "summary": {"type": "string"}
+                },
+                "required": ["id", "summary"],
+                "additionalProperties": false
+              }
+            }
+          },
+          "required": ["summaries"],
+          "additionalProperties": false
+        }
+        """;
+
     private final AIService aiService;
     private final SummaryService summaryService;
+    private final ItemRenderer itemRenderer;
+    private final LongInputSummarizer longInputSummarizer;
     private final ObjectMapper objectMapper;
 
     /**
@@ -30,25 +60,34 @@ public class AsyncItemProcessor {
             String error
     ) {}
 
-    @Async
+    /**
+     * Saved summaries of a pack, and the items it did not resolve
+     */
+    public record PackResult(
+            List<ProcessingResult> results,
+            List<Item> unresolved
+    ) {}
+
+    @Async("modelCallExecutor")
     public CompletableFuture<ProcessingResult> processItemAsync(
             Item item,
             String systemPrompt,
             ModelConfiguration modelConfiguration,
-            Long batchId
+            Long batchId,
+            String inputFingerprint
     ) {
         try {
             log.debug("Processing item {} (type: {}) in batch {}",
                     item.getId(), item.getItemType(), batchId);
 
-            // Build item info as JSON for the AI
-            String itemInfo = buildItemInfo(item);
-
-            // Generate summary using AI
-            String summaryText = aiService.generateResponse(
+            // Generate summary using AI; long renderings are summarized in chunks
+            String summaryText = longInputSummarizer.generate(
                     systemPrompt,
-                    itemInfo,
-                    modelConfiguration
+                    itemRenderer.render(item),
+                    modelConfiguration,
+                    item.getId(),
+                    item.getItemType(),
+                    batchId
             );
 
             log.debug("Generated summary for item {} (length: {})",
@@ -60,6 +99,7 @@ public class AsyncItemProcessor {
                     .itemId(item.getId())
                     .content(summaryText)
                     .batchId(batchId)
+                    .inputFingerprint(inputFingerprint)
                     .build();
 
             Summary savedSummary = summaryService.save(summary);
@@ -82,43 +122,55 @@ public class AsyncItemProcessor {
     }
 
     /**
-     * Build structured item information for AI processing
+     * Summarize a pack of items in one call whose response must be
+     * {@code {"summaries": [{"id": ..., "summary": ...}]}}. Summaries are saved for the ids of
+     * the pack that come back with non-blank text; the other items are returned as unresolved
+     * so the caller can process them one by one.
      */
-    private String buildItemInfo(Item item) {
-        try {
-            // Create a structured representation of the item
-            var itemData = objectMapper.createObjectNode();
-
-            itemData.put("id", item.getId());
-            itemData.put("name", item.getName());
-            itemData.put("type", item.getItemType());
+    @Async("modelCallExecutor")
+    public CompletableFuture<PackResult> processPackAsync(
+            List<Item> items,
+            String systemPrompt,
+            ModelConfiguration modelConfiguration,
+            int maxOutputTokens,
+            Long batchId,
+            Map<Long, String> inputFingerprints
+    ) {
+        Map<Long, Item> pending = new LinkedHashMap<>();
+        items.forEach(item -> pending.put(item.getId(), item));
+        List<ProcessingResult> results = new ArrayList<>();
 
-            // Add attributes if present
-            if (item.getAttributes() != null) {
-                itemData.set("attributes", item.getAttributes());
+        try {
+            String itemTable = itemRenderer.render(items, ItemRenderer.Format.TOON);
+            String response;
+            try (var scope = ModelCallContext.open(null, batchId)) {
+                response = aiService.generateStructuredResponse(
+                        systemPrompt, itemTable, modelConfiguration, PACK_SCHEMA, maxOutputTokens);
             }
 
-            // Format as readable JSON
-            return objectMapper.writerWithDefaultPrettyPrinter()
-                    .writeValueAsString(itemData);
-
+            JsonNode summaries = objectMapper.readTree(response).path("summaries");
+            for (JsonNode entry : summaries) {
+                Item item = entry.path("id").canConvertToLong() ? pending.get(entry.path("id").asLong()) : null;
+                String text = entry.path("summary").asText("").strip();
+                if (item == null || text.isEmpty()) {
+                    continue;
+                }
+                Summary saved = summaryService.save(Summary.builder()
+                        .modelConfiguration(modelConfiguration)
+                        .itemId(item.getId())
+                        .content(text)
+                        .batchId(batchId)
+                        .inputFingerprint(inputFingerprints.get(item.getId()))
+                        .build());
+                results.add(new ProcessingResult(true, item.getId(), saved.getId(), null));
+                pending.remove(item.getId());
+            }
+            log.debug("Pack of {} items in batch {} resolved {}", items.size(), batchId, results.size());
         } catch (Exception e) {
-            log.warn("Error building JSON for item {}, falling back to simple format: {}",
-                    item.getId(), e.getMessage());
-
-            // Fallback to simple string format
-            return String.format("""
-                Item Details:
-                - ID: %d
-                - Name: %s  
-                - Type: %s
-                - Attributes: %s
-                """,
-                    item.getId(),
-                    item.getName(),
-                    item.getItemType(),
-                    item.getAttributes() != null ? item.getAttributes().toString() : "none"
-            );
+            log.warn("Pack of {} items in batch {} failed, processing them individually: {}",
+                    items.size(), batchId, e.getMessage());
         }
+
+        return CompletableFuture.completedFuture(new PackResult(results, List.copyOf(pending.values())));
     }
 }
@@ -2,15 +2,27 @@ package net.sampsoftware.genai.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.BatchEstimate;
 import net.sampsoftware.genai.dto.BatchSummaryResponse;
+import net.sampsoftware.genai.exception.ValidationException;
 import net.sampsoftware.genai.model.Item;
 import net.sampsoftware.genai.model.ModelConfiguration;
 import net.sampsoftware.genai.model.Summary;
 import net.sampsoftware.genai.repository.ItemRepository;
-import net.sampsoftware.genai.repository.RelationshipRepository;
+import net.sampsoftware.genai.repository.SummaryRepository;
+import net.sampsoftware.genai.util.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -19,19 +31,89 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AsyncItemSummaryService {
 
+    private static final PromptTemplate DEFAULT_SYSTEM_PROMPT = PromptTemplate.compile("""
+        You are analyzing an item from a collection. The item details will be provided below.
+        Please provide a concise, informative summary of this item focusing on its key
+        characteristics, significance, and notable features. Keep the summary to 2-3 sentences
+        and make it suitable for comparative analysis with other items.
+
+        For books: focus on genre, themes, and literary significance.
+        For people: focus on their role, achievements, and historical importance.
+        For other items: focus on their primary characteristics and relevance.
+        """);
+
+    private static final String PACK_INSTRUCTIONS = """
+
+        You will receive several items as a table whose first column is the item id.
+        Summarize each item separately as instructed above. Respond with a JSON object whose
+        "summaries" array holds one {"id": <item id>, "summary": "<summary>"} entry per item,
+        using the ids exactly as given.
+        """;
+
     private final AIService aiService;
     private final ModelService modelService;
     private final ItemRepository itemRepository;
-    private final RelationshipRepository relationshipRepository;
+    private final SummaryRepository summaryRepository;
+    private final CollectionHierarchyService collectionHierarchyService;
     private final AsyncItemProcessor asyncItemProcessor;
+    private final EntityResolutionService entityResolutionService;
+    private final PromptTemplateService promptTemplateService;
+    private final TokenizerService tokenizerService;
+    private final ItemRenderer itemRenderer;
+    private final LongInputSummarizer longInputSummarizer;
+    private final BatchEstimator batchEstimator;
+
+    @Value("${genai.packing.max-items:25}")
+    private int maxItemsPerPack;
+
+    @Value("${genai.packing.output-tokens-per-item:150}")
+    private int outputTokensPerItem;
+
+    @Value("${genai.packing.max-output-tokens:4096}")
+    private int maxPackOutputTokens;
+
+    /**
+     * Which selected items a batch summarizes, judged by the input fingerprint of each item's
+     * latest summary by the same model configuration
+     */
+    public enum Mode {
+        /** Every selected item */
+        FULL,
+        /** Items without a summary or whose input changed since their latest summary */
+        SKIP_UNCHANGED,
+        /** Only items that have a summary whose input changed */
+        STALE_ONLY;
+
+        public static Mode fromString(String value) {
+            if (value == null || value.isBlank()) {
+                return FULL;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Unknown summary mode '" + value + "'; expected full, skip-unchanged or stale-only");
+            }
+        }
+    }
 
     /**
-     * Generate summaries for all items, optionally filtered by type
+     * How a batch runs: {@code canonicalOnly} skips items resolved as duplicates of another
+     * item, {@code packed} summarizes several items per model call, {@code mode} selects which
+     * items need a new summary, and {@code dryRun} returns an estimate instead of calling the model
+     */
+    public record BatchOptions(boolean canonicalOnly, boolean packed, Mode mode, boolean dryRun) {}
+
+    /**
+     * Generate summaries for all items, optionally filtered by type. A stored prompt selected by
+     * {@code promptId} takes precedence over {@code prompt} text; either may use the item
+     * placeholders of {@link PromptTemplateService}. The same applies to the methods below.
      */
     public BatchSummaryResponse generateSummariesForAllItems(
             String prompt,
+            Integer promptId,
             Long modelConfigurationId,
-            List<String> itemTypes
+            List<String> itemTypes,
+            BatchOptions options
     ) {
         Long batchId = System.nanoTime();
 
@@ -42,7 +124,7 @@ public class AsyncItemSummaryService {
             ? itemRepository.findAll()
             : itemRepository.findByItemTypeIn(itemTypes);
 
-        return processItems(items, prompt, modelConfigurationId, batchId);
+        return processItems(canonical(items, options), template(prompt, promptId), modelConfigurationId, batchId, options);
     }
 
     /**
@@ -51,7 +133,9 @@ public class AsyncItemSummaryService {
     public BatchSummaryResponse generateSummariesForItems(
             List<Long> itemIds,
             String prompt,
-            Long modelConfigurationId
+            Integer promptId,
+            Long modelConfigurationId,
+            BatchOptions options
     ) {
         Long batchId = System.nanoTime();
 
@@ -63,31 +147,39 @@ public class AsyncItemSummaryService {
             log.warn("Found {} items but requested {}", items.size(), itemIds.size());
         }
 
-        return processItems(items, prompt, modelConfigurationId, batchId);
+        return processItems(canonical(items, options), template(prompt, promptId), modelConfigurationId, batchId, options);
     }
 
     /**
-     * Generate summaries for items in a collection
+     * Generate summaries for items in a collection, including nested collections up to
+     * {@code depth} levels down ({@code null} for direct members only)
      */
     public BatchSummaryResponse generateSummariesForCollection(
             Long collectionId,
             String prompt,
-            Long modelConfigurationId
+            Integer promptId,
+            Long modelConfigurationId,
+            Integer depth,
+            BatchOptions options
     ) {
         Long batchId = System.nanoTime();
 
         log.debug("Processing collection {} with batch ID {}", collectionId, batchId);
 
-        // Get collection members using the relationship model
-        var collectionRelationships = relationshipRepository.findCollectionMembers(collectionId);
-
-        List<Long> itemIds = collectionRelationships.stream()
-                .map(rel -> rel.getSourceItemId())  // Updated for new Relationship model
-                .collect(Collectors.toList());
+        List<Long> itemIds = collectionHierarchyService.memberIds(collectionId, depth);
 
         List<Item> items = itemRepository.findAllById(itemIds);
 
-        return processItems(items, prompt, modelConfigurationId, batchId);
+        return processItems(canonical(items, options), template(prompt, promptId), modelConfigurationId, batchId, options);
+    }
+
+    private List<Item> canonical(List<Item> items, BatchOptions options) {
+        if (!options.canonicalOnly()) {
+            return items;
+        }
+        List<Item> canonical = entityResolutionService.canonicalItems(items);
+        log.debug("Skipping {} items resolved as duplicates", items.size() - canonical.size());
+        return canonical;
     }
 
     /**
@@ -95,33 +187,71 @@ public class AsyncItemSummaryService {
      */
     private BatchSummaryResponse processItems(
             List<Item> items,
-            String prompt,
+            PromptTemplate template,
             Long modelConfigurationId,
-            Long batchId
+            Long batchId,
+            BatchOptions options
     ) {
         if (items.isEmpty()) {
-            return new BatchSummaryResponse(0, 0, List.of(), "No items to process");
+            return new BatchSummaryResponse(0, 0, List.of(), "No items to process", 0, null);
         }
 
-        String systemPrompt = buildSystemPrompt(prompt);
         ModelConfiguration modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
 
-        log.debug("Processing {} items with batch ID {}", items.size(), batchId);
+        // Per-item system prompts; templates without placeholders render to the same text
+        Map<String, Object> variables = Map.of("batchId", batchId);
+        Map<Long, String> prompts = new HashMap<>();
+        Map<Long, String> fingerprints = new HashMap<>();
+        for (Item item : items) {
+            String prompt = promptTemplateService.renderItem(template, item, variables);
+            prompts.put(item.getId(), prompt);
+            fingerprints.put(item.getId(), fingerprint(item, prompt, modelConfiguration));
+        }
+
+        int selected = items.size();
+        items = needingSummary(items, fingerprints, modelConfiguration, options.mode());
+        int skippedCount = selected - items.size();
+        if (items.isEmpty()) {
+            return new BatchSummaryResponse(0, 0, List.of(),
+                    String.format("All %d items are up to date", selected), skippedCount, null);
+        }
 
-        // Process all items asynchronously
-        List<CompletableFuture<AsyncItemProcessor.ProcessingResult>> futures = items.stream()
+        log.debug("Processing {} items with batch ID {}, {} skipped", items.size(), batchId, skippedCount);
+
+        PackPlan plan = null;
+        if (options.packed()) {
+            if (template.references("item") || template.references("attributes")) {
+                log.debug("Prompt of batch {} uses item placeholders; processing items individually", batchId);
+            } else {
+                plan = planPacks(items, template.text(), modelConfiguration);
+            }
+        }
+
+        if (options.dryRun()) {
+            BatchEstimate estimate = estimate(items, plan, prompts, modelConfiguration);
+            return new BatchSummaryResponse(0, 0, List.of(),
+                    String.format("Dry run: %d items would take %d calls", items.size(), estimate.calls()),
+                    skippedCount, estimate);
+        }
+
+        List<AsyncItemProcessor.ProcessingResult> results = new ArrayList<>();
+        List<Item> individual = plan == null ? items : processPacks(plan, modelConfiguration, batchId, fingerprints, results);
+
+        // Process remaining items asynchronously
+        List<CompletableFuture<AsyncItemProcessor.ProcessingResult>> futures = individual.stream()
                 .map(item -> asyncItemProcessor.processItemAsync(
                         item,
-                        systemPrompt,
+                        prompts.get(item.getId()),
                         modelConfiguration,
-                        batchId
+                        batchId,
+                        fingerprints.get(item.getId())
                 ))
                 .collect(Collectors.toList());
 
         // Wait for all processing to complete
-        List<AsyncItemProcessor.ProcessingResult> results = futures.stream()
+        futures.stream()
                 .map(CompletableFuture::join)
-                .collect(Collectors.toList());
+                .forEach(results::add);
 
         // Collect results
         List<Long> summaryIds = results.stream()
@@ -134,29 +264,163 @@ public class AsyncItemSummaryService {
 
         log.debug("Completed batch {}: {} successes, {} failures", batchId, successCount, failureCount);
 
-        String message = String.format("Processed %d items: %d succeeded, %d failed",
-                results.size(), successCount, failureCount);
+        String message = String.format("Processed %d items: %d succeeded, %d failed, %d skipped",
+                results.size(), successCount, failureCount, skippedCount);
 
-        return new BatchSummaryResponse(successCount, failureCount, summaryIds, message);
+        return new BatchSummaryResponse(successCount, failureCount, summaryIds, message, skippedCount, null);
     }
 
     /**
-     * Build system prompt for item summarization
+     * Items the mode selects, comparing fingerprints with each item's latest summary by the
+     * configuration; summaries stored without a fingerprint count as changed
      */
-    private String buildSystemPrompt(String userPrompt) {
-        if (userPrompt != null && !userPrompt.trim().isEmpty()) {
-            return userPrompt;
+    private List<Item> needingSummary(List<Item> items, Map<Long, String> fingerprints,
+                                      ModelConfiguration modelConfiguration, Mode mode) {
+        if (mode == Mode.FULL) {
+            return items;
         }
+        Map<Long, String> latest = new HashMap<>();
+        Long[] itemIds = items.stream().map(Item::getId).toArray(Long[]::new);
+        for (Object[] row : summaryRepository.findLatestFingerprints(modelConfiguration.getId(), itemIds)) {
+            // Items whose latest summary has no fingerprint map to the empty string
+            latest.put(((Number) row[0]).longValue(), row[1] == null ? "" : (String) row[1]);
+        }
+        return items.stream()
+                .filter(item -> {
+                    String previous = latest.get(item.getId());
+                    if (previous == null) {
+                        return mode == Mode.SKIP_UNCHANGED;
+                    }
+                    return !previous.equals(fingerprints.get(item.getId()));
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Hash of everything a summary depends on: the rendered item, the system prompt and the
+     * model with its options
+     */
+    private String fingerprint(Item item, String systemPrompt, ModelConfiguration modelConfiguration) {
+        var model = modelConfiguration.getModel();
+        String input = String.join("\n",
+                model == null ? "" : model.getModelProvider() + "/" + model.getModelName(),
+                String.valueOf(modelConfiguration.getModelConfig()),
+                systemPrompt,
+                itemRenderer.render(item));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    /**
+     * Items grouped into packs for one call each: the system prompt with pack instructions,
+     * the packs, the items too large for any pack, and the output limit of a full pack
+     */
+    record PackPlan(String systemPrompt, List<List<Item>> packs, List<Item> individual, int outputLimit) {}
 
-        return """
-            You are analyzing an item from a collection. The item details will be provided as JSON.
-            Please provide a concise, informative summary of this item focusing on its key
-            characteristics, significance, and notable features. Keep the summary to 2-3 sentences
-            and make it suitable for comparative analysis with other items.
+    /**
+     * Group items into token-budgeted packs. A pack closes when the next item would overflow
+     * the input budget or the pack's share of the output limit; items larger than the budget
+     * are left for individual processing.
+     */
+    PackPlan planPacks(List<Item> items, String summaryPrompt, ModelConfiguration modelConfiguration) {
+        String systemPrompt = summaryPrompt + PACK_INSTRUCTIONS;
+        int outputLimit = Math.min(tokenizerService.maxOutputTokens(modelConfiguration), maxPackOutputTokens);
+        int itemsPerPack = Math.max(1, Math.min(maxItemsPerPack, outputLimit / outputTokensPerItem));
+        // Leave room for the table header and quoting the renderer adds
+        int inputBudget = tokenizerService.inputBudget(modelConfiguration, outputLimit, systemPrompt) * 9 / 10;
+
+        List<Item> individual = new ArrayList<>();
+        List<List<Item>> packs = new ArrayList<>();
+        List<Item> pack = new ArrayList<>();
+        int packTokens = 0;
+        for (Item item : items) {
+            int tokens = tokenizerService.count(modelConfiguration, itemRenderer.render(item, ItemRenderer.Format.KEY_VALUE));
+            if (tokens > inputBudget) {
+                individual.add(item);
+                continue;
+            }
+            if (!pack.isEmpty() && (pack.size() == itemsPerPack || packTokens + tokens > inputBudget)) {
+                packs.add(pack);
+                pack = new ArrayList<>();
+                packTokens = 0;
+            }
+            pack.add(item);
+            packTokens += tokens;
+        }
+        if (!pack.isEmpty()) {
+            packs.add(pack);
+        }
+        return new PackPlan(systemPrompt, packs, individual, outputLimit);
+    }
+
+    private int packOutputTokens(PackPlan plan, List<Item> pack) {
+        return Math.min(plan.outputLimit(), pack.size() * outputTokensPerItem * 2);
+    }
 
-            For books: focus on genre, themes, and literary significance.
-            For people: focus on their role, achievements, and historical importance.
-            For other items: focus on their primary characteristics and relevance.
-            """;
+    /**
+     * Summarize the planned packs, adding the saved summaries to {@code results}; items a pack
+     * does not resolve, and items too large for any pack, are returned for individual
+     * processing
+     */
+    private List<Item> processPacks(
+            PackPlan plan,
+            ModelConfiguration modelConfiguration,
+            Long batchId,
+            Map<Long, String> fingerprints,
+            List<AsyncItemProcessor.ProcessingResult> results
+    ) {
+        List<CompletableFuture<AsyncItemProcessor.PackResult>> futures = plan.packs().stream()
+                .map(pack -> asyncItemProcessor.processPackAsync(pack, plan.systemPrompt(), modelConfiguration,
+                        packOutputTokens(plan, pack), batchId, fingerprints))
+                .toList();
+
+        List<Item> individual = new ArrayList<>(plan.individual());
+        for (var future : futures) {
+            var packResult = future.join();
+            results.addAll(packResult.results());
+            individual.addAll(packResult.unresolved());
+        }
+        log.debug("Batch {}: {} packs resolved {} items, {} left for individual calls",
+                batchId, futures.size(), results.size(), individual.size());
+        return individual;
+    }
+
+    /**
+     * Calls the batch would make, estimated without sending them
+     */
+    private BatchEstimate estimate(List<Item> items, PackPlan plan, Map<Long, String> prompts,
+                                   ModelConfiguration modelConfiguration) {
+        List<BatchEstimator.PlannedCall> calls = new ArrayList<>();
+        List<Item> individual = items;
+        if (plan != null) {
+            for (List<Item> pack : plan.packs()) {
+                int input = tokenizerService.budget(modelConfiguration, packOutputTokens(plan, pack), plan.systemPrompt(),
+                        itemRenderer.render(pack, ItemRenderer.Format.TOON)).inputTokens();
+                calls.add(new BatchEstimator.PlannedCall(input, pack.size()));
+            }
+            individual = plan.individual();
+        }
+        for (Item item : individual) {
+            calls.addAll(longInputSummarizer.plan(prompts.get(item.getId()), itemRenderer.render(item), modelConfiguration));
+        }
+        return batchEstimator.estimate(modelConfiguration, calls);
+    }
+
+    /**
+     * Compiled system prompt for item summarization: the stored prompt, the request text, or
+     * the default
+     */
+    private PromptTemplate template(String userPrompt, Integer promptId) {
+        if (promptId != null) {
+            return promptTemplateService.template(promptId);
+        }
+        if (userPrompt != null && !userPrompt.trim().isEmpty()) {
+            return promptTemplateService.compile(userPrompt);
+        }
+        return DEFAULT_SYSTEM_PROMPT;
     }
 }
@@ -0,0 +1,141 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.BatchEstimate;
+import net.sampsoftware.genai.model.Model;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.repository.ModelCallRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Cost and duration of planned model calls, for dry runs.
+ * <p>
+ * Input tokens come from the rendered prompts. Output tokens and latency come from the most
+ * recent successful {@code model_calls} of the same configuration: each call is expected to
+ * produce the mean completion of one item per output unit, capped by the output limit, and to
+ * take the median (and 90th percentile) latency scaled by its share of that output. Without
+ * history, {@code genai.estimate.default-output-tokens} and {@code default-latency-ms} apply.
+ * Wall-clock time is the larger of the calls spread over the workers that run them and the
+ * time the rate limits need for the tokens and requests. Batches, long-input chunks and
+ * collection levels fan out on the {@code modelCallExecutor}, so by default calls spread over
+ * its {@code genai.model-calls.concurrency} workers.
+ */
+@Slf4j
+@Service
+public class BatchEstimator {
+
+    private final ModelCallRepository modelCallRepository;
+    private final TokenizerService tokenizerService;
+    private final TokenRateLimiter tokenRateLimiter;
+    private final int historySize;
+    private final int defaultOutputTokens;
+    private final long defaultLatencyMs;
+    private final int concurrency;
+
+    public BatchEstimator(ModelCallRepository modelCallRepository,
+                          TokenizerService tokenizerService,
+                          TokenRateLimiter tokenRateLimiter,
+                          @Value("${genai.estimate.history-size:500}") int historySize,
+                          @Value("${genai.estimate.default-output-tokens:200}") int defaultOutputTokens,
+                          @Value("${genai.estimate.default-latency-ms:3000}") long defaultLatencyMs,
+                          @Value("${genai.model-calls.concurrency:8}") int concurrency) {
+        this.modelCallRepository = modelCallRepository;
+        this.tokenizerService = tokenizerService;
+        this.tokenRateLimiter = tokenRateLimiter;
+        this.historySize = historySize;
+        this.defaultOutputTokens = defaultOutputTokens;
+        this.defaultLatencyMs = defaultLatencyMs;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * One call a batch would make: its counted input and how many items' worth of output it
+     * is expected to return
+     */
+    public record PlannedCall(int inputTokens, int outputUnits) {}
+
+    private record CallStats(int samples, double outputTokens, double p50Ms, double p90Ms) {}
+
+    public BatchEstimate estimate(ModelConfiguration modelConfiguration, List<PlannedCall> calls) {
+        return estimate(modelConfiguration, calls, concurrency);
+    }
+
+    /**
+     * Estimate of calls spread over {@code workers}, e.g. one for calls made in sequence
+     */
+    public BatchEstimate estimate(ModelConfiguration modelConfiguration, List<PlannedCall> calls, int workers) {
+        int concurrency = Math.max(1, workers);
+        CallStats stats = stats(modelConfiguration);
+        int maxOutput = tokenizerService.maxOutputTokens(modelConfiguration);
+
+        long inputTokens = 0;
+        long outputTokens = 0;
+        double totalMs = 0;
+        double totalP90Ms = 0;
+        double longestMs = 0;
+        for (PlannedCall call : calls) {
+            double output = Math.min(maxOutput, stats.outputTokens() * Math.max(1, call.outputUnits()));
+            double scale = Math.max(1, output / Math.max(1, stats.outputTokens()));
+            inputTokens += call.inputTokens();
+            outputTokens += Math.round(output);
+            totalMs += stats.p50Ms() * scale;
+            totalP90Ms += stats.p90Ms() * scale;
+            longestMs = Math.max(longestMs, stats.p90Ms() * scale);
+        }
+
+        // Workers run calls side by side; a batch takes at least its slowest call
+        double concurrencyMs = Math.max(totalMs / concurrency, calls.isEmpty() ? 0 : longestMs);
+        double concurrencyP90Ms = Math.max(totalP90Ms / concurrency, calls.isEmpty() ? 0 : longestMs);
+        double tokenMs = tokenRateLimiter.tokensPerMinute() > 0
+                ? (inputTokens + outputTokens) / tokenRateLimiter.tokensPerMinute() * 60_000 : 0;
+        double requestMs = tokenRateLimiter.requestsPerMinute() > 0
+                ? calls.size() / tokenRateLimiter.requestsPerMinute() * 60_000 : 0;
+
+        String limitedBy = "concurrency";
+        double rateMs = 0;
+        if (tokenMs > concurrencyMs || requestMs > concurrencyMs) {
+            limitedBy = tokenMs >= requestMs ? "tokens-per-minute" : "requests-per-minute";
+            rateMs = Math.max(tokenMs, requestMs);
+        }
+
+        return new BatchEstimate(
+                calls.size(),
+                inputTokens,
+                outputTokens,
+                cost(modelConfiguration.getModel(), inputTokens, outputTokens),
+                Math.round(Math.max(concurrencyMs, rateMs)),
+                Math.round(Math.max(concurrencyP90Ms, rateMs)),
+                concurrency,
+                limitedBy,
+                stats.samples()
+        );
+    }
+
+    private CallStats stats(ModelConfiguration modelConfiguration) {
+        if (modelConfiguration.getId() != null) {
+            List<Object[]> rows = modelCallRepository.getRecentCallStats(modelConfiguration.getId(), historySize);
+            if (!rows.isEmpty()) {
+                Object[] row = rows.getFirst();
+                int samples = ((Number) row[0]).intValue();
+                if (samples > 0 && row[2] != null) {
+                    double output = row[1] == null ? defaultOutputTokens : ((Number) row[1]).doubleValue();
+                    return new CallStats(samples, Math.max(1, output),
+                            ((Number) row[2]).doubleValue(), ((Number) row[3]).doubleValue());
+                }
+            }
+        }
+        log.debug("No call history for model configuration {}; using defaults", modelConfiguration.getId());
+        return new CallStats(0, defaultOutputTokens, defaultLatencyMs, defaultLatencyMs * 2);
+    }
+
+    private static Double cost(Model model, long inputTokens, long outputTokens) {
+        if (model == null || model.getCostPer1kInputTokens() == null || model.getCostPer1kOutputTokens() == null) {
+            return null;
+        }
+        return inputTokens / 1000.0 * model.getCostPer1kInputTokens()
+                + outputTokens / 1000.0 * model.getCostPer1kOutputTokens();
+    }
+}
@@ -0,0 +1,173 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.Relationship;
+import net.sampsoftware.genai.model.Summary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Set-based deletes that bypass the persistence context. Work is split into chunks of
+ * {@code genai.bulk.chunk-size} ids, each committed in its own transaction (or joining the
+ * caller's), so a large purge never holds locks on the whole set at once.
+ * <p>
+ * Deleting items cascades, in order, to their model calls, summaries and relationships
+ * (either endpoint) before the item rows themselves.
+ */
+@Slf4j
+@Service
+public class BulkMutationService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+
+    public BulkMutationService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher,
+                               @Value("${genai.bulk.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Rows removed by a bulk operation, per table
+     */
+    public record DeleteResult(int items, int summaries, int relationships, int modelCalls) {
+        public static final DeleteResult NONE = new DeleteResult(0, 0, 0, 0);
+
+        DeleteResult plus(DeleteResult other) {
+            return new DeleteResult(items + other.items, summaries + other.summaries,
+                    relationships + other.relationships, modelCalls + other.modelCalls);
+        }
+    }
+
+    /**
+     * Delete items with their model calls, summaries and relationships
+     */
+    public DeleteResult deleteItems(Collection<Long> itemIds) {
+        DeleteResult total = DeleteResult.NONE;
+        for (Long[] chunk : chunks(itemIds)) {
+            total = total.plus(inTransaction(() -> deleteItemChunk(chunk)));
+        }
+        log.debug("Deleted items {}", total);
+        return total;
+    }
+
+    public DeleteResult deleteItemsByType(String itemType) {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM items WHERE item_type = ? ORDER BY id", Long.class, itemType);
+        return deleteItems(ids);
+    }
+
+    public DeleteResult deleteSummaries(Collection<Long> summaryIds) {
+        int deleted = 0;
+        for (Long[] chunk : chunks(summaryIds)) {
+            deleted += inTransaction(() -> publishDeleted(Summary.class,
+                    deleteReturning("DELETE FROM summaries WHERE id = ANY(?) RETURNING id", chunk)));
+        }
+        return new DeleteResult(0, deleted, 0, 0);
+    }
+
+    public DeleteResult deleteSummariesForBatch(Long batchId) {
+        return deleteSummariesMatching("batch_id = ?", batchId);
+    }
+
+    public DeleteResult deleteSummariesOlderThan(LocalDateTime cutoff) {
+        return deleteSummariesMatching("created_at < ?", Timestamp.valueOf(cutoff));
+    }
+
+    /**
+     * Delete every relationship that has one of the items at either end
+     */
+    public DeleteResult deleteRelationshipsForItems(Collection<Long> itemIds) {
+        int deleted = 0;
+        for (Long[] chunk : chunks(itemIds)) {
+            deleted += inTransaction(() -> publishDeleted(Relationship.class, deleteReturning(
+                    "DELETE FROM relationships WHERE source_item_id = ANY(?) OR target_item_id = ANY(?) RETURNING id",
+                    chunk, chunk)));
+        }
+        return new DeleteResult(0, 0, deleted, 0);
+    }
+
+    private DeleteResult deleteItemChunk(Long[] itemIds) {
+        int modelCalls = jdbcTemplate.update(
+                "DELETE FROM model_calls WHERE item_id = ANY(?)", ps -> ps.setArray(1, ids(ps.getConnection(), itemIds)));
+        int summaries = publishDeleted(Summary.class,
+                deleteReturning("DELETE FROM summaries WHERE item_id = ANY(?) RETURNING id", itemIds));
+        int relationships = publishDeleted(Relationship.class, deleteReturning(
+                "DELETE FROM relationships WHERE source_item_id = ANY(?) OR target_item_id = ANY(?) RETURNING id",
+                itemIds, itemIds));
+        int items = publishDeleted(Item.class,
+                deleteReturning("DELETE FROM items WHERE id = ANY(?) RETURNING id", itemIds));
+        return new DeleteResult(items, summaries, relationships, modelCalls);
+    }
+
+    /**
+     * Delete matching summaries a chunk at a time until none are left
+     */
+    private DeleteResult deleteSummariesMatching(String condition, Object arg) {
+        String sql = "DELETE FROM summaries WHERE id IN (SELECT id FROM summaries WHERE " + condition +
+                " ORDER BY id LIMIT ?) RETURNING id";
+        int total = 0;
+        int deleted;
+        do {
+            deleted = inTransaction(() -> publishDeleted(Summary.class,
+                    jdbcTemplate.queryForList(sql, Long.class, arg, chunkSize)));
+            total += deleted;
+        } while (deleted == chunkSize);
+        return new DeleteResult(0, total, 0, 0);
+    }
+
+    private List<Long> deleteReturning(String sql, Long[]... arrays) {
+        return jdbcTemplate.query(sql, ps -> {
+            for (int i = 0; i < arrays.length; i++) {
+                ps.setArray(i + 1, ids(ps.getConnection(), arrays[i]));
+            }
+        }, (rs, rowNum) -> rs.getLong(1));
+    }
+
+    private int publishDeleted(Class<?> entityType, List<Long> ids) {
+        if (!ids.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(entityType, DataChangedEvent.ChangeKind.DELETED, ids));
+        }
+        return ids.size();
+    }
+
+    private <T> T inTransaction(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    private List<Long[]> chunks(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().toList();
+        List<Long[]> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())).toArray(new Long[0]));
+        }
+        return chunks;
+    }
+
+    private static Array ids(Connection connection, Long[] ids) throws SQLException {
+        return connection.createArrayOf("int8", ids);
+    }
+}
@@ -0,0 +1,292 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.RelationshipRecord;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.model.Relationship;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set-based relationship writes: edges are normalized, de-duplicated in memory, and inserted
+ * in chunks with one {@code INSERT ... SELECT FROM unnest(...)} per chunk. The unique index on
+ * (source, target, type) de-duplicates against existing rows. Undirected types are stored with
+ * the lower id as source, so that index also catches reversed pairs; rows written before that
+ * rule are normalized at startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkRelationshipService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO relationships (name, relationship_type, source_item_id, target_item_id, attributes) " +
+            "SELECT e.name, e.relationship_type, e.source_item_id, e.target_item_id, e.attributes::jsonb " +
+            "FROM unnest(?::text[], ?::text[], ?::int8[], ?::int8[], ?::text[]) " +
+            "AS e(name, relationship_type, source_item_id, target_item_id, attributes) " +
+            "ON CONFLICT (source_item_id, target_item_id, relationship_type) ";
+
+    private static final String RETURNING_SQL =
+            " RETURNING id, source_item_id, target_item_id, relationship_type, (xmax = 0) AS inserted";
+
+    private static final String DELETE_REVERSED_DUPLICATES_SQL =
+            "DELETE FROM relationships r USING relationships n " +
+            "WHERE r.relationship_type = ANY(?) AND r.source_item_id > r.target_item_id " +
+            "AND n.relationship_type = r.relationship_type " +
+            "AND n.source_item_id = r.target_item_id AND n.target_item_id = r.source_item_id " +
+            "RETURNING r.id";
+
+    private static final String SWAP_REVERSED_SQL =
+            "UPDATE relationships SET source_item_id = target_item_id, target_item_id = source_item_id " +
+            "WHERE relationship_type = ANY(?) AND source_item_id > target_item_id " +
+            "RETURNING id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${genai.relationships.undirected-types:similar_themes,similar_to,related_to,same_as}")
+    private Set<String> undirectedTypes;
+
+    @Value("${genai.relationships.bulk.chunk-size:5000}")
+    private int chunkSize;
+
+    /**
+     * What to do when an edge already exists
+     */
+    public enum ConflictMode {
+        /** Keep the existing row untouched */
+        IGNORE,
+        /** Shallow-merge the new attributes into the existing ones */
+        MERGE_ATTRIBUTES
+    }
+
+    /**
+     * Normalized identity of an edge; undirected types order their endpoints ascending
+     */
+    public record EdgeKey(long sourceItemId, long targetItemId, String relationshipType) {}
+
+    /**
+     * A row written by a bulk call; {@code created} is false when an existing row was updated
+     */
+    public record WrittenRelationship(Long id, Long sourceItemId, Long targetItemId,
+                                      String relationshipType, boolean created) {}
+
+    public record BulkWriteResult(
+            int requested,
+            int invalid,
+            int duplicates,
+            int created,
+            int updated,
+            int unchanged,
+            List<WrittenRelationship> relationships
+    ) {}
+
+    public EdgeKey key(Long sourceItemId, Long targetItemId, String relationshipType) {
+        if (undirectedTypes.contains(relationshipType) && sourceItemId > targetItemId) {
+            return new EdgeKey(targetItemId, sourceItemId, relationshipType);
+        }
+        return new EdgeKey(sourceItemId, targetItemId, relationshipType);
+    }
+
+    /**
+     * Put existing undirected rows in the order {@link #key} writes them: a reversed row whose
+     * normalized twin exists is dropped, any other reversed row has its endpoints swapped.
+     */
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void normalizeUndirected() {
+        if (undirectedTypes.isEmpty()) {
+            return;
+        }
+        String[] types = undirectedTypes.toArray(new String[0]);
+        List<Long> deletedIds = jdbcTemplate.query(DELETE_REVERSED_DUPLICATES_SQL,
+                ps -> ps.setArray(1, array(ps.getConnection(), "text", types)),
+                (rs, rowNum) -> rs.getLong(1));
+        List<Long> swappedIds = jdbcTemplate.query(SWAP_REVERSED_SQL,
+                ps -> ps.setArray(1, array(ps.getConnection(), "text", types)),
+                (rs, rowNum) -> rs.getLong(1));
+
+        if (!deletedIds.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Relationship.class, DataChangedEvent.ChangeKind.DELETED, deletedIds));
+        }
+        if (!swappedIds.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Relationship.class, DataChangedEvent.ChangeKind.UPDATED, swappedIds));
+        }
+        if (!deletedIds.isEmpty() || !swappedIds.isEmpty()) {
+            log.info("Normalized undirected relationships: {} reversed duplicates removed, {} reversed rows swapped",
+                    deletedIds.size(), swappedIds.size());
+        }
+    }
+
+    /**
+     * Write edges in bulk. Edges missing an endpoint or type, or pointing at unknown items,
+     * are counted as invalid and skipped; repeats within the request are collapsed with their
+     * attributes merged in order.
+     */
+    @Transactional
+    public BulkWriteResult write(List<RelationshipRecord> edges, ConflictMode mode) {
+        long start = System.currentTimeMillis();
+        Map<EdgeKey, Pending> unique = new LinkedHashMap<>();
+        int invalid = 0;
+        int duplicates = 0;
+
+        for (RelationshipRecord edge : edges) {
+            if (edge == null || edge.sourceItemId() == null || edge.targetItemId() == null
+                    || edge.relationshipType() == null || edge.relationshipType().isBlank()) {
+                invalid++;
+                continue;
+            }
+            EdgeKey key = key(edge.sourceItemId(), edge.targetItemId(), edge.relationshipType());
+            Pending existing = unique.get(key);
+            if (existing == null) {
+                unique.put(key, new Pending(key, edge.name(), edge.attributes()));
+            } else {
+                existing.merge(edge.name(), edge.attributes());
+                duplicates++;
+            }
+        }
+
+        Set<Long> knownItems = existingItemIds(unique.keySet());
+        List<Pending> pending = new ArrayList<>(unique.size());
+        for (Pending edge : unique.values()) {
+            if (knownItems.contains(edge.key.sourceItemId()) && knownItems.contains(edge.key.targetItemId())) {
+                pending.add(edge);
+            } else {
+                invalid++;
+            }
+        }
+
+        List<WrittenRelationship> written = new ArrayList<>(pending.size());
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            written.addAll(writeChunk(pending.subList(from, Math.min(from + chunkSize, pending.size())), mode));
+        }
+
+        List<Long> createdIds = new ArrayList<>();
+        List<Long> updatedIds = new ArrayList<>();
+        for (WrittenRelationship relationship : written) {
+            (relationship.created() ? createdIds : updatedIds).add(relationship.id());
+        }
+        if (!createdIds.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Relationship.class, DataChangedEvent.ChangeKind.CREATED, createdIds));
+        }
+        if (!updatedIds.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Relationship.class, DataChangedEvent.ChangeKind.UPDATED, updatedIds));
+        }
+
+        log.debug("Bulk relationship write: {} requested, {} invalid, {} duplicates, {} created, {} updated in {} ms",
+                edges.size(), invalid, duplicates, createdIds.size(), updatedIds.size(),
+                System.currentTimeMillis() - start);
+
+        return new BulkWriteResult(edges.size(), invalid, duplicates, createdIds.size(), updatedIds.size(),
+                pending.size() - written.size(), written);
+    }
+
+    private List<WrittenRelationship> writeChunk(List<Pending> chunk, ConflictMode mode) {
+        int size = chunk.size();
+        String[] names = new String[size];
+        String[] types = new String[size];
+        Long[] sources = new Long[size];
+        Long[] targets = new Long[size];
+        String[] attributes = new String[size];
+        for (int i = 0; i < size; i++) {
+            Pending edge = chunk.get(i);
+            names[i] = edge.name != null ? edge.name : defaultName(edge.key);
+            types[i] = edge.key.relationshipType();
+            sources[i] = edge.key.sourceItemId();
+            targets[i] = edge.key.targetItemId();
+            attributes[i] = edge.attributes != null ? edge.attributes.toString() : "{}";
+        }
+
+        String conflict = mode == ConflictMode.MERGE_ATTRIBUTES
+                ? "DO UPDATE SET attributes = relationships.attributes || EXCLUDED.attributes"
+                : "DO NOTHING";
+        return jdbcTemplate.query(INSERT_SQL + conflict + RETURNING_SQL,
+                ps -> {
+                    Connection connection = ps.getConnection();
+                    ps.setArray(1, array(connection, "text", names));
+                    ps.setArray(2, array(connection, "text", types));
+                    ps.setArray(3, array(connection, "int8", sources));
+                    ps.setArray(4, array(connection, "int8", targets));
+                    ps.setArray(5, array(connection, "text", attributes));
+                },
+                (rs, rowNum) -> new WrittenRelationship(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                        rs.getString(4), rs.getBoolean(5)));
+    }
+
+    private Set<Long> existingItemIds(Set<EdgeKey> keys) {
+        Set<Long> ids = new HashSet<>();
+        for (EdgeKey key : keys) {
+            ids.add(key.sourceItemId());
+            ids.add(key.targetItemId());
+        }
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        Long[] candidates = ids.toArray(new Long[0]);
+        return new HashSet<>(jdbcTemplate.query("SELECT id FROM items WHERE id = ANY(?)",
+                ps -> ps.setArray(1, array(ps.getConnection(), "int8", candidates)),
+                (rs, rowNum) -> rs.getLong(1)));
+    }
+
+    private static Array array(Connection connection, String type, Object[] values) throws SQLException {
+        return connection.createArrayOf(type, values);
+    }
+
+    private static String defaultName(EdgeKey key) {
+        return key.relationshipType() + " " + key.sourceItemId() + " -> " + key.targetItemId();
+    }
+
+    /**
+     * An edge awaiting insert, accumulating repeats from the same request
+     */
+    private static final class Pending {
+        private final EdgeKey key;
+        private String name;
+        private JsonNode attributes;
+        private boolean copied;
+
+        Pending(EdgeKey key, String name, JsonNode attributes) {
+            this.key = key;
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        void merge(String name, JsonNode attributes) {
+            if (name != null) {
+                this.name = name;
+            }
+            if (!(attributes instanceof ObjectNode incoming)) {
+                return;
+            }
+            // Copy before the first merge so request payloads are never mutated
+            if (this.attributes instanceof ObjectNode current) {
+                if (!copied) {
+                    current = current.deepCopy();
+                    this.attributes = current;
+                }
+                current.setAll(incoming);
+            } else {
+                this.attributes = incoming.deepCopy();
+            }
+            copied = true;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.model.Model;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.repository.ModelConfigurationRepository;
+import net.sampsoftware.genai.repository.ModelRepository;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved call profiles of model configurations: chat options, provider, API model name and
+ * token limits, compiled once per configuration id and {@code version} instead of on every
+ * call. Profiles are dropped when their configuration or model is written and recompiled on
+ * next use. {@link #validate} compiles a configuration before it is saved, so invalid
+ * {@code model_config} values are rejected then rather than in the middle of a batch.
+ */
+@Slf4j
+@Service
+public class CallProfileRegistry {
+
+    /**
+     * Everything a call needs from its configuration; {@link #chatOptions()} hands out copies,
+     * since calls adjust limits and response formats
+     */
+    public record CallProfile(
+            ModelConfiguration configuration,
+            String provider,
+            String apiModelName,
+            int contextLength,
+            int maxOutputTokens,
+            OpenAiChatOptions options
+    ) {
+        public Long configurationId() {
+            return configuration == null ? null : configuration.getId();
+        }
+
+        public Long version() {
+            return configuration == null ? null : configuration.getVersion();
+        }
+
+        public OpenAiChatOptions chatOptions() {
+            return options.copy();
+        }
+    }
+
+    private final ModelConfigurationRepository modelConfigurationRepository;
+    private final ModelRepository modelRepository;
+    private final TokenizerService tokenizerService;
+    private final Map<Long, CallProfile> profiles = new ConcurrentHashMap<>();
+
+    public CallProfileRegistry(ModelConfigurationRepository modelConfigurationRepository,
+                               ModelRepository modelRepository,
+                               TokenizerService tokenizerService) {
+        this.modelConfigurationRepository = modelConfigurationRepository;
+        this.modelRepository = modelRepository;
+        this.tokenizerService = tokenizerService;
+    }
+
+    /**
+     * Profile of a stored configuration, loaded with its model on first use
+     */
+    public Optional<CallProfile> find(Long configurationId) {
+        CallProfile cached = profiles.get(configurationId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return modelConfigurationRepository.findByIdWithModel(configurationId).map(this::profile);
+    }
+
+    /**
+     * Profile of the configuration as given, reusing the compiled one while the version matches
+     */
+    public CallProfile profile(ModelConfiguration modelConfig) {
+        if (modelConfig == null || modelConfig.getId() == null) {
+            return compile(modelConfig);
+        }
+        CallProfile cached = profiles.get(modelConfig.getId());
+        if (cached != null && Objects.equals(cached.version(), modelConfig.getVersion())) {
+            return cached;
+        }
+        CallProfile compiled = compile(modelConfig);
+        // A caller holding an older copy of the configuration must not replace a newer profile
+        profiles.merge(modelConfig.getId(), compiled, (current, candidate) ->
+                current.version() != null && candidate.version() != null && current.version() > candidate.version()
+                        ? current : candidate);
+        return compiled;
+    }
+
+    /**
+     * Rejects a configuration about to be saved if it would not compile; its model is
+     * resolved by id when only the id is set
+     */
+    public void validate(ModelConfiguration modelConfig) {
+        if (modelConfig.getModel() == null || modelConfig.getModel().getId() == null) {
+            throw new ValidationException("Model configuration needs a model");
+        }
+        if (modelConfig.getModel().getModelName() == null) {
+            Model model = modelRepository.findById(modelConfig.getModel().getId())
+                    .orElseThrow(() -> new ValidationException("Unknown model " + modelConfig.getModel().getId()));
+            modelConfig.setModel(model);
+        }
+        compile(modelConfig);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compileAll() {
+        int compiled = 0;
+        for (ModelConfiguration modelConfig : modelConfigurationRepository.findAllWithModels()) {
+            try {
+                profile(modelConfig);
+                compiled++;
+            } catch (ValidationException e) {
+                log.warn("Model configuration {} is invalid: {}", modelConfig.getId(), e.getMessage());
+            }
+        }
+        log.info("Compiled {} model configuration profiles", compiled);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChangedEvent event) {
+        if (event.concerns(ModelConfiguration.class)) {
+            event.ids().forEach(profiles::remove);
+        } else if (event.concerns(Model.class)) {
+            profiles.values().removeIf(profile -> profile.configuration().getModel() != null
+                    && event.ids().contains(profile.configuration().getModel().getId()));
+        }
+    }
+
+    private CallProfile compile(ModelConfiguration modelConfig) {
+        Model model = modelConfig == null ? null : modelConfig.getModel();
+        boolean named = model != null && model.getModelName() != null;
+        String apiModelName = tokenizerService.modelName(modelConfig);
+        int contextLength = tokenizerService.contextLength(modelConfig);
+
+        OpenAiChatOptions.Builder builder = OpenAiChatOptions.builder();
+        if (named) {
+            builder.model(apiModelName);
+        }
+        JsonNode config = modelConfig == null ? null : modelConfig.getModelConfig();
+        if (config != null && !config.isNull()) {
+            if (!config.isObject()) {
+                throw new ValidationException("model_config must be a JSON object");
+            }
+            Double temperature = number(config, "temperature", 0, 2);
+            if (temperature != null) {
+                builder.temperature(temperature);
+            }
+            Double topP = number(config, "top_p", 0, 1);
+            if (topP != null) {
+                builder.topP(topP);
+            }
+            Double maxTokens = number(config, "max_tokens", 1, contextLength - 1);
+            if (maxTokens != null) {
+                if (!config.get("max_tokens").canConvertToInt() || maxTokens != Math.rint(maxTokens)) {
+                    throw new ValidationException("model_config.max_tokens must be a whole number");
+                }
+                builder.maxTokens(maxTokens.intValue());
+            }
+            Double frequencyPenalty = number(config, "frequency_penalty", -2, 2);
+            if (frequencyPenalty != null) {
+                builder.frequencyPenalty(frequencyPenalty);
+            }
+            Double presencePenalty = number(config, "presence_penalty", -2, 2);
+            if (presencePenalty != null) {
+                builder.presencePenalty(presencePenalty);
+            }
+        }
+        return new CallProfile(modelConfig, named ? model.getModelProvider() : null, apiModelName,
+                contextLength, tokenizerService.maxOutputTokens(modelConfig), builder.build());
+    }
+
+    private static Double number(JsonNode config, String field, double min, double max) {
+        JsonNode value = config.get(field);
+        if (value == null || value.isNull()) {
+            return null;
+        }
+        if (!value.isNumber() || value.doubleValue() < min || value.doubleValue() > max) {
+            throw new ValidationException(String.format("model_config.%s must be a number from %s to %s",
+                    field, format(min), format(max)));
+        }
+        return value.doubleValue();
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
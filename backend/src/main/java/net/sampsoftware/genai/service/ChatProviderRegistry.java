@@ -0,0 +1,111 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.GenaiException;
+import net.sampsoftware.genai.model.Model;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chat clients per model provider, chosen from the {@code model_provider} and
+ * {@code model_api_url} of a configuration's model:
+ * <ul>
+ *   <li>{@code stub}: a {@link StubChatModel}, no network call</li>
+ *   <li>{@code openai} at the configured OpenAI base URL: the application's OpenAI client</li>
+ *   <li>anything else: an OpenAI-compatible client for the base of {@code model_api_url}, with
+ *       the key in {@code genai.providers.<provider>.api-key} (OpenAI falls back to its own)</li>
+ * </ul>
+ * Every model call goes through {@link #call}, which {@code ModelCallLoggingAdvisor} records.
+ */
+@Slf4j
+@Service
+public class ChatProviderRegistry {
+
+    public static final String STUB = "stub";
+    private static final String OPENAI = "openai";
+
+    /**
+     * A chat client and the provider and endpoint it talks to
+     */
+    public record ChatProvider(String name, String baseUrl, ChatModel chatModel) {}
+
+    private final OpenAiChatModel openAiChatModel;
+    private final Environment environment;
+    private final String openAiBaseUrl;
+    private final String openAiApiKey;
+    private final long stubLatencyMs;
+    private final Map<String, ChatProvider> providers = new ConcurrentHashMap<>();
+
+    public ChatProviderRegistry(OpenAiChatModel openAiChatModel,
+                                Environment environment,
+                                @Value("${spring.ai.openai.base-url:https://api.openai.com}") String openAiBaseUrl,
+                                @Value("${spring.ai.openai.api-key:}") String openAiApiKey,
+                                @Value("${genai.providers.stub.latency-ms:0}") long stubLatencyMs) {
+        this.openAiChatModel = openAiChatModel;
+        this.environment = environment;
+        this.openAiBaseUrl = baseUrl(openAiBaseUrl);
+        this.openAiApiKey = openAiApiKey;
+        this.stubLatencyMs = stubLatencyMs;
+    }
+
+    /**
+     * Provider serving the configuration; fails with 503 when it needs an API key that is not set
+     */
+    public ChatProvider provider(ModelConfiguration modelConfig) {
+        Model model = modelConfig == null ? null : modelConfig.getModel();
+        if (model == null || model.getModelProvider() == null) {
+            return providers.computeIfAbsent(OPENAI, name -> new ChatProvider(name, openAiBaseUrl, openAiChatModel));
+        }
+        String name = model.getModelProvider().trim().toLowerCase(Locale.ROOT);
+        if (name.equals(STUB)) {
+            return providers.computeIfAbsent(STUB, n -> new ChatProvider(n, null, new StubChatModel(stubLatencyMs)));
+        }
+        String baseUrl = model.getModelApiUrl() == null || model.getModelApiUrl().isBlank()
+                ? openAiBaseUrl : baseUrl(model.getModelApiUrl());
+        if (name.equals(OPENAI) && baseUrl.equals(openAiBaseUrl)) {
+            return providers.computeIfAbsent(OPENAI, n -> new ChatProvider(n, openAiBaseUrl, openAiChatModel));
+        }
+        return providers.computeIfAbsent(name + "|" + baseUrl, key -> compatible(name, baseUrl));
+    }
+
+    /**
+     * Call the provider's model; the single join point of model call logging
+     */
+    public ChatResponse call(ChatProvider provider, Prompt prompt) {
+        return provider.chatModel().call(prompt);
+    }
+
+    private ChatProvider compatible(String name, String baseUrl) {
+        String apiKey = environment.getProperty("genai.providers." + name + ".api-key",
+                name.equals(OPENAI) ? openAiApiKey : "");
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new GenaiException(String.format("No API key configured for provider %s (genai.providers.%s.api-key)",
+                    name, name), HttpStatus.SERVICE_UNAVAILABLE, "PROVIDER_UNAVAILABLE");
+        }
+        log.info("Using OpenAI-compatible endpoint {} for provider {}", baseUrl, name);
+        OpenAiApi api = OpenAiApi.builder().baseUrl(baseUrl).apiKey(apiKey).build();
+        return new ChatProvider(name, baseUrl, OpenAiChatModel.builder().openAiApi(api).build());
+    }
+
+    /**
+     * Base URL of an endpoint given either as a base or as its completions URL, e.g.
+     * {@code https://api.together.xyz/v1/completions} becomes {@code https://api.together.xyz}
+     */
+    static String baseUrl(String url) {
+        String base = url.trim().replaceAll("/+$", "")
+                .replaceAll("(/chat)?/(completions|messages)$", "");
+        return base.endsWith("/v1") ? base.substring(0, base.length() - 3) : base;
+    }
+}
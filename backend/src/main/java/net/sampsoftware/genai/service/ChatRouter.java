@@ -0,0 +1,343 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.advisor.ModelCallContext;
+import net.sampsoftware.genai.exception.GenaiException;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes model calls across routing groups: sets of equivalent model configurations, e.g. the
+ * same model on two accounts or on an OpenAI-compatible host, that can serve the same calls.
+ * <p>
+ * Groups are set in {@code genai.routing.groups} as {@code name=id,id;name=id,id}. A call with
+ * a grouped configuration goes to the member with the lowest score, its live p95 latency
+ * raised by its recent error rate and divided by its remaining rate-limit headroom, with a
+ * share of {@code exploration} calls sent to a random member so every member keeps fresh
+ * latencies. Members that failed {@code failure-threshold} times in a row sit out
+ * {@code cooldown-seconds}. A failed call fails over to the next member, up to
+ * {@code max-attempts}; the call options of the member replace those of the requested
+ * configuration, keeping the response format and any per-call output limit. Ungrouped
+ * configurations are called directly. Each attempt is bound to the configuration it used, so
+ * its {@code model_calls} row names the member and provider that served it.
+ */
+@Slf4j
+@Service
+public class ChatRouter {
+
+    public record RouteStatus(
+            Long configurationId,
+            String group,
+            String provider,
+            String model,
+            int samples,
+            Long p95LatencyMs,
+            double errorRate,
+            double rateLimitHeadroom,
+            boolean coolingDown
+    ) {}
+
+    private final ChatProviderRegistry chatProviderRegistry;
+    private final CallProfileRegistry callProfileRegistry;
+    private final TokenRateLimiter tokenRateLimiter;
+    private final Map<Long, String> groupOf;
+    private final Map<String, List<Long>> groups;
+    private final int maxAttempts;
+    private final int latencyWindow;
+    private final int failureThreshold;
+    private final long cooldownNanos;
+    private final double exploration;
+    private final Map<Long, Health> health = new ConcurrentHashMap<>();
+
+    public ChatRouter(ChatProviderRegistry chatProviderRegistry,
+                      CallProfileRegistry callProfileRegistry,
+                      TokenRateLimiter tokenRateLimiter,
+                      @Value("${genai.routing.groups:}") String groups,
+                      @Value("${genai.routing.max-attempts:3}") int maxAttempts,
+                      @Value("${genai.routing.latency-window:100}") int latencyWindow,
+                      @Value("${genai.routing.failure-threshold:3}") int failureThreshold,
+                      @Value("${genai.routing.cooldown-seconds:30}") long cooldownSeconds,
+                      @Value("${genai.routing.exploration:0.05}") double exploration) {
+        this.chatProviderRegistry = chatProviderRegistry;
+        this.callProfileRegistry = callProfileRegistry;
+        this.tokenRateLimiter = tokenRateLimiter;
+        this.groups = parseGroups(groups);
+        this.groupOf = new LinkedHashMap<>();
+        this.groups.forEach((name, ids) -> ids.forEach(id -> this.groupOf.putIfAbsent(id, name)));
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.latencyWindow = Math.max(1, latencyWindow);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.cooldownNanos = TimeUnit.SECONDS.toNanos(cooldownSeconds);
+        this.exploration = exploration;
+    }
+
+    /**
+     * Call the model for {@code profile}, or the best member of its routing group, within the
+     * rate limit of the provider and model that serve it
+     */
+    public ChatResponse call(Prompt prompt, CallProfileRegistry.CallProfile profile,
+                             TokenizerService.TokenBudget budget) {
+        List<CallProfileRegistry.CallProfile> candidates = rank(members(profile));
+        int attempts = Math.min(maxAttempts, candidates.size());
+        RuntimeException failure = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            CallProfileRegistry.CallProfile member = candidates.get(attempt);
+            boolean last = attempt == attempts - 1;
+            ChatProviderRegistry.ChatProvider provider;
+            TokenRateLimiter.Reservation reservation;
+            try {
+                provider = chatProviderRegistry.provider(member.configuration());
+                reservation = tokenRateLimiter.acquire(limitKey(provider, member), budget.totalTokens());
+            } catch (GenaiException e) {
+                // Unconfigured provider or exhausted rate limit: try the next member
+                if (last) {
+                    throw e;
+                }
+                failure = e;
+                continue;
+            }
+
+            Prompt routed = member == profile ? prompt : reroute(prompt, profile, member);
+            long start = System.nanoTime();
+            try (var scope = ModelCallContext.configure(member.configuration())) {
+                ChatResponse response = chatProviderRegistry.call(provider, routed);
+                health(member).succeeded(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                if (response.getMetadata() != null && response.getMetadata().getUsage() != null
+                        && response.getMetadata().getUsage().getTotalTokens() != null) {
+                    tokenRateLimiter.settle(reservation, response.getMetadata().getUsage().getTotalTokens());
+                }
+                return response;
+            } catch (RuntimeException e) {
+                health(member).failed(failureThreshold, cooldownNanos);
+                tokenRateLimiter.settle(reservation, 0);
+                failure = e;
+                if (!last) {
+                    log.warn("Call to model configuration {} via {} failed, failing over: {}",
+                            member.configurationId(), provider.name(), e.getMessage());
+                }
+            }
+        }
+        throw failure != null ? failure
+                : new GenaiException("No model configuration available", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Live state of every routed or grouped configuration
+     */
+    public List<RouteStatus> status() {
+        Map<Long, String> ids = new LinkedHashMap<>(groupOf);
+        health.keySet().forEach(id -> ids.putIfAbsent(id, null));
+        List<RouteStatus> statuses = new ArrayList<>();
+        ids.forEach((id, group) -> {
+            Optional<CallProfileRegistry.CallProfile> profile;
+            try {
+                profile = callProfileRegistry.find(id);
+            } catch (GenaiException e) {
+                profile = Optional.empty();
+            }
+            Health h = health.get(id);
+            String provider = profile.map(p -> {
+                try {
+                    return chatProviderRegistry.provider(p.configuration()).name();
+                } catch (GenaiException e) {
+                    return null;
+                }
+            }).orElse(null);
+            double headroom = profile.isPresent() && provider != null
+                    ? tokenRateLimiter.headroom(provider + "/" + profile.get().apiModelName()) : 1;
+            statuses.add(new RouteStatus(id, group, provider,
+                    profile.map(CallProfileRegistry.CallProfile::apiModelName).orElse(null),
+                    h == null ? 0 : h.samples(), h == null ? null : h.p95(),
+                    h == null ? 0 : h.errorRate(), headroom, h != null && h.coolingDown()));
+        });
+        return statuses;
+    }
+
+    private List<CallProfileRegistry.CallProfile> members(CallProfileRegistry.CallProfile profile) {
+        String group = groupOf.get(profile.configurationId());
+        if (group == null) {
+            return List.of(profile);
+        }
+        List<CallProfileRegistry.CallProfile> members = new ArrayList<>();
+        for (Long id : groups.get(group)) {
+            if (id.equals(profile.configurationId())) {
+                members.add(profile);
+                continue;
+            }
+            try {
+                callProfileRegistry.find(id).ifPresentOrElse(members::add,
+                        () -> log.warn("Routing group {} names missing model configuration {}", group, id));
+            } catch (GenaiException e) {
+                log.warn("Routing group {} skips model configuration {}: {}", group, id, e.getMessage());
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Members by score, cooling-down and unavailable members last; with probability
+     * {@code exploration} a random available member goes first
+     */
+    private List<CallProfileRegistry.CallProfile> rank(List<CallProfileRegistry.CallProfile> members) {
+        if (members.size() == 1) {
+            return members;
+        }
+        long fallbackLatency = members.stream()
+                .map(m -> health.get(m.configurationId()))
+                .filter(h -> h != null && h.samples() > 0)
+                .mapToLong(Health::p95)
+                .min().orElse(1);
+        Map<CallProfileRegistry.CallProfile, Double> scores = new HashMap<>();
+        for (CallProfileRegistry.CallProfile member : members) {
+            scores.put(member, score(member, fallbackLatency));
+        }
+        List<CallProfileRegistry.CallProfile> ranked = new ArrayList<>(members);
+        ranked.sort(Comparator.comparingDouble(scores::get));
+        int available = (int) ranked.stream().filter(m -> scores.get(m) < Double.MAX_VALUE).count();
+        if (available > 1 && ThreadLocalRandom.current().nextDouble() < exploration) {
+            ranked.add(0, ranked.remove(ThreadLocalRandom.current().nextInt(available)));
+        }
+        return ranked;
+    }
+
+    private double score(CallProfileRegistry.CallProfile member, long fallbackLatency) {
+        Health h = health.get(member.configurationId());
+        if (h != null && h.coolingDown()) {
+            return Double.MAX_VALUE;
+        }
+        double latency = h == null || h.samples() == 0 ? fallbackLatency : h.p95();
+        double errorRate = h == null ? 0 : h.errorRate();
+        double headroom;
+        try {
+            headroom = tokenRateLimiter.headroom(limitKey(chatProviderRegistry.provider(member.configuration()), member));
+        } catch (GenaiException e) {
+            return Double.MAX_VALUE;
+        }
+        return latency * (1 + 4 * errorRate) / Math.max(0.05, headroom);
+    }
+
+    /**
+     * The call's prompt with the member's options, keeping the requested response format and
+     * an output limit that differs from the requested configuration's
+     */
+    private static Prompt reroute(Prompt prompt, CallProfileRegistry.CallProfile requested,
+                                  CallProfileRegistry.CallProfile member) {
+        OpenAiChatOptions options = member.chatOptions();
+        if (prompt.getOptions() instanceof OpenAiChatOptions callOptions) {
+            if (callOptions.getResponseFormat() != null) {
+                options.setResponseFormat(callOptions.getResponseFormat());
+            }
+            if (callOptions.getMaxTokens() != null
+                    && !Objects.equals(callOptions.getMaxTokens(), requested.options().getMaxTokens())) {
+                options.setMaxTokens(callOptions.getMaxTokens());
+            }
+        }
+        return new Prompt(prompt.getInstructions(), options);
+    }
+
+    /**
+     * Rate-limit bucket: each provider account has its own budget per model
+     */
+    private static String limitKey(ChatProviderRegistry.ChatProvider provider, CallProfileRegistry.CallProfile member) {
+        return provider.name() + "/" + member.apiModelName();
+    }
+
+    private Health health(CallProfileRegistry.CallProfile member) {
+        return health.computeIfAbsent(member.configurationId() == null ? 0L : member.configurationId(),
+                id -> new Health(latencyWindow));
+    }
+
+    /**
+     * Parses {@code name=id,id;name=id,id}
+     */
+    private static Map<String, List<Long>> parseGroups(String spec) {
+        Map<String, List<Long>> groups = new LinkedHashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return groups;
+        }
+        for (String entry : spec.split(";")) {
+            int equals = entry.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            List<Long> ids = new ArrayList<>();
+            for (String id : entry.substring(equals + 1).split(",")) {
+                if (!id.isBlank()) {
+                    ids.add(Long.parseLong(id.trim()));
+                }
+            }
+            groups.put(entry.substring(0, equals).trim(), ids);
+        }
+        return groups;
+    }
+
+    /**
+     * Recent latencies and outcomes of one configuration
+     */
+    private static final class Health {
+        private final long[] latencies;
+        private int size;
+        private int next;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long coolingUntil;
+
+        Health(int window) {
+            this.latencies = new long[window];
+        }
+
+        synchronized void succeeded(long latencyMs) {
+            latencies[next] = latencyMs;
+            next = (next + 1) % latencies.length;
+            size = Math.min(size + 1, latencies.length);
+            errorRate *= 0.8;
+            consecutiveFailures = 0;
+        }
+
+        synchronized void failed(int threshold, long cooldownNanos) {
+            errorRate = errorRate * 0.8 + 0.2;
+            if (++consecutiveFailures >= threshold) {
+                coolingUntil = System.nanoTime() + cooldownNanos;
+                consecutiveFailures = 0;
+            }
+        }
+
+        synchronized int samples() {
+            return size;
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+
+        synchronized boolean coolingDown() {
+            return coolingUntil != 0 && System.nanoTime() - coolingUntil < 0;
+        }
+
+        synchronized long p95() {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(0.95 * size) - 1)];
+        }
+    }
+}
@@ -20,11 +20,7 @@ public class ChatService {
             throw new ValidationException("Chat content cannot be empty");
         }
         
-        if (content.length() > 10000) {
-            log.warn("Chat content exceeds maximum length: {} characters", content.length());
-            throw new ValidationException("Chat content too long (max 10000 characters)");
-        }
-        
+        // Length is checked in tokens against the model window by AIService
         try {
             log.debug("Generating AI response for chat content: {}", 
                     content.length() > 100 ? content.substring(0, 100) + "..." : content);
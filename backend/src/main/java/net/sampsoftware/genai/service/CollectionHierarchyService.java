@@ -0,0 +1,95 @@
+package net.sampsoftware.genai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.util.IdBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Members of nested collections. Direct members (depth 1) come from the membership index;
+ * deeper subtrees come from the {@code collection_closure} table when enabled, otherwise from
+ * a depth-limited recursive CTE over {@code collection} relationships.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CollectionHierarchyService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CollectionMembershipIndex collectionMembershipIndex;
+
+    @Value("${genai.collections.closure-enabled:true}")
+    private boolean closureEnabled;
+
+    @Value("${genai.collections.max-depth:10}")
+    private int maxDepth;
+
+    /**
+     * Query yielding the subtree's item ids as column {@code id}
+     */
+    public record SubtreeQuery(String sql, Object[] args) {}
+
+    /**
+     * Item ids within {@code depth} levels below a collection, ascending; {@code null} means
+     * direct members only
+     */
+    public List<Long> memberIds(Long collectionId, Integer depth) {
+        int levels = levels(depth);
+        if (levels == 1) {
+            return collectionMembershipIndex.memberIds(collectionId);
+        }
+        SubtreeQuery query = subtreeQuery(collectionId, levels);
+        return jdbcTemplate.queryForList(query.sql() + " ORDER BY id", Long.class, query.args());
+    }
+
+    public IdBitmap members(Long collectionId, Integer depth) {
+        if (levels(depth) == 1) {
+            return collectionMembershipIndex.members(collectionId);
+        }
+        return IdBitmap.of(memberIds(collectionId, depth));
+    }
+
+    public SubtreeQuery subtreeQuery(Long collectionId, Integer depth) {
+        int levels = levels(depth);
+        if (levels == 1) {
+            return new SubtreeQuery("SELECT DISTINCT source_item_id AS id FROM relationships " +
+                    "WHERE target_item_id = ? AND relationship_type = 'collection'",
+                    new Object[]{collectionId});
+        }
+        if (closureEnabled) {
+            return new SubtreeQuery("SELECT DISTINCT descendant_id AS id FROM collection_closure " +
+                    "WHERE ancestor_id = ? AND depth <= ?",
+                    new Object[]{collectionId, levels});
+        }
+        // UNION (not UNION ALL) collapses repeat visits, and the depth bound stops cycles
+        return new SubtreeQuery("WITH RECURSIVE tree (id, depth) AS (" +
+                "SELECT source_item_id, 1 FROM relationships " +
+                "WHERE target_item_id = ? AND relationship_type = 'collection' " +
+                "UNION " +
+                "SELECT r.source_item_id, t.depth + 1 FROM tree t " +
+                "JOIN relationships r ON r.target_item_id = t.id AND r.relationship_type = 'collection' " +
+                "WHERE t.depth < ?) " +
+                "SELECT DISTINCT id FROM tree",
+                new Object[]{collectionId, levels});
+    }
+
+    /**
+     * Recompute the closure table from the relationships, returning the number of rows
+     */
+    public long rebuildClosure() {
+        Long rows = jdbcTemplate.queryForObject("SELECT rebuild_collection_closure()", Long.class);
+        log.info("Rebuilt collection closure: {} rows", rows);
+        return rows != null ? rows : 0;
+    }
+
+    private int levels(Integer depth) {
+        if (depth == null || depth < 1) {
+            return 1;
+        }
+        return Math.min(depth, maxDepth);
+    }
+}
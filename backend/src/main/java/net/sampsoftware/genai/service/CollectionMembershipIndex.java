@@ -0,0 +1,217 @@
+package net.sampsoftware.genai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.Relationship;
+import net.sampsoftware.genai.util.IdBitmap;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of collection membership: one compressed bitmap of member item ids per
+ * collection, built lazily from {@code collection} relationships and maintained from
+ * committed relationship and item changes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CollectionMembershipIndex {
+
+    public static final String COLLECTION_TYPE = "collection";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<Long, IdBitmap> members;
+
+    /**
+     * Member item ids of a collection; the returned bitmap is a copy
+     */
+    public IdBitmap members(Long collectionId) {
+        Map<Long, IdBitmap> index = index();
+        lock.readLock().lock();
+        try {
+            IdBitmap bitmap = index.get(collectionId);
+            return bitmap != null ? bitmap.copy() : new IdBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Member item ids as a list, ascending
+     */
+    public List<Long> memberIds(Long collectionId) {
+        return members(collectionId).toList();
+    }
+
+    public boolean contains(Long collectionId, Long itemId) {
+        Map<Long, IdBitmap> index = index();
+        lock.readLock().lock();
+        try {
+            IdBitmap bitmap = index.get(collectionId);
+            return bitmap != null && bitmap.contains(itemId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Items in every {@code allOf} collection and in at least one {@code anyOf} collection,
+     * minus items in any {@code noneOf} collection. Empty lists impose no constraint, but at
+     * least one of {@code allOf} / {@code anyOf} must be given.
+     */
+    public IdBitmap query(List<Long> allOf, List<Long> anyOf, List<Long> noneOf) {
+        Map<Long, IdBitmap> index = index();
+        lock.readLock().lock();
+        try {
+            IdBitmap result = null;
+            for (Long id : safe(allOf)) {
+                IdBitmap bitmap = index.getOrDefault(id, new IdBitmap());
+                result = result == null ? bitmap.copy() : IdBitmap.and(result, bitmap);
+            }
+            if (!safe(anyOf).isEmpty()) {
+                IdBitmap union = union(index, anyOf);
+                result = result == null ? union : IdBitmap.and(result, union);
+            }
+            if (result == null) {
+                throw new ValidationException("At least one of allOf or anyOf is required");
+            }
+            if (!safe(noneOf).isEmpty()) {
+                result = IdBitmap.andNot(result, union(index, noneOf));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the index; it is rebuilt on next access
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            members = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChangedEvent event) {
+        if (event.concerns(Relationship.class)) {
+            onRelationshipChanged(event);
+        } else if (event.concerns(Item.class) && event.kind() == DataChangedEvent.ChangeKind.DELETED) {
+            // Memberships of deleted items go with them (ON DELETE CASCADE)
+            withLoadedIndex(index -> {
+                for (Long itemId : event.ids()) {
+                    index.remove(itemId);
+                    index.values().forEach(bitmap -> bitmap.remove(itemId));
+                }
+            });
+        }
+    }
+
+    private void onRelationshipChanged(DataChangedEvent event) {
+        if (!(event.entity() instanceof Relationship relationship)) {
+            // Bulk change without row details
+            invalidate();
+            return;
+        }
+        switch (event.kind()) {
+            case CREATED -> {
+                if (COLLECTION_TYPE.equals(relationship.getRelationshipType())) {
+                    withLoadedIndex(index -> index
+                            .computeIfAbsent(relationship.getTargetItemId(), id -> new IdBitmap())
+                            .add(relationship.getSourceItemId()));
+                }
+            }
+            case DELETED -> {
+                if (COLLECTION_TYPE.equals(relationship.getRelationshipType())) {
+                    withLoadedIndex(index -> {
+                        IdBitmap bitmap = index.get(relationship.getTargetItemId());
+                        if (bitmap != null) {
+                            bitmap.remove(relationship.getSourceItemId());
+                        }
+                    });
+                }
+            }
+            // The previous type and endpoints are unknown, so rebuild
+            case UPDATED -> invalidate();
+        }
+    }
+
+    private void withLoadedIndex(Consumer<Map<Long, IdBitmap>> change) {
+        lock.writeLock().lock();
+        try {
+            if (members != null) {
+                change.accept(members);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static IdBitmap union(Map<Long, IdBitmap> index, List<Long> collectionIds) {
+        IdBitmap result = new IdBitmap();
+        for (Long id : collectionIds) {
+            IdBitmap bitmap = index.get(id);
+            if (bitmap != null) {
+                result = IdBitmap.or(result, bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The loaded index, building it on first use or after invalidation
+     */
+    private Map<Long, IdBitmap> index() {
+        Map<Long, IdBitmap> index = members;
+        if (index != null) {
+            return index;
+        }
+        lock.writeLock().lock();
+        try {
+            if (members == null) {
+                members = load();
+            }
+            return members;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<Long, IdBitmap> load() {
+        long start = System.currentTimeMillis();
+        Map<Long, IdBitmap> index = new HashMap<>();
+        long[] count = {0};
+        jdbcTemplate.query(
+                "SELECT target_item_id, source_item_id FROM relationships " +
+                        "WHERE relationship_type = ? ORDER BY target_item_id, source_item_id",
+                rs -> {
+                    index.computeIfAbsent(rs.getLong(1), id -> new IdBitmap()).add(rs.getLong(2));
+                    count[0]++;
+                },
+                COLLECTION_TYPE);
+        log.debug("Loaded collection membership index: {} collections, {} memberships in {} ms",
+                index.size(), count[0], System.currentTimeMillis() - start);
+        return index;
+    }
+
+    private static List<Long> safe(List<Long> ids) {
+        return ids != null ? ids : List.of();
+    }
+}
@@ -0,0 +1,426 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.advisor.ModelCallContext;
+import net.sampsoftware.genai.exception.ResourceNotFoundException;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.model.Relationship;
+import net.sampsoftware.genai.model.Summary;
+import net.sampsoftware.genai.repository.ItemRepository;
+import net.sampsoftware.genai.repository.RelationshipRepository;
+import net.sampsoftware.genai.repository.SummaryRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collection summaries by map-reduce over item summaries.
+ * <p>
+ * Each member contributes its latest summary, generated in parallel where missing. Member
+ * summaries are grouped into chunks that fit the model window, each chunk is summarized, and
+ * the chunk summaries are grouped and summarized again until one call covers the whole
+ * collection. Chunk boundaries are content-defined: a chunk closes after an item whose hashed
+ * id falls on {@code genai.collection-summary.fanout}, or when the token budget is reached, so
+ * adding or removing a member moves only the boundaries next to it.
+ * <p>
+ * Every node is stored as a {@link Summary} of the collection item whose metadata records its
+ * kind, level, child summary ids and a fingerprint of its input. A node whose fingerprint
+ * already exists is reused, so a re-run regenerates only the branches above changed members.
+ */
+@Slf4j
+@Service
+public class CollectionSummaryService {
+
+    static final String NODE_KIND = "collection_node";
+    static final String ROOT_KIND = "collection_summary";
+
+    /**
+     * Expected length of a generated item summary, for plans
+     */
+    private static final int ESTIMATED_SUMMARY_TOKENS = 120;
+
+    private static final String ITEM_PROMPT = """
+        You are analyzing an item from a collection. Please provide a concise, informative summary
+        of this item focusing on its key characteristics, significance, and notable features.
+        Keep the summary to 2-3 sentences and make it suitable for comparative analysis with other items.
+        """;
+
+    private static final String CHUNK_PROMPT = """
+        You are analyzing part of a collection of items. You will receive summaries of some of its
+        items, or of groups of its items. Write one paragraph summarizing this part: the types of
+        items it contains, shared themes, patterns or relationships, and any notable outliers.
+        Keep names of representative items so the summary can be combined with others.
+        """;
+
+    private static final String ROOT_PROMPT = """
+        You are analyzing a collection of items. You will receive the collection's details and
+        summaries of its items, or of groups of its items. Please provide a comprehensive summary
+        of this collection, including its theme, the types of items it contains, common patterns or
+        relationships you observe, and the overall significance or purpose of grouping these items
+        together. Focus on synthesis and high-level insights rather than listing individual items.
+        """;
+
+    private final RelationshipRepository relationshipRepository;
+    private final ItemRepository itemRepository;
+    private final SummaryRepository summaryRepository;
+    private final SummaryService summaryService;
+    private final ModelService modelService;
+    private final AIService aiService;
+    private final AsyncItemProcessor asyncItemProcessor;
+    private final CollectionMembershipIndex collectionMembershipIndex;
+    private final TokenizerService tokenizerService;
+    private final LongInputSummarizer longInputSummarizer;
+    private final ItemRenderer itemRenderer;
+    private final ObjectMapper objectMapper;
+    private final TaskExecutor modelCallExecutor;
+    private final int fanout;
+
+    public CollectionSummaryService(RelationshipRepository relationshipRepository,
+                                    ItemRepository itemRepository,
+                                    SummaryRepository summaryRepository,
+                                    SummaryService summaryService,
+                                    ModelService modelService,
+                                    AIService aiService,
+                                    AsyncItemProcessor asyncItemProcessor,
+                                    CollectionMembershipIndex collectionMembershipIndex,
+                                    TokenizerService tokenizerService,
+                                    LongInputSummarizer longInputSummarizer,
+                                    ItemRenderer itemRenderer,
+                                    ObjectMapper objectMapper,
+                                    @Qualifier("modelCallExecutor") TaskExecutor modelCallExecutor,
+                                    @Value("${genai.collection-summary.fanout:16}") int fanout) {
+        this.relationshipRepository = relationshipRepository;
+        this.itemRepository = itemRepository;
+        this.summaryRepository = summaryRepository;
+        this.summaryService = summaryService;
+        this.modelService = modelService;
+        this.aiService = aiService;
+        this.asyncItemProcessor = asyncItemProcessor;
+        this.collectionMembershipIndex = collectionMembershipIndex;
+        this.tokenizerService = tokenizerService;
+        this.longInputSummarizer = longInputSummarizer;
+        this.itemRenderer = itemRenderer;
+        this.objectMapper = objectMapper;
+        this.modelCallExecutor = modelCallExecutor;
+        this.fanout = Math.max(2, fanout);
+    }
+
+    public record CollectionSummaryResult(
+            Long summaryId,
+            Long collectionId,
+            int itemCount,
+            int levels,
+            int itemSummariesGenerated,
+            int nodesGenerated,
+            int nodesReused
+    ) {}
+
+    /**
+     * One input of a reduce step: an item summary or a stored node, keyed by the highest
+     * item id below it for boundary placement
+     */
+    private record Node(long anchor, int itemCount, Long summaryId, String text, int tokens) {}
+
+    public CollectionSummaryResult summarize(Long modelConfigurationId, Long collectionId) {
+        var collectionDefinitions = relationshipRepository.findCollectionDefinition(collectionId);
+        if (collectionDefinitions.isEmpty()) {
+            throw new ResourceNotFoundException("Collection definition not found for collection " + collectionId);
+        }
+        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
+        var memberIds = collectionMembershipIndex.memberIds(collectionId).stream().sorted().toList();
+        var batchId = System.nanoTime();
+
+        String header = collectionHeader(collectionDefinitions.getFirst(), memberIds.size());
+        Windows windows = windows(header, modelConfiguration);
+        int chunkBudget = windows.chunkBudget();
+        int rootBudget = windows.rootBudget();
+        int maxNodeTokens = windows.maxNodeTokens();
+
+        var existingNodes = new HashMap<String, Summary>();
+        for (Summary node : summaryRepository.findByItemId(collectionId)) {
+            String fingerprint = node.getMetadataField("fingerprint");
+            if (fingerprint != null) {
+                existingNodes.putIfAbsent(fingerprint, node);
+            }
+        }
+
+        var generated = new AtomicInteger();
+        var reused = new AtomicInteger();
+        var itemSummaries = new AtomicInteger();
+        List<Node> level = itemNodes(memberIds, modelConfiguration, batchId, maxNodeTokens, itemSummaries);
+
+        int depth = 0;
+        while (level.size() > 1 && totalTokens(level) > rootBudget) {
+            depth++;
+            var chunks = chunk(level, chunkBudget);
+            final int nodeLevel = depth;
+            var futures = chunks.stream()
+                    .map(chunk -> CompletableFuture.supplyAsync(() -> node(chunk, CHUNK_PROMPT, "", NODE_KIND, nodeLevel,
+                            collectionId, modelConfiguration, batchId, maxNodeTokens, existingNodes, generated, reused),
+                            modelCallExecutor))
+                    .toList();
+            level = futures.stream().map(CompletableFuture::join).toList();
+            log.debug("Collection {} level {}: {} chunks", collectionId, depth, level.size());
+        }
+
+        Node root = node(level, ROOT_PROMPT, header, ROOT_KIND, depth + 1, collectionId, modelConfiguration,
+                batchId, Integer.MAX_VALUE, existingNodes, generated, reused);
+
+        log.debug("Summarized collection {} in {} levels: {} nodes generated, {} reused, {} item summaries generated",
+                collectionId, depth + 1, generated.get(), reused.get(), itemSummaries.get());
+        return new CollectionSummaryResult(root.summaryId(), collectionId, memberIds.size(), depth + 1,
+                itemSummaries.get(), generated.get(), reused.get());
+    }
+
+    /**
+     * Calls {@link #summarize} would make, without sending them. Members without a summary
+     * count as one item call each and every summary as a few sentences; nodes that a re-run
+     * would reuse are counted too, so the result is an upper bound.
+     */
+    public List<BatchEstimator.PlannedCall> plan(Long modelConfigurationId, Long collectionId) {
+        var collectionDefinitions = relationshipRepository.findCollectionDefinition(collectionId);
+        if (collectionDefinitions.isEmpty()) {
+            throw new ResourceNotFoundException("Collection definition not found for collection " + collectionId);
+        }
+        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
+        var memberIds = collectionMembershipIndex.memberIds(collectionId).stream().sorted().toList();
+        String header = collectionHeader(collectionDefinitions.getFirst(), memberIds.size());
+        Windows windows = windows(header, modelConfiguration);
+        int summaryTokens = Math.min(windows.maxNodeTokens(), ESTIMATED_SUMMARY_TOKENS);
+        int nodeTokens = Math.min(windows.maxNodeTokens(), tokenizerService.maxOutputTokens(modelConfiguration));
+
+        var calls = new ArrayList<BatchEstimator.PlannedCall>();
+        var latest = latestSummaries(memberIds);
+        var level = new ArrayList<Node>();
+        for (Item item : itemRepository.findAllById(memberIds)) {
+            var summary = latest.get(item.getId());
+            int tokens = summaryTokens;
+            if (summary == null) {
+                calls.addAll(longInputSummarizer.plan(ITEM_PROMPT, itemRenderer.render(item), modelConfiguration));
+            } else {
+                tokens = Math.min(windows.maxNodeTokens(), tokenizerService.count(modelConfiguration, summary.getContent()));
+            }
+            level.add(new Node(item.getId(), 1, null, "", tokens + 8));
+        }
+        level.sort(Comparator.comparingLong(Node::anchor));
+
+        int chunkPromptTokens = tokenizerService.budget(modelConfiguration, CHUNK_PROMPT, "").inputTokens();
+        List<Node> inputs = level;
+        while (inputs.size() > 1 && totalTokens(inputs) > windows.rootBudget()) {
+            var next = new ArrayList<Node>();
+            for (List<Node> chunk : chunk(inputs, windows.chunkBudget())) {
+                calls.add(new BatchEstimator.PlannedCall(chunkPromptTokens + totalTokens(chunk), 1));
+                long anchor = chunk.stream().mapToLong(Node::anchor).max().orElse(0);
+                next.add(new Node(anchor, chunk.size(), null, "", nodeTokens));
+            }
+            inputs = next;
+        }
+        int rootPromptTokens = tokenizerService.budget(modelConfiguration, ROOT_PROMPT, header).inputTokens();
+        calls.add(new BatchEstimator.PlannedCall(rootPromptTokens + totalTokens(inputs), 1));
+        return calls;
+    }
+
+    /**
+     * Input budgets of chunk and root calls, and the most any one input may take
+     */
+    private record Windows(int chunkBudget, int rootBudget, int maxNodeTokens) {}
+
+    private Windows windows(String header, ModelConfiguration modelConfiguration) {
+        int chunkBudget = tokenizerService.inputBudget(modelConfiguration, CHUNK_PROMPT);
+        int rootBudget = tokenizerService.inputBudget(modelConfiguration, ROOT_PROMPT)
+                - tokenizerService.count(modelConfiguration, header);
+        // A quarter of the window per input keeps every chunk at several inputs
+        return new Windows(chunkBudget, rootBudget, Math.max(1, Math.min(chunkBudget, rootBudget) / 4));
+    }
+
+    /**
+     * Latest summary of each member that has one
+     */
+    private Map<Long, Summary> latestSummaries(List<Long> memberIds) {
+        var latest = new HashMap<Long, Summary>();
+        for (Summary summary : summaryRepository.findByItemIdIn(memberIds)) {
+            // Intermediate nodes of nested collections are not summaries of the member itself
+            if (NODE_KIND.equals(summary.getMetadataField("kind")) || summary.getContent() == null) {
+                continue;
+            }
+            latest.merge(summary.getItemId(), summary,
+                    (a, b) -> a.getCreatedAt().isAfter(b.getCreatedAt()) ? a : b);
+        }
+        return latest;
+    }
+
+    /**
+     * Leaf inputs: the latest summary of each member, generating the missing ones in parallel
+     */
+    private List<Node> itemNodes(List<Long> memberIds, ModelConfiguration modelConfiguration, Long batchId,
+                                 int maxNodeTokens, AtomicInteger generated) {
+        var items = new HashMap<Long, Item>();
+        itemRepository.findAllById(memberIds).forEach(item -> items.put(item.getId(), item));
+
+        var latest = latestSummaries(memberIds);
+
+        var futures = memberIds.stream()
+                .filter(id -> !latest.containsKey(id) && items.containsKey(id))
+                .map(id -> asyncItemProcessor.processItemAsync(items.get(id), ITEM_PROMPT, modelConfiguration, batchId, null))
+                .toList();
+        var newSummaryIds = futures.stream()
+                .map(CompletableFuture::join)
+                .filter(AsyncItemProcessor.ProcessingResult::success)
+                .map(AsyncItemProcessor.ProcessingResult::summaryId)
+                .toList();
+        summaryRepository.findAllById(newSummaryIds).forEach(summary -> latest.put(summary.getItemId(), summary));
+        generated.addAndGet(newSummaryIds.size());
+
+        var nodes = new ArrayList<Node>(memberIds.size());
+        for (Long itemId : memberIds) {
+            var item = items.get(itemId);
+            var summary = latest.get(itemId);
+            if (item == null || summary == null) {
+                continue;
+            }
+            String text = String.format("- %s (%s): %s", item.getName(), item.getItemType(),
+                    tokenizerService.truncate(modelConfiguration, summary.getContent().strip(), maxNodeTokens));
+            nodes.add(new Node(itemId, 1, summary.getId(), text,
+                    tokenizerService.count(modelConfiguration, text)));
+        }
+        return nodes;
+    }
+
+    /**
+     * Split inputs into chunks of at most {@code budget} tokens that close at content-defined
+     * boundaries, falling back to budget-only chunks when boundaries would not reduce the count
+     */
+    private List<List<Node>> chunk(List<Node> inputs, int budget) {
+        var chunks = chunk(inputs, budget, true);
+        return chunks.size() * 2 > inputs.size() + 1 ? chunk(inputs, budget, false) : chunks;
+    }
+
+    private List<List<Node>> chunk(List<Node> inputs, int budget, boolean boundaries) {
+        var chunks = new ArrayList<List<Node>>();
+        var chunk = new ArrayList<Node>();
+        int tokens = 0;
+        for (Node input : inputs) {
+            if (!chunk.isEmpty() && tokens + input.tokens() + 1 > budget) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                tokens = 0;
+            }
+            chunk.add(input);
+            tokens += input.tokens() + 1;
+            if (boundaries && chunk.size() > 1 && isBoundary(input.anchor())) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>();
+                tokens = 0;
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private boolean isBoundary(long itemId) {
+        long h = itemId * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return Math.floorMod(h, fanout) == 0;
+    }
+
+    /**
+     * Summary over {@code children}, reused when a node with the same input exists
+     */
+    private Node node(List<Node> children, String systemPrompt, String header, String kind, int level,
+                      Long collectionId, ModelConfiguration modelConfiguration, Long batchId, int maxNodeTokens,
+                      Map<String, Summary> existingNodes, AtomicInteger generated, AtomicInteger reused) {
+        var input = new StringBuilder(header);
+        for (Node child : children) {
+            input.append(child.text()).append('\n');
+        }
+        String fingerprint = sha256(modelConfiguration.getId() + "\n" + kind + "\n" + systemPrompt + "\n" + input);
+
+        Summary summary;
+        synchronized (existingNodes) {
+            summary = existingNodes.get(fingerprint);
+        }
+        if (summary != null) {
+            reused.incrementAndGet();
+        } else {
+            String content;
+            try (var scope = ModelCallContext.open(collectionId, CollectionMembershipIndex.COLLECTION_TYPE, batchId)) {
+                content = aiService.generateResponse(systemPrompt, input.toString(), modelConfiguration);
+            }
+            summary = summaryService.save(Summary.builder()
+                    .modelConfiguration(modelConfiguration)
+                    .itemId(collectionId)
+                    .content(content)
+                    .batchId(batchId)
+                    .metadata(lineage(kind, level, fingerprint, children))
+                    .build());
+            synchronized (existingNodes) {
+                existingNodes.put(fingerprint, summary);
+            }
+            generated.incrementAndGet();
+        }
+
+        long anchor = children.stream().mapToLong(Node::anchor).max().orElse(0);
+        int itemCount = children.stream().mapToInt(Node::itemCount).sum();
+        String text = "- " + tokenizerService.truncate(modelConfiguration, summary.getContent().strip(), maxNodeTokens);
+        return new Node(anchor, itemCount, summary.getId(), text, tokenizerService.count(modelConfiguration, text));
+    }
+
+    private JsonNode lineage(String kind, int level, String fingerprint, List<Node> children) {
+        ObjectNode metadata = objectMapper.createObjectNode();
+        metadata.put("kind", kind);
+        metadata.put("level", level);
+        metadata.put("fingerprint", fingerprint);
+        metadata.put("itemCount", children.stream().mapToInt(Node::itemCount).sum());
+        var childIds = metadata.putArray("children");
+        children.stream().map(Node::summaryId).sorted(Comparator.naturalOrder()).forEach(childIds::add);
+        return metadata;
+    }
+
+    private static String collectionHeader(Relationship collectionDefinition, int memberCount) {
+        var header = new StringBuilder();
+        header.append(String.format("Collection: %s\n", collectionDefinition.getName()));
+        if (collectionDefinition.hasAttributes()) {
+            var attrs = collectionDefinition.getAttributes();
+            if (attrs.has("description")) {
+                header.append(String.format("Description: %s\n", attrs.get("description").asText()));
+            }
+            if (attrs.has("curator")) {
+                header.append(String.format("Curator: %s\n", attrs.get("curator").asText()));
+            }
+        }
+        header.append(String.format("Items: %d\n\n", memberCount));
+        return header.toString();
+    }
+
+    private static int totalTokens(List<Node> nodes) {
+        return nodes.stream().mapToInt(node -> node.tokens() + 1).sum();
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
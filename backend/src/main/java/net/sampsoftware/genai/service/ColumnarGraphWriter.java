@@ -0,0 +1,259 @@
+package net.sampsoftware.genai.service;
+
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact graph encoding: parallel little-endian typed arrays that map directly onto
+ * JavaScript {@code Float64Array} / {@code Int32Array} / {@code Uint8Array} views.
+ * <p>
+ * Layout (all offsets aligned for their element type):
+ * <pre>
+ * header   "CYG1", int32 version, nodeCount, edgeCount, dictCount, dictBytes, 2 x int32 reserved
+ * float64  nodeIds[nodeCount], edgeIds[edgeCount]
+ * int32    nodeLabel[nodeCount], nodeType[nodeCount], edgeSource[edgeCount], edgeTarget[edgeCount],
+ *          edgeLabel[edgeCount]
+ * uint8    nodeKind[nodeCount], edgeKind[edgeCount], zero padding to 4 bytes
+ * int32    dictOffsets[dictCount + 1]
+ * utf-8    dictionary strings
+ * </pre>
+ * Labels and types are indexes into the dictionary; edge endpoints are node indexes. Node ids
+ * are the numeric database ids (model nodes use their dictionary index), so the cytoscape id is
+ * {@code kindPrefix + id}. Details are fetched per node from {@code /api/cytoscape/node/{nodeId}}.
+ */
+public class ColumnarGraphWriter implements GraphElementSink {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.genai.cytoscape-columnar";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    public static final byte NODE_ITEM = 0;
+    public static final byte NODE_SUMMARY = 1;
+    public static final byte NODE_MODEL = 2;
+
+    public static final byte EDGE_SUMMARIZES = 0;
+    public static final byte EDGE_GENERATED_BY = 1;
+    public static final byte EDGE_RELATIONSHIP = 2;
+
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final OutputStream out;
+
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> modelNodes = new HashMap<>();
+
+    private long[] nodeIds = new long[1024];
+    private int[] nodeLabels = new int[1024];
+    private int[] nodeTypes = new int[1024];
+    private byte[] nodeKinds = new byte[1024];
+    private int nodeCount;
+    private int itemEnd;
+    private int summaryEnd;
+
+    private long[] edgeIds = new long[1024];
+    private int[] edgeSources = new int[1024];
+    private int[] edgeTargets = new int[1024];
+    private int[] edgeLabels = new int[1024];
+    private byte[] edgeKinds = new byte[1024];
+    private int edgeCount;
+
+    public ColumnarGraphWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void beginNodes() {
+        // Nothing to emit until the columns are complete
+    }
+
+    @Override
+    public void itemNode(long id, String name, String itemType, DetailWriter details) {
+        addNode(NODE_ITEM, id, name, itemType);
+        itemEnd = nodeCount;
+        summaryEnd = nodeCount;
+    }
+
+    @Override
+    public void summaryNode(long id, String modelName, DetailWriter details) {
+        addNode(NODE_SUMMARY, id, modelName + " Summary", "summary");
+        summaryEnd = nodeCount;
+    }
+
+    @Override
+    public void modelNode(String modelKey, String modelName) {
+        int label = intern(modelName);
+        modelNodes.put(modelKey, nodeCount);
+        addNode(NODE_MODEL, label, modelName, "model");
+    }
+
+    @Override
+    public void beginEdges() {
+        // Edges reference node indexes, which are final once all nodes are in
+    }
+
+    @Override
+    public void summaryEdge(long itemId, long summaryId) {
+        int source = indexOf(0, itemEnd, itemId);
+        int target = indexOf(itemEnd, summaryEnd, summaryId);
+        if (source >= 0 && target >= 0) {
+            addEdge(EDGE_SUMMARIZES, 0, source, target, "summarizes");
+        }
+    }
+
+    @Override
+    public void modelEdge(long summaryId, String modelKey) {
+        int source = indexOf(itemEnd, summaryEnd, summaryId);
+        Integer target = modelNodes.get(modelKey);
+        if (source >= 0 && target != null) {
+            addEdge(EDGE_GENERATED_BY, 0, source, target, "generated-by");
+        }
+    }
+
+    @Override
+    public void relationshipEdge(long id, long sourceItemId, long targetItemId, String relationshipType) {
+        int source = indexOf(0, itemEnd, sourceItemId);
+        int target = indexOf(0, itemEnd, targetItemId);
+        if (source >= 0 && target >= 0) {
+            addEdge(EDGE_RELATIONSHIP, id, source, target, relationshipType);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        byte[][] encoded = new byte[dictionary.size()][];
+        int dictBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+            dictBytes += encoded[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 'C').put((byte) 'Y').put((byte) 'G').put((byte) '1');
+        buffer.putInt(VERSION).putInt(nodeCount).putInt(edgeCount)
+                .putInt(encoded.length).putInt(dictBytes).putInt(0).putInt(0);
+
+        for (int i = 0; i < nodeCount; i++) {
+            buffer = ensure(buffer, 8).putDouble(nodeIds[i]);
+        }
+        for (int i = 0; i < edgeCount; i++) {
+            buffer = ensure(buffer, 8).putDouble(edgeIds[i]);
+        }
+        buffer = putInts(buffer, nodeLabels, nodeCount);
+        buffer = putInts(buffer, nodeTypes, nodeCount);
+        buffer = putInts(buffer, edgeSources, edgeCount);
+        buffer = putInts(buffer, edgeTargets, edgeCount);
+        buffer = putInts(buffer, edgeLabels, edgeCount);
+        buffer = putBytes(buffer, nodeKinds, nodeCount);
+        buffer = putBytes(buffer, edgeKinds, edgeCount);
+        int padding = (4 - (nodeCount + edgeCount) % 4) % 4;
+        for (int i = 0; i < padding; i++) {
+            buffer = ensure(buffer, 1).put((byte) 0);
+        }
+
+        int offset = 0;
+        buffer = ensure(buffer, 4).putInt(0);
+        for (byte[] bytes : encoded) {
+            offset += bytes.length;
+            buffer = ensure(buffer, 4).putInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            buffer = putBytes(buffer, bytes, bytes.length);
+        }
+        drain(buffer);
+        out.flush();
+    }
+
+    private void addNode(byte kind, long id, String label, String type) {
+        if (nodeCount == nodeIds.length) {
+            int capacity = nodeCount * 2;
+            nodeIds = Arrays.copyOf(nodeIds, capacity);
+            nodeLabels = Arrays.copyOf(nodeLabels, capacity);
+            nodeTypes = Arrays.copyOf(nodeTypes, capacity);
+            nodeKinds = Arrays.copyOf(nodeKinds, capacity);
+        }
+        nodeIds[nodeCount] = id;
+        nodeLabels[nodeCount] = intern(label);
+        nodeTypes[nodeCount] = intern(type);
+        nodeKinds[nodeCount] = kind;
+        nodeCount++;
+    }
+
+    private void addEdge(byte kind, long id, int source, int target, String label) {
+        if (edgeCount == edgeIds.length) {
+            int capacity = edgeCount * 2;
+            edgeIds = Arrays.copyOf(edgeIds, capacity);
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            edgeLabels = Arrays.copyOf(edgeLabels, capacity);
+            edgeKinds = Arrays.copyOf(edgeKinds, capacity);
+        }
+        edgeIds[edgeCount] = id;
+        edgeSources[edgeCount] = source;
+        edgeTargets[edgeCount] = target;
+        edgeLabels[edgeCount] = intern(label);
+        edgeKinds[edgeCount] = kind;
+        edgeCount++;
+    }
+
+    private int intern(String value) {
+        String key = value != null ? value : "";
+        Integer index = dictionaryIndex.get(key);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(key);
+            dictionaryIndex.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Item and summary nodes arrive ordered by id, so each kind is a sorted run of node indexes
+     */
+    private int indexOf(int from, int to, long id) {
+        int index = Arrays.binarySearch(nodeIds, from, to, id);
+        return index >= 0 ? index : -1;
+    }
+
+    private ByteBuffer putInts(ByteBuffer buffer, int[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            buffer = ensure(buffer, 4).putInt(values[i]);
+        }
+        return buffer;
+    }
+
+    private ByteBuffer putBytes(ByteBuffer buffer, byte[] values, int count) throws IOException {
+        int written = 0;
+        while (written < count) {
+            int chunk = Math.min(buffer.remaining(), count - written);
+            buffer.put(values, written, chunk);
+            written += chunk;
+            if (!buffer.hasRemaining()) {
+                drain(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private ByteBuffer ensure(ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(buffer);
+        }
+        return buffer;
+    }
+
+    private void drain(ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
@@ -3,19 +3,19 @@ package net.sampsoftware.genai.service;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sampsoftware.genai.controller.CytoscapeController.GraphStats;
-import net.sampsoftware.genai.controller.CytoscapeController.ItemTypeCount;
 import net.sampsoftware.genai.dto.CytoscapeDto;
 import net.sampsoftware.genai.dto.SummaryRecords.DetailedSummaryRecord;
 import net.sampsoftware.genai.model.Item;
 import net.sampsoftware.genai.model.Relationship;
 import net.sampsoftware.genai.repository.ItemRepository;
 import net.sampsoftware.genai.repository.RelationshipRepository;
+import net.sampsoftware.genai.util.IdBitmap;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,9 +23,13 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CytoscapeService {
 
+    private static final int MEMBER_QUERY_CHUNK = 1000;
+
     private final ItemRepository itemRepository;
     private final SummaryService summaryService;
     private final RelationshipRepository relationshipRepository;
+    private final GraphStatsService graphStatsService;
+    private final CollectionHierarchyService collectionHierarchyService;
 
     /**
      * Generate a Cytoscape graph of items and their summaries
@@ -68,26 +72,28 @@ public class CytoscapeService {
     }
 
     /**
-     * Generate a graph for a specific collection
+     * Generate a graph for a specific collection, including nested collections up to
+     * {@code depth} levels down ({@code null} for direct members only)
      */
-    public CytoscapeDto getCollectionGraph(Long collectionId) {
-        log.debug("Generating graph for collection {}", collectionId);
+    public CytoscapeDto getCollectionGraph(Long collectionId, Integer depth) {
+        log.debug("Generating graph for collection {} (depth {})", collectionId, depth);
 
-        // Get collection members
-        List<Relationship> collectionMembers = relationshipRepository.findCollectionMembers(collectionId);
-        List<Long> itemIds = collectionMembers.stream()
-                .map(Relationship::getSourceItemId)
-                .collect(Collectors.toList());
+        // Get collection members, one level from the membership index or a subtree
+        IdBitmap members = collectionHierarchyService.members(collectionId, depth);
+        List<Long> itemIds = members.toList();
 
         // Get the items in this collection
         List<Item> items = itemRepository.findAllById(itemIds);
 
-        // Get relationships between these items
-        List<Relationship> relationships = relationshipRepository.findAll().stream()
-                .filter(rel -> itemIds.contains(rel.getSourceItemId()) &&
-                        itemIds.contains(rel.getTargetItemId()) &&
-                        !rel.getRelationshipType().equals("collection")) // Exclude collection relationships
-                .collect(Collectors.toList());
+        // Get relationships between these items, probing targets against the member bitmap
+        List<Relationship> relationships = new ArrayList<>();
+        for (int from = 0; from < itemIds.size(); from += MEMBER_QUERY_CHUNK) {
+            List<Long> chunk = itemIds.subList(from, Math.min(from + MEMBER_QUERY_CHUNK, itemIds.size()));
+            relationshipRepository.findBySourceItemIdIn(chunk).stream()
+                    .filter(rel -> members.contains(rel.getTargetItemId()) &&
+                            !CollectionMembershipIndex.COLLECTION_TYPE.equals(rel.getRelationshipType()))
+                    .forEach(relationships::add);
+        }
 
         log.debug("Found {} items and {} relationships in collection", items.size(), relationships.size());
 
@@ -182,6 +188,25 @@ public class CytoscapeService {
         return buildComprehensiveGraph(items, summaries, relationships);
     }
 
+    /**
+     * Resolve the details for a single cytoscape node id, as embedded by the DTO graphs
+     */
+    public Optional<Object> getNodeDetails(String nodeId) {
+        try {
+            if (nodeId.startsWith("item-")) {
+                return itemRepository.findById(Long.parseLong(nodeId.substring("item-".length())))
+                        .map(Object.class::cast);
+            }
+            if (nodeId.startsWith("summary-")) {
+                return summaryService.findDetailedById(Long.parseLong(nodeId.substring("summary-".length())))
+                        .map(Object.class::cast);
+            }
+        } catch (NumberFormatException e) {
+            log.debug("Invalid node id {}", nodeId);
+        }
+        return Optional.empty();
+    }
+
     /**
      * Get available item types
      */
@@ -193,24 +218,7 @@ public class CytoscapeService {
      * Get graph statistics
      */
     public GraphStats getGraphStats() {
-        log.debug("Generating graph statistics");
-
-        int totalItems = (int) itemRepository.count();
-        int totalSummaries = summaryService.findAllDetailedSummaryRecords().size();
-        int totalRelationships = (int) relationshipRepository.count();
-
-        // Count collections (relationships with type 'collection_definition')
-        int totalCollections = relationshipRepository.findByRelationshipType("collection_definition").size();
-
-        // Get item type counts
-        Map<String, Long> typeCounts = itemRepository.findAll().stream()
-                .collect(Collectors.groupingBy(Item::getItemType, Collectors.counting()));
-
-        List<ItemTypeCount> itemTypeCounts = typeCounts.entrySet().stream()
-                .map(entry -> new ItemTypeCount(entry.getKey(), entry.getValue().intValue()))
-                .collect(Collectors.toList());
-
-        return new GraphStats(totalItems, totalSummaries, totalRelationships, totalCollections, itemTypeCounts);
+        return graphStatsService.getStats().stats();
     }
 
     // === PRIVATE HELPER METHODS ===
@@ -0,0 +1,31 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonically increasing version of the graph data, bumped after every committed write to
+ * items, relationships, summaries or model configurations. Seeded from the clock so versions
+ * keep increasing across restarts.
+ */
+@Slf4j
+@Service
+public class DataVersionService {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    public long currentVersion() {
+        return version.get();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChangedEvent event) {
+        long next = version.incrementAndGet();
+        log.trace("Data version {} after {} {}", next, event.kind(), event.entityType().getSimpleName());
+    }
+}
@@ -0,0 +1,23 @@
+package net.sampsoftware.genai.service;
+
+import java.util.List;
+
+/**
+ * Turns texts into fixed-length, L2-normalized vectors. Implementations are selected with
+ * {@code genai.embedding.provider}; stored vectors are keyed by {@link #id()}, so switching
+ * providers never mixes vector spaces.
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Stable identifier of the provider and model, e.g. {@code local-hash-256}
+     */
+    String id();
+
+    int dimensions();
+
+    /**
+     * Embed the texts, returning one vector per text in the same order
+     */
+    List<float[]> embed(List<String> texts);
+}
@@ -0,0 +1,460 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.event.EmbeddingsChangedEvent;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.Summary;
+import net.sampsoftware.genai.util.QuantizedVector;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Embeds items, in their {@link ItemRenderer} {@code KEY_VALUE} form, and summary content with
+ * the configured {@link EmbeddingProvider}
+ * and stores the vectors int8-quantized in the {@code embeddings} table. Each row keeps a hash
+ * of the embedded text, so refreshes only re-embed owners whose text changed. With
+ * {@code genai.embedding.auto-update}, committed item and summary changes are re-embedded in
+ * the background.
+ */
+@Slf4j
+@Service
+public class EmbeddingService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO embeddings (owner_type, owner_id, provider, dimensions, scale, vector, content_hash, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (owner_type, provider, owner_id) DO UPDATE SET dimensions = EXCLUDED.dimensions, " +
+            "scale = EXCLUDED.scale, vector = EXCLUDED.vector, content_hash = EXCLUDED.content_hash, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final ObjectMapper objectMapper;
+    private final ItemRenderer itemRenderer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EmbeddingProvider provider;
+    private final TaskExecutor backgroundExecutor;
+    private final int batchSize;
+    private final int pageSize;
+    private final boolean autoUpdate;
+
+    private final Map<OwnerType, Set<Long>> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    public EmbeddingService(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            ItemRenderer itemRenderer,
+                            ApplicationEventPublisher eventPublisher,
+                            EmbeddingProvider provider,
+                            @Qualifier("backgroundExecutor") TaskExecutor backgroundExecutor,
+                            @Value("${genai.embedding.batch-size:64}") int batchSize,
+                            @Value("${genai.embedding.page-size:500}") int pageSize,
+                            @Value("${genai.embedding.auto-update:true}") boolean autoUpdate) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Deletes also run from AFTER_COMMIT listeners, where the finished transaction is still bound
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.itemRenderer = itemRenderer;
+        this.eventPublisher = eventPublisher;
+        this.provider = provider;
+        this.backgroundExecutor = backgroundExecutor;
+        this.batchSize = batchSize;
+        this.pageSize = pageSize;
+        this.autoUpdate = autoUpdate;
+    }
+
+    public enum OwnerType {
+        ITEM("item", "SELECT id, name, item_type, creator, created_year, description, attributes::text, " +
+                "version, updated_at FROM items"),
+        SUMMARY("summary", "SELECT id, content FROM summaries");
+
+        private final String code;
+        private final String selectSql;
+
+        OwnerType(String code, String selectSql) {
+            this.code = code;
+            this.selectSql = selectSql;
+        }
+
+        public String code() {
+            return code;
+        }
+
+        public static OwnerType fromCode(String code) {
+            for (OwnerType type : values()) {
+                if (type.code.equalsIgnoreCase(code)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown embedding owner type: " + code);
+        }
+    }
+
+    public record StoredEmbedding(Long ownerId, QuantizedVector vector) {}
+
+    public record RefreshResult(String ownerType, String provider, int scanned, int embedded, int unchanged, int removed) {}
+
+    public record Watermark(long count, Timestamp lastUpdated) {}
+
+    public record EmbeddingStats(String provider, int dimensions, Map<String, Long> counts) {}
+
+    private record OwnerText(Long id, String text, String hash) {}
+
+    public String providerId() {
+        return provider.id();
+    }
+
+    public int dimensions() {
+        return provider.dimensions();
+    }
+
+    /**
+     * Embed free text with the active provider, e.g. a search query
+     */
+    public float[] embed(String text) {
+        return provider.embed(List.of(text == null ? "" : text)).getFirst();
+    }
+
+    /**
+     * Embed every owner of the type whose text changed since it was last embedded (or all of
+     * them when {@code force}), then drop embeddings whose owner no longer exists
+     */
+    public RefreshResult refresh(OwnerType type, boolean force) {
+        long start = System.currentTimeMillis();
+        int scanned = 0;
+        int embedded = 0;
+        long lastId = 0;
+        while (true) {
+            List<OwnerText> page = jdbcTemplate.query(type.selectSql + " WHERE id > ? ORDER BY id LIMIT ?",
+                    ownerMapper(type), lastId, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            scanned += page.size();
+            embedded += embedChanged(type, page, force);
+            lastId = page.getLast().id();
+        }
+
+        String ownerTable = type == OwnerType.ITEM ? "items" : "summaries";
+        List<Long> orphans = jdbcTemplate.queryForList(
+                "DELETE FROM embeddings e WHERE e.owner_type = ? AND e.provider = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM " + ownerTable + " o WHERE o.id = e.owner_id) RETURNING e.owner_id",
+                Long.class, type.code, provider.id());
+        if (!orphans.isEmpty()) {
+            eventPublisher.publishEvent(new EmbeddingsChangedEvent(type.code, provider.id(), orphans, true));
+        }
+
+        log.info("Refreshed {} embeddings with {}: {} scanned, {} embedded, {} removed in {} ms",
+                type.code, provider.id(), scanned, embedded, orphans.size(), System.currentTimeMillis() - start);
+        return new RefreshResult(type.code, provider.id(), scanned, embedded, scanned - embedded, orphans.size());
+    }
+
+    /**
+     * Re-embed specific owners if their text changed; ids that no longer exist lose their embedding
+     */
+    public RefreshResult refresh(OwnerType type, Collection<Long> ids) {
+        Long[] candidates = ids.stream().filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        if (candidates.length == 0) {
+            return new RefreshResult(type.code, provider.id(), 0, 0, 0, 0);
+        }
+        List<OwnerText> owners = jdbcTemplate.query(type.selectSql + " WHERE id = ANY(?) ORDER BY id",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", candidates)),
+                ownerMapper(type));
+        int embedded = 0;
+        for (int from = 0; from < owners.size(); from += pageSize) {
+            embedded += embedChanged(type, owners.subList(from, Math.min(from + pageSize, owners.size())), false);
+        }
+
+        Set<Long> gone = new HashSet<>(List.of(candidates));
+        owners.forEach(owner -> gone.remove(owner.id()));
+        int removed = gone.isEmpty() ? 0 : remove(type, gone);
+        return new RefreshResult(type.code, provider.id(), owners.size(), embedded, owners.size() - embedded, removed);
+    }
+
+    /**
+     * Stored vectors of the given owners under the active provider
+     */
+    public List<StoredEmbedding> load(OwnerType type, Collection<Long> ids) {
+        Long[] candidates = ids.toArray(new Long[0]);
+        return jdbcTemplate.query(
+                "SELECT owner_id, scale, vector FROM embeddings WHERE owner_type = ? AND provider = ? AND owner_id = ANY(?)",
+                ps -> {
+                    ps.setString(1, type.code);
+                    ps.setString(2, provider.id());
+                    ps.setArray(3, ps.getConnection().createArrayOf("int8", candidates));
+                },
+                embeddingMapper());
+    }
+
+    /**
+     * Stream every stored vector of the type under the active provider, ascending by owner id;
+     * with {@code since}, only vectors written after it
+     */
+    public void forEach(OwnerType type, Timestamp since, Consumer<StoredEmbedding> consumer) {
+        RowMapper<StoredEmbedding> mapper = embeddingMapper();
+        jdbcTemplate.query(
+                "SELECT owner_id, scale, vector FROM embeddings WHERE owner_type = ? AND provider = ? " +
+                "AND updated_at > ? ORDER BY owner_id",
+                rs -> {
+                    consumer.accept(mapper.mapRow(rs, 0));
+                },
+                type.code, provider.id(), since != null ? since : new Timestamp(0));
+    }
+
+    /**
+     * Number of stored vectors and the time of the latest write, under the active provider
+     */
+    public Watermark watermark(OwnerType type) {
+        return jdbcTemplate.queryForObject(
+                "SELECT count(*), max(updated_at) FROM embeddings WHERE owner_type = ? AND provider = ?",
+                (rs, rowNum) -> new Watermark(rs.getLong(1), rs.getTimestamp(2)),
+                type.code, provider.id());
+    }
+
+    public EmbeddingStats stats() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (OwnerType type : OwnerType.values()) {
+            counts.put(type.code, 0L);
+        }
+        jdbcTemplate.query("SELECT owner_type, count(*) FROM embeddings WHERE provider = ? GROUP BY owner_type",
+                rs -> {
+                    counts.put(rs.getString(1), rs.getLong(2));
+                },
+                provider.id());
+        return new EmbeddingStats(provider.id(), provider.dimensions(), counts);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChangedEvent event) {
+        OwnerType type;
+        if (event.concerns(Item.class)) {
+            type = OwnerType.ITEM;
+        } else if (event.concerns(Summary.class)) {
+            type = OwnerType.SUMMARY;
+        } else {
+            return;
+        }
+        if (event.ids().isEmpty()) {
+            return;
+        }
+        if (event.kind() == DataChangedEvent.ChangeKind.DELETED) {
+            remove(type, event.ids());
+        } else if (autoUpdate) {
+            pending.computeIfAbsent(type, t -> ConcurrentHashMap.newKeySet()).addAll(event.ids());
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Embed one page of owners, skipping those whose stored hash matches; returns the number embedded
+     */
+    private int embedChanged(OwnerType type, List<OwnerText> owners, boolean force) {
+        List<OwnerText> changed = owners;
+        if (!force) {
+            Map<Long, String> stored = storedHashes(type, owners);
+            changed = owners.stream().filter(owner -> !owner.hash().equals(stored.get(owner.id()))).toList();
+        }
+        List<Long> written = new ArrayList<>(changed.size());
+        for (int from = 0; from < changed.size(); from += batchSize) {
+            List<OwnerText> batch = changed.subList(from, Math.min(from + batchSize, changed.size()));
+            List<float[]> vectors = provider.embed(batch.stream().map(OwnerText::text).toList());
+            store(type, batch, vectors);
+            batch.forEach(owner -> written.add(owner.id()));
+        }
+        if (!written.isEmpty()) {
+            eventPublisher.publishEvent(new EmbeddingsChangedEvent(type.code, provider.id(), written, false));
+        }
+        return written.size();
+    }
+
+    private void store(OwnerType type, List<OwnerText> owners, List<float[]> vectors) {
+        String providerId = provider.id();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                QuantizedVector vector = QuantizedVector.of(vectors.get(i));
+                ps.setString(1, type.code);
+                ps.setLong(2, owners.get(i).id());
+                ps.setString(3, providerId);
+                ps.setInt(4, vector.dimensions());
+                ps.setFloat(5, vector.scale());
+                ps.setBytes(6, vector.values());
+                ps.setString(7, owners.get(i).hash());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return owners.size();
+            }
+        });
+    }
+
+    private Map<Long, String> storedHashes(OwnerType type, List<OwnerText> owners) {
+        Long[] ids = owners.stream().map(OwnerText::id).toArray(Long[]::new);
+        Map<Long, String> hashes = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT owner_id, content_hash FROM embeddings WHERE owner_type = ? AND provider = ? AND owner_id = ANY(?)",
+                ps -> {
+                    ps.setString(1, type.code);
+                    ps.setString(2, provider.id());
+                    ps.setArray(3, ps.getConnection().createArrayOf("int8", ids));
+                },
+                rs -> {
+                    hashes.put(rs.getLong(1), rs.getString(2));
+                });
+        return hashes;
+    }
+
+    /**
+     * Delete the owners' embeddings under every provider
+     */
+    private int remove(OwnerType type, Collection<Long> ids) {
+        Long[] candidates = ids.toArray(new Long[0]);
+        Integer removed = requiresNew.execute(status -> jdbcTemplate.update(
+                "DELETE FROM embeddings WHERE owner_type = ? AND owner_id = ANY(?)",
+                ps -> {
+                    ps.setString(1, type.code);
+                    ps.setArray(2, ps.getConnection().createArrayOf("int8", candidates));
+                }));
+        if (removed != null && removed > 0) {
+            eventPublisher.publishEvent(new EmbeddingsChangedEvent(type.code, provider.id(), List.copyOf(ids), true));
+        }
+        return removed == null ? 0 : removed;
+    }
+
+    private void scheduleDrain() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            backgroundExecutor.execute(() -> {
+                boolean drained = false;
+                try {
+                    drainPending();
+                    drained = true;
+                } catch (Exception e) {
+                    log.warn("Background embedding update failed: {}", e.getMessage());
+                } finally {
+                    draining.set(false);
+                }
+                // Changes that arrived while the flag was still set would otherwise wait for the next
+                // event; after a failure the returned ids wait for it instead of retrying in a loop
+                if (drained && pending.values().stream().anyMatch(ids -> !ids.isEmpty())) {
+                    scheduleDrain();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The ids stay pending for the next event
+            draining.set(false);
+        }
+    }
+
+    private void drainPending() {
+        for (Map.Entry<OwnerType, Set<Long>> entry : pending.entrySet()) {
+            List<Long> ids = new ArrayList<>();
+            Iterator<Long> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                ids.add(iterator.next());
+                iterator.remove();
+            }
+            if (!ids.isEmpty()) {
+                RefreshResult result;
+                try {
+                    result = refresh(entry.getKey(), ids);
+                } catch (RuntimeException e) {
+                    // Put them back so the next drain retries them
+                    entry.getValue().addAll(ids);
+                    throw e;
+                }
+                log.debug("Re-embedded {} {} owners ({} unchanged)",
+                        result.embedded(), entry.getKey().code, result.unchanged());
+            }
+        }
+    }
+
+    private RowMapper<OwnerText> ownerMapper(OwnerType type) {
+        return (rs, rowNum) -> {
+            String text = type == OwnerType.ITEM
+                    ? itemRenderer.render(item(rs), ItemRenderer.Format.KEY_VALUE)
+                    : Objects.requireNonNullElse(rs.getString(2), "");
+            return new OwnerText(rs.getLong(1), text, sha256(text));
+        };
+    }
+
+    private static RowMapper<StoredEmbedding> embeddingMapper() {
+        return (rs, rowNum) -> new StoredEmbedding(rs.getLong(1), new QuantizedVector(rs.getBytes(3), rs.getFloat(2)));
+    }
+
+    /**
+     * The item of an {@code ITEM} row; version and {@code updated_at} keep the renderer's cache
+     * honest across changes
+     */
+    private Item item(ResultSet rs) throws SQLException {
+        Item item = Item.builder()
+                .id(rs.getLong(1))
+                .name(rs.getString(2))
+                .itemType(rs.getString(3))
+                .creator(rs.getString(4))
+                .createdYear(rs.getString(5))
+                .description(rs.getString(6))
+                .version(rs.getLong(8))
+                .updatedAt(rs.getTimestamp(9).toLocalDateTime())
+                .build();
+        String attributes = rs.getString(7);
+        if (attributes != null) {
+            try {
+                item.setAttributes(objectMapper.readTree(attributes));
+            } catch (Exception e) {
+                log.debug("Skipping unreadable attributes: {}", e.getMessage());
+            }
+        }
+        return item;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
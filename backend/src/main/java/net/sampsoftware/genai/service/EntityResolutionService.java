@@ -0,0 +1,414 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.RelationshipRecord;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.util.StringSimilarity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Finds items that describe the same book, person, etc. across sources and links each to a
+ * canonical item with an undirected {@code same_as} relationship.
+ * <p>
+ * Items are loaded into columnar arrays and given up to three blocking keys per item type:
+ * normalized title, creator surname with year, and title prefix with creator. Only items
+ * sharing a key are compared, and blocks larger than {@code genai.entity-resolution.max-block-size}
+ * are skipped. Candidate pairs are packed into a sorted {@code long[]} and scored in parallel
+ * with Jaro-Winkler over name, creator and year. Pairs above the match threshold are grouped
+ * into clusters whose lowest id is canonical; pairs between the review and match thresholds
+ * are returned as merge proposals.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EntityResolutionService {
+
+    public static final String SAME_AS = "same_as";
+
+    private static final int PAGE_SIZE = 5000;
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BulkRelationshipService bulkRelationshipService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${genai.entity-resolution.match-threshold:0.92}")
+    private double matchThreshold;
+
+    @Value("${genai.entity-resolution.review-threshold:0.85}")
+    private double reviewThreshold;
+
+    @Value("${genai.entity-resolution.max-block-size:200}")
+    private int maxBlockSize;
+
+    @Value("${genai.entity-resolution.max-reported:500}")
+    private int maxReported;
+
+    public record MatchPair(Long itemId, String itemName, Long candidateId, String candidateName, double score) {}
+
+    public record ResolutionResult(
+            int items,
+            int blocks,
+            int oversizedBlocks,
+            long candidatePairs,
+            int matches,
+            int clusters,
+            int relationshipsCreated,
+            boolean dryRun,
+            List<MatchPair> matched,
+            List<MatchPair> proposals
+    ) {}
+
+    /**
+     * Resolve items of the given types (all when empty). With {@code dryRun}, matches are
+     * reported but no relationships are written.
+     */
+    public ResolutionResult resolve(Collection<String> itemTypes, boolean dryRun) {
+        long start = System.currentTimeMillis();
+        Records records = load(itemTypes);
+        int n = records.size;
+
+        // Blocking: (key hash << 32 | item index), sorted so each block is one run
+        long[] keyed = new long[n * 3];
+        int keys = 0;
+        for (int i = 0; i < n; i++) {
+            String prefix = records.types[i] + '\u0001';
+            keyed[keys++] = block(prefix + "t:" + records.titleKeys[i], i);
+            if (records.creatorKeys[i] != null) {
+                if (records.years[i] != NO_YEAR) {
+                    keyed[keys++] = block(prefix + "cy:" + records.creatorKeys[i] + ':' + records.years[i], i);
+                }
+                String titlePrefix = records.titleKeys[i].substring(0, Math.min(5, records.titleKeys[i].length()));
+                keyed[keys++] = block(prefix + "pc:" + titlePrefix + ':' + records.creatorKeys[i], i);
+            }
+        }
+        keyed = Arrays.copyOf(keyed, keys);
+        Arrays.sort(keyed);
+
+        long[] pairs = new long[Math.max(16, keys)];
+        int pairCount = 0;
+        int blocks = 0;
+        int oversized = 0;
+        for (int from = 0; from < keys; ) {
+            int to = from + 1;
+            while (to < keys && (keyed[to] >>> 32) == (keyed[from] >>> 32)) {
+                to++;
+            }
+            int size = to - from;
+            if (size > maxBlockSize) {
+                oversized++;
+            } else if (size > 1) {
+                blocks++;
+                for (int a = from; a < to; a++) {
+                    for (int b = a + 1; b < to; b++) {
+                        int i = (int) keyed[a];
+                        int j = (int) keyed[b];
+                        if (i == j) {
+                            continue;
+                        }
+                        if (pairCount == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                        }
+                        pairs[pairCount++] = ((long) Math.min(i, j) << 32) | Math.max(i, j);
+                    }
+                }
+            }
+            from = to;
+        }
+        long[] candidates = Arrays.stream(pairs, 0, pairCount).sorted().distinct().toArray();
+
+        float[] scores = new float[candidates.length];
+        IntStream.range(0, candidates.length).parallel()
+                .forEach(p -> scores[p] = (float) score(records, (int) (candidates[p] >>> 32), (int) candidates[p]));
+
+        // Cluster matches; the lowest item id of each cluster is canonical
+        int[] parent = new int[n];
+        Arrays.setAll(parent, i -> i);
+        float[] best = new float[n];
+        List<MatchPair> matched = new ArrayList<>();
+        List<MatchPair> proposals = new ArrayList<>();
+        int matchCount = 0;
+        for (int p = 0; p < candidates.length; p++) {
+            int i = (int) (candidates[p] >>> 32);
+            int j = (int) candidates[p];
+            if (scores[p] >= matchThreshold) {
+                matchCount++;
+                union(parent, records.ids, i, j);
+                best[i] = Math.max(best[i], scores[p]);
+                best[j] = Math.max(best[j], scores[p]);
+                matched.add(pair(records, i, j, scores[p]));
+            } else if (scores[p] >= reviewThreshold) {
+                proposals.add(pair(records, i, j, scores[p]));
+            }
+        }
+
+        List<RelationshipRecord> edges = new ArrayList<>();
+        Set<Integer> roots = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            if (root != i) {
+                roots.add(root);
+                ObjectNode attributes = objectMapper.createObjectNode()
+                        .put("score", Math.round(best[i] * 1000) / 1000.0)
+                        .put("method", "entity-resolution");
+                edges.add(new RelationshipRecord(null, null, SAME_AS, records.ids[root], records.ids[i],
+                        attributes, null, null));
+            }
+        }
+        int created = 0;
+        if (!dryRun && !edges.isEmpty()) {
+            created = bulkRelationshipService.write(edges, BulkRelationshipService.ConflictMode.MERGE_ATTRIBUTES).created();
+        }
+
+        Comparator<MatchPair> byScore = Comparator.comparingDouble(MatchPair::score).reversed();
+        matched.sort(byScore);
+        proposals.sort(byScore);
+        log.info("Entity resolution over {} items: {} blocks ({} oversized), {} pairs, {} matches in {} clusters, " +
+                        "{} proposals, {} same_as created in {} ms",
+                n, blocks, oversized, candidates.length, matchCount, roots.size(), proposals.size(), created,
+                System.currentTimeMillis() - start);
+        return new ResolutionResult(n, blocks, oversized, candidates.length, matchCount, roots.size(), created, dryRun,
+                matched.subList(0, Math.min(maxReported, matched.size())),
+                proposals.subList(0, Math.min(maxReported, proposals.size())));
+    }
+
+    /**
+     * The ids that are canonical, i.e. not linked by {@code same_as} to a lower item id
+     */
+    public List<Long> canonicalIds(Collection<Long> itemIds) {
+        Set<Long> duplicates = duplicateIds(itemIds);
+        return itemIds.stream().filter(id -> !duplicates.contains(id)).toList();
+    }
+
+    public List<Item> canonicalItems(List<Item> items) {
+        Set<Long> duplicates = duplicateIds(items.stream().map(Item::getId).toList());
+        return items.stream().filter(item -> !duplicates.contains(item.getId())).toList();
+    }
+
+    private Set<Long> duplicateIds(Collection<Long> itemIds) {
+        Long[] ids = itemIds.toArray(new Long[0]);
+        if (ids.length == 0) {
+            return Set.of();
+        }
+        // Undirected edges are stored with the lower id as source
+        return new HashSet<>(jdbcTemplate.query(
+                "SELECT DISTINCT target_item_id FROM relationships " +
+                "WHERE relationship_type = '" + SAME_AS + "' AND source_item_id < target_item_id " +
+                "AND target_item_id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids)),
+                (rs, rowNum) -> rs.getLong(1)));
+    }
+
+    /**
+     * Weighted similarity of two items; components missing on either side drop out of the
+     * weighting. Same-source items with different external ids are distinct by definition.
+     */
+    private static double score(Records records, int i, int j) {
+        if (records.sources[i] != null && records.sources[i].equals(records.sources[j])
+                && records.externalIds[i] != null && records.externalIds[j] != null
+                && !records.externalIds[i].equals(records.externalIds[j])) {
+            return 0;
+        }
+        double name = Math.max(
+                StringSimilarity.jaroWinkler(records.names[i], records.names[j]),
+                records.titleKeys[i].equals(records.titleKeys[j]) ? 0.97 : 0);
+        double total = 0.6 * name;
+        double weight = 0.6;
+        double creator = -1;
+        if (records.creators[i] != null && records.creators[j] != null) {
+            creator = StringSimilarity.jaroWinkler(records.creators[i], records.creators[j]);
+            total += 0.3 * creator;
+            weight += 0.3;
+        }
+        if (records.years[i] != NO_YEAR && records.years[j] != NO_YEAR) {
+            int difference = Math.abs(records.years[i] - records.years[j]);
+            total += 0.1 * (difference == 0 ? 1 : difference == 1 ? 0.6 : 0);
+            weight += 0.1;
+        }
+        double score = total / weight;
+        // Same title by clearly different creators is a different work
+        return creator >= 0 && creator < 0.7 ? Math.min(score, 0.8) : score;
+    }
+
+    private MatchPair pair(Records records, int i, int j, float score) {
+        return new MatchPair(records.ids[i], records.displayNames[i], records.ids[j], records.displayNames[j],
+                Math.round(score * 1000) / 1000.0);
+    }
+
+    /**
+     * Link two clusters, keeping the member with the lowest item id as root
+     */
+    private static void union(int[] parent, long[] ids, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (ids[rootA] < ids[rootB]) {
+            parent[rootB] = rootA;
+        } else {
+            parent[rootA] = rootB;
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static long block(String key, int index) {
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return ((long) hash << 32) | index;
+    }
+
+    /**
+     * Items as parallel arrays indexed by position
+     */
+    private static final class Records {
+        int size;
+        long[] ids;
+        String[] types;
+        String[] displayNames;
+        char[][] names;
+        String[] titleKeys;
+        char[][] creators;
+        String[] creatorKeys;
+        int[] years;
+        String[] sources;
+        String[] externalIds;
+
+        Records(int capacity) {
+            ids = new long[capacity];
+            types = new String[capacity];
+            displayNames = new String[capacity];
+            names = new char[capacity][];
+            titleKeys = new String[capacity];
+            creators = new char[capacity][];
+            creatorKeys = new String[capacity];
+            years = new int[capacity];
+            sources = new String[capacity];
+            externalIds = new String[capacity];
+        }
+    }
+
+    private Records load(Collection<String> itemTypes) {
+        boolean filtered = itemTypes != null && !itemTypes.isEmpty();
+        String[] typeArray = filtered ? itemTypes.toArray(new String[0]) : new String[0];
+        Integer total = jdbcTemplate.query(
+                "SELECT count(*) FROM items" + (filtered ? " WHERE item_type = ANY(?)" : ""),
+                ps -> {
+                    if (filtered) {
+                        ps.setArray(1, ps.getConnection().createArrayOf("text", typeArray));
+                    }
+                },
+                rs -> rs.next() ? rs.getInt(1) : 0);
+        Records records = new Records(total != null ? total : 0);
+        Map<String, String> interned = new HashMap<>();
+
+        long lastId = 0;
+        while (true) {
+            long after = lastId;
+            int before = records.size;
+            jdbcTemplate.query(
+                    "SELECT id, item_type, name, creator, created_year, source, external_id FROM items " +
+                    "WHERE id > ?" + (filtered ? " AND item_type = ANY(?)" : "") + " ORDER BY id LIMIT ?",
+                    ps -> {
+                        ps.setLong(1, after);
+                        int next = 2;
+                        if (filtered) {
+                            ps.setArray(next++, ps.getConnection().createArrayOf("text", typeArray));
+                        }
+                        ps.setInt(next, PAGE_SIZE);
+                    },
+                    rs -> {
+                        int i = records.size;
+                        if (i == records.ids.length) {
+                            // Items inserted since the count
+                            return;
+                        }
+                        records.ids[i] = rs.getLong(1);
+                        records.types[i] = interned.computeIfAbsent(rs.getString(2), type -> type);
+                        records.displayNames[i] = rs.getString(3);
+                        String name = StringSimilarity.normalize(rs.getString(3));
+                        records.names[i] = name.toCharArray();
+                        records.titleKeys[i] = StringSimilarity.normalize(mainTitle(rs.getString(3)));
+                        String creator = StringSimilarity.normalizePerson(rs.getString(4));
+                        if (!creator.isEmpty()) {
+                            records.creators[i] = creator.toCharArray();
+                            String[] tokens = creator.split(" ");
+                            records.creatorKeys[i] = Arrays.stream(tokens)
+                                    .max(Comparator.comparingInt(String::length))
+                                    .orElse(creator);
+                        }
+                        records.years[i] = parseYear(rs.getString(5));
+                        records.sources[i] = rs.getString(6) != null
+                                ? interned.computeIfAbsent(rs.getString(6), source -> source) : null;
+                        records.externalIds[i] = rs.getString(7);
+                        records.size++;
+                    });
+            if (records.size == before) {
+                break;
+            }
+            lastId = records.ids[records.size - 1];
+            if (records.size - before < PAGE_SIZE) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * The title without a subtitle or parenthetical, e.g. "Dune" for "Dune: Deluxe Edition"
+     */
+    private static String mainTitle(String name) {
+        int end = name.length();
+        for (String separator : new String[]{":", " - ", " (", " / "}) {
+            int index = name.indexOf(separator);
+            if (index > 0) {
+                end = Math.min(end, index);
+            }
+        }
+        return name.substring(0, end);
+    }
+
+    private static int parseYear(String year) {
+        if (year == null) {
+            return NO_YEAR;
+        }
+        int value = 0;
+        int digits = 0;
+        for (int i = 0; i < year.length() && digits < 4; i++) {
+            char c = year.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (digits > 0) {
+                break;
+            }
+        }
+        return digits >= 3 ? value : NO_YEAR;
+    }
+}
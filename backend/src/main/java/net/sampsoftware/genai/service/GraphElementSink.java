@@ -0,0 +1,37 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Receives graph elements one at a time as rows are read; all nodes arrive before any edge.
+ */
+public interface GraphElementSink {
+
+    void beginNodes() throws IOException;
+
+    void itemNode(long id, String name, String itemType, DetailWriter details) throws IOException;
+
+    void summaryNode(long id, String modelName, DetailWriter details) throws IOException;
+
+    void modelNode(String modelKey, String modelName) throws IOException;
+
+    void beginEdges() throws IOException;
+
+    void summaryEdge(long itemId, long summaryId) throws IOException;
+
+    void modelEdge(long summaryId, String modelKey) throws IOException;
+
+    void relationshipEdge(long id, long sourceItemId, long targetItemId, String relationshipType) throws IOException;
+
+    void finish() throws IOException;
+
+    /**
+     * Writes the selected detail fields of the current row; null when no detail fields were requested
+     */
+    @FunctionalInterface
+    interface DetailWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+}
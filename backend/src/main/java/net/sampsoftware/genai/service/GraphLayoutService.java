@@ -0,0 +1,206 @@
+package net.sampsoftware.genai.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.CytoscapeDto;
+import net.sampsoftware.genai.util.BarnesHutLayout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Server-side layout for cytoscape graphs. Positions are cached per graph key and structure version;
+ * when a graph changes, the previous positions seed a short incremental refinement.
+ */
+@Slf4j
+@Service
+public class GraphLayoutService {
+
+    @Value("${genai.graph.layout.iterations:300}")
+    private int iterations;
+
+    @Value("${genai.graph.layout.refine-iterations:60}")
+    private int refineIterations;
+
+    @Value("${genai.graph.layout.theta:0.8}")
+    private double theta;
+
+    @Value("${genai.graph.layout.edge-length:80}")
+    private double edgeLength;
+
+    @Value("${genai.graph.layout.cache-size:32}")
+    private int cacheSize;
+
+    private final ForkJoinPool pool;
+
+    private final Map<String, LayoutSnapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LayoutSnapshot> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    public GraphLayoutService(@Value("${genai.graph.layout.parallelism:0}") int parallelism) {
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Attach a position to every node of the graph, reusing cached positions where possible
+     */
+    public CytoscapeDto applyLayout(String graphKey, CytoscapeDto graph) {
+        if (graph == null || graph.getElements() == null || graph.getElements().getNodes() == null) {
+            return graph;
+        }
+        List<CytoscapeDto.CytoscapeNode> nodes = graph.getElements().getNodes();
+        List<CytoscapeDto.CytoscapeEdge> edges = graph.getElements().getEdges() != null
+                ? graph.getElements().getEdges()
+                : List.of();
+
+        int n = nodes.size();
+        String[] ids = new String[n];
+        Map<String, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ids[i] = nodes.get(i).getData().getId();
+            index.put(ids[i], i);
+        }
+
+        List<int[]> edgeIndexes = new ArrayList<>(edges.size());
+        for (CytoscapeDto.CytoscapeEdge edge : edges) {
+            Integer s = index.get(edge.getData().getSource());
+            Integer t = index.get(edge.getData().getTarget());
+            if (s != null && t != null) {
+                edgeIndexes.add(new int[]{s, t});
+            }
+        }
+        int[] sources = new int[edgeIndexes.size()];
+        int[] targets = new int[edgeIndexes.size()];
+        for (int e = 0; e < sources.length; e++) {
+            sources[e] = edgeIndexes.get(e)[0];
+            targets[e] = edgeIndexes.get(e)[1];
+        }
+
+        long version = structureVersion(ids, edges);
+        LayoutSnapshot previous;
+        synchronized (snapshots) {
+            previous = snapshots.get(graphKey);
+        }
+
+        Map<String, double[]> positions;
+        if (previous != null && previous.version() == version) {
+            log.debug("Layout cache hit for {} ({} nodes)", graphKey, n);
+            positions = previous.positions();
+        } else {
+            positions = computeLayout(graphKey, ids, sources, targets, previous);
+            synchronized (snapshots) {
+                snapshots.put(graphKey, new LayoutSnapshot(version, positions));
+            }
+        }
+
+        for (CytoscapeDto.CytoscapeNode node : nodes) {
+            double[] p = positions.get(node.getData().getId());
+            if (p != null) {
+                node.setPosition(new CytoscapeDto.Position(p[0], p[1]));
+            }
+        }
+        return graph;
+    }
+
+    private Map<String, double[]> computeLayout(String graphKey, String[] ids, int[] sources, int[] targets,
+                                                LayoutSnapshot previous) {
+        int n = ids.length;
+        long start = System.currentTimeMillis();
+        BarnesHutLayout.Settings settings = new BarnesHutLayout.Settings(
+                iterations, theta, edgeLength, 0.02, 0.0, graphKey.hashCode());
+
+        double[] seed = null;
+        if (previous != null) {
+            seed = new double[n * 2];
+            boolean[] placed = new boolean[n];
+            int reused = 0;
+            for (int i = 0; i < n; i++) {
+                double[] p = previous.positions().get(ids[i]);
+                if (p != null) {
+                    seed[2 * i] = p[0];
+                    seed[2 * i + 1] = p[1];
+                    placed[i] = true;
+                    reused++;
+                }
+            }
+            if (reused * 2 >= n) {
+                placeNewNodes(seed, placed, sources, targets, graphKey.hashCode());
+                settings = settings.withIterations(refineIterations).withInitialTemperature(edgeLength);
+            } else {
+                seed = null;
+            }
+            log.debug("Layout for {} reusing {}/{} previous positions", graphKey, reused, n);
+        }
+
+        double[] result = new BarnesHutLayout(settings, pool).layout(n, sources, targets, seed);
+        Map<String, double[]> positions = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            positions.put(ids[i], new double[]{result[2 * i], result[2 * i + 1]});
+        }
+        log.debug("Computed layout for {} ({} nodes, {} edges) in {} ms",
+                graphKey, n, sources.length, System.currentTimeMillis() - start);
+        return positions;
+    }
+
+    /**
+     * Place nodes without a previous position next to an already placed neighbour
+     */
+    private void placeNewNodes(double[] seed, boolean[] placed, int[] sources, int[] targets, long randomSeed) {
+        SplittableRandom random = new SplittableRandom(randomSeed);
+        for (int e = 0; e < sources.length; e++) {
+            int s = sources[e];
+            int t = targets[e];
+            if (placed[s] != placed[t]) {
+                int anchor = placed[s] ? s : t;
+                int node = placed[s] ? t : s;
+                double angle = random.nextDouble() * 2 * Math.PI;
+                seed[2 * node] = seed[2 * anchor] + Math.cos(angle) * edgeLength;
+                seed[2 * node + 1] = seed[2 * anchor + 1] + Math.sin(angle) * edgeLength;
+                placed[node] = true;
+            }
+        }
+        for (int i = 0; i < placed.length; i++) {
+            if (!placed[i]) {
+                seed[2 * i] = (random.nextDouble() - 0.5) * edgeLength * 4;
+                seed[2 * i + 1] = (random.nextDouble() - 0.5) * edgeLength * 4;
+            }
+        }
+    }
+
+    /**
+     * Order-independent fingerprint of the node ids and edge endpoints
+     */
+    private static long structureVersion(String[] ids, List<CytoscapeDto.CytoscapeEdge> edges) {
+        long h = ids.length * 0x9E3779B97F4A7C15L + edges.size();
+        for (String id : ids) {
+            h += mix(id.hashCode());
+        }
+        for (CytoscapeDto.CytoscapeEdge edge : edges) {
+            h += mix(31L * edge.getData().getSource().hashCode() + edge.getData().getTarget().hashCode() + 0x5bd1e995L);
+        }
+        return h;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private record LayoutSnapshot(long version, Map<String, double[]> positions) {}
+}
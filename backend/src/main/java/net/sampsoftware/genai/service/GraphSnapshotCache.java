@@ -0,0 +1,57 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.CytoscapeDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of built graphs, keyed by endpoint and parameters and valid for one data version
+ */
+@Slf4j
+@Service
+public class GraphSnapshotCache {
+
+    @Value("${genai.graph.cache.max-entries:64}")
+    private int maxEntries;
+
+    private final Map<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Return the cached graph for this key and version, building and caching it on a miss
+     */
+    public CytoscapeDto get(String key, long version, Supplier<CytoscapeDto> builder) {
+        synchronized (snapshots) {
+            Snapshot snapshot = snapshots.get(key);
+            if (snapshot != null && snapshot.version() == version) {
+                return snapshot.graph();
+            }
+        }
+        log.debug("Building graph snapshot {} at version {}", key, version);
+        CytoscapeDto graph = builder.get();
+        synchronized (snapshots) {
+            Snapshot current = snapshots.get(key);
+            if (current == null || current.version() < version) {
+                snapshots.put(key, new Snapshot(version, graph));
+            }
+        }
+        return graph;
+    }
+
+    public void clear() {
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+    }
+
+    private record Snapshot(long version, CytoscapeDto graph) {}
+}
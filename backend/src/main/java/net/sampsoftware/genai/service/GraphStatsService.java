@@ -0,0 +1,103 @@
+package net.sampsoftware.genai.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.controller.CytoscapeController.GraphStats;
+import net.sampsoftware.genai.controller.CytoscapeController.ItemTypeCount;
+import net.sampsoftware.genai.repository.ItemRepository;
+import net.sampsoftware.genai.repository.RelationshipRepository;
+import net.sampsoftware.genai.repository.SummaryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Graph statistics from SQL aggregates only, cached per data version. After a change, the
+ * previous stats may be served for up to the TTL while a refresh runs in the background.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GraphStatsService {
+
+    private final ItemRepository itemRepository;
+    private final SummaryRepository summaryRepository;
+    private final RelationshipRepository relationshipRepository;
+    private final DataVersionService dataVersionService;
+    private final TaskExecutor backgroundExecutor;
+
+    @Value("${genai.graph.stats.ttl:30s}")
+    private Duration ttl;
+
+    @Value("${genai.graph.stats.background-refresh:true}")
+    private boolean backgroundRefresh;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile StatsSnapshot cached;
+
+    /**
+     * Current stats together with the data version they were computed at
+     */
+    public StatsSnapshot getStats() {
+        long version = dataVersionService.currentVersion();
+        StatsSnapshot snapshot = cached;
+        if (snapshot != null && snapshot.version() == version) {
+            return snapshot;
+        }
+        boolean fresh = snapshot != null
+                && System.currentTimeMillis() - snapshot.computedAt() < ttl.toMillis();
+        if (fresh && backgroundRefresh) {
+            if (refreshing.compareAndSet(false, true)) {
+                try {
+                    backgroundExecutor.execute(() -> {
+                        try {
+                            refresh(version);
+                        } catch (Exception e) {
+                            log.warn("Background stats refresh failed: {}", e.getMessage());
+                        } finally {
+                            refreshing.set(false);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The next stale read tries again
+                    refreshing.set(false);
+                }
+            }
+            return snapshot;
+        }
+        return refresh(version);
+    }
+
+    private StatsSnapshot refresh(long version) {
+        long start = System.currentTimeMillis();
+        GraphStats stats = computeStats();
+        StatsSnapshot snapshot = new StatsSnapshot(stats, version, System.currentTimeMillis());
+        StatsSnapshot current = cached;
+        if (current == null || current.version() <= version) {
+            cached = snapshot;
+        }
+        log.debug("Computed graph stats at version {} in {} ms", version, snapshot.computedAt() - start);
+        return snapshot;
+    }
+
+    public GraphStats computeStats() {
+        List<ItemTypeCount> itemTypeCounts = itemRepository.countGroupedByItemType().stream()
+                .map(row -> new ItemTypeCount((String) row[0], ((Number) row[1]).intValue()))
+                .toList();
+        int totalItems = itemTypeCounts.stream().mapToInt(ItemTypeCount::count).sum();
+
+        return new GraphStats(
+                totalItems,
+                (int) summaryRepository.count(),
+                (int) relationshipRepository.count(),
+                (int) relationshipRepository.countOfRelationshipType("collection_definition"),
+                itemTypeCounts);
+    }
+
+    public record StatsSnapshot(GraphStats stats, long version, long computedAt) {}
+}
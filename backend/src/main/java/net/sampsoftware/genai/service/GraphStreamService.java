@@ -0,0 +1,388 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.ValidationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Streams cytoscape graphs from JDBC cursors into a {@link GraphElementSink}, so only the
+ * current row and the writer's buffer are held in memory.
+ */
+@Slf4j
+@Service
+public class GraphStreamService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    public GraphStreamService(DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              ObjectMapper objectMapper,
+                              @Value("${genai.graph.stream.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write the graph as cytoscape JSON to the output stream
+     */
+    public void writeJson(GraphSpec spec, GraphFields fields, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            stream(spec, fields, new JsonGraphWriter(generator));
+        }
+    }
+
+    /**
+     * Write the graph in the compact columnar encoding; details are left to the per-node endpoint
+     */
+    public void writeColumnar(GraphSpec spec, OutputStream out) throws IOException {
+        stream(spec, GraphFields.NONE, new ColumnarGraphWriter(out));
+    }
+
+    /**
+     * Read the graph described by the spec and push its elements into the sink
+     */
+    public void stream(GraphSpec spec, GraphFields fields, GraphElementSink sink) {
+        long start = System.currentTimeMillis();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try {
+                Map<String, String> modelKeys = spec.summaries() ? findModelKeys(spec) : Map.of();
+
+                sink.beginNodes();
+                streamItemNodes(spec, fields.itemFields(), sink);
+                if (spec.summaries()) {
+                    streamSummaryNodes(spec, fields.summaryFields(), sink);
+                    for (Map.Entry<String, String> model : modelKeys.entrySet()) {
+                        sink.modelNode(model.getValue(), model.getKey());
+                    }
+                }
+
+                sink.beginEdges();
+                if (spec.summaries()) {
+                    streamSummaryEdges(spec, modelKeys, sink);
+                }
+                if (spec.relationships()) {
+                    streamRelationshipEdges(spec, sink);
+                }
+                sink.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        log.debug("Streamed graph in {} ms", System.currentTimeMillis() - start);
+    }
+
+    // === QUERIES ===
+
+    private void streamItemNodes(GraphSpec spec, List<DetailField> fields, GraphElementSink sink) {
+        String sql = spec.with() +
+                "SELECT i.id, i.name, i.item_type" + selectColumns(fields, true) +
+                " FROM items i JOIN g ON g.id = i.id ORDER BY i.id";
+        jdbcTemplate.query(sql, rs -> {
+            try {
+                sink.itemNode(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        fields.isEmpty() ? null : generator -> writeDetails(generator, rs, fields, 4));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, spec.args());
+    }
+
+    private void streamSummaryNodes(GraphSpec spec, List<DetailField> fields, GraphElementSink sink) {
+        String sql = spec.with() +
+                "SELECT s.id, m.model_name" + selectColumns(fields, false) +
+                summaryFrom(spec) + " ORDER BY s.id";
+        jdbcTemplate.query(sql, rs -> {
+            try {
+                sink.summaryNode(rs.getLong(1), rs.getString(2),
+                        fields.isEmpty() ? null : generator -> writeDetails(generator, rs, fields, 3));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, spec.summaryArgs());
+    }
+
+    private void streamSummaryEdges(GraphSpec spec, Map<String, String> modelKeys, GraphElementSink sink) {
+        String sql = spec.with() + "SELECT s.id, s.item_id, m.model_name" + summaryFrom(spec) + " ORDER BY s.id";
+        jdbcTemplate.query(sql, rs -> {
+            try {
+                long summaryId = rs.getLong(1);
+                sink.summaryEdge(rs.getLong(2), summaryId);
+                String modelKey = modelKeys.get(rs.getString(3));
+                if (modelKey != null) {
+                    sink.modelEdge(summaryId, modelKey);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, spec.summaryArgs());
+    }
+
+    private void streamRelationshipEdges(GraphSpec spec, GraphElementSink sink) {
+        String sql = spec.with() +
+                "SELECT r.id, r.source_item_id, r.target_item_id, r.relationship_type FROM relationships r " +
+                "JOIN g gs ON gs.id = r.source_item_id JOIN g gt ON gt.id = r.target_item_id" +
+                (spec.excludeCollectionEdges() ? " WHERE r.relationship_type <> 'collection'" : "") +
+                " ORDER BY r.id";
+        jdbcTemplate.query(sql, rs -> {
+            try {
+                sink.relationshipEdge(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, spec.args());
+    }
+
+    /**
+     * Models with more than one summary in the graph get their own node, keyed like the DTO path
+     */
+    private Map<String, String> findModelKeys(GraphSpec spec) {
+        String sql = spec.with() + "SELECT m.model_name" + summaryFrom(spec) +
+                " GROUP BY m.model_name HAVING COUNT(*) > 1 ORDER BY m.model_name";
+        Map<String, String> keys = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String modelName = rs.getString(1);
+            keys.put(modelName, modelName.replaceAll("\\s+", "-").toLowerCase());
+        }, spec.summaryArgs());
+        return keys;
+    }
+
+    private static String summaryFrom(GraphSpec spec) {
+        return " FROM summaries s JOIN g ON g.id = s.item_id" +
+                " JOIN items i ON i.id = s.item_id" +
+                " JOIN model_configuration mc ON mc.id = s.model_configuration_id" +
+                " JOIN model m ON m.id = mc.model_id" +
+                (spec.modelId() != null ? " WHERE m.id = ?" : "");
+    }
+
+    private static String selectColumns(List<DetailField> fields, boolean item) {
+        StringBuilder sb = new StringBuilder();
+        for (DetailField field : fields) {
+            sb.append(", ").append(item ? field.itemColumn : field.summaryColumn);
+        }
+        return sb.toString();
+    }
+
+    private static void writeDetails(JsonGenerator generator, ResultSet rs, List<DetailField> fields, int firstColumn)
+            throws IOException {
+        try {
+            int column = firstColumn;
+            for (DetailField field : fields) {
+                generator.writeFieldName(field.jsonName);
+                switch (field.type) {
+                    case LONG -> {
+                        long value = rs.getLong(column);
+                        if (rs.wasNull()) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeNumber(value);
+                        }
+                    }
+                    case JSON -> {
+                        String json = rs.getString(column);
+                        if (json == null) {
+                            generator.writeNull();
+                        } else {
+                            generator.writeRawValue(json);
+                        }
+                    }
+                    case TIMESTAMP -> {
+                        Timestamp value = rs.getTimestamp(column);
+                        generator.writeString(value != null ? value.toLocalDateTime().toString() : null);
+                    }
+                    default -> generator.writeString(rs.getString(column));
+                }
+                column++;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read detail columns", e);
+        }
+    }
+
+    // === GRAPH SELECTION ===
+
+    /**
+     * Which items a graph contains and which edge families to include
+     *
+     * @param itemIdsSql query yielding the graph's item ids as column {@code id}
+     */
+    public record GraphSpec(
+            String itemIdsSql,
+            Object[] itemIdArgs,
+            boolean summaries,
+            boolean relationships,
+            boolean excludeCollectionEdges,
+            Long modelId
+    ) {
+        public static GraphSpec itemsSummaries() {
+            return new GraphSpec("SELECT id FROM items", new Object[0], true, false, false, null);
+        }
+
+        public static GraphSpec itemsRelationships() {
+            return new GraphSpec("SELECT id FROM items", new Object[0], false, true, false, null);
+        }
+
+        public static GraphSpec collection(CollectionHierarchyService.SubtreeQuery subtree) {
+            return new GraphSpec(subtree.sql(), subtree.args(), false, true, true, null);
+        }
+
+        public static GraphSpec itemTypes(List<String> itemTypes, boolean includeRelationships) {
+            return new GraphSpec("SELECT id FROM items WHERE item_type IN (" + placeholders(itemTypes) + ")",
+                    itemTypes.toArray(), !includeRelationships, includeRelationships, false, null);
+        }
+
+        public static GraphSpec model(Long modelId) {
+            return new GraphSpec("SELECT DISTINCT s.item_id AS id FROM summaries s " +
+                    "JOIN model_configuration mc ON mc.id = s.model_configuration_id WHERE mc.model_id = ?",
+                    new Object[]{modelId}, true, false, false, modelId);
+        }
+
+        public static GraphSpec comprehensive(int maxItems, List<String> itemTypes) {
+            boolean filtered = itemTypes != null && !itemTypes.isEmpty();
+            List<Object> args = new ArrayList<>();
+            if (filtered) {
+                args.addAll(itemTypes);
+            }
+            args.add(maxItems);
+            return new GraphSpec("SELECT id FROM items" +
+                    (filtered ? " WHERE item_type IN (" + placeholders(itemTypes) + ")" : "") +
+                    " ORDER BY id LIMIT ?",
+                    args.toArray(), true, true, false, null);
+        }
+
+        String with() {
+            return "WITH g AS (" + itemIdsSql + ") ";
+        }
+
+        Object[] args() {
+            return itemIdArgs;
+        }
+
+        Object[] summaryArgs() {
+            if (modelId == null) {
+                return itemIdArgs;
+            }
+            Object[] args = Arrays.copyOf(itemIdArgs, itemIdArgs.length + 1);
+            args[itemIdArgs.length] = modelId;
+            return args;
+        }
+
+        private static String placeholders(List<String> values) {
+            if (values.isEmpty()) {
+                throw new ValidationException("itemTypes", values);
+            }
+            return String.join(",", Collections.nCopies(values.size(), "?"));
+        }
+    }
+
+    /**
+     * Detail fields selected for item and summary nodes
+     */
+    public record GraphFields(List<DetailField> itemFields, List<DetailField> summaryFields) {
+
+        public static final GraphFields NONE = new GraphFields(List.of(), List.of());
+
+        /**
+         * Parse a field selection; {@code *} selects every field
+         */
+        public static GraphFields parse(List<String> names) {
+            if (names == null || names.isEmpty()) {
+                return NONE;
+            }
+            EnumSet<DetailField> selected = EnumSet.noneOf(DetailField.class);
+            for (String name : names) {
+                String trimmed = name.trim();
+                if (trimmed.equals("*")) {
+                    selected.addAll(EnumSet.allOf(DetailField.class));
+                } else if (!trimmed.isEmpty()) {
+                    selected.add(DetailField.fromJsonName(trimmed));
+                }
+            }
+            return new GraphFields(
+                    selected.stream().filter(f -> f.itemColumn != null).toList(),
+                    selected.stream().filter(f -> f.summaryColumn != null).toList());
+        }
+    }
+
+    /**
+     * Whitelisted detail fields, named like the properties of {@code Item} and {@code DetailedSummaryRecord}
+     */
+    public enum DetailField {
+        ID("id", "i.id", "s.id", ColumnType.LONG),
+        ITEM_TYPE("itemType", "i.item_type", null, ColumnType.TEXT),
+        NAME("name", "i.name", null, ColumnType.TEXT),
+        DESCRIPTION("description", "i.description", null, ColumnType.TEXT),
+        CREATOR("creator", "i.creator", null, ColumnType.TEXT),
+        CREATED_YEAR("createdYear", "i.created_year", null, ColumnType.TEXT),
+        EXTERNAL_ID("externalId", "i.external_id", null, ColumnType.TEXT),
+        SOURCE("source", "i.source", null, ColumnType.TEXT),
+        ATTRIBUTES("attributes", "i.attributes::text", null, ColumnType.JSON),
+        ITEM_ID("itemId", null, "s.item_id", ColumnType.LONG),
+        ITEM_NAME("itemName", null, "i.name", ColumnType.TEXT),
+        CONTENT("content", null, "s.content", ColumnType.TEXT),
+        MODEL_NAME("modelName", null, "m.model_name", ColumnType.TEXT),
+        MODEL_PROVIDER("modelProvider", null, "m.model_provider", ColumnType.TEXT),
+        MODEL_ID("modelId", null, "m.id", ColumnType.LONG),
+        MODEL_CONFIGURATION_ID("modelConfigurationId", null, "mc.id", ColumnType.LONG),
+        MODEL_CONFIG("modelConfig", null, "mc.model_config::text", ColumnType.JSON),
+        CONFIG_COMMENT("configComment", null, "mc.comment", ColumnType.TEXT),
+        CREATED_AT("createdAt", "i.created_at", "s.created_at", ColumnType.TIMESTAMP),
+        UPDATED_AT("updatedAt", "i.updated_at", null, ColumnType.TIMESTAMP);
+
+        private static final Map<String, DetailField> BY_JSON_NAME = Arrays.stream(values())
+                .collect(Collectors.toMap(f -> f.jsonName, f -> f));
+
+        private final String jsonName;
+        private final String itemColumn;
+        private final String summaryColumn;
+        private final ColumnType type;
+
+        DetailField(String jsonName, String itemColumn, String summaryColumn, ColumnType type) {
+            this.jsonName = jsonName;
+            this.itemColumn = itemColumn;
+            this.summaryColumn = summaryColumn;
+            this.type = type;
+        }
+
+        public String jsonName() {
+            return jsonName;
+        }
+
+        static DetailField fromJsonName(String name) {
+            DetailField field = BY_JSON_NAME.get(name);
+            if (field == null) {
+                throw new ValidationException("fields", name);
+            }
+            return field;
+        }
+    }
+
+    private enum ColumnType { TEXT, LONG, JSON, TIMESTAMP }
+}
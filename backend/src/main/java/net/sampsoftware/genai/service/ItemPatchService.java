@@ -0,0 +1,197 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.exception.ConflictException;
+import net.sampsoftware.genai.exception.ResourceNotFoundException;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.model.Item;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies RFC 7396 merge patches to item attributes with a single UPDATE per request, without
+ * loading entities. Flat patches use jsonb {@code ||} and {@code -}; nested ones go through
+ * the {@code jsonb_merge_patch} SQL function. Every patch bumps {@code items.version}, and an
+ * expected version turns the update into a compare-and-set.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ItemPatchService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public record PatchedItem(Long id, Long version, JsonNode attributes) {}
+
+    public record AttributePatch(Long id, JsonNode patch, Long expectedVersion) {}
+
+    public record BulkPatchResult(List<PatchedItem> updated, List<Long> conflicts, List<Long> missing) {}
+
+    /**
+     * Patch one item's attributes; {@code expectedVersion} may be null to skip the version check
+     */
+    @Transactional
+    public PatchedItem patchAttributes(Long id, JsonNode patch, Long expectedVersion) {
+        requireObject(patch);
+        List<Object> args = new ArrayList<>();
+        String expression = patchExpression((ObjectNode) patch, args);
+        args.add(id);
+        String sql = "UPDATE items SET attributes = " + expression + ", version = version + 1 WHERE id = ?";
+        if (expectedVersion != null) {
+            sql += " AND version = ?";
+            args.add(expectedVersion);
+        }
+        sql += " RETURNING id, version, attributes::text";
+
+        List<PatchedItem> rows = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new PatchedItem(rs.getLong(1), rs.getLong(2), readJson(rs.getString(3))),
+                args.toArray());
+        if (rows.isEmpty()) {
+            Long current = currentVersion(id);
+            if (current == null) {
+                throw new ResourceNotFoundException("Item not found with id: " + id);
+            }
+            throw new ConflictException(String.format(
+                    "Item %d is at version %d, expected %d", id, current, expectedVersion));
+        }
+        eventPublisher.publishEvent(DataChangedEvent.bulk(Item.class, DataChangedEvent.ChangeKind.UPDATED, List.of(id)));
+        return rows.getFirst();
+    }
+
+    /**
+     * Patch many items in one statement. Items whose version does not match are reported as
+     * conflicts and left untouched; the rest are updated.
+     */
+    @Transactional
+    public BulkPatchResult patchAttributes(List<AttributePatch> patches) {
+        Set<Long> seen = new HashSet<>();
+        int size = patches.size();
+        Long[] ids = new Long[size];
+        String[] documents = new String[size];
+        Long[] expected = new Long[size];
+        for (int i = 0; i < size; i++) {
+            AttributePatch patch = patches.get(i);
+            if (patch.id() == null || !seen.add(patch.id())) {
+                throw new ValidationException("id", patch.id());
+            }
+            requireObject(patch.patch());
+            ids[i] = patch.id();
+            documents[i] = patch.patch().toString();
+            expected[i] = patch.expectedVersion();
+        }
+        if (size == 0) {
+            return new BulkPatchResult(List.of(), List.of(), List.of());
+        }
+
+        List<PatchedItem> updated = jdbcTemplate.query(
+                "UPDATE items i SET attributes = jsonb_merge_patch(i.attributes, p.patch::jsonb), version = i.version + 1 " +
+                "FROM unnest(?::int8[], ?::text[], ?::int8[]) AS p(id, patch, expected) " +
+                "WHERE i.id = p.id AND (p.expected IS NULL OR i.version = p.expected) " +
+                "RETURNING i.id, i.version, i.attributes::text",
+                ps -> {
+                    ps.setArray(1, ps.getConnection().createArrayOf("int8", ids));
+                    ps.setArray(2, ps.getConnection().createArrayOf("text", documents));
+                    ps.setArray(3, ps.getConnection().createArrayOf("int8", expected));
+                },
+                (rs, rowNum) -> new PatchedItem(rs.getLong(1), rs.getLong(2), readJson(rs.getString(3))));
+
+        Set<Long> notUpdated = new HashSet<>(seen);
+        updated.forEach(item -> notUpdated.remove(item.id()));
+        List<Long> conflicts = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        if (!notUpdated.isEmpty()) {
+            Long[] candidates = notUpdated.toArray(new Long[0]);
+            Set<Long> existing = new HashSet<>(jdbcTemplate.query("SELECT id FROM items WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", candidates)),
+                    (rs, rowNum) -> rs.getLong(1)));
+            for (Long id : candidates) {
+                (existing.contains(id) ? conflicts : missing).add(id);
+            }
+        }
+
+        if (!updated.isEmpty()) {
+            eventPublisher.publishEvent(DataChangedEvent.bulk(Item.class, DataChangedEvent.ChangeKind.UPDATED,
+                    updated.stream().map(PatchedItem::id).toList()));
+        }
+        log.debug("Patched attributes of {} items ({} conflicts, {} missing)",
+                updated.size(), conflicts.size(), missing.size());
+        return new BulkPatchResult(updated, conflicts, missing);
+    }
+
+    /**
+     * SQL expression applying the patch to {@code attributes}, appending its bind values
+     */
+    private String patchExpression(ObjectNode patch, List<Object> args) {
+        for (JsonNode value : patch) {
+            if (value.isObject()) {
+                // Nested objects merge recursively
+                args.add(patch.toString());
+                return "jsonb_merge_patch(attributes, ?::jsonb)";
+            }
+        }
+        List<String> removals = new ArrayList<>();
+        ObjectNode sets = objectMapper.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            if (value.isNull()) {
+                removals.add(field.getKey());
+            } else {
+                sets.set(field.getKey(), value);
+            }
+        }
+        String expression = "attributes";
+        if (!removals.isEmpty()) {
+            expression = "(" + expression + " - ?::text[])";
+            args.add("{" + String.join(",", removals.stream().map(ItemPatchService::arrayElement).toList()) + "}");
+        }
+        if (!sets.isEmpty()) {
+            expression = expression + " || ?::jsonb";
+            args.add(sets.toString());
+        }
+        return expression;
+    }
+
+    private Long currentVersion(Long id) {
+        List<Long> versions = jdbcTemplate.queryForList("SELECT version FROM items WHERE id = ?", Long.class, id);
+        return versions.isEmpty() ? null : versions.getFirst();
+    }
+
+    private JsonNode readJson(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Unreadable attributes returned for patched item", e);
+        }
+    }
+
+    private static void requireObject(JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new ValidationException("Attribute patch must be a JSON object");
+        }
+    }
+
+    /**
+     * Quote a key as a Postgres array literal element
+     */
+    private static String arrayElement(String key) {
+        return "\"" + key.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
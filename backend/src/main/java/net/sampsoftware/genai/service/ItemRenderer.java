@@ -0,0 +1,293 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.model.Item;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact text form of items for model prompts, shared by every AI operation.
+ * <p>
+ * Each item renders its id, name, type and the non-empty description, creator and year,
+ * followed by its attributes, nested under {@code attributes} so an attribute named like a
+ * field, such as {@code id} or {@code year}, cannot replace it. {@code genai.rendering.attributes}
+ * limits the attributes per item type, e.g. {@code book=author,genre;person=role}; types not
+ * listed keep all of them.
+ * Rendered single items are cached by id, version, {@code updated_at} and format, so an
+ * item is re-rendered only after it changes.
+ */
+@Slf4j
+@Service
+public class ItemRenderer {
+
+    public enum Format {
+        /** One-line JSON object, or array for several items */
+        MINIFIED_JSON,
+        /** {@code key: value} lines with nested attributes flattened to dotted keys */
+        KEY_VALUE,
+        /** Like KEY_VALUE for one item; several items become one header row and a row each */
+        TOON;
+
+        public static Format fromString(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private record Key(Long id, Long version, LocalDateTime updatedAt, Format format) {}
+
+    private final ObjectMapper objectMapper;
+    private final Format defaultFormat;
+    private final int cacheSize;
+    private final Map<String, Set<String>> attributeWhitelists;
+    private final Map<Key, String> cache = new ConcurrentHashMap<>();
+
+    public ItemRenderer(ObjectMapper objectMapper,
+                        @Value("${genai.rendering.format:minified-json}") String defaultFormat,
+                        @Value("${genai.rendering.cache-size:10000}") int cacheSize,
+                        @Value("${genai.rendering.attributes:}") String attributeWhitelists) {
+        this.objectMapper = objectMapper;
+        this.defaultFormat = Format.fromString(defaultFormat);
+        this.cacheSize = cacheSize;
+        this.attributeWhitelists = parseWhitelists(attributeWhitelists);
+    }
+
+    public Format defaultFormat() {
+        return defaultFormat;
+    }
+
+    public String render(Item item) {
+        return render(item, defaultFormat);
+    }
+
+    public String render(Item item, Format format) {
+        if (item.getId() == null) {
+            return renderUncached(item, format);
+        }
+        Key key = new Key(item.getId(), item.getVersion(), item.getUpdatedAt(), format);
+        String cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (cache.size() >= cacheSize) {
+            cache.clear();
+        }
+        String rendered = renderUncached(item, format);
+        cache.put(key, rendered);
+        return rendered;
+    }
+
+    /**
+     * Several items in one block: a JSON array, KEY_VALUE blocks separated by blank lines, or
+     * a TOON table whose columns are the union of the items' fields
+     */
+    public String render(List<Item> items, Format format) {
+        return switch (format) {
+            case MINIFIED_JSON -> {
+                ArrayNode array = objectMapper.createArrayNode();
+                items.forEach(item -> array.add(toJson(item)));
+                yield write(array);
+            }
+            case KEY_VALUE -> {
+                StringBuilder out = new StringBuilder();
+                for (Item item : items) {
+                    if (!out.isEmpty()) {
+                        out.append('\n');
+                    }
+                    out.append(render(item, Format.KEY_VALUE));
+                }
+                yield out.toString();
+            }
+            case TOON -> table(items);
+        };
+    }
+
+    private String renderUncached(Item item, Format format) {
+        return switch (format) {
+            case MINIFIED_JSON -> write(toJson(item));
+            case KEY_VALUE, TOON -> {
+                StringBuilder out = new StringBuilder(256);
+                fields(item).forEach((key, value) -> out.append(key).append(": ").append(value).append('\n'));
+                yield out.toString();
+            }
+        };
+    }
+
+    private String table(List<Item> items) {
+        List<Map<String, String>> rows = new ArrayList<>(items.size());
+        Set<String> columns = new LinkedHashSet<>();
+        for (Item item : items) {
+            Map<String, String> row = fields(item);
+            rows.add(row);
+            columns.addAll(row.keySet());
+        }
+        StringBuilder out = new StringBuilder(64 + 64 * rows.size());
+        out.append("items[").append(rows.size()).append("]{").append(String.join(",", columns)).append("}:\n");
+        for (Map<String, String> row : rows) {
+            out.append("  ");
+            boolean first = true;
+            for (String column : columns) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                String value = row.get(column);
+                if (value != null) {
+                    appendCell(value, out);
+                }
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Cells with separators, quotes, line breaks or edge spaces are quoted
+     */
+    private static void appendCell(String value, StringBuilder out) {
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+                || Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(value.length() - 1));
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                default -> out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Flat field map of the item in rendering order
+     */
+    private Map<String, String> fields(Item item) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("id", String.valueOf(item.getId()));
+        fields.put("name", item.getName());
+        fields.put("type", item.getItemType());
+        putIfPresent(fields, "description", item.getDescription());
+        putIfPresent(fields, "creator", item.getCreator());
+        putIfPresent(fields, "year", item.getCreatedYear());
+        JsonNode attributes = item.getAttributes();
+        if (attributes != null && attributes.isObject()) {
+            Set<String> allowed = attributeWhitelists.get(item.getItemType());
+            for (Iterator<Map.Entry<String, JsonNode>> it = attributes.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                if (allowed == null || allowed.contains(field.getKey())) {
+                    flatten("attributes." + field.getKey(), field.getValue(), fields);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static void flatten(String prefix, JsonNode value, Map<String, String> fields) {
+        if (value == null || value.isNull() || value.isMissingNode()) {
+            return;
+        }
+        if (value.isObject()) {
+            value.fields().forEachRemaining(field -> flatten(prefix + "." + field.getKey(), field.getValue(), fields));
+        } else if (value.isArray()) {
+            List<String> elements = new ArrayList<>(value.size());
+            value.forEach(element -> elements.add(element.isValueNode() ? element.asText() : element.toString()));
+            fields.put(prefix, String.join("; ", elements));
+        } else {
+            fields.put(prefix, value.asText());
+        }
+    }
+
+    private static void putIfPresent(Map<String, String> fields, String key, String value) {
+        if (value != null && !value.isBlank()) {
+            fields.put(key, value);
+        }
+    }
+
+    private ObjectNode toJson(Item item) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("id", item.getId());
+        node.put("name", item.getName());
+        node.put("type", item.getItemType());
+        if (item.getDescription() != null && !item.getDescription().isBlank()) {
+            node.put("description", item.getDescription());
+        }
+        if (item.getCreator() != null && !item.getCreator().isBlank()) {
+            node.put("creator", item.getCreator());
+        }
+        if (item.getCreatedYear() != null && !item.getCreatedYear().isBlank()) {
+            node.put("year", item.getCreatedYear());
+        }
+        JsonNode attributes = item.getAttributes();
+        if (attributes != null && attributes.isObject() && !attributes.isEmpty()) {
+            Set<String> allowed = attributeWhitelists.get(item.getItemType());
+            if (allowed == null) {
+                node.set("attributes", attributes);
+            } else {
+                ObjectNode filtered = node.putObject("attributes");
+                attributes.fields().forEachRemaining(field -> {
+                    if (allowed.contains(field.getKey())) {
+                        filtered.set(field.getKey(), field.getValue());
+                    }
+                });
+            }
+        }
+        return node;
+    }
+
+    private String write(JsonNode node) {
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            log.warn("Error writing item JSON: {}", e.getMessage());
+            return node.toString();
+        }
+    }
+
+    /**
+     * Parses {@code type=attr,attr;type=attr}
+     */
+    private static Map<String, Set<String>> parseWhitelists(String spec) {
+        Map<String, Set<String>> whitelists = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return whitelists;
+        }
+        for (String entry : spec.split(";")) {
+            int equals = entry.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            Set<String> attributes = new LinkedHashSet<>();
+            for (String attribute : entry.substring(equals + 1).split(",")) {
+                if (!attribute.isBlank()) {
+                    attributes.add(attribute.trim());
+                }
+            }
+            whitelists.put(entry.substring(0, equals).trim(), attributes);
+        }
+        return whitelists;
+    }
+}
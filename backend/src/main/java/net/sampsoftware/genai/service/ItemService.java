@@ -16,6 +16,7 @@ import java.util.Optional;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final BulkMutationService bulkMutationService;
 
     @Transactional(readOnly = true)
     public List<Item> getAllItems() {
@@ -61,12 +62,15 @@ public class ItemService {
                 .orElseThrow(() -> new RuntimeException("Item not found with id: " + id));
     }
 
+    /**
+     * Delete an item together with its model calls, summaries and relationships
+     */
     @Transactional
     public void deleteItem(Long id) {
         if (!itemRepository.existsById(id)) {
             throw new RuntimeException("Item not found with id: " + id);
         }
-        itemRepository.deleteById(id);
+        bulkMutationService.deleteItems(List.of(id));
     }
 
     @Transactional(readOnly = true)
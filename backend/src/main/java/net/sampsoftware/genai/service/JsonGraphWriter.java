@@ -0,0 +1,146 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Writes graph elements straight to a {@link JsonGenerator} in the cytoscape elements format
+ * produced by {@link CytoscapeService}, without building intermediate DTOs.
+ */
+public class JsonGraphWriter implements GraphElementSink {
+
+    private final JsonGenerator generator;
+    private final StringBuilder idBuffer = new StringBuilder(64);
+    private char[] chars = new char[64];
+
+    public JsonGraphWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public void beginNodes() throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("elements");
+        generator.writeArrayFieldStart("nodes");
+    }
+
+    @Override
+    public void itemNode(long id, String name, String itemType, DetailWriter details) throws IOException {
+        idBuffer.setLength(0);
+        idBuffer.append("item-").append(id);
+        writeNode(name, itemType, itemType, details);
+    }
+
+    @Override
+    public void summaryNode(long id, String modelName, DetailWriter details) throws IOException {
+        idBuffer.setLength(0);
+        idBuffer.append("summary-").append(id);
+        writeNode(modelName + " Summary", "summary", "summary", details);
+    }
+
+    @Override
+    public void modelNode(String modelKey, String modelName) throws IOException {
+        idBuffer.setLength(0);
+        idBuffer.append("model-").append(modelKey);
+        writeNode(modelName, "model", "model", null);
+    }
+
+    @Override
+    public void beginEdges() throws IOException {
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("edges");
+    }
+
+    @Override
+    public void summaryEdge(long itemId, long summaryId) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("data");
+        idBuffer.setLength(0);
+        idBuffer.append("edge-item-").append(itemId).append("-summary-").append(summaryId);
+        writeBuffered("id");
+        idBuffer.setLength(0);
+        idBuffer.append("item-").append(itemId);
+        writeBuffered("source");
+        idBuffer.setLength(0);
+        idBuffer.append("summary-").append(summaryId);
+        writeBuffered("target");
+        generator.writeStringField("label", "summarizes");
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void modelEdge(long summaryId, String modelKey) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("data");
+        idBuffer.setLength(0);
+        idBuffer.append("edge-model-").append(modelKey).append("-summary-").append(summaryId);
+        writeBuffered("id");
+        idBuffer.setLength(0);
+        idBuffer.append("summary-").append(summaryId);
+        writeBuffered("source");
+        idBuffer.setLength(0);
+        idBuffer.append("model-").append(modelKey);
+        writeBuffered("target");
+        generator.writeStringField("label", "generated-by");
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void relationshipEdge(long id, long sourceItemId, long targetItemId, String relationshipType)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("data");
+        idBuffer.setLength(0);
+        idBuffer.append("rel-").append(id);
+        writeBuffered("id");
+        idBuffer.setLength(0);
+        idBuffer.append("item-").append(sourceItemId);
+        writeBuffered("source");
+        idBuffer.setLength(0);
+        idBuffer.append("item-").append(targetItemId);
+        writeBuffered("target");
+        generator.writeStringField("label", relationshipType);
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.flush();
+    }
+
+    private void writeNode(String label, String type, String classes, DetailWriter details) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("data");
+        writeBuffered("id");
+        generator.writeStringField("label", label);
+        generator.writeStringField("type", type);
+        if (details != null) {
+            generator.writeObjectFieldStart("details");
+            details.write(generator);
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+        generator.writeStringField("classes", classes);
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the id buffer as a string field without materialising a String
+     */
+    private void writeBuffered(String field) throws IOException {
+        int length = idBuffer.length();
+        if (chars.length < length) {
+            chars = new char[length * 2];
+        }
+        idBuffer.getChars(0, length, chars, 0);
+        generator.writeFieldName(field);
+        generator.writeString(chars, 0, length);
+    }
+}
@@ -0,0 +1,37 @@
+package net.sampsoftware.genai.service;
+
+import net.sampsoftware.genai.util.HashingEmbedder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Deterministic CPU-only embeddings by feature hashing; needs no network or model files
+ */
+@Component
+@ConditionalOnProperty(name = "genai.embedding.provider", havingValue = "local", matchIfMissing = true)
+public class LocalEmbeddingProvider implements EmbeddingProvider {
+
+    private final HashingEmbedder embedder;
+
+    public LocalEmbeddingProvider(@Value("${genai.embedding.dimensions:256}") int dimensions) {
+        this.embedder = new HashingEmbedder(dimensions);
+    }
+
+    @Override
+    public String id() {
+        return "local-hash-" + embedder.dimensions();
+    }
+
+    @Override
+    public int dimensions() {
+        return embedder.dimensions();
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        return texts.stream().map(embedder::embed).toList();
+    }
+}
@@ -0,0 +1,159 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.advisor.ModelCallContext;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * Summaries of single inputs of any length.
+ * <p>
+ * Inputs up to {@code genai.long-input.threshold-tokens}, and at most what the model window
+ * leaves after the system prompt, go to the model in one call. Longer inputs are split into
+ * overlapping token-bounded chunks, notes on every chunk are generated in parallel on the
+ * {@code modelCallExecutor} ({@code genai.model-calls.concurrency} workers), and a merge
+ * call writes the summary from the notes; notes that still overflow the window are chunked and
+ * merged again. Chunk and merge calls carry their stage in the {@code request_context} of their
+ * {@code model_calls} rows, attributed to the same item and batch.
+ */
+@Slf4j
+@Service
+public class LongInputSummarizer {
+
+    private static final String CHUNK_INSTRUCTIONS = """
+        You are reading one part of a long input that has been split into consecutive, slightly
+        overlapping parts. Write concise notes on the facts in this part that matter for the
+        summary described below. Do not write the summary itself and do not guess at other parts.
+
+        Summary instructions:
+        """;
+
+    private static final String MERGE_INSTRUCTIONS = """
+
+        The input was too long to read at once. You will receive notes on its consecutive parts,
+        in order; write the summary from them.
+        """;
+
+    private final AIService aiService;
+    private final TokenizerService tokenizerService;
+    private final TaskExecutor modelCallExecutor;
+    private final int thresholdTokens;
+    private final int chunkTokens;
+    private final int overlapTokens;
+    private final int maxChunks;
+
+    public LongInputSummarizer(AIService aiService,
+                               TokenizerService tokenizerService,
+                               @Qualifier("modelCallExecutor") TaskExecutor modelCallExecutor,
+                               @Value("${genai.long-input.threshold-tokens:6000}") int thresholdTokens,
+                               @Value("${genai.long-input.chunk-tokens:3000}") int chunkTokens,
+                               @Value("${genai.long-input.overlap-tokens:200}") int overlapTokens,
+                               @Value("${genai.long-input.max-chunks:16}") int maxChunks) {
+        this.aiService = aiService;
+        this.tokenizerService = tokenizerService;
+        this.modelCallExecutor = modelCallExecutor;
+        this.thresholdTokens = thresholdTokens;
+        this.chunkTokens = chunkTokens;
+        this.overlapTokens = Math.min(overlapTokens, chunkTokens / 4);
+        this.maxChunks = Math.max(2, maxChunks);
+    }
+
+    /**
+     * Response to {@code input} under {@code systemPrompt}, chunked when the input is long;
+     * calls are attributed to the item, whose type may be null when it is not known
+     */
+    public String generate(String systemPrompt, String input, ModelConfiguration modelConfiguration,
+                           Long itemId, String itemType, Long batchId) {
+        int inputTokens = tokenizerService.count(modelConfiguration, input);
+        int budget = tokenizerService.inputBudget(modelConfiguration, systemPrompt);
+        if (inputTokens <= Math.min(thresholdTokens, budget)) {
+            try (var scope = ModelCallContext.open(itemId, itemType, batchId)) {
+                return aiService.generateResponse(systemPrompt, input, modelConfiguration);
+            }
+        }
+        log.debug("Input of {} tokens for item {} exceeds {}; summarizing in chunks",
+                inputTokens, itemId, Math.min(thresholdTokens, budget));
+        return summarizeInChunks(systemPrompt, input, inputTokens, modelConfiguration, itemId, itemType, batchId, 1);
+    }
+
+    /**
+     * Calls {@link #generate} would make for the input, without sending them; the merge input
+     * assumes notes of a quarter of each chunk, within the output limit
+     */
+    public List<BatchEstimator.PlannedCall> plan(String systemPrompt, String input, ModelConfiguration modelConfiguration) {
+        int inputTokens = tokenizerService.count(modelConfiguration, input);
+        int budget = tokenizerService.inputBudget(modelConfiguration, systemPrompt);
+        if (inputTokens <= Math.min(thresholdTokens, budget)) {
+            return List.of(new BatchEstimator.PlannedCall(
+                    tokenizerService.budget(modelConfiguration, systemPrompt, input).inputTokens(), 1));
+        }
+        String chunkPrompt = CHUNK_INSTRUCTIONS + systemPrompt;
+        int size = chunkSize(chunkPrompt, inputTokens, modelConfiguration);
+        List<String> chunks = tokenizerService.split(modelConfiguration, input, size, overlapTokens);
+        int chunkPromptTokens = tokenizerService.budget(modelConfiguration, chunkPrompt, "").inputTokens() + 16;
+        int notes = Math.min(tokenizerService.maxOutputTokens(modelConfiguration), size / 4);
+
+        List<BatchEstimator.PlannedCall> calls = new ArrayList<>(chunks.size() + 1);
+        for (String chunk : chunks) {
+            calls.add(new BatchEstimator.PlannedCall(
+                    chunkPromptTokens + tokenizerService.count(modelConfiguration, chunk), 1));
+        }
+        int mergePromptTokens = tokenizerService.budget(modelConfiguration, systemPrompt + MERGE_INSTRUCTIONS, "").inputTokens();
+        calls.add(new BatchEstimator.PlannedCall(mergePromptTokens + chunks.size() * notes, 1));
+        return calls;
+    }
+
+    /**
+     * Chunks of at least {@code chunk-tokens}, larger when needed to stay within
+     * {@code max-chunks}, and never larger than the window
+     */
+    private int chunkSize(String chunkPrompt, int inputTokens, ModelConfiguration modelConfiguration) {
+        // Room for the "Part i of n" line
+        int chunkBudget = Math.max(1, tokenizerService.inputBudget(modelConfiguration, chunkPrompt) - 16);
+        return Math.min(chunkBudget, Math.max(chunkTokens, -Math.floorDiv(-inputTokens, maxChunks)));
+    }
+
+    private String summarizeInChunks(String systemPrompt, String input, int inputTokens,
+                                     ModelConfiguration modelConfiguration, Long itemId, String itemType, Long batchId,
+                                     int round) {
+        String chunkPrompt = CHUNK_INSTRUCTIONS + systemPrompt;
+        int size = chunkSize(chunkPrompt, inputTokens, modelConfiguration);
+        List<String> chunks = tokenizerService.split(modelConfiguration, input, size, overlapTokens);
+
+        int count = chunks.size();
+        var futures = IntStream.range(0, count)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                    String stage = String.format("long-input round %d chunk %d/%d", round, i + 1, count);
+                    try (var scope = ModelCallContext.open(itemId, itemType, batchId, stage)) {
+                        return aiService.generateResponse(chunkPrompt,
+                                String.format("Part %d of %d:\n%s", i + 1, count, chunks.get(i)), modelConfiguration);
+                    }
+                }, modelCallExecutor))
+                .toList();
+
+        var notes = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            notes.append(String.format("Notes on part %d of %d:\n%s\n\n", i + 1, count, futures.get(i).join().strip()));
+        }
+
+        String mergePrompt = systemPrompt + MERGE_INSTRUCTIONS;
+        int notesTokens = tokenizerService.count(modelConfiguration, notes.toString());
+        if (notesTokens > tokenizerService.inputBudget(modelConfiguration, mergePrompt) && count > 1) {
+            return summarizeInChunks(systemPrompt, notes.toString(), notesTokens, modelConfiguration, itemId, itemType,
+                    batchId, round + 1);
+        }
+        String stage = String.format("long-input round %d merge of %d", round, count);
+        try (var scope = ModelCallContext.open(itemId, itemType, batchId, stage)) {
+            return aiService.generateResponse(mergePrompt,
+                    tokenizerService.fit(modelConfiguration, mergePrompt, notes.toString()), modelConfiguration);
+        }
+    }
+}
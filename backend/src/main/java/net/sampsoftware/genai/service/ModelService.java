@@ -6,7 +6,6 @@ import net.sampsoftware.genai.exception.ModelApiException;
 import net.sampsoftware.genai.exception.ModelNotFoundException;
 import net.sampsoftware.genai.exception.ValidationException;
 import net.sampsoftware.genai.model.ModelConfiguration;
-import net.sampsoftware.genai.repository.ModelConfigurationRepository;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,7 +22,7 @@ import org.springframework.beans.factory.annotation.Value;
 @RequiredArgsConstructor
 @Slf4j
 public class ModelService {
-    private final ModelConfigurationRepository modelConfigurationRepo;
+    private final CallProfileRegistry callProfileRegistry;
     private final RestTemplate rest = new RestTemplate();
 
     @Value("${openai.api-key}")
@@ -37,13 +36,14 @@ public class ModelService {
             throw new ValidationException("Model configuration ID must be a positive number");
         }
         
-        Optional<ModelConfiguration> modelConfigOpt = modelConfigurationRepo.findByIdWithModel(modelConfigurationId);
-        if (modelConfigOpt.isEmpty()) {
+        // Compiled profiles hold the configuration with its model, so repeat lookups skip the query
+        Optional<CallProfileRegistry.CallProfile> profile = callProfileRegistry.find(modelConfigurationId);
+        if (profile.isEmpty()) {
             log.warn("Model configuration not found for ID: {}", modelConfigurationId);
             throw new ModelNotFoundException(modelConfigurationId);
         }
         
-        ModelConfiguration modelConfig = modelConfigOpt.get();
+        ModelConfiguration modelConfig = profile.get().configuration();
         log.debug("Successfully found model configuration: {}", modelConfig.getId());
         return modelConfig;
     }
@@ -0,0 +1,40 @@
+package net.sampsoftware.genai.service;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Embeddings from the configured Spring AI embedding model (OpenAI by default)
+ */
+@Component
+@ConditionalOnProperty(name = "genai.embedding.provider", havingValue = "openai")
+public class OpenAiEmbeddingProvider implements EmbeddingProvider {
+
+    private final EmbeddingModel embeddingModel;
+    private final String model;
+
+    public OpenAiEmbeddingProvider(EmbeddingModel embeddingModel,
+                                   @Value("${spring.ai.openai.embedding.options.model:text-embedding-3-small}") String model) {
+        this.embeddingModel = embeddingModel;
+        this.model = model;
+    }
+
+    @Override
+    public String id() {
+        return "openai-" + model;
+    }
+
+    @Override
+    public int dimensions() {
+        return embeddingModel.dimensions();
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        return embeddingModel.embed(texts);
+    }
+}
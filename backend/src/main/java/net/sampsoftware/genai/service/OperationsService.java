@@ -2,13 +2,19 @@ package net.sampsoftware.genai.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.dto.BatchEstimate;
+import net.sampsoftware.genai.dto.RelationshipRecord;
 import net.sampsoftware.genai.model.*;
 import net.sampsoftware.genai.repository.*;
+import net.sampsoftware.genai.util.PromptTemplate;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @Slf4j
@@ -16,11 +22,45 @@ import java.util.concurrent.CompletableFuture;
 @RequiredArgsConstructor
 public class OperationsService {
 
-    private final RelationshipRepository relationshipRepository;
+    private static final String ITEM_SUMMARY_PROMPT = """
+        You are analyzing an item from a collection. Please provide a concise, informative summary
+        of this item focusing on its key characteristics, significance, and notable features.
+        Keep the summary to 2-3 sentences and make it suitable for comparative analysis with other items.
+        """;
+
+    private static final PromptTemplate RELATIONSHIP_SYSTEM_PROMPT = PromptTemplate.compile("""
+        You are analyzing the relationship between two items.
+        Please assess if there is a meaningful relationship between them from these types: {{relationshipTypes}}
+
+        Respond with JSON in this format:
+        {
+          "hasRelationship": true/false,
+          "relationshipType": "one of the provided types or null",
+          "confidence": 0.0-1.0,
+          "explanation": "brief explanation of the relationship or why none exists"
+        }
+        """);
+
+    private static final PromptTemplate RELATIONSHIP_PAIR_PROMPT = PromptTemplate.compile("""
+        Item 1: {{item1}}
+        Item 2: {{item2}}
+
+        Analyze the relationship between these items.
+        """);
+
     private final ItemRepository itemRepository;
     private final SummaryService summaryService;
     private final ModelService modelService;
     private final AIService aiService;
+    private final CollectionMembershipIndex collectionMembershipIndex;
+    private final BulkRelationshipService bulkRelationshipService;
+    private final EntityResolutionService entityResolutionService;
+    private final ItemRenderer itemRenderer;
+    private final CollectionSummaryService collectionSummaryService;
+    private final LongInputSummarizer longInputSummarizer;
+    private final TokenizerService tokenizerService;
+    private final BatchEstimator batchEstimator;
+    private final TaskExecutor modelCallExecutor;
 
     public record SummarizeEachResult(
             int successCount,
@@ -31,7 +71,10 @@ public class OperationsService {
     public record SummarizeGroupResult(
             Long summaryId,
             Long collectionId,
-            int entityCount
+            int entityCount,
+            int levels,
+            int nodesGenerated,
+            int nodesReused
     ) {}
 
     public record GenerateRelationshipsResult(
@@ -42,34 +85,30 @@ public class OperationsService {
     ) {}
 
     @Transactional
-    public SummarizeEachResult summarizeEachInCollection(Long modelConfigurationId, Long collectionId) {
+    public SummarizeEachResult summarizeEachInCollection(Long modelConfigurationId, Long collectionId,
+                                                         boolean canonicalOnly) {
         log.debug("Summarizing each item in collection {}", collectionId);
 
-        // Get collection items using the unified Item model
-        var collectionItems = relationshipRepository.findCollectionMembers(collectionId);
+        // Get collection members from the membership index
+        var memberIds = members(collectionId, canonicalOnly);
+        var items = loadItems(memberIds);
 
         var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
         var batchId = System.nanoTime();
         var summaryIds = new ArrayList<Long>();
-
-        String systemPrompt = """
-            You are analyzing an item from a collection. Please provide a concise, informative summary
-            of this item focusing on its key characteristics, significance, and notable features.
-            Keep the summary to 2-3 sentences and make it suitable for comparative analysis with other items.
-            """;
+        String systemPrompt = ITEM_SUMMARY_PROMPT;
 
         var futures = new ArrayList<CompletableFuture<Boolean>>();
 
-        for (var relationship : collectionItems) {
-            // Each relationship points to an item in the collection
-            Long itemId = relationship.getSourceItemId();
-
+        for (Long itemId : memberIds) {
             try {
-                var itemInfo = buildItemInfo(itemId);
+                var itemInfo = buildItemInfo(items, itemId);
+                var itemType = items.containsKey(itemId) ? items.get(itemId).getItemType() : null;
 
                 var future = CompletableFuture.supplyAsync(() -> {
                     try {
-                        String summaryText = aiService.generateResponse(systemPrompt, itemInfo, modelConfiguration);
+                        String summaryText = longInputSummarizer.generate(systemPrompt, itemInfo, modelConfiguration,
+                                itemId, itemType, batchId);
 
                         var summary = Summary.builder()
                                 .modelConfiguration(modelConfiguration)
@@ -87,7 +126,7 @@ public class OperationsService {
                         log.error("Failed to create summary for item {}: {}", itemId, e.getMessage());
                         return false;
                     }
-                });
+                }, modelCallExecutor);
 
                 futures.add(future);
             } catch (Exception e) {
@@ -107,130 +146,89 @@ public class OperationsService {
         return new SummarizeEachResult(successCount, failureCount, summaryIds);
     }
 
-    @Transactional
+    /**
+     * Summary of the whole collection, reduced from its members' summaries by
+     * {@link CollectionSummaryService}
+     */
     public SummarizeGroupResult summarizeCollection(Long modelConfigurationId, Long collectionId) {
         log.debug("Summarizing collection {}", collectionId);
 
-        // Get collection definition and items
-        var collectionDefinitions = relationshipRepository.findCollectionDefinition(collectionId);
-        if (collectionDefinitions.isEmpty()) {
-            throw new RuntimeException("Collection definition not found for collection " + collectionId);
-        }
-        var collectionDefinition = collectionDefinitions.getFirst();
-
-        var collectionItems = relationshipRepository.findCollectionMembers(collectionId);
-
-        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
-
-        // Build comprehensive collection context
-        var collectionContext = buildCollectionContext(collectionDefinition, collectionItems);
-
-        String systemPrompt = """
-            You are analyzing a collection of items. Please provide a comprehensive summary of this collection,
-            including its theme, the types of items it contains, common patterns or relationships you observe,
-            and the overall significance or purpose of grouping these items together.
-            Focus on synthesis and high-level insights rather than listing individual items.
-            """;
-
-        String summaryText = aiService.generateResponse(systemPrompt, collectionContext, modelConfiguration);
-
-        var summary = Summary.builder()
-                .modelConfiguration(modelConfiguration)
-                .itemId(collectionId)  // Collection itself is an item
-                .content(summaryText)
-                .build();
+        var result = collectionSummaryService.summarize(modelConfigurationId, collectionId);
 
-        var savedSummary = summaryService.save(summary);
-
-        // Create relationship between summary and collection
-        var summaryRelationship = new Relationship();
-        summaryRelationship.setName("Summary of Collection");
-        summaryRelationship.setRelationshipType("summarizes");
-        summaryRelationship.setSourceItemId(savedSummary.getId());  // Summary as source
-        summaryRelationship.setTargetItemId(collectionId);          // Collection as target
-        relationshipRepository.save(summaryRelationship);
-
-        return new SummarizeGroupResult(savedSummary.getId(), collectionId, collectionItems.size());
+        return new SummarizeGroupResult(result.summaryId(), collectionId, result.itemCount(),
+                result.levels(), result.nodesGenerated(), result.nodesReused());
     }
 
     @Transactional
     public GenerateRelationshipsResult generateRelationships(
             Long modelConfigurationId,
             Long collectionId,
-            List<String> relationshipTypes
+            List<String> relationshipTypes,
+            boolean canonicalOnly
     ) {
         log.debug("Generating relationships for collection {} with types {}", collectionId, relationshipTypes);
 
-        var collectionItems = relationshipRepository.findCollectionMembers(collectionId);
+        var memberIds = members(collectionId, canonicalOnly);
+        var items = loadItems(memberIds);
 
         var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
         var relationshipIds = new ArrayList<Long>();
         var summaryIds = new ArrayList<Long>();
+        var discovered = new ArrayList<RelationshipRecord>();
+        var analyses = new HashMap<BulkRelationshipService.EdgeKey, String>();
         int pairsProcessed = 0;
 
-        String systemPrompt = String.format("""
-            You are analyzing the relationship between two items.
-            Please assess if there is a meaningful relationship between them from these types: %s
-            
-            Respond with JSON in this format:
-            {
-              "hasRelationship": true/false,
-              "relationshipType": "one of the provided types or null",
-              "confidence": 0.0-1.0,
-              "explanation": "brief explanation of the relationship or why none exists"
-            }
-            """, String.join(", ", relationshipTypes));
+        String systemPrompt = RELATIONSHIP_SYSTEM_PROMPT.render(
+                Map.of("relationshipTypes", String.join(", ", relationshipTypes)));
 
         // Generate relationships for all pairs of items
-        for (int i = 0; i < collectionItems.size(); i++) {
-            for (int j = i + 1; j < collectionItems.size(); j++) {
-                var item1 = collectionItems.get(i);
-                var item2 = collectionItems.get(j);
+        for (int i = 0; i < memberIds.size(); i++) {
+            for (int j = i + 1; j < memberIds.size(); j++) {
+                Long item1Id = memberIds.get(i);
+                Long item2Id = memberIds.get(j);
 
                 try {
-                    var item1Info = buildItemInfo(item1.getSourceItemId());
-                    var item2Info = buildItemInfo(item2.getSourceItemId());
+                    var item1Info = buildItemInfo(items, item1Id);
+                    var item2Info = buildItemInfo(items, item2Id);
 
-                    var prompt = String.format("""
-                        Item 1: %s
-                        Item 2: %s
-                        
-                        Analyze the relationship between these items.
-                        """, item1Info, item2Info);
+                    var prompt = RELATIONSHIP_PAIR_PROMPT.render(Map.of("item1", item1Info, "item2", item2Info));
 
                     var response = aiService.generateResponse(systemPrompt, prompt, modelConfiguration);
 
-                    // Parse the JSON response and create relationships if found
+                    // Parse the JSON response and collect relationships if found
                     if (response.contains("\"hasRelationship\": true")) {
-                        var relationship = new Relationship();
-                        relationship.setName(String.format("AI-Generated relationship between items %d and %d",
-                                item1.getSourceItemId(), item2.getSourceItemId()));
-                        relationship.setRelationshipType(extractRelationshipType(response, relationshipTypes));
-                        relationship.setSourceItemId(item1.getSourceItemId());
-                        relationship.setTargetItemId(item2.getSourceItemId());
-
-                        var savedRelationship = relationshipRepository.save(relationship);
-                        relationshipIds.add(savedRelationship.getId());
-
-                        // Create a summary of this relationship analysis
-                        var relationshipSummary = Summary.builder()
-                                .modelConfiguration(modelConfiguration)
-                                .itemId(savedRelationship.getId())  // Relationship as an item
-                                .content(response)
-                                .build();
-
-                        var savedSummary = summaryService.save(relationshipSummary);
-                        summaryIds.add(savedSummary.getId());
+                        var relationshipType = extractRelationshipType(response, relationshipTypes);
+                        discovered.add(new RelationshipRecord(null,
+                                String.format("AI-Generated relationship between items %d and %d", item1Id, item2Id),
+                                relationshipType, item1Id, item2Id, null, null, null));
+                        analyses.put(bulkRelationshipService.key(item1Id, item2Id, relationshipType), response);
                     }
 
                     pairsProcessed++;
                 } catch (Exception e) {
                     log.error("Error processing relationship between items {} and {}: {}",
-                            item1.getSourceItemId(), item2.getSourceItemId(), e.getMessage());
+                            item1Id, item2Id, e.getMessage());
                 }
             }
         }
 
+        // Write all discovered relationships at once; re-runs find the existing edges
+        var written = bulkRelationshipService.write(discovered, BulkRelationshipService.ConflictMode.MERGE_ATTRIBUTES);
+        for (var relationship : written.relationships()) {
+            relationshipIds.add(relationship.id());
+
+            // Create a summary of this relationship analysis
+            var relationshipSummary = Summary.builder()
+                    .modelConfiguration(modelConfiguration)
+                    .itemId(relationship.id())  // Relationship as an item
+                    .content(analyses.get(bulkRelationshipService.key(relationship.sourceItemId(),
+                            relationship.targetItemId(), relationship.relationshipType())))
+                    .build();
+
+            var savedSummary = summaryService.save(relationshipSummary);
+            summaryIds.add(savedSummary.getId());
+        }
+
         return new GenerateRelationshipsResult(
                 relationshipIds.size(),
                 relationshipIds,
@@ -239,65 +237,87 @@ public class OperationsService {
         );
     }
 
-    // === HELPER METHODS ===
+    // === DRY RUNS ===
 
     /**
-     * Build item information for AI processing
+     * Estimate of {@link #summarizeEachInCollection} without calling the model
      */
-    private String buildItemInfo(Long itemId) {
-        try {
-            var itemOpt = itemRepository.findById(itemId);
-            if (itemOpt.isEmpty()) {
-                return String.format("Item ID: %d (not found)", itemId);
-            }
-
-            var item = itemOpt.get();
-            StringBuilder info = new StringBuilder();
-
-            info.append(String.format("Item ID: %d\n", item.getId()));
-            info.append(String.format("Name: %s\n", item.getName()));
-            info.append(String.format("Type: %s\n", item.getItemType()));
-
-            // Check if attributes exist and are not null/empty
-            if (item.getAttributes() != null && !item.getAttributes().isNull() && !item.getAttributes().isEmpty()) {
-                info.append("Attributes:\n");
-                var attributes = item.getAttributes();
-                attributes.fieldNames().forEachRemaining(field -> {
-                    var value = attributes.get(field);
-                    info.append(String.format("- %s: %s\n", field, value.asText()));
-                });
-            }
+    public BatchEstimate estimateSummarizeEach(Long modelConfigurationId, Long collectionId, boolean canonicalOnly) {
+        var memberIds = members(collectionId, canonicalOnly);
+        var items = loadItems(memberIds);
+        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
 
-            return info.toString();
-        } catch (Exception e) {
-            log.warn("Error building item info for item {}: {}", itemId, e.getMessage());
-            return String.format("Item ID: %d (error retrieving details)", itemId);
+        var calls = new ArrayList<BatchEstimator.PlannedCall>();
+        for (Long itemId : memberIds) {
+            calls.addAll(longInputSummarizer.plan(ITEM_SUMMARY_PROMPT, buildItemInfo(items, itemId), modelConfiguration));
         }
+        return batchEstimator.estimate(modelConfiguration, calls);
     }
 
     /**
-     * Build collection context for AI processing
+     * Estimate of {@link #summarizeCollection} without calling the model
      */
-    private String buildCollectionContext(Relationship collectionDefinition, List<Relationship> items) {
-        var context = new StringBuilder();
-        context.append(String.format("Collection: %s\n", collectionDefinition.getName()));
-
-        if (collectionDefinition.hasAttributes()) {
-            var attrs = collectionDefinition.getAttributes();
-            if (attrs.has("description")) {
-                context.append(String.format("Description: %s\n", attrs.get("description").asText()));
-            }
-            if (attrs.has("curator")) {
-                context.append(String.format("Curator: %s\n", attrs.get("curator").asText()));
+    public BatchEstimate estimateSummarizeCollection(Long modelConfigurationId, Long collectionId) {
+        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
+        return batchEstimator.estimate(modelConfiguration, collectionSummaryService.plan(modelConfigurationId, collectionId));
+    }
+
+    /**
+     * Estimate of {@link #generateRelationships} without calling the model: one call per pair,
+     * counted from each item's rendering once
+     */
+    public BatchEstimate estimateGenerateRelationships(Long modelConfigurationId, Long collectionId,
+                                                       List<String> relationshipTypes, boolean canonicalOnly) {
+        var memberIds = members(collectionId, canonicalOnly);
+        var items = loadItems(memberIds);
+        var modelConfiguration = modelService.findConfigurationById(modelConfigurationId);
+
+        String systemPrompt = RELATIONSHIP_SYSTEM_PROMPT.render(
+                Map.of("relationshipTypes", String.join(", ", relationshipTypes)));
+        int overhead = tokenizerService.budget(modelConfiguration, systemPrompt,
+                RELATIONSHIP_PAIR_PROMPT.render(Map.of("item1", "", "item2", ""))).inputTokens();
+        int[] itemTokens = memberIds.stream()
+                .mapToInt(itemId -> tokenizerService.count(modelConfiguration, buildItemInfo(items, itemId)))
+                .toArray();
+
+        var calls = new ArrayList<BatchEstimator.PlannedCall>();
+        for (int i = 0; i < itemTokens.length; i++) {
+            for (int j = i + 1; j < itemTokens.length; j++) {
+                calls.add(new BatchEstimator.PlannedCall(overhead + itemTokens[i] + itemTokens[j], 1));
             }
         }
+        // Pairs are assessed one after another
+        return batchEstimator.estimate(modelConfiguration, calls, 1);
+    }
+
+    // === HELPER METHODS ===
+
+    /**
+     * Members loaded once per operation, so pairwise work renders from memory
+     */
+    private Map<Long, Item> loadItems(List<Long> itemIds) {
+        var items = new HashMap<Long, Item>();
+        itemRepository.findAllById(itemIds).forEach(item -> items.put(item.getId(), item));
+        return items;
+    }
 
-        context.append(String.format("Items (%d):\n", items.size()));
-        for (var item : items) {
-            context.append(String.format("- Item ID: %d\n", item.getSourceItemId()));
+    /**
+     * Build item information for AI processing
+     */
+    private String buildItemInfo(Map<Long, Item> items, Long itemId) {
+        var item = items.get(itemId);
+        if (item == null) {
+            return String.format("Item ID: %d (not found)", itemId);
         }
+        return itemRenderer.render(item);
+    }
 
-        return context.toString();
+    /**
+     * Collection members, optionally without items resolved as duplicates of another item
+     */
+    private List<Long> members(Long collectionId, boolean canonicalOnly) {
+        var memberIds = collectionMembershipIndex.memberIds(collectionId);
+        return canonicalOnly ? entityResolutionService.canonicalIds(memberIds) : memberIds;
     }
 
     /**
@@ -0,0 +1,263 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.advisor.ModelCallContext;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.repository.ModelCallRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learned completion lengths per model configuration, item type and system prompt, for
+ * output limits close to what calls actually produce.
+ * <p>
+ * Each configuration's history is loaded once from the {@code completionTokens} of its most
+ * recent {@code model_calls} rows, joined to the item type of the call, and every later call
+ * adds its own under the item type carried by its {@link ModelCallContext}. The prompt is
+ * identified by the first 16 hex digits of the MD5 of the system message, as {@code md5()}
+ * computes it in the database. The suggested limit is the
+ * {@code genai.output-length.percentile} of the most specific bucket with at least
+ * {@code min-samples} samples (configuration, item type and prompt; then configuration and
+ * item type; then configuration), times {@code 1 + margin} plus {@code padding}. With
+ * {@code mode: apply}, {@link AIService} sends that limit instead of the configured one and
+ * retries responses cut off by it with a higher limit; {@code suggest} only reports it.
+ */
+@Slf4j
+@Service
+public class OutputLengthModel {
+
+    public enum Mode {
+        OFF, SUGGEST, APPLY;
+
+        public static Mode fromString(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Sample bucket; a null item type or prompt key matches any, an empty one calls without
+     */
+    public record Key(Long configurationId, String itemType, String promptKey) {}
+
+    public record Suggestion(
+            String itemType,
+            String promptKey,
+            int samples,
+            int p50,
+            int percentile,
+            int max,
+            Integer suggestedMaxTokens,
+            int configuredMaxTokens
+    ) {}
+
+    private final ModelCallRepository modelCallRepository;
+    private final TokenizerService tokenizerService;
+    private final Mode mode;
+    private final double percentile;
+    private final double margin;
+    private final int padding;
+    private final int minSamples;
+    private final int historySize;
+    private final int maxBuckets;
+    private final Map<Key, Samples> buckets = new ConcurrentHashMap<>();
+    private final Set<Long> loaded = ConcurrentHashMap.newKeySet();
+
+    public OutputLengthModel(ModelCallRepository modelCallRepository,
+                             TokenizerService tokenizerService,
+                             @Value("${genai.output-length.mode:suggest}") String mode,
+                             @Value("${genai.output-length.percentile:0.99}") double percentile,
+                             @Value("${genai.output-length.margin:0.2}") double margin,
+                             @Value("${genai.output-length.padding:32}") int padding,
+                             @Value("${genai.output-length.min-samples:50}") int minSamples,
+                             @Value("${genai.output-length.history-size:1000}") int historySize,
+                             @Value("${genai.output-length.max-buckets:5000}") int maxBuckets) {
+        this.modelCallRepository = modelCallRepository;
+        this.tokenizerService = tokenizerService;
+        this.mode = Mode.fromString(mode);
+        this.percentile = Math.min(1, Math.max(0, percentile));
+        this.margin = margin;
+        this.padding = padding;
+        this.minSamples = Math.max(1, minSamples);
+        this.historySize = Math.max(1, historySize);
+        this.maxBuckets = maxBuckets;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * Bucket of a call with {@code systemPrompt}, attributed to the item of the current
+     * {@link ModelCallContext} if any; null when the model is off or the configuration unsaved
+     */
+    public Key key(ModelConfiguration modelConfig, String systemPrompt) {
+        if (mode == Mode.OFF || modelConfig == null || modelConfig.getId() == null) {
+            return null;
+        }
+        load(modelConfig.getId());
+        ModelCallContext.Attribution attribution = ModelCallContext.current();
+        String itemType = attribution == null || attribution.itemType() == null ? "" : attribution.itemType();
+        return new Key(modelConfig.getId(), itemType, promptKey(systemPrompt));
+    }
+
+    /**
+     * Output limit to send for the call, or null to keep the configured one
+     */
+    public Integer limit(Key key, ModelConfiguration modelConfig) {
+        if (mode != Mode.APPLY || key == null) {
+            return null;
+        }
+        for (Key candidate : List.of(key, new Key(key.configurationId(), key.itemType(), null),
+                new Key(key.configurationId(), null, null))) {
+            Samples samples = buckets.get(candidate);
+            if (samples != null && samples.size() >= minSamples) {
+                int suggested = suggest(samples.sorted(), percentile, margin, padding);
+                return suggested < tokenizerService.maxOutputTokens(modelConfig) ? suggested : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the completion length of a call that was not cut off
+     */
+    public void record(Key key, int completionTokens) {
+        if (key == null || completionTokens < 0) {
+            return;
+        }
+        add(key, completionTokens);
+    }
+
+    /**
+     * Learned lengths of every bucket of the configuration, largest first
+     */
+    public List<Suggestion> suggestions(ModelConfiguration modelConfig) {
+        load(modelConfig.getId());
+        int configured = tokenizerService.maxOutputTokens(modelConfig);
+        List<Suggestion> suggestions = new ArrayList<>();
+        buckets.forEach((key, samples) -> {
+            if (!key.configurationId().equals(modelConfig.getId())) {
+                return;
+            }
+            int[] sorted = samples.sorted();
+            if (sorted.length == 0) {
+                return;
+            }
+            suggestions.add(new Suggestion(key.itemType(), key.promptKey(), sorted.length,
+                    at(sorted, 0.5), at(sorted, percentile), sorted[sorted.length - 1],
+                    sorted.length >= minSamples
+                            ? Math.min(configured, suggest(sorted, percentile, margin, padding)) : null,
+                    configured));
+        });
+        suggestions.sort(Comparator.comparingInt(Suggestion::samples).reversed());
+        return suggestions;
+    }
+
+    /**
+     * First 16 hex digits of the MD5 of the prompt, empty without one
+     */
+    static String promptKey(String systemPrompt) {
+        if (systemPrompt == null) {
+            return "";
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(systemPrompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Limit for sorted samples: their percentile plus the relative margin and fixed padding
+     */
+    static int suggest(int[] sorted, double percentile, double margin, int padding) {
+        return (int) Math.ceil(at(sorted, percentile) * (1 + margin)) + padding;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted samples
+     */
+    static int at(int[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+
+    private void load(Long configurationId) {
+        if (!loaded.add(configurationId)) {
+            return;
+        }
+        try {
+            List<Object[]> rows = modelCallRepository.getRecentCompletionTokens(configurationId, historySize);
+            for (Object[] row : rows) {
+                add(new Key(configurationId, (String) row[0], (String) row[1]), ((Number) row[2]).intValue());
+            }
+            log.debug("Loaded {} completion lengths of model configuration {}", rows.size(), configurationId);
+        } catch (RuntimeException e) {
+            log.warn("Could not load completion lengths of model configuration {}: {}", configurationId, e.getMessage());
+        }
+    }
+
+    private void add(Key key, int completionTokens) {
+        for (Key bucket : List.of(key, new Key(key.configurationId(), key.itemType(), null),
+                new Key(key.configurationId(), null, null))) {
+            Samples samples = buckets.get(bucket);
+            if (samples == null) {
+                // Per-prompt buckets stop growing at the cap; the coarser ones still learn
+                if (buckets.size() >= maxBuckets && bucket.promptKey() != null) {
+                    continue;
+                }
+                samples = buckets.computeIfAbsent(bucket, k -> new Samples(historySize));
+            }
+            samples.add(completionTokens);
+        }
+    }
+
+    /**
+     * The latest {@code capacity} lengths of a bucket
+     */
+    static final class Samples {
+        private final int capacity;
+        private int[] values;
+        private int size;
+        private int next;
+
+        Samples(int capacity) {
+            this.capacity = capacity;
+            this.values = new int[Math.min(16, capacity)];
+        }
+
+        synchronized void add(int value) {
+            if (size < capacity && size == values.length) {
+                values = Arrays.copyOf(values, Math.min(capacity, values.length * 2));
+                next = size;
+            }
+            values[next] = value;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int[] sorted() {
+            int[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+}
@@ -23,6 +23,7 @@ public class PromptService {
 
     private final PromptRepository promptRepository;
     private final PromptTypeRepository promptTypeRepository;
+    private final PromptTemplateService promptTemplateService;
 
     /**
      * Get all active prompts (excludes soft-deleted ones)
@@ -120,6 +121,7 @@ public class PromptService {
         // Soft delete the existing prompt
         existingPrompt.markDeleted();
         promptRepository.save(existingPrompt);
+        promptTemplateService.evict(id);
         log.debug("Marked prompt {} as deleted", id);
 
         // Create new prompt with updated content
@@ -152,6 +154,7 @@ public class PromptService {
 
         prompt.markDeleted();
         promptRepository.save(prompt);
+        promptTemplateService.evict(id);
         log.info("Soft deleted prompt with id: {}", id);
     }
 
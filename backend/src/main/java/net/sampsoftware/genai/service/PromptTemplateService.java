@@ -0,0 +1,161 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.ResourceNotFoundException;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.repository.PromptRepository;
+import net.sampsoftware.genai.util.PromptTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of compiled prompt templates and the bindings they render against.
+ * <p>
+ * Stored prompts are compiled on first use and cached by id. Prompt updates create a new row
+ * and soft-delete the old one, so an id always names one version of the text;
+ * {@link PromptService} evicts ids it updates or deletes. Ad-hoc prompt text from requests is
+ * cached by its content up to {@code genai.prompts.max-cached-texts} entries.
+ * <p>
+ * Item bindings: {@code {{item}}} (the whole item as {@link ItemRenderer} renders it),
+ * {@code {{item.id}}}, {@code {{item.name}}}, {@code {{item.type}}},
+ * {@code {{item.description}}}, {@code {{item.creator}}}, {@code {{item.year}}},
+ * {@code {{item.source}}}, {@code {{attributes}}} (one "- name: value" line per attribute) and
+ * {@code {{attributes.some.path}}}. Other placeholders are looked up in the variables passed
+ * to {@link #renderItem}, and unresolved ones stay verbatim.
+ */
+@Slf4j
+@Service
+public class PromptTemplateService {
+
+    private final PromptRepository promptRepository;
+    private final ItemRenderer itemRenderer;
+    private final int maxCachedTexts;
+    private final Map<Integer, PromptTemplate> byPromptId = new ConcurrentHashMap<>();
+    private final Map<String, PromptTemplate> byText = new ConcurrentHashMap<>();
+
+    public PromptTemplateService(PromptRepository promptRepository,
+                                 ItemRenderer itemRenderer,
+                                 @Value("${genai.prompts.max-cached-texts:256}") int maxCachedTexts) {
+        this.promptRepository = promptRepository;
+        this.itemRenderer = itemRenderer;
+        this.maxCachedTexts = maxCachedTexts;
+    }
+
+    /**
+     * The compiled template of a stored prompt, including soft-deleted ones
+     */
+    public PromptTemplate template(Integer promptId) {
+        return byPromptId.computeIfAbsent(promptId, id -> promptRepository.findById(id)
+                .map(prompt -> PromptTemplate.compile(prompt.getText()))
+                .orElseThrow(() -> new ResourceNotFoundException("Prompt not found with id: " + id)));
+    }
+
+    /**
+     * The compiled template of ad-hoc prompt text
+     */
+    public PromptTemplate compile(String text) {
+        PromptTemplate cached = byText.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        if (byText.size() >= maxCachedTexts) {
+            byText.clear();
+        }
+        PromptTemplate template = PromptTemplate.compile(text);
+        byText.put(text, template);
+        return template;
+    }
+
+    public void evict(Integer promptId) {
+        if (byPromptId.remove(promptId) != null) {
+            log.debug("Evicted compiled template of prompt {}", promptId);
+        }
+    }
+
+    public String renderItem(PromptTemplate template, Item item, Map<String, ?> variables) {
+        if (template.isStatic()) {
+            return template.text();
+        }
+        return template.render((placeholder, out) -> switch (placeholder.root()) {
+            case "item" -> appendItem(item, placeholder, out);
+            case "attributes" -> appendAttributes(item.getAttributes(), placeholder.path(), 1, out);
+            default -> appendVariable(variables, placeholder, out);
+        });
+    }
+
+    private boolean appendItem(Item item, PromptTemplate.Placeholder placeholder, StringBuilder out) {
+        String field = placeholder.child();
+        if (field == null) {
+            out.append(itemRenderer.render(item));
+            return true;
+        }
+        if (field.equals("attributes")) {
+            return appendAttributes(item.getAttributes(), placeholder.path(), 2, out);
+        }
+        Object value;
+        switch (field) {
+            case "id" -> value = item.getId();
+            case "name" -> value = item.getName();
+            case "type" -> value = item.getItemType();
+            case "description" -> value = item.getDescription();
+            case "creator" -> value = item.getCreator();
+            case "year" -> value = item.getCreatedYear();
+            case "source" -> value = item.getSource();
+            default -> {
+                return false;
+            }
+        }
+        if (value != null) {
+            out.append(value);
+        }
+        return true;
+    }
+
+    /**
+     * The attribute at {@code path[from..]}, or every top-level attribute as a line each when
+     * the path ends at the attributes themselves
+     */
+    private static boolean appendAttributes(JsonNode attributes, String[] path, int from, StringBuilder out) {
+        JsonNode node = attributes;
+        for (int i = from; i < path.length && node != null; i++) {
+            node = node.get(path[i]);
+        }
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return true;
+        }
+        if (from < path.length) {
+            appendValue(node, out);
+            return true;
+        }
+        if (node.isEmpty()) {
+            out.append("(none)\n");
+            return true;
+        }
+        for (Iterator<Map.Entry<String, JsonNode>> fields = node.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            out.append("- ").append(field.getKey()).append(": ");
+            appendValue(field.getValue(), out);
+            out.append('\n');
+        }
+        return true;
+    }
+
+    private static void appendValue(JsonNode value, StringBuilder out) {
+        out.append(value.isValueNode() ? value.asText() : value.toString());
+    }
+
+    private static boolean appendVariable(Map<String, ?> variables, PromptTemplate.Placeholder placeholder,
+                                          StringBuilder out) {
+        Object value = variables.get(placeholder.expression());
+        if (value == null) {
+            return false;
+        }
+        out.append(value);
+        return true;
+    }
+}
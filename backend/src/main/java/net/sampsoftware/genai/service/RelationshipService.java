@@ -14,11 +14,26 @@ import java.util.List;
 @RequiredArgsConstructor
 public class RelationshipService {
     private final RelationshipRepository relationshipRepository;
+    private final BulkRelationshipService bulkRelationshipService;
+    private final BulkMutationService bulkMutationService;
 
+    /**
+     * Create a relationship, or return the existing one with the same endpoints and type
+     */
     @Transactional
     public Relationship createRelationship(Relationship relationship) {
         log.debug("Creating relationship: {} -> {}",
                 relationship.getSourceItemId(), relationship.getTargetItemId());
+        var key = bulkRelationshipService.key(relationship.getSourceItemId(),
+                relationship.getTargetItemId(), relationship.getRelationshipType());
+        var existing = relationshipRepository.findBySourceItemIdAndTargetItemIdAndRelationshipType(
+                key.sourceItemId(), key.targetItemId(), key.relationshipType());
+        if (existing.isPresent()) {
+            log.debug("Relationship already exists with id {}", existing.get().getId());
+            return existing.get();
+        }
+        relationship.setSourceItemId(key.sourceItemId());
+        relationship.setTargetItemId(key.targetItemId());
         return relationshipRepository.save(relationship);
     }
 
@@ -70,7 +85,6 @@ public class RelationshipService {
     @Transactional
     public void deleteRelationshipsForItem(Long itemId) {
         log.debug("Deleting all relationships for item: {}", itemId);
-        List<Relationship> relationships = getRelationshipsForItem(itemId);
-        relationshipRepository.deleteAll(relationships);
+        bulkMutationService.deleteRelationshipsForItems(List.of(itemId));
     }
 }
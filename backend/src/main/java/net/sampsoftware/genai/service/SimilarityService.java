@@ -0,0 +1,379 @@
+package net.sampsoftware.genai.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.EmbeddingsChangedEvent;
+import net.sampsoftware.genai.exception.ResourceNotFoundException;
+import net.sampsoftware.genai.service.EmbeddingService.OwnerType;
+import net.sampsoftware.genai.service.EmbeddingService.StoredEmbedding;
+import net.sampsoftware.genai.service.EmbeddingService.Watermark;
+import net.sampsoftware.genai.util.HnswIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * "More like this" over stored embeddings, served from one in-memory {@link HnswIndex} per
+ * owner type. Node labels are item types (a summary is labelled with its item's type), so
+ * results can be restricted to types without post-filtering.
+ * <p>
+ * Indexes are built lazily from the {@code embeddings} table and kept current from
+ * {@link EmbeddingsChangedEvent}s. They are saved under {@code genai.similarity.index-dir} on
+ * shutdown; at startup the saved file is loaded and caught up with vectors written since,
+ * falling back to a rebuild when the counts disagree.
+ */
+@Slf4j
+@Service
+public class SimilarityService {
+
+    private static final int LOAD_BATCH = 1000;
+
+    private final EmbeddingService embeddingService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${genai.similarity.index-dir:data/hnsw}")
+    private Path indexDir;
+
+    @Value("${genai.similarity.m:16}")
+    private int m;
+
+    @Value("${genai.similarity.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${genai.similarity.ef-search:100}")
+    private int efSearch;
+
+    @Value("${genai.similarity.max-k:200}")
+    private int maxK;
+
+    @Value("${genai.similarity.rebuild-tombstone-ratio:0.3}")
+    private double rebuildTombstoneRatio;
+
+    private final Map<OwnerType, LoadedIndex> indexes = new ConcurrentHashMap<>();
+
+    public SimilarityService(EmbeddingService embeddingService, JdbcTemplate jdbcTemplate) {
+        this.embeddingService = embeddingService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record SimilarItem(Long id, String name, String itemType, float score) {}
+
+    public record SimilarSummary(Long id, Long itemId, String itemName, float score) {}
+
+    /**
+     * An index with the dictionary mapping item types to node labels
+     */
+    private static final class LoadedIndex {
+        private final HnswIndex index;
+        private final Map<String, Integer> labels = new ConcurrentHashMap<>();
+        private volatile boolean dirty;
+
+        LoadedIndex(HnswIndex index) {
+            this.index = index;
+        }
+
+        synchronized int label(String itemType) {
+            return labels.computeIfAbsent(itemType == null ? "" : itemType, type -> labels.size());
+        }
+
+        IntPredicate accepting(Collection<String> itemTypes) {
+            if (itemTypes == null || itemTypes.isEmpty()) {
+                return null;
+            }
+            Set<Integer> accepted = itemTypes.stream()
+                    .map(labels::get)
+                    .filter(label -> label != null)
+                    .collect(Collectors.toSet());
+            return accepted::contains;
+        }
+    }
+
+    public List<SimilarItem> similarItems(Long itemId, int k, Collection<String> itemTypes) {
+        return describeItems(similarTo(OwnerType.ITEM, itemId, k, itemTypes));
+    }
+
+    public List<SimilarItem> searchItems(String text, int k, Collection<String> itemTypes) {
+        return describeItems(search(OwnerType.ITEM, text, k, itemTypes));
+    }
+
+    public List<SimilarSummary> similarSummaries(Long summaryId, int k, Collection<String> itemTypes) {
+        return describeSummaries(similarTo(OwnerType.SUMMARY, summaryId, k, itemTypes));
+    }
+
+    public List<SimilarSummary> searchSummaries(String text, int k, Collection<String> itemTypes) {
+        return describeSummaries(search(OwnerType.SUMMARY, text, k, itemTypes));
+    }
+
+    /**
+     * Nearest neighbours of a stored owner, excluding the owner itself
+     */
+    public List<HnswIndex.Neighbor> similarTo(OwnerType type, Long ownerId, int k, Collection<String> itemTypes) {
+        LoadedIndex loaded = index(type);
+        float[] vector = loaded.index.vector(ownerId);
+        if (vector == null) {
+            List<StoredEmbedding> stored = embeddingService.load(type, List.of(ownerId));
+            if (stored.isEmpty()) {
+                throw new ResourceNotFoundException("No embedding for " + type.code() + " " + ownerId);
+            }
+            vector = stored.getFirst().vector().toFloats();
+        }
+        int limit = clamp(k);
+        return loaded.index.search(vector, limit + 1, efSearch, loaded.accepting(itemTypes)).stream()
+                .filter(neighbor -> neighbor.id() != ownerId)
+                .limit(limit)
+                .toList();
+    }
+
+    public List<HnswIndex.Neighbor> search(OwnerType type, String text, int k, Collection<String> itemTypes) {
+        LoadedIndex loaded = index(type);
+        return loaded.index.search(embeddingService.embed(text), clamp(k), efSearch, loaded.accepting(itemTypes));
+    }
+
+    /**
+     * Discard the in-memory and saved index of a type and build it again from the table
+     */
+    public int rebuild(OwnerType type) {
+        discard(type, indexes.get(type));
+        return index(type).index.size();
+    }
+
+    @EventListener
+    public void onEmbeddingsChanged(EmbeddingsChangedEvent event) {
+        if (!embeddingService.providerId().equals(event.provider())) {
+            return;
+        }
+        OwnerType type = OwnerType.fromCode(event.ownerType());
+        LoadedIndex loaded = indexes.get(type);
+        if (loaded == null) {
+            // Built from the table on first use
+            return;
+        }
+        if (event.removed()) {
+            event.ownerIds().forEach(loaded.index::remove);
+        } else {
+            add(type, loaded, embeddingService.load(type, event.ownerIds()));
+        }
+        loaded.dirty = true;
+        if (loaded.index.tombstones() > rebuildTombstoneRatio * Math.max(1, loaded.index.size())) {
+            log.info("Dropping {} index with {} tombstones; it is rebuilt on next use",
+                    type.code(), loaded.index.tombstones());
+            discard(type, loaded);
+        }
+    }
+
+    @PreDestroy
+    public void saveIndexes() {
+        indexes.forEach((type, loaded) -> {
+            if (loaded.dirty) {
+                save(type, loaded, embeddingService.watermark(type).lastUpdated());
+            }
+        });
+    }
+
+    private LoadedIndex index(OwnerType type) {
+        LoadedIndex loaded = indexes.get(type);
+        if (loaded != null) {
+            return loaded;
+        }
+        synchronized (this) {
+            loaded = indexes.get(type);
+            if (loaded == null) {
+                loaded = open(type);
+                indexes.put(type, loaded);
+            }
+            return loaded;
+        }
+    }
+
+    private synchronized void discard(OwnerType type, LoadedIndex loaded) {
+        if (loaded != null) {
+            indexes.remove(type, loaded);
+        }
+        try {
+            Files.deleteIfExists(indexFile(type));
+        } catch (IOException e) {
+            log.warn("Could not delete saved {} index: {}", type.code(), e.getMessage());
+        }
+    }
+
+    /**
+     * Load the saved index and catch it up, or build a new one
+     */
+    private LoadedIndex open(OwnerType type) {
+        long start = System.currentTimeMillis();
+        Watermark watermark = embeddingService.watermark(type);
+        Saved saved = loadSaved(type);
+        if (saved != null) {
+            add(type, saved.value(), saved.since());
+            if (saved.value().index.size() == watermark.count()) {
+                log.info("Loaded {} index with {} vectors in {} ms",
+                        type.code(), watermark.count(), System.currentTimeMillis() - start);
+                return saved.value();
+            }
+            log.info("Saved {} index is out of date ({} vectors, {} stored); rebuilding",
+                    type.code(), saved.value().index.size(), watermark.count());
+        }
+
+        LoadedIndex built = new LoadedIndex(new HnswIndex(embeddingService.dimensions(), m, efConstruction,
+                (int) Math.max(1024, watermark.count())));
+        add(type, built, (Timestamp) null);
+        log.info("Built {} index with {} vectors in {} ms",
+                type.code(), built.index.size(), System.currentTimeMillis() - start);
+        save(type, built, watermark.lastUpdated());
+        return built;
+    }
+
+    /**
+     * Add every vector written after {@code since} (all when null), in batches
+     */
+    private void add(OwnerType type, LoadedIndex loaded, Timestamp since) {
+        List<StoredEmbedding> batch = new ArrayList<>(LOAD_BATCH);
+        embeddingService.forEach(type, since, embedding -> {
+            batch.add(embedding);
+            if (batch.size() == LOAD_BATCH) {
+                add(type, loaded, batch);
+                batch.clear();
+            }
+        });
+        add(type, loaded, batch);
+    }
+
+    private void add(OwnerType type, LoadedIndex loaded, List<StoredEmbedding> embeddings) {
+        if (embeddings.isEmpty()) {
+            return;
+        }
+        Map<Long, String> itemTypes = itemTypes(type, embeddings.stream().map(StoredEmbedding::ownerId).toList());
+        embeddings.parallelStream().forEach(embedding -> loaded.index.add(embedding.ownerId(),
+                embedding.vector().toFloats(), loaded.label(itemTypes.get(embedding.ownerId()))));
+    }
+
+    private Map<Long, String> itemTypes(OwnerType type, List<Long> ownerIds) {
+        String sql = type == OwnerType.ITEM
+                ? "SELECT id, item_type FROM items WHERE id = ANY(?)"
+                : "SELECT s.id, i.item_type FROM summaries s JOIN items i ON i.id = s.item_id WHERE s.id = ANY(?)";
+        Long[] ids = ownerIds.toArray(new Long[0]);
+        Map<Long, String> types = new HashMap<>();
+        jdbcTemplate.query(sql,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids)),
+                rs -> {
+                    types.put(rs.getLong(1), rs.getString(2));
+                });
+        return types;
+    }
+
+    private List<SimilarItem> describeItems(List<HnswIndex.Neighbor> neighbors) {
+        Map<Long, String[]> items = new HashMap<>();
+        Long[] ids = neighbors.stream().map(HnswIndex.Neighbor::id).toArray(Long[]::new);
+        jdbcTemplate.query("SELECT id, name, item_type FROM items WHERE id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids)),
+                rs -> {
+                    items.put(rs.getLong(1), new String[]{rs.getString(2), rs.getString(3)});
+                });
+        return neighbors.stream()
+                .filter(neighbor -> items.containsKey(neighbor.id()))
+                .map(neighbor -> {
+                    String[] item = items.get(neighbor.id());
+                    return new SimilarItem(neighbor.id(), item[0], item[1], neighbor.score());
+                })
+                .toList();
+    }
+
+    private List<SimilarSummary> describeSummaries(List<HnswIndex.Neighbor> neighbors) {
+        Map<Long, SimilarSummary> summaries = new HashMap<>();
+        Map<Long, Float> scores = neighbors.stream()
+                .collect(Collectors.toMap(HnswIndex.Neighbor::id, HnswIndex.Neighbor::score));
+        Long[] ids = scores.keySet().toArray(new Long[0]);
+        jdbcTemplate.query("SELECT s.id, s.item_id, i.name FROM summaries s JOIN items i ON i.id = s.item_id " +
+                        "WHERE s.id = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids)),
+                rs -> {
+                    long id = rs.getLong(1);
+                    summaries.put(id, new SimilarSummary(id, rs.getLong(2), rs.getString(3), scores.get(id)));
+                });
+        return neighbors.stream().map(neighbor -> summaries.get(neighbor.id())).filter(summary -> summary != null).toList();
+    }
+
+    private int clamp(int k) {
+        return Math.max(1, Math.min(k, maxK));
+    }
+
+    private Path indexFile(OwnerType type) {
+        return indexDir.resolve(type.code() + "-" + embeddingService.providerId() + ".hnsw");
+    }
+
+    private Path metadataFile(OwnerType type) {
+        return indexDir.resolve(type.code() + "-" + embeddingService.providerId() + ".properties");
+    }
+
+    /**
+     * A saved index together with the embedding write time it reflects
+     */
+    private record Saved(LoadedIndex value, Timestamp since) {}
+
+    private Saved loadSaved(OwnerType type) {
+        Path file = indexFile(type);
+        Path metadata = metadataFile(type);
+        if (!Files.exists(file) || !Files.exists(metadata)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(metadata)) {
+            Properties properties = new Properties();
+            properties.load(reader);
+            HnswIndex index = HnswIndex.load(file);
+            if (index.dimensions() != embeddingService.dimensions()) {
+                return null;
+            }
+            LoadedIndex loaded = new LoadedIndex(index);
+            for (String key : properties.stringPropertyNames()) {
+                if (key.startsWith("label.")) {
+                    loaded.labels.put(key.substring("label.".length()), Integer.parseInt(properties.getProperty(key)));
+                }
+            }
+            String since = properties.getProperty("updated-at");
+            return new Saved(loaded, since != null ? Timestamp.valueOf(since) : null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable saved {} index: {}", type.code(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save the index with the latest embedding write it reflects; later writes are caught up
+     * on next load
+     */
+    private void save(OwnerType type, LoadedIndex loaded, Timestamp lastUpdated) {
+        try {
+            Files.createDirectories(indexDir);
+            loaded.index.save(indexFile(type));
+            Properties properties = new Properties();
+            loaded.labels.forEach((itemType, label) -> properties.setProperty("label." + itemType, label.toString()));
+            if (lastUpdated != null) {
+                properties.setProperty("updated-at", lastUpdated.toString());
+            }
+            try (Writer writer = Files.newBufferedWriter(metadataFile(type))) {
+                properties.store(writer, type.code() + " similarity index");
+            }
+            loaded.dirty = false;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not save {} similarity index: {}", type.code(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.sampsoftware.genai.service;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local chat model for configurations whose model provider is {@code stub}: answers without a
+ * network call, after {@code genai.providers.stub.latency-ms}, with the start of the last user
+ * message and usage estimated at four characters per token. Useful for exercising batches,
+ * routing and logging without an API account.
+ */
+public class StubChatModel implements ChatModel {
+
+    private static final int ECHO_LENGTH = 200;
+
+    private final long latencyMs;
+
+    public StubChatModel(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (latencyMs > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        String input = "";
+        int inputChars = 0;
+        for (Message message : prompt.getInstructions()) {
+            String text = message.getText() == null ? "" : message.getText();
+            inputChars += text.length();
+            if (message instanceof UserMessage) {
+                input = text;
+            }
+        }
+        String text = "Stub response to: " + (input.length() > ECHO_LENGTH ? input.substring(0, ECHO_LENGTH) : input);
+        String model = prompt.getOptions() != null && prompt.getOptions().getModel() != null
+                ? prompt.getOptions().getModel() : "stub";
+
+        Generation generation = new Generation(new AssistantMessage(text),
+                ChatGenerationMetadata.builder().finishReason("STOP").build());
+        ChatResponseMetadata metadata = ChatResponseMetadata.builder()
+                .model(model)
+                .usage(new DefaultUsage(Math.max(1, inputChars / 4), Math.max(1, text.length() / 4)))
+                .build();
+        return new ChatResponse(List.of(generation), metadata);
+    }
+}
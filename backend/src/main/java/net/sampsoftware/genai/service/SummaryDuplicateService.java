@@ -0,0 +1,368 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.event.DataChangedEvent;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.model.Summary;
+import net.sampsoftware.genai.util.MinHasher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Near-duplicate summaries by MinHash and LSH. Every summary write stores a signature of its
+ * content and one bucket per signature band; summaries sharing a bucket are candidates, and
+ * candidates whose estimated similarity reaches the threshold are merged into clusters. No
+ * step compares all pairs: work grows with the number of colliding summaries.
+ * <p>
+ * Candidates are only found above roughly {@link MinHasher#threshold} for the configured
+ * hashes and bands, so thresholds below that miss duplicates.
+ */
+@Slf4j
+@Service
+public class SummaryDuplicateService {
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BulkMutationService bulkMutationService;
+    private final MinHasher hasher;
+    private final int bands;
+
+    public SummaryDuplicateService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   BulkMutationService bulkMutationService,
+                                   @Value("${genai.duplicates.num-hashes:128}") int numHashes,
+                                   @Value("${genai.duplicates.bands:32}") int bands,
+                                   @Value("${genai.duplicates.shingle-size:3}") int shingleSize) {
+        if (numHashes % bands != 0) {
+            throw new IllegalArgumentException("genai.duplicates.num-hashes must be a multiple of bands");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Signatures are also stored from AFTER_COMMIT listeners, where joining would reuse the finished transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bulkMutationService = bulkMutationService;
+        this.hasher = new MinHasher(numHashes, shingleSize);
+        this.bands = bands;
+    }
+
+    /**
+     * Summaries judged near-identical; {@code keepId} is the newest (highest id) member
+     *
+     * @param itemId        the shared item, or null when members belong to different items
+     * @param minSimilarity lowest estimated similarity of a member to the kept summary
+     */
+    public record DuplicateCluster(Long itemId, Long keepId, List<Long> summaryIds, double minSimilarity) {}
+
+    public record CollapseResult(int clusters, List<Long> removedIds, boolean dryRun) {}
+
+    public record IndexResult(int indexed, double lshThreshold) {}
+
+    private record Signed(Long id, Long itemId, int[] signature) {}
+
+    /**
+     * Compute and store signatures for summaries; missing ids are ignored
+     */
+    public int index(Collection<Long> summaryIds) {
+        Long[] ids = summaryIds.stream().filter(Objects::nonNull).distinct().toArray(Long[]::new);
+        int indexed = 0;
+        for (int from = 0; from < ids.length; from += PAGE_SIZE) {
+            Long[] chunk = Arrays.copyOfRange(ids, from, Math.min(from + PAGE_SIZE, ids.length));
+            List<Signed> signed = jdbcTemplate.query(
+                    "SELECT id, item_id, content FROM summaries WHERE id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", chunk)),
+                    (rs, rowNum) -> new Signed(rs.getLong(1), rs.getLong(2), hasher.signature(rs.getString(3))));
+            store(signed);
+            indexed += signed.size();
+        }
+        return indexed;
+    }
+
+    /**
+     * Sign every summary without a current signature, or all of them when {@code force}
+     */
+    public IndexResult reindex(boolean force) {
+        long start = System.currentTimeMillis();
+        String sql = "SELECT s.id, s.item_id, s.content FROM summaries s WHERE s.id > ? " +
+                (force ? "" : "AND NOT EXISTS (SELECT 1 FROM summary_minhash m " +
+                        "WHERE m.summary_id = s.id AND m.num_hashes = " + hasher.numHashes() + ") ") +
+                "ORDER BY s.id LIMIT ?";
+        int indexed = 0;
+        long lastId = 0;
+        while (true) {
+            List<Signed> page = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new Signed(rs.getLong(1), rs.getLong(2), hasher.signature(rs.getString(3))),
+                    lastId, PAGE_SIZE);
+            if (page.isEmpty()) {
+                break;
+            }
+            store(page);
+            indexed += page.size();
+            lastId = page.getLast().id();
+        }
+        log.info("Indexed {} summary signatures in {} ms", indexed, System.currentTimeMillis() - start);
+        return new IndexResult(indexed, MinHasher.threshold(hasher.numHashes(), bands));
+    }
+
+    /**
+     * Clusters of near-duplicate summaries, largest first
+     *
+     * @param sameItem only group summaries of the same item
+     * @param itemId   restrict to one item's summaries, or null for all
+     */
+    public List<DuplicateCluster> clusters(double threshold, boolean sameItem, Long itemId) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new ValidationException("threshold", threshold);
+        }
+        long start = System.currentTimeMillis();
+        List<Long[]> buckets = new ArrayList<>();
+        Set<Long> candidates = new LinkedHashSet<>();
+        String sql = "SELECT array_agg(summary_id ORDER BY summary_id) FROM summary_lsh_bands " +
+                (itemId != null ? "WHERE item_id = ? " : "") +
+                "GROUP BY band, bucket" + (sameItem ? ", item_id" : "") + " HAVING count(*) > 1";
+        Object[] args = itemId != null ? new Object[]{itemId} : new Object[0];
+        jdbcTemplate.query(sql, rs -> {
+            Long[] members = (Long[]) rs.getArray(1).getArray();
+            buckets.add(members);
+            candidates.addAll(Arrays.asList(members));
+        }, args);
+
+        Map<Long, Signed> signatures = loadSignatures(candidates);
+        Map<Long, Long> parents = new HashMap<>();
+        for (Long[] bucket : buckets) {
+            // Each member is checked against the bucket head and its predecessor, never all pairs
+            for (int i = 1; i < bucket.length; i++) {
+                if (similar(signatures, bucket[0], bucket[i], threshold)) {
+                    union(parents, bucket[0], bucket[i]);
+                } else if (i > 1 && similar(signatures, bucket[i - 1], bucket[i], threshold)) {
+                    union(parents, bucket[i - 1], bucket[i]);
+                }
+            }
+        }
+
+        Map<Long, List<Long>> groups = new HashMap<>();
+        for (Long id : parents.keySet()) {
+            groups.computeIfAbsent(find(parents, id), root -> new ArrayList<>()).add(id);
+        }
+        List<DuplicateCluster> clusters = new ArrayList<>();
+        for (List<Long> members : groups.values()) {
+            if (members.size() < 2) {
+                continue;
+            }
+            members.sort(Comparator.naturalOrder());
+            Signed keep = signatures.get(members.getLast());
+            double minSimilarity = 1;
+            Long sharedItem = keep.itemId();
+            for (Long id : members) {
+                Signed member = signatures.get(id);
+                minSimilarity = Math.min(minSimilarity, MinHasher.similarity(keep.signature(), member.signature()));
+                if (!Objects.equals(sharedItem, member.itemId())) {
+                    sharedItem = null;
+                }
+            }
+            clusters.add(new DuplicateCluster(sharedItem, keep.id(), members, minSimilarity));
+        }
+        clusters.sort(Comparator.comparingInt((DuplicateCluster cluster) -> cluster.summaryIds().size()).reversed()
+                .thenComparing(DuplicateCluster::keepId));
+        log.debug("Found {} duplicate clusters among {} candidates in {} buckets in {} ms",
+                clusters.size(), candidates.size(), buckets.size(), System.currentTimeMillis() - start);
+        return clusters;
+    }
+
+    /**
+     * Keep the newest summary of each cluster and delete the members within {@code threshold}
+     * of it, unless {@code dryRun}
+     */
+    public CollapseResult collapse(double threshold, boolean sameItem, Long itemId, boolean dryRun) {
+        List<DuplicateCluster> clusters = clusters(threshold, sameItem, itemId);
+        Map<Long, int[]> signatures = new HashMap<>();
+        loadSignatures(clusters.stream().flatMap(cluster -> cluster.summaryIds().stream()).toList())
+                .forEach((id, signed) -> signatures.put(id, signed.signature()));
+        List<Long> removed = new ArrayList<>();
+        for (DuplicateCluster cluster : clusters) {
+            removed.addAll(duplicatesOfKept(cluster.keepId(), cluster.summaryIds(), signatures, threshold));
+        }
+        if (!dryRun && !removed.isEmpty()) {
+            bulkMutationService.deleteSummaries(removed);
+            log.info("Collapsed {} duplicate clusters, deleting {} summaries", clusters.size(), removed.size());
+        }
+        return new CollapseResult(clusters.size(), removed, dryRun);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChangedEvent event) {
+        if (!event.concerns(Summary.class) || event.kind() == DataChangedEvent.ChangeKind.DELETED
+                || event.ids().isEmpty()) {
+            // Deleted summaries take their signatures with them (ON DELETE CASCADE)
+            return;
+        }
+        try {
+            index(event.ids());
+        } catch (Exception e) {
+            log.warn("Could not sign summaries {}: {}", event.ids(), e.getMessage());
+        }
+    }
+
+    private void store(List<Signed> signed) {
+        if (signed.isEmpty()) {
+            return;
+        }
+        int size = signed.size();
+        Long[] ids = new Long[size];
+        Short[] bandNumbers = new Short[size * bands];
+        Long[] buckets = new Long[size * bands];
+        Long[] bandSummaries = new Long[size * bands];
+        Long[] bandItems = new Long[size * bands];
+        for (int i = 0; i < size; i++) {
+            Signed summary = signed.get(i);
+            ids[i] = summary.id();
+            long[] hashes = MinHasher.bands(summary.signature(), bands);
+            for (int band = 0; band < bands; band++) {
+                int row = i * bands + band;
+                bandNumbers[row] = (short) band;
+                buckets[row] = hashes[band];
+                bandSummaries[row] = summary.id();
+                bandItems[row] = summary.itemId();
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO summary_minhash (summary_id, item_id, num_hashes, signature) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (summary_id) DO UPDATE SET item_id = EXCLUDED.item_id, " +
+                    "num_hashes = EXCLUDED.num_hashes, signature = EXCLUDED.signature",
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Signed summary = signed.get(i);
+                            ps.setLong(1, summary.id());
+                            ps.setLong(2, summary.itemId());
+                            ps.setInt(3, summary.signature().length);
+                            ps.setBytes(4, encode(summary.signature()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return size;
+                        }
+                    });
+            jdbcTemplate.update("DELETE FROM summary_lsh_bands WHERE summary_id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", ids)));
+            jdbcTemplate.update(
+                    "INSERT INTO summary_lsh_bands (band, bucket, summary_id, item_id) " +
+                    "SELECT * FROM unnest(?::int2[], ?::int8[], ?::int8[], ?::int8[])",
+                    ps -> {
+                        Connection connection = ps.getConnection();
+                        ps.setArray(1, connection.createArrayOf("int2", bandNumbers));
+                        ps.setArray(2, connection.createArrayOf("int8", buckets));
+                        ps.setArray(3, connection.createArrayOf("int8", bandSummaries));
+                        ps.setArray(4, connection.createArrayOf("int8", bandItems));
+                    });
+        });
+    }
+
+    /**
+     * Members other than the kept one whose own similarity to it reaches {@code threshold}.
+     * Clusters are single-linkage, so a member can join through a chain of neighbours while
+     * being far from the kept summary; such members are not duplicates of it and stay.
+     */
+    static List<Long> duplicatesOfKept(Long keepId, List<Long> memberIds, Map<Long, int[]> signatures,
+                                       double threshold) {
+        int[] kept = signatures.get(keepId);
+        List<Long> duplicates = new ArrayList<>();
+        if (kept == null) {
+            return duplicates;
+        }
+        for (Long id : memberIds) {
+            int[] member = signatures.get(id);
+            if (!id.equals(keepId) && member != null && member.length == kept.length
+                    && MinHasher.similarity(kept, member) >= threshold) {
+                duplicates.add(id);
+            }
+        }
+        return duplicates;
+    }
+
+    private Map<Long, Signed> loadSignatures(Collection<Long> summaryIds) {
+        Map<Long, Signed> signatures = new HashMap<>();
+        List<Long> ids = new ArrayList<>(summaryIds);
+        for (int from = 0; from < ids.size(); from += PAGE_SIZE) {
+            Long[] chunk = ids.subList(from, Math.min(from + PAGE_SIZE, ids.size())).toArray(new Long[0]);
+            jdbcTemplate.query("SELECT summary_id, item_id, signature FROM summary_minhash WHERE summary_id = ANY(?)",
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("int8", chunk)),
+                    rs -> {
+                        long id = rs.getLong(1);
+                        signatures.put(id, new Signed(id, rs.getLong(2), decode(rs.getBytes(3))));
+                    });
+        }
+        return signatures;
+    }
+
+    private static boolean similar(Map<Long, Signed> signatures, Long a, Long b, double threshold) {
+        Signed left = signatures.get(a);
+        Signed right = signatures.get(b);
+        return left != null && right != null && left.signature().length == right.signature().length
+                && MinHasher.similarity(left.signature(), right.signature()) >= threshold;
+    }
+
+    private static Long find(Map<Long, Long> parents, Long id) {
+        Long root = id;
+        Long parent;
+        while ((parent = parents.get(root)) != null && !parent.equals(root)) {
+            root = parent;
+        }
+        // Path compression
+        Long current = id;
+        while (!current.equals(root)) {
+            Long next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Long, Long> parents, Long a, Long b) {
+        parents.putIfAbsent(a, a);
+        parents.putIfAbsent(b, b);
+        Long rootA = find(parents, a);
+        Long rootB = find(parents, b);
+        if (!rootA.equals(rootB)) {
+            parents.put(rootB, rootA);
+        }
+    }
+
+    private static byte[] encode(int[] signature) {
+        ByteBuffer buffer = ByteBuffer.allocate(signature.length * Integer.BYTES);
+        buffer.asIntBuffer().put(signature);
+        return buffer.array();
+    }
+
+    private static int[] decode(byte[] bytes) {
+        int[] signature = new int[bytes.length / Integer.BYTES];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(signature);
+        return signature;
+    }
+}
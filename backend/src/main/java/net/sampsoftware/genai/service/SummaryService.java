@@ -18,6 +18,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -79,6 +80,11 @@ public class SummaryService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
+    public Optional<DetailedSummaryRecord> findDetailedById(Long id) {
+        return summaryRepository.findByIdWithDetails(id).map(this::toDetailedDto);
+    }
+
     @Transactional(readOnly = true)
     public List<DetailedSummaryRecord> findByItemIds(List<Long> itemIds) {
         return summaryRepository.findByItemIdIn(itemIds).stream()
@@ -0,0 +1,152 @@
+package net.sampsoftware.genai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.GenaiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token and request budgets per provider and model, refilled continuously at
+ * {@code genai.rate-limit.tokens-per-minute} and {@code requests-per-minute} (0 disables a
+ * limit). A call reserves its estimated tokens up front; the reservation may take a bucket
+ * negative, and the caller then waits until the refill covers the debt, so callers are served
+ * in reservation order. Once the response reports actual usage, {@link #settle} returns the
+ * unused part. Calls that would wait longer than {@code max-wait-seconds} are refused.
+ */
+@Slf4j
+@Service
+public class TokenRateLimiter {
+
+    private final double tokensPerMinute;
+    private final double requestsPerMinute;
+    private final long maxWaitNanos;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public TokenRateLimiter(@Value("${genai.rate-limit.tokens-per-minute:0}") double tokensPerMinute,
+                            @Value("${genai.rate-limit.requests-per-minute:0}") double requestsPerMinute,
+                            @Value("${genai.rate-limit.max-wait-seconds:120}") long maxWaitSeconds) {
+        this.tokensPerMinute = tokensPerMinute;
+        this.requestsPerMinute = requestsPerMinute;
+        this.maxWaitNanos = TimeUnit.SECONDS.toNanos(maxWaitSeconds);
+    }
+
+    public record Reservation(String model, int tokens) {}
+
+    /**
+     * Configured token refill per model and minute, 0 when unlimited
+     */
+    public double tokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public double requestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    /**
+     * Share of the token and request budget of {@code model} left now, 0 to 1; 1 when unlimited
+     */
+    public double headroom(String model) {
+        Bucket bucket = buckets.get(model);
+        return bucket == null ? 1 : bucket.headroom();
+    }
+
+    /**
+     * Reserve {@code tokens} and one request for {@code model}, blocking until both are covered
+     */
+    public Reservation acquire(String model, int tokens) {
+        if (tokensPerMinute <= 0 && requestsPerMinute <= 0) {
+            return new Reservation(model, tokens);
+        }
+        Bucket bucket = buckets.computeIfAbsent(model, m -> new Bucket());
+        long wait = bucket.reserve(tokens);
+        if (wait > 0) {
+            log.debug("Waiting {}ms for {} tokens of {}", TimeUnit.NANOSECONDS.toMillis(wait), tokens, model);
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                bucket.release(tokens, 1);
+                throw new GenaiException("Interrupted while waiting for rate limit", e);
+            }
+        }
+        return new Reservation(model, tokens);
+    }
+
+    /**
+     * Return the difference between the reserved and the actually used tokens
+     */
+    public void settle(Reservation reservation, int usedTokens) {
+        Bucket bucket = buckets.get(reservation.model());
+        if (bucket != null && usedTokens >= 0 && usedTokens != reservation.tokens()) {
+            bucket.release(reservation.tokens() - usedTokens, 0);
+        }
+    }
+
+    private final class Bucket {
+        private double tokens = tokensPerMinute;
+        private double requests = requestsPerMinute;
+        private long refilledAt = System.nanoTime();
+
+        /**
+         * Takes the reservation and returns how long the caller must wait for it
+         */
+        synchronized long reserve(int amount) {
+            refill();
+            // A single call larger than the whole bucket is charged the bucket, else it never fits
+            double charge = tokensPerMinute > 0 ? Math.min(amount, tokensPerMinute) : 0;
+            long wait = Math.max(
+                    deficitNanos(tokens - charge, tokensPerMinute),
+                    deficitNanos(requests - 1, requestsPerMinute));
+            if (wait > maxWaitNanos) {
+                throw new GenaiException(String.format("Rate limit would delay the call by %ds",
+                        TimeUnit.NANOSECONDS.toSeconds(wait)), HttpStatus.TOO_MANY_REQUESTS, "RATE_LIMITED");
+            }
+            tokens -= charge;
+            requests -= 1;
+            return wait;
+        }
+
+        synchronized double headroom() {
+            refill();
+            double share = 1;
+            if (tokensPerMinute > 0) {
+                share = Math.min(share, tokens / tokensPerMinute);
+            }
+            if (requestsPerMinute > 0) {
+                share = Math.min(share, requests / requestsPerMinute);
+            }
+            return Math.max(0, share);
+        }
+
+        synchronized void release(int amount, int requestCount) {
+            refill();
+            if (tokensPerMinute > 0) {
+                tokens = Math.min(tokensPerMinute, tokens + amount);
+            }
+            if (requestsPerMinute > 0) {
+                requests = Math.min(requestsPerMinute, requests + requestCount);
+            }
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            double minutes = (now - refilledAt) / 60e9;
+            refilledAt = now;
+            tokens = Math.min(tokensPerMinute, tokens + minutes * tokensPerMinute);
+            requests = Math.min(requestsPerMinute, requests + minutes * requestsPerMinute);
+        }
+
+        private static long deficitNanos(double balance, double perMinute) {
+            if (perMinute <= 0 || balance >= 0) {
+                return 0;
+            }
+            return (long) (-balance / perMinute * 60e9);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import net.sampsoftware.genai.exception.ValidationException;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.util.BpeTokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token counts and context-window budgets for model calls, so oversized prompts are rejected
+ * or trimmed before a round trip.
+ * <p>
+ * OpenAI models count with their BPE vocabulary, loaded once from
+ * {@code genai.tokenizer.vocabulary-dir/<encoding>.tiktoken} ({@code cl100k_base} for GPT-4 and
+ * GPT-3.5, {@code o200k_base} for GPT-4o and the o-series). Other models, or encodings whose
+ * file is missing, use {@link BpeTokenizer#estimating()} and budgets add
+ * {@code genai.tokenizer.estimate-margin} on top. Context windows come from
+ * {@code model.context_length}, falling back to known values by model name.
+ */
+@Slf4j
+@Service
+public class TokenizerService {
+
+    /**
+     * Chat format overhead per message and for priming the reply
+     */
+    private static final int TOKENS_PER_MESSAGE = 3;
+    private static final int TOKENS_PER_REPLY = 3;
+
+    private static final Map<String, Integer> KNOWN_CONTEXT_LENGTHS = Map.of(
+            "gpt-4o", 128_000,
+            "gpt-4-turbo", 128_000,
+            "gpt-4.1", 1_047_576,
+            "gpt-4", 8_192,
+            "gpt-3.5-turbo", 16_385,
+            "o1", 200_000,
+            "o3", 200_000,
+            "claude", 200_000,
+            "llama-3", 8_192
+    );
+
+    private final Path vocabularyDir;
+    private final double estimateMargin;
+    private final int defaultContextLength;
+    private final int defaultMaxOutputTokens;
+    private final String defaultModel;
+    private final Map<String, BpeTokenizer> encodings = new ConcurrentHashMap<>();
+
+    public TokenizerService(@Value("${genai.tokenizer.vocabulary-dir:data/tokenizers}") Path vocabularyDir,
+                            @Value("${genai.tokenizer.estimate-margin:0.15}") double estimateMargin,
+                            @Value("${genai.tokenizer.default-context-length:8192}") int defaultContextLength,
+                            @Value("${genai.tokenizer.default-max-output-tokens:1024}") int defaultMaxOutputTokens,
+                            @Value("${spring.ai.openai.chat.options.model:gpt-3.5-turbo}") String defaultModel) {
+        this.vocabularyDir = vocabularyDir;
+        this.estimateMargin = estimateMargin;
+        this.defaultContextLength = defaultContextLength;
+        this.defaultMaxOutputTokens = defaultMaxOutputTokens;
+        this.defaultModel = defaultModel;
+    }
+
+    /**
+     * Tokens a call would use: the prompt as counted, the output it may produce, and the
+     * model window both must fit in
+     */
+    public record TokenBudget(
+            String model,
+            int contextLength,
+            int inputTokens,
+            int maxOutputTokens,
+            boolean exact
+    ) {
+        public int totalTokens() {
+            return inputTokens + maxOutputTokens;
+        }
+
+        public boolean fits() {
+            return totalTokens() <= contextLength;
+        }
+    }
+
+    public int count(ModelConfiguration modelConfig, String text) {
+        return count(tokenizer(modelName(modelConfig)), text);
+    }
+
+    /**
+     * Budget of a call with the given messages, e.g. system and user prompt; null messages are
+     * left out
+     */
+    public TokenBudget budget(ModelConfiguration modelConfig, String... messages) {
+        return budget(modelConfig, maxOutputTokens(modelConfig), messages);
+    }
+
+    /**
+     * Budget of a call whose output limit is set per call rather than by the configuration
+     */
+    public TokenBudget budget(ModelConfiguration modelConfig, int maxOutputTokens, String... messages) {
+        String model = modelName(modelConfig);
+        BpeTokenizer tokenizer = tokenizer(model);
+        int input = TOKENS_PER_REPLY;
+        for (String message : messages) {
+            if (message != null) {
+                input += TOKENS_PER_MESSAGE + count(tokenizer, message);
+            }
+        }
+        return new TokenBudget(model, contextLength(modelConfig, model), input,
+                maxOutputTokens, tokenizer.exact());
+    }
+
+    /**
+     * Budget of the call, rejected when it cannot fit the model window
+     */
+    public TokenBudget preflight(ModelConfiguration modelConfig, String... messages) {
+        return check(budget(modelConfig, messages));
+    }
+
+    public TokenBudget preflight(ModelConfiguration modelConfig, int maxOutputTokens, String... messages) {
+        return check(budget(modelConfig, maxOutputTokens, messages));
+    }
+
+    private static TokenBudget check(TokenBudget budget) {
+        if (!budget.fits()) {
+            throw new ValidationException(String.format(
+                    "Prompt of %d tokens plus %d output tokens exceeds the %d-token context window of %s",
+                    budget.inputTokens(), budget.maxOutputTokens(), budget.contextLength(), budget.model()));
+        }
+        return budget;
+    }
+
+    /**
+     * Tokens left for the user message once the system prompt and output are reserved
+     */
+    public int inputBudget(ModelConfiguration modelConfig, String systemPrompt) {
+        return inputBudget(modelConfig, maxOutputTokens(modelConfig), systemPrompt);
+    }
+
+    public int inputBudget(ModelConfiguration modelConfig, int maxOutputTokens, String systemPrompt) {
+        TokenBudget budget = budget(modelConfig, maxOutputTokens, systemPrompt, "");
+        return Math.max(0, budget.contextLength() - budget.totalTokens());
+    }
+
+    /**
+     * {@code text} cut at a token boundary to at most {@code maxTokens} tokens
+     */
+    public String truncate(ModelConfiguration modelConfig, String text, int maxTokens) {
+        BpeTokenizer tokenizer = tokenizer(modelName(modelConfig));
+        int limit = tokenizer.exact() ? maxTokens : (int) (maxTokens / (1 + estimateMargin));
+        int end = tokenizer.truncationIndex(text, limit);
+        return end == text.length() ? text : text.substring(0, end);
+    }
+
+    /**
+     * {@code text} in consecutive chunks of at most {@code chunkTokens} tokens, each starting
+     * about {@code overlapTokens} before the end of the previous one. Chunks end at a line or
+     * sentence break in their last fifth when there is one, else at a token boundary.
+     */
+    public List<String> split(ModelConfiguration modelConfig, String text, int chunkTokens, int overlapTokens) {
+        BpeTokenizer tokenizer = tokenizer(modelName(modelConfig));
+        double scale = tokenizer.exact() ? 1 : 1 + estimateMargin;
+        int limit = Math.max(1, (int) (chunkTokens / scale));
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            CharSequence rest = CharBuffer.wrap(text, start, text.length());
+            int fitting = tokenizer.truncationIndex(rest, limit);
+            // A single piece longer than the limit, e.g. an unbroken token run, is cut by characters
+            int end = start + (fitting > 0 ? fitting : Math.min(rest.length(), limit * 3));
+            if (end < text.length()) {
+                end = breakBefore(text, start + (end - start) * 4 / 5, end);
+            }
+            chunks.add(text.substring(start, end));
+            if (end >= text.length()) {
+                break;
+            }
+            // Step back by the overlap's share of the chunk, to the start of a word
+            int overlap = (int) ((long) (end - start) * overlapTokens / chunkTokens);
+            int next = Math.max(start + 1, end - overlap);
+            int floor = Math.max(start + 1, end - 2 * overlap);
+            while (next > floor && next < end && !Character.isWhitespace(text.charAt(next - 1))) {
+                next--;
+            }
+            start = next;
+        }
+        return chunks;
+    }
+
+    /**
+     * Index just after the last line or sentence break in {@code [from, to)}, else {@code to}
+     */
+    private static int breakBefore(String text, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == ' ' && i > 0 && ".!?".indexOf(text.charAt(i - 1)) >= 0)) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * The user message trimmed to what the window leaves after the system prompt and output
+     */
+    public String fit(ModelConfiguration modelConfig, String systemPrompt, String userPrompt) {
+        int available = inputBudget(modelConfig, systemPrompt);
+        String fitted = truncate(modelConfig, userPrompt, available);
+        if (fitted.length() < userPrompt.length()) {
+            log.debug("Truncated prompt from {} to {} characters to fit {} tokens",
+                    userPrompt.length(), fitted.length(), available);
+        }
+        return fitted;
+    }
+
+    public int contextLength(ModelConfiguration modelConfig) {
+        return contextLength(modelConfig, modelName(modelConfig));
+    }
+
+    public int maxOutputTokens(ModelConfiguration modelConfig) {
+        JsonNode config = modelConfig == null ? null : modelConfig.getModelConfig();
+        if (config != null && config.hasNonNull("max_tokens")) {
+            return config.get("max_tokens").intValue();
+        }
+        return defaultMaxOutputTokens;
+    }
+
+    /**
+     * API model name the call will use
+     */
+    public String modelName(ModelConfiguration modelConfig) {
+        if (modelConfig == null || modelConfig.getModel() == null || modelConfig.getModel().getModelName() == null) {
+            return defaultModel;
+        }
+        return AIService.convertToApiModelName(modelConfig.getModel().getModelName());
+    }
+
+    private int count(BpeTokenizer tokenizer, String text) {
+        int tokens = tokenizer.count(text);
+        return tokenizer.exact() ? tokens : (int) Math.ceil(tokens * (1 + estimateMargin));
+    }
+
+    private int contextLength(ModelConfiguration modelConfig, String model) {
+        if (modelConfig != null && modelConfig.getModel() != null && modelConfig.getModel().getContextLength() != null) {
+            return modelConfig.getModel().getContextLength();
+        }
+        // Longest matching prefix, so gpt-4o wins over gpt-4
+        String match = null;
+        for (String prefix : KNOWN_CONTEXT_LENGTHS.keySet()) {
+            if (model.startsWith(prefix) && (match == null || prefix.length() > match.length())) {
+                match = prefix;
+            }
+        }
+        return match == null ? defaultContextLength : KNOWN_CONTEXT_LENGTHS.get(match);
+    }
+
+    private BpeTokenizer tokenizer(String model) {
+        return encodings.computeIfAbsent(encoding(model), this::loadEncoding);
+    }
+
+    private static String encoding(String model) {
+        if (model.startsWith("gpt-4o") || model.startsWith("gpt-4.1") || model.matches("^o[1-9].*")) {
+            return "o200k_base";
+        }
+        if (model.startsWith("gpt-4") || model.startsWith("gpt-3.5") || model.startsWith("text-embedding")) {
+            return "cl100k_base";
+        }
+        return "estimate";
+    }
+
+    private BpeTokenizer loadEncoding(String encoding) {
+        Path file = vocabularyDir.resolve(encoding + ".tiktoken");
+        if (encoding.equals("estimate") || !Files.isReadable(file)) {
+            if (!encoding.equals("estimate")) {
+                log.info("No vocabulary at {}; estimating {} token counts", file, encoding);
+            }
+            return BpeTokenizer.estimating();
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            long start = System.currentTimeMillis();
+            BpeTokenizer tokenizer = BpeTokenizer.load(in);
+            log.info("Loaded {} vocabulary in {}ms", encoding, System.currentTimeMillis() - start);
+            return tokenizer;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load vocabulary {}: {}; estimating token counts", file, e.getMessage());
+            return BpeTokenizer.estimating();
+        }
+    }
+}
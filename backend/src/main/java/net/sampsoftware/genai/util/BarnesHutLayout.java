@@ -0,0 +1,337 @@
+package net.sampsoftware.genai.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Force-directed graph layout (Fruchterman-Reingold forces) with Barnes-Hut approximated repulsion.
+ * Positions are kept in a flat {@code double[]} of x/y pairs; repulsion is computed in parallel.
+ */
+public class BarnesHutLayout {
+
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final int CHUNK_SIZE = 128;
+    private static final int MAX_DEPTH = 48;
+    private static final double MIN_DISTANCE_SQ = 1e-4;
+
+    /**
+     * Tuning parameters for a layout run
+     */
+    public record Settings(
+            int iterations,
+            double theta,
+            double idealEdgeLength,
+            double gravity,
+            double initialTemperature,
+            long seed
+    ) {
+        public static Settings defaults() {
+            return new Settings(300, 0.8, 80.0, 0.02, 0.0, 42L);
+        }
+
+        public Settings withIterations(int iterations) {
+            return new Settings(iterations, theta, idealEdgeLength, gravity, initialTemperature, seed);
+        }
+
+        public Settings withInitialTemperature(double initialTemperature) {
+            return new Settings(iterations, theta, idealEdgeLength, gravity, initialTemperature, seed);
+        }
+    }
+
+    private final Settings settings;
+    private final ForkJoinPool pool;
+
+    public BarnesHutLayout(Settings settings, ForkJoinPool pool) {
+        this.settings = settings;
+        this.pool = pool;
+    }
+
+    /**
+     * Lay out a graph of {@code nodeCount} nodes.
+     *
+     * @param edgeSources source node index per edge
+     * @param edgeTargets target node index per edge
+     * @param seed        optional initial x/y pairs (length {@code 2 * nodeCount}); random when null
+     * @return x/y pairs for every node
+     */
+    public double[] layout(int nodeCount, int[] edgeSources, int[] edgeTargets, double[] seed) {
+        if (nodeCount == 0) {
+            return new double[0];
+        }
+        double k = settings.idealEdgeLength();
+        double[] pos = seed != null ? Arrays.copyOf(seed, nodeCount * 2) : randomPositions(nodeCount, k);
+        if (nodeCount == 1) {
+            pos[0] = 0;
+            pos[1] = 0;
+            return pos;
+        }
+
+        double[] disp = new double[nodeCount * 2];
+        QuadTree tree = new QuadTree(nodeCount);
+        double temperature = settings.initialTemperature() > 0
+                ? settings.initialTemperature()
+                : k * Math.sqrt(nodeCount);
+        int iterations = Math.max(1, settings.iterations());
+        double cooling = temperature / iterations;
+
+        for (int iter = 0; iter < iterations; iter++) {
+            tree.build(pos, nodeCount);
+            computeRepulsion(tree, pos, disp, nodeCount, k);
+            applyAttraction(pos, disp, edgeSources, edgeTargets, k);
+            move(pos, disp, nodeCount, temperature);
+            temperature = Math.max(temperature - cooling, k * 0.01);
+        }
+        center(pos, nodeCount);
+        return pos;
+    }
+
+    private double[] randomPositions(int nodeCount, double k) {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        double radius = k * Math.sqrt(nodeCount);
+        double[] pos = new double[nodeCount * 2];
+        for (int i = 0; i < nodeCount; i++) {
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double r = radius * Math.sqrt(random.nextDouble());
+            pos[2 * i] = r * Math.cos(angle);
+            pos[2 * i + 1] = r * Math.sin(angle);
+        }
+        return pos;
+    }
+
+    private void computeRepulsion(QuadTree tree, double[] pos, double[] disp, int nodeCount, double k) {
+        double k2 = k * k;
+        double theta2 = settings.theta() * settings.theta();
+        if (nodeCount < PARALLEL_THRESHOLD || pool == null) {
+            repulseRange(tree, pos, disp, 0, nodeCount, k2, theta2);
+            return;
+        }
+        int chunks = (nodeCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        pool.submit(() -> IntStream.range(0, chunks).parallel().forEach(c -> {
+            int from = c * CHUNK_SIZE;
+            repulseRange(tree, pos, disp, from, Math.min(from + CHUNK_SIZE, nodeCount), k2, theta2);
+        })).join();
+    }
+
+    private static void repulseRange(QuadTree tree, double[] pos, double[] disp,
+                                     int from, int to, double k2, double theta2) {
+        int[] stack = new int[MAX_DEPTH * 4 + 8];
+        for (int i = from; i < to; i++) {
+            double x = pos[2 * i];
+            double y = pos[2 * i + 1];
+            double fx = 0;
+            double fy = 0;
+            int sp = 0;
+            stack[sp++] = 0;
+            while (sp > 0) {
+                int cell = stack[--sp];
+                double mass = tree.mass[cell];
+                if (mass == 0) {
+                    continue;
+                }
+                double dx = x - tree.comX[cell];
+                double dy = y - tree.comY[cell];
+                double d2 = dx * dx + dy * dy;
+                boolean leaf = tree.child[cell * 4] < 0 && tree.child[cell * 4 + 1] < 0
+                        && tree.child[cell * 4 + 2] < 0 && tree.child[cell * 4 + 3] < 0;
+                if (leaf || 4 * tree.half[cell] * tree.half[cell] < theta2 * d2) {
+                    if (leaf && tree.body[cell] == i) {
+                        mass -= 1;
+                        if (mass <= 0) {
+                            continue;
+                        }
+                    }
+                    if (d2 < MIN_DISTANCE_SQ) {
+                        // Coincident points: push apart along a deterministic direction
+                        dx = ((i * 31 + cell) % 7 - 3) * 0.01 + 0.005;
+                        dy = ((i * 17 + cell) % 5 - 2) * 0.01 + 0.005;
+                        d2 = dx * dx + dy * dy;
+                    }
+                    double f = k2 * mass / d2;
+                    fx += dx * f;
+                    fy += dy * f;
+                } else {
+                    for (int q = 0; q < 4; q++) {
+                        int c = tree.child[cell * 4 + q];
+                        if (c >= 0) {
+                            stack[sp++] = c;
+                        }
+                    }
+                }
+            }
+            disp[2 * i] = fx;
+            disp[2 * i + 1] = fy;
+        }
+    }
+
+    private static void applyAttraction(double[] pos, double[] disp, int[] sources, int[] targets, double k) {
+        for (int e = 0; e < sources.length; e++) {
+            int s = sources[e];
+            int t = targets[e];
+            if (s == t) {
+                continue;
+            }
+            double dx = pos[2 * s] - pos[2 * t];
+            double dy = pos[2 * s + 1] - pos[2 * t + 1];
+            double d = Math.sqrt(dx * dx + dy * dy);
+            if (d == 0) {
+                continue;
+            }
+            // |F| = d^2 / k along the edge
+            double f = d / k;
+            disp[2 * s] -= dx * f;
+            disp[2 * s + 1] -= dy * f;
+            disp[2 * t] += dx * f;
+            disp[2 * t + 1] += dy * f;
+        }
+    }
+
+    private void move(double[] pos, double[] disp, int nodeCount, double temperature) {
+        double gravity = settings.gravity() * settings.idealEdgeLength();
+        for (int i = 0; i < nodeCount; i++) {
+            double x = pos[2 * i];
+            double y = pos[2 * i + 1];
+            double dx = disp[2 * i] - gravity * x / settings.idealEdgeLength();
+            double dy = disp[2 * i + 1] - gravity * y / settings.idealEdgeLength();
+            double len = Math.sqrt(dx * dx + dy * dy);
+            if (len > 0) {
+                double step = Math.min(len, temperature) / len;
+                pos[2 * i] = x + dx * step;
+                pos[2 * i + 1] = y + dy * step;
+            }
+        }
+    }
+
+    private static void center(double[] pos, int nodeCount) {
+        double cx = 0;
+        double cy = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            cx += pos[2 * i];
+            cy += pos[2 * i + 1];
+        }
+        cx /= nodeCount;
+        cy /= nodeCount;
+        for (int i = 0; i < nodeCount; i++) {
+            pos[2 * i] -= cx;
+            pos[2 * i + 1] -= cy;
+        }
+    }
+
+    /**
+     * Array-backed quadtree; cells carry total mass and centre of mass, leaves carry one body.
+     */
+    private static final class QuadTree {
+        int[] child;
+        int[] body;
+        double[] mass;
+        double[] comX;
+        double[] comY;
+        double[] cx;
+        double[] cy;
+        double[] half;
+        int size;
+
+        QuadTree(int nodeCount) {
+            allocate(Math.max(16, nodeCount * 2));
+        }
+
+        private void allocate(int capacity) {
+            child = new int[capacity * 4];
+            body = new int[capacity];
+            mass = new double[capacity];
+            comX = new double[capacity];
+            comY = new double[capacity];
+            cx = new double[capacity];
+            cy = new double[capacity];
+            half = new double[capacity];
+        }
+
+        private void grow() {
+            int capacity = body.length * 2;
+            child = Arrays.copyOf(child, capacity * 4);
+            body = Arrays.copyOf(body, capacity);
+            mass = Arrays.copyOf(mass, capacity);
+            comX = Arrays.copyOf(comX, capacity);
+            comY = Arrays.copyOf(comY, capacity);
+            cx = Arrays.copyOf(cx, capacity);
+            cy = Arrays.copyOf(cy, capacity);
+            half = Arrays.copyOf(half, capacity);
+        }
+
+        void build(double[] pos, int nodeCount) {
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < nodeCount; i++) {
+                minX = Math.min(minX, pos[2 * i]);
+                maxX = Math.max(maxX, pos[2 * i]);
+                minY = Math.min(minY, pos[2 * i + 1]);
+                maxY = Math.max(maxY, pos[2 * i + 1]);
+            }
+            size = 0;
+            newCell((minX + maxX) / 2, (minY + maxY) / 2, Math.max(maxX - minX, maxY - minY) / 2 + 1);
+            for (int i = 0; i < nodeCount; i++) {
+                insert(i, pos[2 * i], pos[2 * i + 1]);
+            }
+        }
+
+        private int newCell(double centerX, double centerY, double halfSize) {
+            if (size == body.length) {
+                grow();
+            }
+            int cell = size++;
+            Arrays.fill(child, cell * 4, cell * 4 + 4, -1);
+            body[cell] = -1;
+            mass[cell] = 0;
+            comX[cell] = 0;
+            comY[cell] = 0;
+            cx[cell] = centerX;
+            cy[cell] = centerY;
+            half[cell] = halfSize;
+            return cell;
+        }
+
+        private int childFor(int cell, double x, double y) {
+            int q = (x >= cx[cell] ? 1 : 0) | (y >= cy[cell] ? 2 : 0);
+            int c = child[cell * 4 + q];
+            if (c < 0) {
+                double h = half[cell] / 2;
+                c = newCell(cx[cell] + ((q & 1) != 0 ? h : -h), cy[cell] + ((q & 2) != 0 ? h : -h), h);
+                child[cell * 4 + q] = c;
+            }
+            return c;
+        }
+
+        private void insert(int b, double x, double y) {
+            int cell = 0;
+            for (int depth = 0; ; depth++) {
+                double m = mass[cell];
+                double ex = comX[cell];
+                double ey = comY[cell];
+                comX[cell] = (ex * m + x) / (m + 1);
+                comY[cell] = (ey * m + y) / (m + 1);
+                mass[cell] = m + 1;
+                if (m == 0) {
+                    body[cell] = b;
+                    return;
+                }
+                if (depth >= MAX_DEPTH) {
+                    // Effectively coincident bodies: keep them aggregated in this leaf
+                    return;
+                }
+                int existing = body[cell];
+                if (existing >= 0) {
+                    body[cell] = -1;
+                    int c = childFor(cell, ex, ey);
+                    comX[c] = ex;
+                    comY[c] = ey;
+                    mass[c] = 1;
+                    body[c] = existing;
+                }
+                cell = childFor(cell, x, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package net.sampsoftware.genai.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Byte-level BPE token counter over a tiktoken rank table ({@code base64-token rank} per line).
+ * <p>
+ * Text is split into pieces with the cl100k pre-tokenization rules (contractions, words with
+ * one leading non-letter, runs of up to three digits, punctuation runs, whitespace), written
+ * to UTF-8 and merged by lowest pair rank as tiktoken does. The rank table is an
+ * open-addressing hash over one byte pool, so lookups compare bytes in place; counting uses
+ * per-thread scratch buffers and allocates nothing per call.
+ * <p>
+ * {@link #estimating()} returns a counter without a rank table that charges one token per
+ * four UTF-8 bytes of each piece, at least one per piece. It over-counts English prose
+ * slightly and is meant for models whose vocabulary is not available.
+ */
+public final class BpeTokenizer {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final byte[] pool;
+    private final int[] offsets;
+    private final int[] table;
+    private final int mask;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    private BpeTokenizer(byte[][] tokensByRank) {
+        if (tokensByRank == null) {
+            pool = null;
+            offsets = null;
+            table = null;
+            mask = 0;
+            return;
+        }
+        int size = 0;
+        for (byte[] token : tokensByRank) {
+            size += token == null ? 0 : token.length;
+        }
+        pool = new byte[size];
+        offsets = new int[tokensByRank.length + 1];
+        int capacity = Integer.highestOneBit(Math.max(4, tokensByRank.length * 2) - 1) << 1;
+        table = new int[capacity];
+        mask = capacity - 1;
+        int position = 0;
+        for (int rank = 0; rank < tokensByRank.length; rank++) {
+            offsets[rank] = position;
+            byte[] token = tokensByRank[rank];
+            if (token == null || token.length == 0) {
+                continue;
+            }
+            System.arraycopy(token, 0, pool, position, token.length);
+            position += token.length;
+            offsets[rank + 1] = position;
+            int slot = hash(token, 0, token.length) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = rank + 1;
+        }
+        offsets[tokensByRank.length] = position;
+    }
+
+    /**
+     * Tokenizer over tokens indexed by rank; null entries are gaps in the rank sequence
+     */
+    public static BpeTokenizer of(byte[][] tokensByRank) {
+        return new BpeTokenizer(tokensByRank.clone());
+    }
+
+    /**
+     * Tokenizer over a tiktoken rank file
+     */
+    public static BpeTokenizer load(InputStream in) throws IOException {
+        List<byte[]> tokens = new ArrayList<>();
+        Base64.Decoder decoder = Base64.getDecoder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                int rank = Integer.parseInt(line.substring(space + 1).trim());
+                while (tokens.size() <= rank) {
+                    tokens.add(null);
+                }
+                tokens.set(rank, decoder.decode(line.substring(0, space)));
+            }
+        }
+        return new BpeTokenizer(tokens.toArray(new byte[0][]));
+    }
+
+    public static BpeTokenizer estimating() {
+        return new BpeTokenizer(null);
+    }
+
+    /**
+     * Whether counts come from a rank table rather than an estimate
+     */
+    public boolean exact() {
+        return table != null;
+    }
+
+    public int count(CharSequence text) {
+        return (int) scan(text, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The char index at which {@code text} is cut to keep at most {@code maxTokens} tokens,
+     * at a piece boundary; the text length when all of it fits
+     */
+    public int truncationIndex(CharSequence text, int maxTokens) {
+        return (int) (scan(text, maxTokens) >>> 32);
+    }
+
+    /**
+     * Token count in the low half, char index after the last piece within the limit in the high
+     */
+    private long scan(CharSequence text, int limit) {
+        if (text == null) {
+            return 0;
+        }
+        int length = text.length();
+        int tokens = 0;
+        int start = 0;
+        Scratch buffers = scratch.get();
+        while (start < length) {
+            int end = nextPiece(text, start);
+            int pieceTokens = table == null
+                    ? Math.max(1, (utf8(text, start, end, buffers) + 3) / 4)
+                    : merge(buffers, utf8(text, start, end, buffers));
+            if (tokens + (long) pieceTokens > limit) {
+                return (long) start << 32 | tokens;
+            }
+            tokens += pieceTokens;
+            start = end;
+        }
+        return (long) length << 32 | tokens;
+    }
+
+    /**
+     * Number of tokens the first {@code length} scratch bytes merge into
+     */
+    private int merge(Scratch buffers, int length) {
+        byte[] bytes = buffers.bytes;
+        if (length == 1 || rank(bytes, 0, length) != NONE) {
+            return 1;
+        }
+        buffers.ensureParts(length + 1);
+        int[] parts = buffers.parts;
+        int[] ranks = buffers.ranks;
+        for (int i = 0; i <= length; i++) {
+            parts[i] = i;
+        }
+        int count = length + 1;
+        for (int i = 0; i < count - 2; i++) {
+            ranks[i] = rank(bytes, parts[i], parts[i + 2] - parts[i]);
+        }
+        while (count > 2) {
+            int best = NONE;
+            int at = -1;
+            for (int i = 0; i < count - 2; i++) {
+                if (ranks[i] < best) {
+                    best = ranks[i];
+                    at = i;
+                }
+            }
+            if (at < 0) {
+                break;
+            }
+            System.arraycopy(parts, at + 2, parts, at + 1, count - at - 2);
+            System.arraycopy(ranks, at + 1, ranks, at, count - at - 3 > 0 ? count - at - 3 : 0);
+            count--;
+            if (at < count - 2) {
+                ranks[at] = rank(bytes, parts[at], parts[at + 2] - parts[at]);
+            }
+            if (at > 0) {
+                ranks[at - 1] = rank(bytes, parts[at - 1], parts[at + 1] - parts[at - 1]);
+            }
+        }
+        return count - 1;
+    }
+
+    private int rank(byte[] bytes, int from, int length) {
+        int slot = hash(bytes, from, length) & mask;
+        int entry;
+        while ((entry = table[slot]) != 0) {
+            int rank = entry - 1;
+            int offset = offsets[rank];
+            if (offsets[rank + 1] - offset == length
+                    && Arrays.equals(pool, offset, offset + length, bytes, from, from + length)) {
+                return rank;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NONE;
+    }
+
+    private static int hash(byte[] bytes, int from, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < from + length; i++) {
+            hash = (hash ^ (bytes[i] & 0xff)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Writes {@code text[start, end)} as UTF-8 into the scratch bytes and returns the byte count
+     */
+    private static int utf8(CharSequence text, int start, int end, Scratch buffers) {
+        buffers.ensureBytes((end - start) * 3);
+        byte[] out = buffers.bytes;
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out[n++] = (byte) c;
+            } else if (c < 0x800) {
+                out[n++] = (byte) (0xc0 | c >> 6);
+                out[n++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                out[n++] = (byte) (0xf0 | cp >> 18);
+                out[n++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                out[n++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                out[n++] = (byte) (0x80 | cp & 0x3f);
+            } else {
+                out[n++] = (byte) (0xe0 | c >> 12);
+                out[n++] = (byte) (0x80 | c >> 6 & 0x3f);
+                out[n++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * End of the pre-tokenization piece starting at {@code i}, following
+     * {@code 's|'t|'re|'ve|'m|'ll|'d | [^\r\n\p{L}\p{N}]?\p{L}+ | \p{N}{1,3} | ?[^\s\p{L}\p{N}]+[\r\n]* | \s*[\r\n]+ | \s+(?!\S) | \s+}
+     */
+    static int nextPiece(CharSequence s, int i) {
+        int length = s.length();
+        int c = Character.codePointAt(s, i);
+        int next = i + Character.charCount(c);
+
+        if (c == '\'' && next < length) {
+            char a = Character.toLowerCase(s.charAt(next));
+            if (a == 's' || a == 't' || a == 'm' || a == 'd') {
+                return next + 1;
+            }
+            if (next + 1 < length) {
+                char b = Character.toLowerCase(s.charAt(next + 1));
+                if ((a == 'r' || a == 'v') && b == 'e' || a == 'l' && b == 'l') {
+                    return next + 2;
+                }
+            }
+        }
+        if (Character.isLetter(c)) {
+            return letters(s, next);
+        }
+        if (c != '\r' && c != '\n' && !Character.isDigit(c) && next < length
+                && Character.isLetter(Character.codePointAt(s, next))) {
+            return letters(s, next);
+        }
+        if (Character.isDigit(c)) {
+            int end = next;
+            for (int digits = 1; digits < 3 && end < length && Character.isDigit(Character.codePointAt(s, end)); digits++) {
+                end += Character.charCount(Character.codePointAt(s, end));
+            }
+            return end;
+        }
+        int symbols = c == ' ' ? next : i;
+        if (symbols < length && isSymbol(Character.codePointAt(s, symbols))) {
+            int end = symbols;
+            while (end < length && isSymbol(Character.codePointAt(s, end))) {
+                end += Character.charCount(Character.codePointAt(s, end));
+            }
+            while (end < length && (s.charAt(end) == '\r' || s.charAt(end) == '\n')) {
+                end++;
+            }
+            return end;
+        }
+        // Whitespace run: up to its last line break if it has one, else leave the final
+        // space to the following word
+        int end = i;
+        int lastBreak = -1;
+        while (end < length && Character.isWhitespace(s.charAt(end))) {
+            if (s.charAt(end) == '\r' || s.charAt(end) == '\n') {
+                lastBreak = end;
+            }
+            end++;
+        }
+        if (end == i) {
+            return next;
+        }
+        if (lastBreak >= 0) {
+            return lastBreak + 1;
+        }
+        return end < length && end - i > 1 ? end - 1 : end;
+    }
+
+    private static int letters(CharSequence s, int from) {
+        int end = from;
+        while (end < s.length()) {
+            int cp = Character.codePointAt(s, end);
+            if (!Character.isLetter(cp)) {
+                break;
+            }
+            end += Character.charCount(cp);
+        }
+        return end;
+    }
+
+    private static boolean isSymbol(int cp) {
+        return !Character.isWhitespace(cp) && !Character.isLetter(cp) && !Character.isDigit(cp);
+    }
+
+    private static final class Scratch {
+        byte[] bytes = new byte[256];
+        int[] parts = new int[257];
+        int[] ranks = new int[257];
+
+        void ensureBytes(int size) {
+            if (bytes.length < size) {
+                bytes = new byte[Math.max(size, bytes.length * 2)];
+            }
+        }
+
+        void ensureParts(int size) {
+            if (parts.length < size) {
+                parts = new int[Math.max(size, parts.length * 2)];
+                ranks = new int[parts.length];
+            }
+        }
+    }
+}
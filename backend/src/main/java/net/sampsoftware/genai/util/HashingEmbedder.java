@@ -0,0 +1,119 @@
+package net.sampsoftware.genai.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Deterministic text embedding by signed feature hashing. Word unigrams, word bigrams and
+ * boundary-padded character trigrams are hashed into a fixed number of dimensions with a
+ * hash-derived sign, counts are damped logarithmically, and the result is L2-normalized so
+ * dot products are cosine similarities. Stable across JVMs and runs; no model files.
+ */
+public final class HashingEmbedder {
+
+    private static final float UNIGRAM_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.7f;
+    private static final float TRIGRAM_WEIGHT = 0.35f;
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        if (dimensions < 8) {
+            throw new IllegalArgumentException("dimensions must be at least 8");
+        }
+        this.dimensions = dimensions;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public float[] embed(String text) {
+        float[] counts = new float[dimensions];
+        List<String> words = tokenize(text);
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            add(counts, "w:" + word, UNIGRAM_WEIGHT);
+            if (i > 0) {
+                add(counts, "b:" + words.get(i - 1) + ' ' + word, BIGRAM_WEIGHT);
+            }
+            String padded = '#' + word + '#';
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                add(counts, "c:" + padded.substring(j, j + 3), TRIGRAM_WEIGHT);
+            }
+        }
+
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            float value = counts[i];
+            // Sublinear damping keeps repeated terms from dominating
+            float damped = (float) (Math.signum(value) * Math.log1p(Math.abs(value)));
+            vector[i] = damped;
+            norm += damped * damped;
+        }
+        if (norm > 0) {
+            float inverse = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= inverse;
+            }
+        }
+        return vector;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Lower-cased runs of letters and digits, with accents stripped
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return words;
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    private void add(float[] counts, String feature, float weight) {
+        long hash = fnv1a(feature);
+        int index = (int) Long.remainderUnsigned(hash, dimensions);
+        counts[index] += (hash >>> 63) == 0 ? weight : -weight;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Final avalanche so the sign bit and low bits are independent
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
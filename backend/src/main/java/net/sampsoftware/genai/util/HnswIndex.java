@@ -0,0 +1,758 @@
+package net.sampsoftware.genai.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) for approximate nearest
+ * neighbour search over L2-normalized vectors, scored by cosine similarity.
+ * <p>
+ * Storage is primitive arrays indexed by node: one flat {@code float[]} of vectors, and per
+ * node one {@code int[]} holding every layer's neighbour list as {@code [count, n1, n2, ...]}.
+ * Each node carries an external {@code long} id and an {@code int} label that searches can
+ * filter on. Inserts run concurrently: neighbour lists are guarded by striped locks, and the
+ * arrays only grow under the exclusive side of a read-write lock. Re-adding an id replaces
+ * it; removed nodes stay in the graph as tombstones for navigation but are never returned.
+ * <p>
+ * {@link #save} writes a little-endian file that {@link #load} reads back through memory
+ * mapping, so a restart costs one sequential read instead of a rebuild.
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+    private static final int LOCK_STRIPES = 1024;
+    private static final int IO_BUFFER = 1 << 20;
+    private static final long MAP_WINDOW = 1L << 28;
+
+    public record Neighbor(long id, float score) {}
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelFactor;
+
+    private final ReentrantReadWriteLock resizeLock = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[LOCK_STRIPES];
+    private final Object entryLock = new Object();
+    private final Map<Long, Integer> nodesById = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger tombstones = new AtomicInteger();
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    private int capacity;
+    private float[] vectors;
+    private long[] ids;
+    private int[] labels;
+    private boolean[] deleted;
+    private int[][] links;
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param m              neighbours per node on the upper layers (twice that on layer 0)
+     * @param efConstruction candidate list size while inserting; higher builds a better graph
+     */
+    public HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity) {
+        if (dimensions < 1 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelFactor = 1 / Math.log(m);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+        allocate(Math.max(16, initialCapacity));
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Number of live (not removed) vectors
+     */
+    public int size() {
+        return nodesById.size();
+    }
+
+    /**
+     * Removed or replaced nodes still occupying graph slots
+     */
+    public int tombstones() {
+        return tombstones.get();
+    }
+
+    public boolean contains(long id) {
+        return nodesById.containsKey(id);
+    }
+
+    /**
+     * Copy of the stored vector for an id, or null
+     */
+    public float[] vector(long id) {
+        resizeLock.readLock().lock();
+        try {
+            Integer node = nodesById.get(id);
+            return node == null ? null : Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Insert a normalized vector, replacing any earlier vector with the same id. Safe to call
+     * from many threads at once.
+     */
+    public void add(long id, float[] vector, int label) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        int level = randomLevel();
+        int node;
+        while ((node = reserveSlot()) < 0) {
+            grow();
+        }
+        try {
+            System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+            ids[node] = id;
+            labels[node] = label;
+            links[node] = new int[maxM0 + 1 + level * (m + 1)];
+            Integer previous = nodesById.put(id, node);
+            if (previous != null) {
+                deleted[previous] = true;
+                tombstones.incrementAndGet();
+            }
+            connect(node, level);
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        Integer node = nodesById.remove(id);
+        if (node == null) {
+            return false;
+        }
+        resizeLock.readLock().lock();
+        try {
+            deleted[node] = true;
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+        tombstones.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The {@code k} live vectors most similar to the query, best first
+     *
+     * @param ef     candidate list size; larger is more accurate and slower (at least {@code k})
+     * @param accept accepted labels, or null for all
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + query.length);
+        }
+        resizeLock.readLock().lock();
+        try {
+            int current;
+            int top;
+            synchronized (entryLock) {
+                current = entryPoint;
+                top = maxLevel;
+            }
+            if (current < 0 || k <= 0) {
+                return List.of();
+            }
+            for (int level = top; level > 0; level--) {
+                current = greedyClosest(query, current, level);
+            }
+            NodeHeap found = searchLayer(query, new int[]{current}, Math.max(ef, k), 0, false, accept);
+            while (found.size() > k) {
+                found.poll();
+            }
+            Neighbor[] result = new Neighbor[found.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                float distance = found.peekDistance();
+                result[i] = new Neighbor(ids[found.poll()], 1 - distance);
+            }
+            return List.of(result);
+        } finally {
+            resizeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Write the index to a file, replacing it atomically. Inserts wait while saving.
+     */
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        resizeLock.writeLock().lock();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int slots = count.get();
+            SectionWriter out = new SectionWriter(channel);
+            out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimensions).putInt(m).putInt(efConstruction)
+                    .putInt(slots).putInt(entryPoint).putInt(maxLevel);
+            for (int i = 0; i < slots; i++) {
+                out.putLong(ids[i]);
+            }
+            for (int i = 0; i < slots; i++) {
+                out.putInt(labels[i]);
+            }
+            for (int i = 0; i < slots; i++) {
+                // Slots whose id moved to a newer node are tombstones too
+                out.putByte((byte) (deleted[i] || !Integer.valueOf(i).equals(nodesById.get(ids[i])) ? 1 : 0));
+            }
+            for (int i = 0; i < slots; i++) {
+                out.putInt(links[i].length);
+            }
+            for (int i = 0; i < slots; i++) {
+                for (int value : links[i]) {
+                    out.putInt(value);
+                }
+            }
+            for (int i = 0; i < slots * dimensions; i++) {
+                out.putFloat(vectors[i]);
+            }
+            out.flush();
+            channel.force(false);
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static HnswIndex load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SectionReader in = new SectionReader(channel);
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                throw new IOException("Not an HNSW index file: " + path);
+            }
+            int dimensions = in.getInt();
+            int m = in.getInt();
+            int efConstruction = in.getInt();
+            int slots = in.getInt();
+            HnswIndex index = new HnswIndex(dimensions, m, efConstruction, slots);
+            index.entryPoint = in.getInt();
+            index.maxLevel = in.getInt();
+            for (int i = 0; i < slots; i++) {
+                index.ids[i] = in.getLong();
+            }
+            for (int i = 0; i < slots; i++) {
+                index.labels[i] = in.getInt();
+            }
+            for (int i = 0; i < slots; i++) {
+                index.deleted[i] = in.getByte() != 0;
+            }
+            int[] lengths = new int[slots];
+            for (int i = 0; i < slots; i++) {
+                lengths[i] = in.getInt();
+            }
+            for (int i = 0; i < slots; i++) {
+                index.links[i] = new int[lengths[i]];
+                for (int j = 0; j < lengths[i]; j++) {
+                    index.links[i][j] = in.getInt();
+                }
+            }
+            for (int i = 0; i < slots * dimensions; i++) {
+                index.vectors[i] = in.getFloat();
+            }
+            for (int i = 0; i < slots; i++) {
+                if (index.deleted[i]) {
+                    index.tombstones.incrementAndGet();
+                } else {
+                    index.nodesById.put(index.ids[i], i);
+                }
+            }
+            index.count.set(slots);
+            return index;
+        }
+    }
+
+    /**
+     * Claim the next node slot with the read lock held, or return -1 (lock released) when full
+     */
+    private int reserveSlot() {
+        resizeLock.readLock().lock();
+        while (true) {
+            int slot = count.get();
+            if (slot >= capacity) {
+                resizeLock.readLock().unlock();
+                return -1;
+            }
+            if (count.compareAndSet(slot, slot + 1)) {
+                return slot;
+            }
+        }
+    }
+
+    private void grow() {
+        resizeLock.writeLock().lock();
+        try {
+            if (count.get() >= capacity) {
+                allocate(capacity * 2);
+            }
+        } finally {
+            resizeLock.writeLock().unlock();
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        if ((long) newCapacity * dimensions > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("HNSW index capacity exceeded");
+        }
+        vectors = vectors == null ? new float[newCapacity * dimensions] : Arrays.copyOf(vectors, newCapacity * dimensions);
+        ids = ids == null ? new long[newCapacity] : Arrays.copyOf(ids, newCapacity);
+        labels = labels == null ? new int[newCapacity] : Arrays.copyOf(labels, newCapacity);
+        deleted = deleted == null ? new boolean[newCapacity] : Arrays.copyOf(deleted, newCapacity);
+        links = links == null ? new int[newCapacity][] : Arrays.copyOf(links, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private int randomLevel() {
+        double uniform = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(MAX_LEVEL, (int) (-Math.log(uniform) * levelFactor));
+    }
+
+    private void connect(int node, int level) {
+        int current;
+        int top;
+        synchronized (entryLock) {
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+            current = entryPoint;
+            top = maxLevel;
+        }
+        float[] query = Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        for (int l = top; l > level; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        int[] entries = {current};
+        for (int l = Math.min(level, top); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(query, entries, efConstruction, l, true, null);
+            entries = candidates.nodes();
+            // Linking (not overwriting) keeps edges a concurrent insert may already have added
+            for (int neighbor : selectNeighbors(node, candidates, m)) {
+                link(node, neighbor, l);
+                link(neighbor, node, l);
+            }
+        }
+        if (level > top) {
+            synchronized (entryLock) {
+                if (level > maxLevel) {
+                    entryPoint = node;
+                    maxLevel = level;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add {@code node} to the neighbour list of {@code from}, pruning it with the selection
+     * heuristic when full
+     */
+    private void link(int from, int node, int level) {
+        synchronized (stripe(from)) {
+            int[] list = links[from];
+            int offset = offset(level);
+            int size = list[offset];
+            int limit = level == 0 ? maxM0 : m;
+            for (int i = 1; i <= size; i++) {
+                if (list[offset + i] == node) {
+                    return;
+                }
+            }
+            if (size < limit) {
+                list[offset + size + 1] = node;
+                list[offset] = size + 1;
+                return;
+            }
+            NodeHeap candidates = new NodeHeap(size + 1, true);
+            candidates.push(node, distance(from, node));
+            for (int i = 1; i <= size; i++) {
+                candidates.push(list[offset + i], distance(from, list[offset + i]));
+            }
+            int[] kept = selectNeighbors(from, candidates, limit);
+            list[offset] = kept.length;
+            System.arraycopy(kept, 0, list, offset + 1, kept.length);
+        }
+    }
+
+    /**
+     * Heuristic neighbour selection: keep a candidate only if it is closer to the base node
+     * than to every neighbour already kept, which preserves links across clusters
+     */
+    private int[] selectNeighbors(int base, NodeHeap candidates, int limit) {
+        int[] sorted = candidates.sortedAscending();
+        int[] kept = new int[Math.min(limit, sorted.length)];
+        int size = 0;
+        for (int i = 0; i < sorted.length && size < kept.length; i++) {
+            int candidate = sorted[i];
+            if (candidate == base) {
+                continue;
+            }
+            float toBase = distance(base, candidate);
+            boolean diverse = true;
+            for (int j = 0; j < size && diverse; j++) {
+                diverse = distance(kept[j], candidate) > toBase;
+            }
+            if (diverse) {
+                kept[size++] = candidate;
+            }
+        }
+        return Arrays.copyOf(kept, size);
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float best = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(current, level)) {
+                float d = distance(query, neighbor);
+                if (d < best) {
+                    best = d;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer. Returns a max-heap of the {@code ef} closest nodes that
+     * are live and accepted; during construction tombstones count too, so new nodes still
+     * link through them.
+     */
+    private NodeHeap searchLayer(float[] query, int[] entries, int ef, int level,
+                                 boolean construction, IntPredicate accept) {
+        Visited seen = visited.get();
+        seen.reset(count.get());
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap results = new NodeHeap(ef + 1, true);
+        for (int entry : entries) {
+            if (seen.visit(entry)) {
+                float d = distance(query, entry);
+                candidates.push(entry, d);
+                if (qualifies(entry, accept, construction)) {
+                    results.push(entry, d);
+                }
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+        while (candidates.size() > 0) {
+            float closest = candidates.peekDistance();
+            if (results.size() >= ef && closest > results.peekDistance()) {
+                break;
+            }
+            int current = candidates.poll();
+            for (int neighbor : neighbors(current, level)) {
+                if (!seen.visit(neighbor)) {
+                    continue;
+                }
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peekDistance()) {
+                    candidates.push(neighbor, d);
+                    if (qualifies(neighbor, accept, construction)) {
+                        results.push(neighbor, d);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean qualifies(int node, IntPredicate accept, boolean construction) {
+        if (construction) {
+            return true;
+        }
+        return !deleted[node] && (accept == null || accept.test(labels[node]));
+    }
+
+    private int[] neighbors(int node, int level) {
+        synchronized (stripe(node)) {
+            int[] list = links[node];
+            int offset = offset(level);
+            if (offset >= list.length) {
+                return new int[0];
+            }
+            return Arrays.copyOfRange(list, offset + 1, offset + 1 + list[offset]);
+        }
+    }
+
+    private int offset(int level) {
+        return level == 0 ? 0 : maxM0 + 1 + (level - 1) * (m + 1);
+    }
+
+    private Object stripe(int node) {
+        return stripes[node & (LOCK_STRIPES - 1)];
+    }
+
+    private float distance(float[] query, int node) {
+        int base = node * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[base + i];
+        }
+        return 1 - dot;
+    }
+
+    private float distance(int a, int b) {
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        float dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[baseA + i] * vectors[baseB + i];
+        }
+        return 1 - dot;
+    }
+
+    /**
+     * Binary heap of nodes keyed by distance; a max-heap keeps the worst on top
+     */
+    private static final class NodeHeap {
+        private final boolean max;
+        private int[] nodes;
+        private float[] distances;
+        private int size;
+
+        NodeHeap(int capacity, boolean max) {
+            this.max = max;
+            this.nodes = new int[Math.max(4, capacity)];
+            this.distances = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(distance, distances[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        float peekDistance() {
+            return distances[0];
+        }
+
+        int poll() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastDistance = distances[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                    child++;
+                }
+                if (!before(distances[child], lastDistance)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            distances[i] = lastDistance;
+            return top;
+        }
+
+        int[] nodes() {
+            return Arrays.copyOf(nodes, size);
+        }
+
+        int[] sortedAscending() {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(distances[a], distances[b]));
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = nodes[order[i]];
+            }
+            return sorted;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Per-thread visited marks, cleared in O(1) by bumping a generation stamp
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        void reset(int nodes) {
+            if (marks.length < nodes) {
+                marks = new int[Math.max(nodes, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        boolean visit(int node) {
+            if (node >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+            }
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    private static final class SectionWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+        SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        SectionWriter putInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+            return this;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putFloat(float value) throws IOException {
+            ensure(Float.BYTES);
+            buffer.putFloat(value);
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Sequential reads through a sliding memory-mapped window
+     */
+    private static final class SectionReader {
+        private final FileChannel channel;
+        private final long length;
+        private MappedByteBuffer window;
+        private long windowStart;
+
+        SectionReader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.length = channel.size();
+            map(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return window.getInt();
+        }
+
+        long getLong() throws IOException {
+            ensure(Long.BYTES);
+            return window.getLong();
+        }
+
+        float getFloat() throws IOException {
+            ensure(Float.BYTES);
+            return window.getFloat();
+        }
+
+        byte getByte() throws IOException {
+            ensure(1);
+            return window.get();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (window.remaining() < bytes) {
+                long position = windowStart + window.position();
+                if (position + bytes > length) {
+                    throw new IOException("Truncated HNSW index file");
+                }
+                map(position);
+            }
+        }
+
+        private void map(long position) throws IOException {
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, length - position));
+            window.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package net.sampsoftware.genai.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MinHash signatures of texts over word shingles, for estimating Jaccard similarity without
+ * comparing the texts. Each of the {@code numHashes} slots keeps the minimum of one seeded
+ * 64-bit mix of the shingle hashes; the fraction of equal slots between two signatures
+ * estimates the Jaccard similarity of their shingle sets.
+ * <p>
+ * For locality-sensitive hashing the signature is cut into bands of equal rows, each hashed
+ * to a bucket. Two texts with similarity {@code s} share at least one bucket with probability
+ * {@code 1 - (1 - s^rows)^bands}; {@link #threshold} gives the similarity where that curve
+ * crosses one half.
+ */
+public final class MinHasher {
+
+    private final int numHashes;
+    private final int shingleSize;
+    private final long[] seeds;
+
+    public MinHasher(int numHashes, int shingleSize) {
+        if (numHashes < 1 || shingleSize < 1) {
+            throw new IllegalArgumentException("numHashes and shingleSize must be positive");
+        }
+        this.numHashes = numHashes;
+        this.shingleSize = shingleSize;
+        this.seeds = new long[numHashes];
+        long state = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < numHashes; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix(state);
+        }
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    public int[] signature(String text) {
+        int[] signature = new int[numHashes];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        List<String> words = HashingEmbedder.tokenize(text);
+        int shingles = Math.max(1, words.size() - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = start; i < Math.min(words.size(), start + shingleSize); i++) {
+                String word = words.get(i);
+                for (int c = 0; c < word.length(); c++) {
+                    hash = (hash ^ word.charAt(c)) * 0x100000001b3L;
+                }
+                hash = (hash ^ ' ') * 0x100000001b3L;
+            }
+            for (int slot = 0; slot < numHashes; slot++) {
+                int value = (int) (mix(hash ^ seeds[slot]) >>> 33);
+                if (value < signature[slot]) {
+                    signature[slot] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estimated Jaccard similarity of the texts behind two signatures
+     */
+    public static double similarity(int[] a, int[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Signatures differ in length");
+        }
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return equal / (double) a.length;
+    }
+
+    /**
+     * One bucket hash per band; band {@code b} covers slots {@code [b * rows, (b + 1) * rows)}
+     */
+    public static long[] bands(int[] signature, int bands) {
+        if (bands < 1 || signature.length % bands != 0) {
+            throw new IllegalArgumentException("Signature length must be a multiple of the band count");
+        }
+        int rows = signature.length / bands;
+        long[] buckets = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long hash = band;
+            for (int row = 0; row < rows; row++) {
+                hash = mix(hash * 31 + signature[band * rows + row]);
+            }
+            buckets[band] = hash;
+        }
+        return buckets;
+    }
+
+    /**
+     * Similarity at which a pair becomes a candidate with probability one half
+     */
+    public static double threshold(int numHashes, int bands) {
+        int rows = numHashes / bands;
+        return Math.pow(1 - Math.pow(0.5, 1.0 / bands), 1.0 / rows);
+    }
+
+    /**
+     * SplitMix64 finalizer
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,177 @@
+package net.sampsoftware.genai.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prompt text parsed once into literal segments and {@code {{placeholder}}} slots. A
+ * placeholder is a dotted path such as {@code item.name} or {@code attributes.author}; its
+ * first segment is the root a {@link Resolver} dispatches on. Rendering appends segments and
+ * resolved values to one buffer sized from the previous render, so repeated renders in a batch
+ * allocate little beyond the result.
+ * <p>
+ * Braces that do not form a well-formed placeholder, such as an unclosed or empty pair, are
+ * kept literally, so any stored prompt compiles.
+ */
+public final class PromptTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    /**
+     * One placeholder slot; {@code path} is the expression split on dots, root first
+     */
+    public record Placeholder(String expression, String[] path) {
+
+        public String root() {
+            return path[0];
+        }
+
+        /**
+         * The path below the root, e.g. {@code name} for {@code item.name}; null when there is none
+         */
+        public String child() {
+            return path.length > 1 ? path[1] : null;
+        }
+    }
+
+    /**
+     * Appends the value of a placeholder; returning false renders the placeholder verbatim
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        boolean append(Placeholder placeholder, StringBuilder out);
+    }
+
+    private final String text;
+    private final String[] literals;
+    private final Placeholder[] placeholders;
+    private final int literalLength;
+    private volatile int sizeHint;
+
+    private PromptTemplate(String text, String[] literals, Placeholder[] placeholders) {
+        this.text = text;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.sizeHint = length + 32 * placeholders.length;
+    }
+
+    public static PromptTemplate compile(String text) {
+        String source = text == null ? "" : text;
+        List<String> literals = new ArrayList<>();
+        List<Placeholder> placeholders = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int from = 0;
+        while (from < source.length()) {
+            int open = source.indexOf(OPEN, from);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                break;
+            }
+            String expression = source.substring(open + OPEN.length(), close).strip();
+            literal.append(source, from, open);
+            if (isPath(expression)) {
+                literals.add(literal.toString());
+                literal.setLength(0);
+                placeholders.add(new Placeholder(expression, expression.split("\\.")));
+            } else {
+                literal.append(source, open, close + CLOSE.length());
+            }
+            from = close + CLOSE.length();
+        }
+        literal.append(source, from, source.length());
+        literals.add(literal.toString());
+        return new PromptTemplate(source, literals.toArray(new String[0]), placeholders.toArray(new Placeholder[0]));
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Distinct placeholder expressions in order of first use
+     */
+    public Set<String> placeholders() {
+        Set<String> expressions = new LinkedHashSet<>();
+        for (Placeholder placeholder : placeholders) {
+            expressions.add(placeholder.expression());
+        }
+        return expressions;
+    }
+
+    /**
+     * Whether any placeholder has the given root, e.g. {@code item}
+     */
+    public boolean references(String root) {
+        for (Placeholder placeholder : placeholders) {
+            if (placeholder.root().equals(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isStatic() {
+        return placeholders.length == 0;
+    }
+
+    public int literalLength() {
+        return literalLength;
+    }
+
+    public String render(Resolver resolver) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = new StringBuilder(sizeHint);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            int mark = out.length();
+            if (!resolver.append(placeholders[i], out)) {
+                out.setLength(mark);
+                out.append(OPEN).append(placeholders[i].expression()).append(CLOSE);
+            }
+        }
+        out.append(literals[placeholders.length]);
+        if (out.length() > sizeHint) {
+            sizeHint = out.length();
+        }
+        return out.toString();
+    }
+
+    /**
+     * Render with plain variables looked up by full expression; unknown ones stay verbatim
+     */
+    public String render(Map<String, ?> variables) {
+        return render((placeholder, out) -> {
+            Object value = variables.get(placeholder.expression());
+            if (value == null) {
+                return false;
+            }
+            out.append(value);
+            return true;
+        });
+    }
+
+    private static boolean isPath(String expression) {
+        if (expression.isEmpty() || expression.startsWith(".") || expression.endsWith(".")
+                || expression.contains("..")) {
+            return false;
+        }
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package net.sampsoftware.genai.util;
+
+/**
+ * A float vector stored as signed bytes with one scale factor: {@code value ~ byte * scale}.
+ * Symmetric max-abs quantization keeps 4x less storage than float32 at well under 1% error
+ * on the dot products of normalized embeddings.
+ */
+public record QuantizedVector(byte[] values, float scale) {
+
+    public static QuantizedVector of(float[] vector) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        float scale = max > 0 ? max / 127f : 1f;
+        byte[] values = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            values[i] = (byte) Math.round(vector[i] / scale);
+        }
+        return new QuantizedVector(values, scale);
+    }
+
+    public int dimensions() {
+        return values.length;
+    }
+
+    public float[] toFloats() {
+        float[] vector = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            vector[i] = values[i] * scale;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,115 @@
+package net.sampsoftware.genai.util;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * String normalization and similarity for matching names across sources. Similarities work
+ * on {@code char[]} so callers can normalize once and score many pairs without allocation.
+ */
+public final class StringSimilarity {
+
+    private static final String[] LEADING_ARTICLES = {"the ", "a ", "an "};
+
+    private StringSimilarity() {
+    }
+
+    /**
+     * Accent-folded, lower-cased text with punctuation removed, whitespace collapsed and a
+     * leading English article dropped
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT)
+                .replace('&', ' ');
+        StringBuilder normalized = new StringBuilder(folded.length());
+        boolean space = false;
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && !normalized.isEmpty()) {
+                    normalized.append(' ');
+                }
+                normalized.append(c);
+                space = false;
+            } else if (c != '\'') {
+                space = true;
+            }
+        }
+        String result = normalized.toString();
+        for (String article : LEADING_ARTICLES) {
+            if (result.startsWith(article) && result.length() > article.length()) {
+                return result.substring(article.length());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Normalized person name with tokens sorted and initials dropped, so "Tolkien, J.R.R."
+     * and "J. R. R. Tolkien" agree
+     */
+    public static String normalizePerson(String name) {
+        String[] tokens = Arrays.stream(normalize(name).split(" "))
+                .filter(token -> token.length() > 1)
+                .sorted()
+                .toArray(String[]::new);
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * Jaro-Winkler similarity in [0, 1] with the standard prefix scale of 0.1
+     */
+    public static double jaroWinkler(char[] a, char[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return a.length == b.length ? 1 : 0;
+        }
+        int window = Math.max(0, Math.max(a.length, b.length) / 2 - 1);
+        boolean[] matchedA = new boolean[a.length];
+        boolean[] matchedB = new boolean[b.length];
+        int matches = 0;
+        for (int i = 0; i < a.length; i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(b.length - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!matchedB[j] && a[i] == b[j]) {
+                    matchedA[i] = true;
+                    matchedB[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < a.length; i++) {
+            if (matchedA[i]) {
+                while (!matchedB[j]) {
+                    j++;
+                }
+                if (a[i] != b[j]) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+        double m = matches;
+        double jaro = (m / a.length + m / b.length + (m - transpositions / 2.0) / m) / 3;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(a.length, b.length)) && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+
+    public static double jaroWinkler(String a, String b) {
+        return jaroWinkler(a.toCharArray(), b.toCharArray());
+    }
+}
@@ -0,0 +1,44 @@
+package net.sampsoftware.genai.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class BatchSummaryControllerTest {
+
+    private static final String UNKNOWN_MODE = """
+        {"itemIds": [1], "prompt": "Summarize", "modelConfigurationId": 1, "itemTypes": ["book"], "mode": "sideways"}
+        """;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void unknownModeIsABadRequest() throws Exception {
+        mockMvc.perform(post("/api/batch-summary")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(UNKNOWN_MODE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+
+        mockMvc.perform(post("/api/batch-summary/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(UNKNOWN_MODE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+
+        mockMvc.perform(post("/api/batch-summary/collection/{id}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(UNKNOWN_MODE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.errorCode").value("VALIDATION_ERROR"));
+    }
+}
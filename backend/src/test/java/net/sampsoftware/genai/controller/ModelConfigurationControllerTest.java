@@ -63,4 +63,48 @@ public class ModelConfigurationControllerTest  {
             .andExpect(jsonPath("$.modelProvider").value("openai"))
             .andExpect(jsonPath("$.modelConfig.temperature").value(0.7));
     }
+
+    @Test
+    void updateWithStaleVersionIsRejected() throws Exception {
+        Model model = modelRepository.save(new Model(null, "gpt-4", "openai", "https://api.openai.com/v1", "test model", 0.03, 0.06, 8192));
+
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("modelId", model.getId());
+        body.put("comment", "first");
+
+        String created = mockMvc.perform(post("/api/model-configurations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body.toString()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        Long configId = ((Integer)JsonPath.read(created, "$.id")).longValue();
+        long version = ((Number)JsonPath.read(created, "$.version")).longValue();
+
+        // Update from the version just read
+        body.put("comment", "second");
+        body.put("version", version);
+        mockMvc.perform(put("/api/model-configurations/{id}", configId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body.toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.comment").value("second"))
+            .andExpect(jsonPath("$.version").value(version + 1));
+
+        // A second update from the same, now stale, version
+        body.put("comment", "third");
+        mockMvc.perform(put("/api/model-configurations/{id}", configId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body.toString()))
+            .andExpect(status().isConflict());
+
+        // Updates must say which version they were read at
+        body.remove("version");
+        mockMvc.perform(put("/api/model-configurations/{id}", configId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body.toString()))
+            .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,128 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.sampsoftware.genai.model.Item;
+import net.sampsoftware.genai.model.ModelConfiguration;
+import net.sampsoftware.genai.model.Summary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncItemProcessorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StubAIService aiService = new StubAIService();
+    private final RecordingSummaryService summaryService = new RecordingSummaryService();
+    private final AsyncItemProcessor processor = new AsyncItemProcessor(aiService, summaryService,
+            new ItemRenderer(objectMapper, "minified-json", 100, ""), null, objectMapper);
+
+    private final List<Item> pack = List.of(item(1L, "Nineteen Eighty-Four"), item(2L, "Animal Farm"),
+            item(3L, "Brave New World"), item(4L, "We"));
+    private final Map<Long, String> fingerprints = Map.of(1L, "f1", 2L, "f2", 3L, "f3", 4L, "f4");
+
+    @Test
+    void packIsSentAsOneTableWithTheSchemaAndOutputLimit() {
+        aiService.response = "{\"summaries\": []}";
+
+        processor.processPackAsync(pack, "Summarize each", null, 600, 11L, fingerprints).join();
+
+        String[] lines = aiService.userPrompt.split("\n");
+        assertThat(lines).hasSize(5);
+        assertThat(lines[0]).startsWith("items[4]{id,name,type,");
+        assertThat(lines[1]).startsWith("  1,Nineteen Eighty-Four,book,");
+        assertThat(lines[4]).startsWith("  4,We,book,");
+        assertThat(aiService.systemPrompt).isEqualTo("Summarize each");
+        assertThat(aiService.jsonSchema).contains("\"summaries\"", "\"required\": [\"id\", \"summary\"]");
+        assertThat(aiService.maxTokens).isEqualTo(600);
+    }
+
+    @Test
+    void summariesAreMatchedByIdAndTheRestIsRequeued() {
+        aiService.response = """
+            {"summaries": [
+              {"id": 2, "summary": "A fable of a farm."},
+              {"id": 9, "summary": "Not in this pack."},
+              {"id": 1, "summary": "  A surveillance state.  "},
+              {"id": 2, "summary": "The same item again."},
+              {"id": 3, "summary": "   "},
+              {"id": "four", "summary": "Not an id."}
+            ]}
+            """;
+
+        var result = processor.processPackAsync(pack, "Summarize each", null, 600, 11L, fingerprints).join();
+
+        assertThat(result.results()).extracting(AsyncItemProcessor.ProcessingResult::itemId).containsExactly(2L, 1L);
+        assertThat(result.results()).allMatch(AsyncItemProcessor.ProcessingResult::success);
+        assertThat(result.unresolved()).extracting(Item::getId).containsExactly(3L, 4L);
+
+        assertThat(summaryService.saved).extracting(Summary::getContent)
+                .containsExactly("A fable of a farm.", "A surveillance state.");
+        assertThat(summaryService.saved).extracting(Summary::getInputFingerprint).containsExactly("f2", "f1");
+        assertThat(summaryService.saved).allMatch(summary -> summary.getBatchId() == 11L);
+    }
+
+    @Test
+    void failedPackRequeuesEveryItem() {
+        aiService.response = "not json";
+
+        var result = processor.processPackAsync(pack, "Summarize each", null, 600, 11L, fingerprints).join();
+
+        assertThat(result.results()).isEmpty();
+        assertThat(result.unresolved()).extracting(Item::getId).containsExactly(1L, 2L, 3L, 4L);
+        assertThat(summaryService.saved).isEmpty();
+    }
+
+    private static Item item(Long id, String name) {
+        return Item.builder()
+                .id(id)
+                .name(name)
+                .itemType("book")
+                .creator("Various")
+                .build();
+    }
+
+    /**
+     * Answers every structured call with {@code response}, keeping the last request
+     */
+    private static final class StubAIService extends AIService {
+        private String response;
+        private String systemPrompt;
+        private String userPrompt;
+        private String jsonSchema;
+        private Integer maxTokens;
+
+        StubAIService() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public String generateStructuredResponse(String systemPrompt, String userPrompt,
+                                                 ModelConfiguration modelConfig, String jsonSchema,
+                                                 Integer maxTokens) {
+            this.systemPrompt = systemPrompt;
+            this.userPrompt = userPrompt;
+            this.jsonSchema = jsonSchema;
+            this.maxTokens = maxTokens;
+            return response;
+        }
+    }
+
+    private static final class RecordingSummaryService extends SummaryService {
+        private final List<Summary> saved = new ArrayList<>();
+
+        RecordingSummaryService() {
+            super(null, null);
+        }
+
+        @Override
+        public Summary save(Summary summary) {
+            summary.setId(100L + saved.size());
+            saved.add(summary);
+            return summary;
+        }
+    }
+}
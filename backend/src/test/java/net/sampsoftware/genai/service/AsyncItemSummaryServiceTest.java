@@ -0,0 +1,84 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.sampsoftware.genai.model.Item;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncItemSummaryServiceTest {
+
+    private final TokenizerService tokenizerService =
+            new TokenizerService(Path.of("no-such-vocabulary-dir"), 0.15, 8192, 1024, "gpt-3.5-turbo");
+    private final ItemRenderer itemRenderer = new ItemRenderer(new ObjectMapper(), "minified-json", 100, "");
+    private final AsyncItemSummaryService service = new AsyncItemSummaryService(null, null, null, null, null,
+            null, null, null, tokenizerService, itemRenderer, null, null);
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(service, "maxItemsPerPack", 3);
+        ReflectionTestUtils.setField(service, "outputTokensPerItem", 150);
+        ReflectionTestUtils.setField(service, "maxPackOutputTokens", 4096);
+    }
+
+    @Test
+    void packsCloseAtTheItemLimitAndOversizedItemsGoAlone() {
+        List<Item> items = new ArrayList<>(items(7, "A short description."));
+        items.add(3, item(99L, "word ".repeat(40_000)));
+
+        var plan = service.planPacks(items, "Summarize", null);
+
+        assertThat(plan.packs()).extracting(List::size).containsExactly(3, 3, 1);
+        assertThat(plan.packs().get(0)).extracting(Item::getId).containsExactly(1L, 2L, 3L);
+        assertThat(plan.individual()).extracting(Item::getId).containsExactly(99L);
+        assertThat(plan.systemPrompt()).startsWith("Summarize").contains("\"summaries\"");
+        assertThat(plan.outputLimit()).isEqualTo(1024);
+    }
+
+    @Test
+    void outputLimitCapsItemsPerPack() {
+        ReflectionTestUtils.setField(service, "maxPackOutputTokens", 300);
+
+        var plan = service.planPacks(items(5, "A short description."), "Summarize", null);
+
+        // 300 output tokens at 150 per item
+        assertThat(plan.packs()).extracting(List::size).containsExactly(2, 2, 1);
+        assertThat(plan.outputLimit()).isEqualTo(300);
+    }
+
+    @Test
+    void inputBudgetClosesPacksBeforeTheItemLimit() {
+        String systemPrompt = service.planPacks(List.of(), "Summarize", null).systemPrompt();
+        int budget = tokenizerService.inputBudget(null, 1024, systemPrompt) * 9 / 10;
+        // About 40% of the budget per item, so two fit in a pack but three do not
+        int sample = tokenizerService.count(null, "word ".repeat(1000));
+        String description = "word ".repeat(budget * 400 / sample);
+        assertThat(tokenizerService.count(null, itemRenderer.render(item(1L, description), ItemRenderer.Format.KEY_VALUE)))
+                .isGreaterThan(budget / 3).isLessThan(budget / 2);
+
+        var plan = service.planPacks(items(4, description), "Summarize", null);
+
+        assertThat(plan.packs()).extracting(List::size).containsExactly(2, 2);
+        assertThat(plan.individual()).isEmpty();
+    }
+
+    private static List<Item> items(int count, String description) {
+        return LongStream.rangeClosed(1, count).mapToObj(id -> item(id, description)).toList();
+    }
+
+    private static Item item(Long id, String description) {
+        return Item.builder()
+                .id(id)
+                .name("Book " + id)
+                .itemType("book")
+                .description(description)
+                .build();
+    }
+}
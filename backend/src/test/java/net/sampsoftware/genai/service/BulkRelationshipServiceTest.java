@@ -0,0 +1,123 @@
+package net.sampsoftware.genai.service;
+
+import net.sampsoftware.genai.dto.RelationshipRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkRelationshipServiceTest {
+
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private final BulkRelationshipService service = new BulkRelationshipService(jdbcTemplate, event -> {});
+
+    @BeforeEach
+    void configure() {
+        ReflectionTestUtils.setField(service, "undirectedTypes", Set.of("similar_themes", "same_as"));
+        ReflectionTestUtils.setField(service, "chunkSize", 5000);
+    }
+
+    @Test
+    void undirectedKeysPutTheLowerIdFirst() {
+        assertThat(service.key(9L, 4L, "similar_themes"))
+                .isEqualTo(new BulkRelationshipService.EdgeKey(4L, 9L, "similar_themes"))
+                .isEqualTo(service.key(4L, 9L, "similar_themes"));
+        assertThat(service.key(9L, 4L, "authored"))
+                .isEqualTo(new BulkRelationshipService.EdgeKey(9L, 4L, "authored"));
+    }
+
+    @Test
+    void reversedUndirectedPairsAreWrittenOnce() {
+        var result = service.write(List.of(
+                edge(1L, 2L, "similar_themes"),
+                edge(2L, 1L, "similar_themes"),
+                edge(2L, 1L, "authored"),
+                edge(1L, 2L, "authored")), BulkRelationshipService.ConflictMode.IGNORE);
+
+        assertThat(result.requested()).isEqualTo(4);
+        assertThat(result.duplicates()).isEqualTo(1);
+        assertThat(result.invalid()).isZero();
+
+        Map<Integer, Object[]> insert = jdbcTemplate.arrays.get(1);
+        assertThat(insert.get(2)).containsExactly("similar_themes", "authored", "authored");
+        assertThat(insert.get(3)).containsExactly(1L, 2L, 1L);
+        assertThat(insert.get(4)).containsExactly(2L, 1L, 2L);
+    }
+
+    @Test
+    void existingReversedRowsAreNormalizedForUndirectedTypesOnly() {
+        service.normalizeUndirected();
+
+        assertThat(jdbcTemplate.statements).hasSize(2);
+        assertThat(jdbcTemplate.statements.get(0)).startsWith("DELETE FROM relationships");
+        assertThat(jdbcTemplate.statements.get(1)).startsWith("UPDATE relationships SET source_item_id = target_item_id");
+        for (Map<Integer, Object[]> parameters : jdbcTemplate.arrays) {
+            assertThat(parameters.get(1)).containsExactlyInAnyOrder("similar_themes", "same_as");
+        }
+    }
+
+    private static RelationshipRecord edge(Long source, Long target, String type) {
+        return new RelationshipRecord(null, null, type, source, target, null, null, null);
+    }
+
+    /**
+     * Records each statement and its array parameters; items 1 and 2 exist, nothing is written
+     */
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private final List<String> statements = new ArrayList<>();
+        private final List<Map<Integer, Object[]>> arrays = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) {
+            statements.add(sql);
+            Map<Integer, Object[]> parameters = new HashMap<>();
+            arrays.add(parameters);
+            try {
+                pss.setValues(statement(parameters));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return sql.startsWith("SELECT id FROM items") ? (List<T>) List.of(1L, 2L) : List.of();
+        }
+
+        private static PreparedStatement statement(Map<Integer, Object[]> parameters) {
+            Connection connection = proxy(Connection.class, (method, args) ->
+                    method.equals("createArrayOf") ? proxy(Array.class, (arrayMethod, arrayArgs) ->
+                            arrayMethod.equals("getArray") ? args[1] : null) : null);
+            return proxy(PreparedStatement.class, (method, args) -> {
+                if (method.equals("getConnection")) {
+                    return connection;
+                }
+                if (method.equals("setArray")) {
+                    parameters.put((Integer) args[0], (Object[]) ((Array) args[1]).getArray());
+                }
+                return null;
+            });
+        }
+
+        private interface Handler {
+            Object handle(String method, Object[] args) throws SQLException;
+        }
+
+        private static <T> T proxy(Class<T> type, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> handler.handle(method.getName(), args)));
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package net.sampsoftware.genai.service;
+
+import net.sampsoftware.genai.model.ModelConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.ResponseFormat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatRouterTest {
+
+    private static final TokenizerService.TokenBudget BUDGET =
+            new TokenizerService.TokenBudget("model", 8192, 100, 100, false);
+
+    private final Profiles profiles = new Profiles();
+    private final Providers providers = new Providers();
+
+    @Test
+    void membersWithLessRateLimitHeadroomRankLower() {
+        var limiter = new TokenRateLimiter(10_000, 0, 120);
+        var router = router(limiter, "books=1,2", 3, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 500);
+        providers.add(1L, "a", new StubChatModel(0));
+        providers.add(2L, "b", new StubChatModel(0));
+        limiter.acquire("a/model-1", 9_000);
+
+        router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+
+        assertThat(providers.calls).containsExactly("b");
+    }
+
+    @Test
+    void failedMembersFailOverAndThenRankBehindHealthyOnes() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2,3", 3, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 500);
+        profiles.add(3L, 500);
+        providers.add(1L, "a", new FailingChatModel());
+        providers.add(2L, "b", new StubChatModel(5));
+        providers.add(3L, "c", new StubChatModel(5));
+
+        ChatResponse response = router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+
+        assertThat(response.getResult().getOutput().getText()).startsWith("Stub response to: Hello");
+        assertThat(providers.calls).containsExactly("a", "b");
+
+        providers.calls.clear();
+        router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+
+        // The failure raised the error rate of member 1, and member 2 has the measured latency
+        assertThat(providers.calls).containsExactly("b");
+    }
+
+    @Test
+    void failoverStopsAtMaxAttempts() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2,3", 2, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 500);
+        profiles.add(3L, 500);
+        providers.add(1L, "a", new FailingChatModel());
+        providers.add(2L, "b", new FailingChatModel());
+        providers.add(3L, "c", new StubChatModel(0));
+
+        assertThatThrownBy(() -> router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET))
+                .hasMessageContaining("unavailable");
+        assertThat(providers.calls).containsExactly("a", "b");
+    }
+
+    @Test
+    void membersCoolDownAfterConsecutiveFailures() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2", 3, 2, 60);
+        profiles.add(1L, 500);
+        profiles.add(2L, 500);
+        providers.add(1L, "a", new FailingChatModel());
+        providers.add(2L, "b", new StubChatModel(0));
+
+        router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+        assertThat(coolingDown(router, 1L)).isFalse();
+
+        // With member 2 failing too, member 1 is tried again and reaches the threshold
+        providers.models.put(2L, new FailingChatModel());
+        assertThatThrownBy(() -> router.call(prompt(profiles.get(2L), null), profiles.get(2L), BUDGET));
+        assertThat(coolingDown(router, 1L)).isTrue();
+
+        providers.models.put(2L, new StubChatModel(0));
+        providers.calls.clear();
+        router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+
+        assertThat(providers.calls).containsExactly("b");
+    }
+
+    @Test
+    void reroutedCallsKeepTheResponseFormatAndPerCallOutputLimit() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2", 3, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 700);
+        providers.add(1L, "a", new FailingChatModel());
+        providers.add(2L, "b", new StubChatModel(0));
+        var format = new ResponseFormat(ResponseFormat.Type.JSON_SCHEMA, "{\"type\": \"object\"}");
+
+        router.call(prompt(profiles.get(1L), 123, format), profiles.get(1L), BUDGET);
+
+        OpenAiChatOptions routed = (OpenAiChatOptions) providers.prompts.get(1).getOptions();
+        assertThat(routed.getModel()).isEqualTo("model-2");
+        assertThat(routed.getResponseFormat()).isEqualTo(format);
+        assertThat(routed.getMaxTokens()).isEqualTo(123);
+        assertThat(providers.prompts.get(1).getInstructions()).isEqualTo(providers.prompts.get(0).getInstructions());
+    }
+
+    @Test
+    void reroutedCallsUseTheMemberLimitWhenTheCallKeptTheConfiguredOne() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2", 3, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 700);
+        providers.add(1L, "a", new FailingChatModel());
+        providers.add(2L, "b", new StubChatModel(0));
+
+        router.call(prompt(profiles.get(1L), null), profiles.get(1L), BUDGET);
+
+        OpenAiChatOptions routed = (OpenAiChatOptions) providers.prompts.get(1).getOptions();
+        assertThat(routed.getMaxTokens()).isEqualTo(700);
+        assertThat(routed.getResponseFormat()).isNull();
+    }
+
+    @Test
+    void ungroupedConfigurationsAreCalledDirectly() {
+        var router = router(new TokenRateLimiter(0, 0, 120), "books=1,2", 3, 3, 30);
+        profiles.add(1L, 500);
+        profiles.add(2L, 500);
+        profiles.add(9L, 500);
+        providers.add(1L, "a", new StubChatModel(0));
+        providers.add(2L, "b", new StubChatModel(0));
+        providers.add(9L, "z", new FailingChatModel());
+
+        assertThatThrownBy(() -> router.call(prompt(profiles.get(9L), null), profiles.get(9L), BUDGET));
+        assertThat(providers.calls).containsExactly("z");
+    }
+
+    private ChatRouter router(TokenRateLimiter limiter, String groups, int maxAttempts,
+                              int failureThreshold, long cooldownSeconds) {
+        return new ChatRouter(providers, profiles, limiter, groups, maxAttempts, 100,
+                failureThreshold, cooldownSeconds, 0);
+    }
+
+    private static boolean coolingDown(ChatRouter router, Long configurationId) {
+        return router.status().stream()
+                .filter(status -> status.configurationId().equals(configurationId))
+                .findFirst().orElseThrow().coolingDown();
+    }
+
+    private static Prompt prompt(CallProfileRegistry.CallProfile profile, Integer maxTokens) {
+        return prompt(profile, maxTokens, null);
+    }
+
+    private static Prompt prompt(CallProfileRegistry.CallProfile profile, Integer maxTokens, ResponseFormat format) {
+        OpenAiChatOptions options = profile.chatOptions();
+        if (maxTokens != null) {
+            options.setMaxTokens(maxTokens);
+        }
+        if (format != null) {
+            options.setResponseFormat(format);
+        }
+        return new Prompt(List.of(new UserMessage("Hello")), options);
+    }
+
+    private static final class FailingChatModel implements ChatModel {
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            throw new IllegalStateException("Provider unavailable");
+        }
+    }
+
+    /**
+     * Profiles by configuration id, each with its own API model name and output limit
+     */
+    private static final class Profiles extends CallProfileRegistry {
+        private final Map<Long, CallProfile> byId = new HashMap<>();
+
+        Profiles() {
+            super(null, null, null);
+        }
+
+        void add(Long id, int maxTokens) {
+            ModelConfiguration configuration = ModelConfiguration.builder().id(id).build();
+            byId.put(id, new CallProfile(configuration, "stub", "model-" + id, 8192, maxTokens,
+                    OpenAiChatOptions.builder().model("model-" + id).maxTokens(maxTokens).build()));
+        }
+
+        CallProfile get(Long id) {
+            return byId.get(id);
+        }
+
+        @Override
+        public Optional<CallProfile> find(Long configurationId) {
+            return Optional.ofNullable(byId.get(configurationId));
+        }
+    }
+
+    /**
+     * One named provider per configuration, recording which provider each call went to
+     */
+    private static final class Providers extends ChatProviderRegistry {
+        private final Map<Long, String> names = new HashMap<>();
+        private final Map<Long, ChatModel> models = new HashMap<>();
+        private final List<String> calls = new ArrayList<>();
+        private final List<Prompt> prompts = new ArrayList<>();
+
+        Providers() {
+            super(null, null, "https://api.openai.com", "", 0);
+        }
+
+        void add(Long id, String name, ChatModel model) {
+            names.put(id, name);
+            models.put(id, model);
+        }
+
+        @Override
+        public ChatProvider provider(ModelConfiguration modelConfig) {
+            return new ChatProvider(names.get(modelConfig.getId()), null, models.get(modelConfig.getId()));
+        }
+
+        @Override
+        public ChatResponse call(ChatProvider provider, Prompt prompt) {
+            calls.add(provider.name());
+            prompts.add(prompt);
+            return super.call(provider, prompt);
+        }
+    }
+}
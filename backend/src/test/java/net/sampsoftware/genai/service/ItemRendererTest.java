@@ -0,0 +1,74 @@
+package net.sampsoftware.genai.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import net.sampsoftware.genai.model.Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemRendererTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ItemRenderer renderer = new ItemRenderer(objectMapper, "minified-json", 100, "");
+
+    @Test
+    void attributesNamedLikeFieldsDoNotReplaceThemInJson() throws Exception {
+        JsonNode json = objectMapper.readTree(renderer.render(item(7L, "Nineteen Eighty-Four"), ItemRenderer.Format.MINIFIED_JSON));
+
+        assertThat(json.get("id").asLong()).isEqualTo(7);
+        assertThat(json.get("year").asText()).isEqualTo("1949");
+        assertThat(json.at("/attributes/id").asLong()).isEqualTo(99);
+        assertThat(json.at("/attributes/year").asText()).isEqualTo("1950");
+    }
+
+    @Test
+    void attributesNamedLikeFieldsDoNotReplaceThemInKeyValue() {
+        String rendered = renderer.render(item(7L, "Nineteen Eighty-Four"), ItemRenderer.Format.KEY_VALUE);
+
+        assertThat(rendered).startsWith("id: 7\n")
+                .contains("year: 1949\n", "attributes.id: 99\n", "attributes.year: 1950\n",
+                        "attributes.publisher.name: Secker & Warburg\n")
+                .doesNotContain("\nid: 99\n", "\nyear: 1950\n");
+    }
+
+    @Test
+    void attributesNamedLikeFieldsDoNotReplaceTheTableIdColumn() {
+        String table = renderer.render(List.of(item(7L, "Nineteen Eighty-Four"), item(8L, "Animal Farm")),
+                ItemRenderer.Format.TOON);
+        String[] lines = table.split("\n");
+
+        assertThat(lines[0]).startsWith("items[2]{id,name,type,description,creator,year,")
+                .contains("attributes.id", "attributes.year");
+        assertThat(lines[1]).startsWith("  7,Nineteen Eighty-Four,book,");
+        assertThat(lines[2]).startsWith("  8,Animal Farm,book,");
+    }
+
+    @Test
+    void attributeWhitelistsApplyUnderThePrefix() {
+        var filtering = new ItemRenderer(objectMapper, "key-value", 100, "book=year");
+
+        String rendered = filtering.render(item(7L, "Nineteen Eighty-Four"));
+
+        assertThat(rendered).contains("year: 1949\n", "attributes.year: 1950\n").doesNotContain("attributes.id");
+    }
+
+    private Item item(Long id, String name) {
+        ObjectNode attributes = objectMapper.createObjectNode();
+        attributes.put("id", 99);
+        attributes.put("year", "1950");
+        attributes.putObject("publisher").put("name", "Secker & Warburg");
+        return Item.builder()
+                .id(id)
+                .name(name)
+                .itemType("book")
+                .description("A dystopian novel")
+                .creator("George Orwell")
+                .createdYear("1949")
+                .attributes(attributes)
+                .build();
+    }
+}
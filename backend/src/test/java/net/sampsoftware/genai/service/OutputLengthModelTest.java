@@ -0,0 +1,67 @@
+package net.sampsoftware.genai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OutputLengthModelTest {
+
+    @Test
+    void percentileIsNearestRank() {
+        int[] sorted = IntStream.rangeClosed(1, 100).toArray();
+
+        assertThat(OutputLengthModel.at(sorted, 0.5)).isEqualTo(50);
+        assertThat(OutputLengthModel.at(sorted, 0.99)).isEqualTo(99);
+        assertThat(OutputLengthModel.at(sorted, 1.0)).isEqualTo(100);
+        assertThat(OutputLengthModel.at(sorted, 0.0)).isEqualTo(1);
+        assertThat(OutputLengthModel.at(new int[]{10, 20, 30}, 0.5)).isEqualTo(20);
+        assertThat(OutputLengthModel.at(new int[]{7}, 0.99)).isEqualTo(7);
+    }
+
+    @Test
+    void suggestionAddsMarginAndPaddingToThePercentile() {
+        int[] sorted = IntStream.rangeClosed(1, 100).map(i -> i * 10).toArray();
+
+        // p99 = 990; 990 * 1.2 = 1188; + 32
+        assertThat(OutputLengthModel.suggest(sorted, 0.99, 0.2, 32)).isEqualTo(1220);
+        // p50 = 500 with no margin or padding
+        assertThat(OutputLengthModel.suggest(sorted, 0.5, 0, 0)).isEqualTo(500);
+        // 101 * 1.1 = 111.1 rounds up
+        assertThat(OutputLengthModel.suggest(new int[]{101}, 0.99, 0.1, 0)).isEqualTo(112);
+    }
+
+    @Test
+    void samplesGrowUntilCapacityAndKeepAllValues() {
+        var samples = new OutputLengthModel.Samples(100);
+        for (int i = 1; i <= 40; i++) {
+            samples.add(i);
+        }
+
+        assertThat(samples.size()).isEqualTo(40);
+        assertThat(samples.sorted()).containsExactly(IntStream.rangeClosed(1, 40).toArray());
+    }
+
+    @Test
+    void samplesKeepTheLatestValuesOnceFull() {
+        var samples = new OutputLengthModel.Samples(20);
+        for (int i = 1; i <= 50; i++) {
+            samples.add(i);
+        }
+
+        assertThat(samples.size()).isEqualTo(20);
+        assertThat(samples.sorted()).containsExactly(IntStream.rangeClosed(31, 50).toArray());
+    }
+
+    @Test
+    void samplesSmallerThanTheInitialBuffer() {
+        var samples = new OutputLengthModel.Samples(3);
+        for (int value : new int[]{5, 1, 9, 7}) {
+            samples.add(value);
+        }
+
+        assertThat(samples.size()).isEqualTo(3);
+        assertThat(samples.sorted()).containsExactly(1, 7, 9);
+    }
+}
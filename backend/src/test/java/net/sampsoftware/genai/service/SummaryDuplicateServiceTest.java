@@ -0,0 +1,40 @@
+package net.sampsoftware.genai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SummaryDuplicateServiceTest {
+
+    @Test
+    void keepsChainedMembersBelowThresholdOfKeptSummary() {
+        // A~B and B~C agree on 7 of 10 slots, A~C only on 4: one single-linkage cluster at 0.6
+        int[] a = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        int[] b = {1, 2, 3, 4, 5, 6, 7, 80, 90, 100};
+        int[] c = {1, 2, 3, 4, 50, 60, 70, 80, 90, 100};
+        Map<Long, int[]> signatures = Map.of(1L, a, 2L, b, 3L, c);
+
+        List<Long> removed = SummaryDuplicateService.duplicatesOfKept(3L, List.of(1L, 2L, 3L), signatures, 0.6);
+
+        assertThat(removed).containsExactly(2L);
+    }
+
+    @Test
+    void removesEveryMemberWithinThresholdButNeverTheKeptOne() {
+        int[] signature = {1, 2, 3, 4};
+        Map<Long, int[]> signatures = Map.of(1L, signature, 2L, signature.clone(), 3L, signature.clone());
+
+        assertThat(SummaryDuplicateService.duplicatesOfKept(3L, List.of(1L, 2L, 3L), signatures, 0.9))
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void removesNothingWithoutSignatureOfKeptSummary() {
+        Map<Long, int[]> signatures = Map.of(1L, new int[]{1, 2});
+
+        assertThat(SummaryDuplicateService.duplicatesOfKept(2L, List.of(1L, 2L), signatures, 0.5)).isEmpty();
+    }
+}
@@ -0,0 +1,83 @@
+package net.sampsoftware.genai.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenizerServiceTest {
+
+    // No vocabulary on this path, so counts are estimated with the 15% margin
+    private final TokenizerService tokenizerService =
+            new TokenizerService(Path.of("no-such-vocabulary-dir"), 0.15, 8192, 1024, "gpt-3.5-turbo");
+
+    @Test
+    void chunksStayWithinTheTokenLimitAndCoverTheText() {
+        String text = sentences(200);
+
+        List<String> chunks = tokenizerService.split(null, text, 300, 40);
+
+        assertThat(chunks).hasSizeGreaterThan(3);
+        for (String chunk : chunks) {
+            assertThat(tokenizerService.count(null, chunk)).isLessThanOrEqualTo(300);
+        }
+        assertThat(text).startsWith(chunks.getFirst()).endsWith(chunks.getLast());
+    }
+
+    @Test
+    void consecutiveChunksOverlapAtAWordStart() {
+        String text = sentences(200);
+
+        List<String> chunks = tokenizerService.split(null, text, 300, 40);
+
+        int previousStart = 0;
+        for (int i = 1; i < chunks.size(); i++) {
+            int previousEnd = previousStart + chunks.get(i - 1).length();
+            int start = text.indexOf(chunks.get(i), previousStart + 1);
+
+            assertThat(start).isGreaterThan(previousStart).isLessThan(previousEnd);
+            assertThat(tokenizerService.count(null, text.substring(start, previousEnd))).isBetween(10, 90);
+            assertThat(text.charAt(start - 1)).isWhitespace();
+            previousStart = start;
+        }
+    }
+
+    @Test
+    void chunksEndAtSentenceOrLineBreaks() {
+        String text = sentences(200).replace("Sentence 50 ", "\nSentence 50 ");
+
+        List<String> chunks = tokenizerService.split(null, text, 300, 40);
+
+        for (String chunk : chunks.subList(0, chunks.size() - 1)) {
+            assertThat(chunk).matches("(?s).*(\\. |\n)");
+        }
+    }
+
+    @Test
+    void unbrokenTextIsCutAtTheLimit() {
+        String text = "x".repeat(5_000);
+
+        List<String> chunks = tokenizerService.split(null, text, 300, 0);
+
+        assertThat(String.join("", chunks)).isEqualTo(text);
+        for (String chunk : chunks) {
+            assertThat(tokenizerService.count(null, chunk)).isLessThanOrEqualTo(300);
+        }
+    }
+
+    @Test
+    void shortTextIsOneChunk() {
+        assertThat(tokenizerService.split(null, "A short note.", 300, 40)).containsExactly("A short note.");
+        assertThat(tokenizerService.split(null, "", 300, 40)).isEmpty();
+    }
+
+    private static String sentences(int count) {
+        var text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append("Sentence ").append(i).append(" tells of the harbour, the lighthouse and the storm. ");
+        }
+        return text.toString().strip();
+    }
+}
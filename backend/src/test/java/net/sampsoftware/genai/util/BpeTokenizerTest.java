@@ -0,0 +1,69 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BpeTokenizerTest {
+
+    private static final String[] MERGES = {"he", "ll", "hell", "hello", " w", "or", "wor", " wor", "ld", " world"};
+
+    @Test
+    void mergesByLowestRankWithinPieces() throws IOException {
+        BpeTokenizer tokenizer = BpeTokenizer.load(new ByteArrayInputStream(rankFile().getBytes(StandardCharsets.US_ASCII)));
+
+        assertThat(tokenizer.exact()).isTrue();
+        assertThat(tokenizer.count("hello world")).isEqualTo(2);
+        assertThat(tokenizer.count("helloworld")).isEqualTo(3);
+        assertThat(tokenizer.count("hello, world")).isEqualTo(3);
+        assertThat(tokenizer.count("")).isZero();
+    }
+
+    @Test
+    void splitsLikeTheCl100kPattern() {
+        assertThat(pieces("I'm here   with 12345 numbers.\n\n  Next"))
+                .containsExactly("I", "'m", " here", "  ", " with", " ", "123", "45", " numbers", ".\n\n", " ", " Next");
+    }
+
+    @Test
+    void truncatesAtPieceBoundaries() throws IOException {
+        BpeTokenizer tokenizer = BpeTokenizer.load(new ByteArrayInputStream(rankFile().getBytes(StandardCharsets.US_ASCII)));
+        String text = "hello world hello world";
+
+        // " hello" is two tokens, so a budget of three stops after the first " world"
+        assertThat(text.substring(0, tokenizer.truncationIndex(text, 3))).isEqualTo("hello world");
+        assertThat(text.substring(0, tokenizer.truncationIndex(text, 4))).isEqualTo("hello world hello");
+        assertThat(tokenizer.truncationIndex(text, 100)).isEqualTo(text.length());
+        assertThat(BpeTokenizer.estimating().count("hello world")).isEqualTo(4);
+    }
+
+    private static List<String> pieces(String text) {
+        List<String> pieces = new ArrayList<>();
+        for (int start = 0; start < text.length(); ) {
+            int end = BpeTokenizer.nextPiece(text, start);
+            pieces.add(text.substring(start, end));
+            start = end;
+        }
+        return pieces;
+    }
+
+    private static String rankFile() {
+        StringBuilder file = new StringBuilder();
+        int rank = 0;
+        for (int b = 0; b < 256; b++) {
+            file.append(Base64.getEncoder().encodeToString(new byte[]{(byte) b})).append(' ').append(rank++).append('\n');
+        }
+        for (String merge : MERGES) {
+            file.append(Base64.getEncoder().encodeToString(merge.getBytes(StandardCharsets.UTF_8)))
+                    .append(' ').append(rank++).append('\n');
+        }
+        return file.toString();
+    }
+}
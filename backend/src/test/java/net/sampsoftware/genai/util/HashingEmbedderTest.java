@@ -0,0 +1,41 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HashingEmbedderTest {
+
+    private final HashingEmbedder embedder = new HashingEmbedder(256);
+
+    @Test
+    void isDeterministicAndNormalized() {
+        float[] first = embedder.embed("To Kill a Mockingbird by Harper Lee");
+        float[] second = embedder.embed("To Kill a Mockingbird by Harper Lee");
+
+        assertThat(first).containsExactly(second);
+        assertThat(HashingEmbedder.dot(first, first)).isCloseTo(1.0f, within(1e-5f));
+        assertThat(embedder.embed("")).containsOnly(0f);
+    }
+
+    @Test
+    void relatedTextsScoreHigherThanUnrelated() {
+        float[] gatsby = embedder.embed("The Great Gatsby by F. Scott Fitzgerald, a novel of the Jazz Age");
+        float[] paraphrase = embedder.embed("Fitzgerald's Great Gatsby: jazz age novel");
+        float[] physics = embedder.embed("Quantum chromodynamics lattice simulations");
+
+        assertThat(HashingEmbedder.dot(gatsby, paraphrase)).isGreaterThan(HashingEmbedder.dot(gatsby, physics) + 0.3f);
+    }
+
+    @Test
+    void quantizationPreservesSimilarity() {
+        float[] gatsby = embedder.embed("The Great Gatsby by F. Scott Fitzgerald");
+        float[] paraphrase = embedder.embed("Fitzgerald, The Great Gatsby");
+
+        float[] restored = QuantizedVector.of(gatsby).toFloats();
+
+        assertThat(HashingEmbedder.dot(restored, paraphrase))
+                .isCloseTo(HashingEmbedder.dot(gatsby, paraphrase), within(0.01f));
+    }
+}
@@ -0,0 +1,100 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 16;
+
+    @Test
+    void findsMostTrueNeighbours() {
+        float[][] vectors = randomVectors(3_000, 7);
+        HnswIndex index = build(vectors);
+
+        Random random = new Random(11);
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = vectors[random.nextInt(vectors.length)];
+            Set<Long> truth = bruteForce(vectors, query, 10);
+            hits += (int) index.search(query, 10, 100, null).stream()
+                    .filter(neighbor -> truth.contains(neighbor.id()))
+                    .count();
+        }
+        assertThat(hits / (double) (queries * 10)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void filtersByLabelAndSkipsRemoved() {
+        float[][] vectors = randomVectors(1_000, 3);
+        HnswIndex index = build(vectors);
+
+        List<HnswIndex.Neighbor> evens = index.search(vectors[5], 20, 50, label -> label == 0);
+        assertThat(evens).hasSize(20).allMatch(neighbor -> neighbor.id() % 2 == 0);
+
+        assertThat(index.search(vectors[5], 1, 50, null).getFirst().id()).isEqualTo(5);
+        index.remove(5);
+        assertThat(index.search(vectors[5], 10, 50, null)).noneMatch(neighbor -> neighbor.id() == 5);
+
+        index.add(7, vectors[5], 1);
+        assertThat(index.search(vectors[5], 1, 50, null).getFirst().id()).isEqualTo(7);
+        assertThat(index.size()).isEqualTo(999);
+        assertThat(index.tombstones()).isEqualTo(2);
+    }
+
+    @Test
+    void savesAndLoadsThroughMappedFile(@TempDir Path dir) throws Exception {
+        float[][] vectors = randomVectors(500, 5);
+        HnswIndex index = build(vectors);
+        index.remove(42);
+        Path file = dir.resolve("items.hnsw");
+
+        index.save(file);
+        HnswIndex loaded = HnswIndex.load(file);
+
+        assertThat(loaded.size()).isEqualTo(499);
+        assertThat(loaded.contains(42)).isFalse();
+        assertThat(loaded.vector(10)).containsExactly(vectors[10]);
+        assertThat(loaded.search(vectors[10], 5, 50, null)).isEqualTo(index.search(vectors[10], 5, 50, null));
+    }
+
+    private static HnswIndex build(float[][] vectors) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 12, 100, 64);
+        IntStream.range(0, vectors.length).parallel().forEach(i -> index.add(i, vectors[i], i % 2));
+        return index;
+    }
+
+    private static Set<Long> bruteForce(float[][] vectors, float[] query, int k) {
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> -HashingEmbedder.dot(query, vectors[i])))
+                .limit(k)
+                .map(Integer::longValue)
+                .collect(Collectors.toSet());
+    }
+
+    private static float[][] randomVectors(int count, long seed) {
+        Random random = new Random(seed);
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            float norm = (float) Math.sqrt(HashingEmbedder.dot(vector, vector));
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] /= norm;
+            }
+        }
+        return vectors;
+    }
+}
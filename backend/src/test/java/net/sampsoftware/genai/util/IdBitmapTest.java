@@ -0,0 +1,66 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdBitmapTest {
+
+    @Test
+    void addRemoveAndContains() {
+        IdBitmap bitmap = IdBitmap.of(3, 70_000, 1L << 40);
+
+        assertThat(bitmap.add(5)).isTrue();
+        assertThat(bitmap.add(5)).isFalse();
+        assertThat(bitmap.contains(70_000)).isTrue();
+        assertThat(bitmap.remove(70_000)).isTrue();
+        assertThat(bitmap.contains(70_000)).isFalse();
+        assertThat(bitmap.toArray()).containsExactly(3, 5, 1L << 40);
+    }
+
+    @Test
+    void convertsBetweenArrayAndBitmapContainers() {
+        IdBitmap bitmap = new IdBitmap();
+        for (long id = 0; id < 10_000; id++) {
+            bitmap.add(id * 3 % 65_536);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(10_000);
+
+        for (long id = 0; id < 9_000; id++) {
+            bitmap.remove(id * 3 % 65_536);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(1_000);
+        assertThat(bitmap.contains(9_500 * 3)).isTrue();
+    }
+
+    @Test
+    void setAlgebraMatchesTreeSet() {
+        Random random = new Random(7);
+        TreeSet<Long> a = new TreeSet<>();
+        TreeSet<Long> b = new TreeSet<>();
+        IdBitmap bitmapA = new IdBitmap();
+        IdBitmap bitmapB = new IdBitmap();
+        for (int i = 0; i < 20_000; i++) {
+            long x = random.nextInt(200_000);
+            long y = random.nextInt(200_000);
+            a.add(x);
+            bitmapA.add(x);
+            b.add(y);
+            bitmapB.add(y);
+        }
+
+        TreeSet<Long> union = new TreeSet<>(a);
+        union.addAll(b);
+        TreeSet<Long> intersection = new TreeSet<>(a);
+        intersection.retainAll(b);
+        TreeSet<Long> difference = new TreeSet<>(a);
+        difference.removeAll(b);
+
+        assertThat(IdBitmap.or(bitmapA, bitmapB).toList()).containsExactlyElementsOf(union);
+        assertThat(IdBitmap.and(bitmapA, bitmapB).toList()).containsExactlyElementsOf(intersection);
+        assertThat(IdBitmap.andNot(bitmapA, bitmapB).toList()).containsExactlyElementsOf(difference);
+    }
+}
@@ -0,0 +1,69 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MinHasherTest {
+
+    private static final String BASE = "The novel follows a young detective who returns to her coastal hometown " +
+            "to investigate the disappearance of a fisherman, uncovering decades of buried family secrets " +
+            "and a smuggling ring that reaches into the town council.";
+
+    private final MinHasher hasher = new MinHasher(128, 3);
+
+    @Test
+    void estimatesJaccardSimilarity() {
+        String edited = BASE.replace("young detective", "seasoned detective").replace("fisherman", "ferryman");
+
+        double estimated = MinHasher.similarity(hasher.signature(BASE), hasher.signature(edited));
+
+        assertThat(estimated).isCloseTo(exactJaccard(BASE, edited), within(0.12));
+        assertThat(MinHasher.similarity(hasher.signature(BASE), hasher.signature(BASE))).isEqualTo(1.0);
+    }
+
+    @Test
+    void nearDuplicatesShareABandAndUnrelatedTextsDoNot() {
+        String nearDuplicate = BASE.replace("the town council", "the town's council");
+        String unrelated = "A practical guide to sourdough baking, covering starters, hydration, " +
+                "shaping techniques and scoring patterns for home ovens.";
+
+        long[] base = MinHasher.bands(hasher.signature(BASE), 32);
+
+        assertThat(sharesBand(base, MinHasher.bands(hasher.signature(nearDuplicate), 32))).isTrue();
+        assertThat(sharesBand(base, MinHasher.bands(hasher.signature(unrelated), 32))).isFalse();
+        assertThat(MinHasher.threshold(128, 32)).isBetween(0.35, 0.5);
+    }
+
+    private static boolean sharesBand(long[] a, long[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double exactJaccard(String a, String b) {
+        Set<String> left = shingles(a);
+        Set<String> right = shingles(b);
+        Set<String> union = new HashSet<>(left);
+        union.addAll(right);
+        left.retainAll(right);
+        return left.size() / (double) union.size();
+    }
+
+    private static Set<String> shingles(String text) {
+        List<String> words = HashingEmbedder.tokenize(text);
+        Set<String> shingles = new HashSet<>();
+        for (int i = 0; i + 3 <= words.size(); i++) {
+            shingles.add(String.join(" ", words.subList(i, i + 3)));
+        }
+        return shingles;
+    }
+}
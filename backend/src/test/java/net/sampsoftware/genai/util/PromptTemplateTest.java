@@ -0,0 +1,33 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptTemplateTest {
+
+    @Test
+    void rendersPlaceholdersThroughResolver() {
+        PromptTemplate template = PromptTemplate.compile("Summarize {{ item.name }} by {{attributes.author}}.");
+
+        String rendered = template.render((placeholder, out) -> {
+            out.append(placeholder.root().equals("item") ? "Dune" : placeholder.child());
+            return true;
+        });
+
+        assertThat(rendered).isEqualTo("Summarize Dune by author.");
+        assertThat(template.placeholders()).containsExactly("item.name", "attributes.author");
+        assertThat(template.references("item")).isTrue();
+    }
+
+    @Test
+    void keepsMalformedAndUnresolvedPlaceholdersVerbatim() {
+        PromptTemplate template = PromptTemplate.compile("{{}} {{not a path}} {{known}} {{unknown}} {{unclosed");
+
+        assertThat(template.render(Map.of("known", 42)))
+                .isEqualTo("{{}} {{not a path}} 42 {{unknown}} {{unclosed");
+        assertThat(PromptTemplate.compile("No placeholders").isStatic()).isTrue();
+    }
+}
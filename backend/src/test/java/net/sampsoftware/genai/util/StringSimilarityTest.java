@@ -0,0 +1,43 @@
+package net.sampsoftware.genai.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class StringSimilarityTest {
+
+    @Test
+    void jaroWinklerMatchesReferenceValues() {
+        assertThat(StringSimilarity.jaroWinkler("MARTHA", "MARHTA")).isCloseTo(0.961, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("DWAYNE", "DUANE")).isCloseTo(0.840, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("DIXON", "DICKSONX")).isCloseTo(0.813, within(0.001));
+        assertThat(StringSimilarity.jaroWinkler("MARTHA", "MARTHA")).isEqualTo(1.0);
+        assertThat(StringSimilarity.jaroWinkler("ABC", "XYZ")).isZero();
+        assertThat(StringSimilarity.jaroWinkler("", "")).isEqualTo(1.0);
+        assertThat(StringSimilarity.jaroWinkler("", "A")).isZero();
+    }
+
+    @Test
+    void normalizeFoldsAccentsPunctuationAndLeadingArticles() {
+        assertThat(StringSimilarity.normalize("The Brothers Karamazov")).isEqualTo("brothers karamazov");
+        assertThat(StringSimilarity.normalize("A Tale of Two Cities")).isEqualTo("tale of two cities");
+        assertThat(StringSimilarity.normalize("An Inspector Calls")).isEqualTo("inspector calls");
+        assertThat(StringSimilarity.normalize("Les Misérables")).isEqualTo("les miserables");
+        assertThat(StringSimilarity.normalize("  Pride &  Prejudice!  ")).isEqualTo("pride prejudice");
+        assertThat(StringSimilarity.normalize("Finnegans' Wake")).isEqualTo("finnegans wake");
+        assertThat(StringSimilarity.normalize("The")).isEqualTo("the");
+        assertThat(StringSimilarity.normalize(null)).isEmpty();
+    }
+
+    @Test
+    void personNamesAgreeAcrossOrderAndInitials() {
+        assertThat(StringSimilarity.normalizePerson("Tolkien, J.R.R."))
+                .isEqualTo(StringSimilarity.normalizePerson("J. R. R. Tolkien"))
+                .isEqualTo("tolkien");
+        assertThat(StringSimilarity.normalizePerson("García Márquez, Gabriel"))
+                .isEqualTo(StringSimilarity.normalizePerson("Gabriel Garcia Marquez"));
+        assertThat(StringSimilarity.normalizePerson("Le Guin, Ursula K."))
+                .isEqualTo("guin le ursula");
+    }
+}
@@ -221,11 +221,12 @@ END IF;
 END IF;
 END IF;
 
-    -- Thematic similarity relationship
+    -- Thematic similarity relationship; undirected, so the lower id is the source
     IF book_id_1984 IS NOT NULL AND book_id_mockingbird IS NOT NULL AND
-       NOT EXISTS (SELECT 1 FROM relationships WHERE relationship_type = 'similar_themes' AND source_item_id = book_id_1984 AND target_item_id = book_id_mockingbird) THEN
+       NOT EXISTS (SELECT 1 FROM relationships WHERE relationship_type = 'similar_themes' AND source_item_id = LEAST(book_id_1984, book_id_mockingbird) AND target_item_id = GREATEST(book_id_1984, book_id_mockingbird)) THEN
         INSERT INTO relationships (name, relationship_type, source_item_id, target_item_id, attributes, created_at, updated_at)
-        VALUES ('1984 and To Kill a Mockingbird share themes', 'similar_themes', book_id_1984, book_id_mockingbird,
+        VALUES ('1984 and To Kill a Mockingbird share themes', 'similar_themes',
+                LEAST(book_id_1984, book_id_mockingbird), GREATEST(book_id_1984, book_id_mockingbird),
                 '{"themes": ["social justice", "moral courage"], "similarity_score": 0.72}',
                 NOW(), NOW());
 END IF;
@@ -10,7 +10,11 @@ CREATE SEQUENCE prompt_type_id_seq;
 CREATE SEQUENCE prompt_id_seq;
 
 DROP TABLE IF EXISTS model_calls CASCADE;
+DROP TABLE IF EXISTS summary_lsh_bands CASCADE;
+DROP TABLE IF EXISTS summary_minhash CASCADE;
+DROP TABLE IF EXISTS embeddings CASCADE;
 DROP TABLE IF EXISTS summaries CASCADE;
+DROP TABLE IF EXISTS collection_closure CASCADE;
 DROP TABLE IF EXISTS relationships CASCADE;
 DROP TABLE IF EXISTS item_summary CASCADE;
 DROP TABLE IF EXISTS model_parameter CASCADE;
@@ -36,6 +40,9 @@ CREATE TABLE model
     model_provider varchar(200) NOT NULL,
     model_api_url  varchar(500),
     comment        text,
+    cost_per_1k_input_tokens  double precision,
+    cost_per_1k_output_tokens double precision,
+    context_length integer,
     CONSTRAINT model_pkey PRIMARY KEY (id),
     CONSTRAINT model_name_provider_unique UNIQUE (model_name, model_provider)
 );
@@ -47,6 +54,7 @@ CREATE TABLE model_configuration
     model_config jsonb                    NOT NULL DEFAULT '{}',
     comment      text,
     created_at   timestamp with time zone NOT NULL DEFAULT now(),
+    version      bigint                   NOT NULL DEFAULT 0,
     CONSTRAINT model_configuration_pkey PRIMARY KEY (id),
     CONSTRAINT model_configuration_model_id_fkey FOREIGN KEY (model_id)
         REFERENCES model (id) MATCH SIMPLE
@@ -85,6 +93,7 @@ CREATE TABLE items
     external_id  VARCHAR(255), -- ISBN, DOI, IMDB ID, etc.
     source       VARCHAR(255), -- where this item came from
     attributes   JSONB                    NOT NULL DEFAULT '{}',
+    version      BIGINT                   NOT NULL DEFAULT 0,
     created_at   TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
     updated_at   TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
 );
@@ -121,6 +130,7 @@ CREATE TABLE summaries
     source                 varchar(255),
     attributes             jsonb                    NOT NULL DEFAULT '{}',
     metadata               jsonb,
+    input_fingerprint      varchar(64),
     created_at             timestamp with time zone NOT NULL DEFAULT now(),
     updated_at             timestamp with time zone NOT NULL DEFAULT now(),
     CONSTRAINT summaries_model_configuration_id_fkey FOREIGN KEY (model_configuration_id)
@@ -180,6 +190,7 @@ CREATE TABLE model_calls
     correlation_id           varchar(255),
     user_id                  varchar(255),
     request_context          varchar(255),
+    item_id                  bigint,
     CONSTRAINT model_calls_pkey PRIMARY KEY (id),
     CONSTRAINT model_calls_model_configuration_id_fkey FOREIGN KEY (model_configuration_id)
         REFERENCES model_configuration (id) MATCH SIMPLE
@@ -204,12 +215,14 @@ CREATE INDEX idx_items_type_creator ON items (item_type, creator);
 CREATE INDEX idx_summaries_item_id ON summaries (item_id);
 CREATE INDEX idx_summaries_batch ON summaries (batch_id) WHERE batch_id IS NOT NULL;
 CREATE INDEX idx_summaries_model_config ON summaries (model_configuration_id);
+CREATE INDEX idx_summaries_config_item_created ON summaries (model_configuration_id, item_id, created_at DESC);
 
 -- Relationships indexes - updated for item-based structure
 CREATE INDEX idx_relationships_type ON relationships (relationship_type);
 CREATE INDEX idx_relationships_source ON relationships (source_item_id);
 CREATE INDEX idx_relationships_target ON relationships (target_item_id);
 CREATE INDEX idx_relationships_source_target ON relationships (source_item_id, target_item_id);
+CREATE UNIQUE INDEX uq_relationships_source_target_type ON relationships (source_item_id, target_item_id, relationship_type);
 
 -- Model calls performance indexes
 CREATE INDEX idx_model_calls_config_id ON model_calls (model_configuration_id);
@@ -222,6 +235,7 @@ CREATE INDEX idx_model_calls_model_provider ON model_calls (model_provider);
 CREATE INDEX idx_model_calls_correlation_id ON model_calls (correlation_id);
 CREATE INDEX idx_model_calls_user_id ON model_calls (user_id) WHERE user_id IS NOT NULL;
 CREATE INDEX idx_model_calls_request_context ON model_calls (request_context);
+CREATE INDEX idx_model_calls_item_id ON model_calls (item_id) WHERE item_id IS NOT NULL;
 
 -- Performance analysis composite indexes
 CREATE INDEX idx_model_calls_provider_success_time ON model_calls (model_provider, success, created_at DESC);
@@ -255,6 +269,10 @@ COMMENT
 ON COLUMN items.source IS 'Source where this item data came from';
 COMMENT
 ON COLUMN items.attributes IS 'Type-specific attributes stored as JSON';
+COMMENT
+ON COLUMN items.version IS 'Optimistic lock version, incremented on every update';
+COMMENT
+ON COLUMN model_configuration.version IS 'Optimistic lock version; resolved call profiles are cached per version';
 
 COMMENT
 ON TABLE relationships IS 'Relationships between items using unified item IDs';
@@ -283,6 +301,8 @@ COMMENT
 ON COLUMN model_calls.correlation_id IS 'Request correlation ID for distributed tracing';
 COMMENT
 ON COLUMN model_calls.request_context IS 'Source context (batch_summary, chat, operations, etc.)';
+COMMENT
+ON COLUMN model_calls.item_id IS 'Item the call was made for; deleted with the item by the bulk mutation service';
 
 -- Table comments
 COMMENT
@@ -356,3 +376,177 @@ CREATE TRIGGER update_summaries_updated_at
     BEFORE UPDATE
     ON summaries
     FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- Transitive closure of nested collections: one row per (collection, member, path length),
+-- counting the distinct paths of that length. Maintained by trigger from 'collection'
+-- relationships (source = member, target = collection). No foreign keys: rows disappear
+-- through the relationship deletes that cascade from items.
+CREATE TABLE collection_closure
+(
+    ancestor_id   bigint  NOT NULL,
+    descendant_id bigint  NOT NULL,
+    depth         integer NOT NULL,
+    path_count    bigint  NOT NULL DEFAULT 1,
+    CONSTRAINT collection_closure_pkey PRIMARY KEY (ancestor_id, depth, descendant_id)
+);
+
+CREATE INDEX idx_collection_closure_descendant ON collection_closure (descendant_id);
+
+COMMENT ON TABLE collection_closure IS 'Transitive closure of collection membership, maintained from relationships';
+COMMENT ON COLUMN collection_closure.depth IS 'Number of collection edges between ancestor and descendant';
+COMMENT ON COLUMN collection_closure.path_count IS 'Distinct membership paths of this depth';
+
+-- Paths created (or removed) by linking child into parent: every ancestor of parent
+-- (and parent itself) paired with every descendant of child (and child itself)
+CREATE OR REPLACE FUNCTION collection_closure_paths(p_parent bigint, p_child bigint)
+RETURNS TABLE (ancestor_id bigint, descendant_id bigint, depth integer, path_count bigint) AS $$
+    WITH up AS (
+        SELECT p_parent AS id, 0 AS depth, 1::bigint AS paths
+        UNION ALL
+        SELECT c.ancestor_id, c.depth, c.path_count FROM collection_closure c WHERE c.descendant_id = p_parent
+    ), down AS (
+        SELECT p_child AS id, 0 AS depth, 1::bigint AS paths
+        UNION ALL
+        SELECT c.descendant_id, c.depth, c.path_count FROM collection_closure c WHERE c.ancestor_id = p_child
+    )
+    SELECT up.id, down.id, up.depth + down.depth + 1, sum(up.paths * down.paths)::bigint
+    FROM up CROSS JOIN down
+    GROUP BY up.id, down.id, up.depth + down.depth + 1;
+$$ LANGUAGE sql STABLE;
+
+CREATE OR REPLACE FUNCTION maintain_collection_closure()
+RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') AND OLD.relationship_type = 'collection' THEN
+        DELETE FROM collection_closure c
+        USING collection_closure_paths(OLD.target_item_id, OLD.source_item_id) p
+        WHERE c.ancestor_id = p.ancestor_id AND c.depth = p.depth AND c.descendant_id = p.descendant_id
+          AND c.path_count <= p.path_count;
+        UPDATE collection_closure c
+        SET path_count = c.path_count - p.path_count
+        FROM collection_closure_paths(OLD.target_item_id, OLD.source_item_id) p
+        WHERE c.ancestor_id = p.ancestor_id AND c.depth = p.depth AND c.descendant_id = p.descendant_id;
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.relationship_type = 'collection' THEN
+        IF NEW.source_item_id = NEW.target_item_id OR EXISTS (
+            SELECT 1 FROM collection_closure c
+            WHERE c.ancestor_id = NEW.source_item_id AND c.descendant_id = NEW.target_item_id) THEN
+            RAISE EXCEPTION 'Collection cycle: item % already contains collection %',
+                NEW.source_item_id, NEW.target_item_id;
+        END IF;
+        INSERT INTO collection_closure (ancestor_id, descendant_id, depth, path_count)
+        SELECT p.ancestor_id, p.descendant_id, p.depth, p.path_count
+        FROM collection_closure_paths(NEW.target_item_id, NEW.source_item_id) p
+        ON CONFLICT (ancestor_id, depth, descendant_id)
+            DO UPDATE SET path_count = collection_closure.path_count + EXCLUDED.path_count;
+    END IF;
+
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER maintain_relationships_collection_closure
+    AFTER INSERT OR DELETE OR UPDATE OF relationship_type, source_item_id, target_item_id
+    ON relationships
+    FOR EACH ROW EXECUTE FUNCTION maintain_collection_closure();
+
+-- Recompute the closure from scratch, e.g. after loading relationships with triggers disabled
+CREATE OR REPLACE FUNCTION rebuild_collection_closure()
+RETURNS bigint AS $$
+DECLARE
+    row_count bigint;
+BEGIN
+    DELETE FROM collection_closure;
+    WITH RECURSIVE walk (ancestor_id, descendant_id, depth) AS (
+        SELECT target_item_id, source_item_id, 1
+        FROM relationships WHERE relationship_type = 'collection'
+        UNION ALL
+        SELECT w.ancestor_id, r.source_item_id, w.depth + 1
+        FROM walk w
+        JOIN relationships r ON r.target_item_id = w.descendant_id AND r.relationship_type = 'collection'
+        WHERE w.depth < 64
+    )
+    INSERT INTO collection_closure (ancestor_id, descendant_id, depth, path_count)
+    SELECT ancestor_id, descendant_id, depth, count(*)
+    FROM walk
+    GROUP BY ancestor_id, descendant_id, depth;
+    GET DIAGNOSTICS row_count = ROW_COUNT;
+    RETURN row_count;
+END;
+$$ LANGUAGE plpgsql;
+
+-- RFC 7396 JSON Merge Patch: objects merge recursively, null removes a key, anything else replaces
+CREATE OR REPLACE FUNCTION jsonb_merge_patch(target jsonb, patch jsonb)
+RETURNS jsonb AS $$
+DECLARE
+    result jsonb;
+    patch_key text;
+    patch_value jsonb;
+BEGIN
+    IF patch IS NULL OR jsonb_typeof(patch) <> 'object' THEN
+        RETURN patch;
+    END IF;
+    result := CASE WHEN jsonb_typeof(target) = 'object' THEN target ELSE '{}'::jsonb END;
+    FOR patch_key, patch_value IN SELECT * FROM jsonb_each(patch) LOOP
+        IF jsonb_typeof(patch_value) = 'null' THEN
+            result := result - patch_key;
+        ELSE
+            result := jsonb_set(result, ARRAY[patch_key], jsonb_merge_patch(result -> patch_key, patch_value));
+        END IF;
+    END LOOP;
+    RETURN result;
+END;
+$$ LANGUAGE plpgsql IMMUTABLE;
+
+-- Vector embeddings of items and summaries, one row per owner and provider. Vectors are
+-- int8-quantized (value ~ byte * scale). No foreign keys: owners are polymorphic, and rows
+-- are removed by the embedding service when their owner is deleted.
+CREATE TABLE embeddings
+(
+    owner_type   varchar(20)  NOT NULL,
+    owner_id     bigint       NOT NULL,
+    provider     varchar(100) NOT NULL,
+    dimensions   integer      NOT NULL,
+    scale        real         NOT NULL,
+    vector       bytea        NOT NULL,
+    content_hash char(64)     NOT NULL,
+    updated_at   timestamp with time zone NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT embeddings_pkey PRIMARY KEY (owner_type, provider, owner_id)
+);
+
+COMMENT ON TABLE embeddings IS 'Quantized vector embeddings of items and summaries';
+COMMENT ON COLUMN embeddings.owner_type IS 'item or summary';
+COMMENT ON COLUMN embeddings.provider IS 'Embedding provider and model that produced the vector';
+COMMENT ON COLUMN embeddings.vector IS 'Signed int8 components; multiply by scale for float values';
+COMMENT ON COLUMN embeddings.content_hash IS 'SHA-256 of the embedded text, to skip unchanged owners';
+
+-- MinHash signatures of summary content for near-duplicate detection, and their LSH band
+-- buckets. Summaries sharing any (band, bucket) are duplicate candidates.
+CREATE TABLE summary_minhash
+(
+    summary_id bigint  NOT NULL PRIMARY KEY REFERENCES summaries (id) ON DELETE CASCADE,
+    item_id    bigint  NOT NULL,
+    num_hashes integer NOT NULL,
+    signature  bytea   NOT NULL
+);
+
+CREATE TABLE summary_lsh_bands
+(
+    band       smallint NOT NULL,
+    bucket     bigint   NOT NULL,
+    summary_id bigint   NOT NULL REFERENCES summaries (id) ON DELETE CASCADE,
+    item_id    bigint   NOT NULL,
+    CONSTRAINT summary_lsh_bands_pkey PRIMARY KEY (band, bucket, summary_id)
+);
+
+CREATE INDEX idx_summary_lsh_bands_summary ON summary_lsh_bands (summary_id);
+
+COMMENT ON TABLE summary_minhash IS 'MinHash signatures of summary content over word shingles';
+COMMENT ON COLUMN summary_minhash.signature IS 'num_hashes big-endian int32 minimums';
+COMMENT ON TABLE summary_lsh_bands IS 'LSH bucket of each signature band, for candidate duplicate lookup';
+
+-- same_as links from entity resolution are stored with the canonical (lower) id as source, so
+-- duplicates are looked up by target
+CREATE INDEX idx_relationships_same_as_target ON relationships (target_item_id)
+    WHERE relationship_type = 'same_as';
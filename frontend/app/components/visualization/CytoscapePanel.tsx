@@ -36,6 +36,11 @@ export default function CytoscapePanel() {
     // Define the getLayoutConfig function
     const getLayoutConfig = (layoutName: string) => {
         switch(layoutName) {
+            case 'preset':
+                return {
+                    name: 'preset',
+                    padding: 30
+                };
             case 'grid':
                 return {
                     name: 'grid',
@@ -91,7 +96,7 @@ export default function CytoscapePanel() {
                 setError(null);
                 console.info('Fetching cytoscape graph data');
                 
-                const response = await api.cytoscape.getCytoscapeData();
+                const response = await api.cytoscape.getCytoscapeData(layout === 'preset');
                 console.info('Successfully fetched cytoscape data:', response);
                 console.info('Response elements:', response.elements);
                 console.info('Number of nodes:', response.elements?.nodes?.length || 0);
@@ -417,6 +422,7 @@ export default function CytoscapePanel() {
                         className="border rounded px-3 py-1 text-sm"
                     >
                         <option value="cose">Force-Directed (COSE)</option>
+                        <option value="preset">Force-Directed (Server)</option>
                         <option value="grid">Grid</option>
                         <option value="circle">Circle</option>
                         <option value="concentric">Concentric</option>
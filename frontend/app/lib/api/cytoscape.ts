@@ -2,8 +2,10 @@
 import axios from 'axios';
 import { API_URL } from '@/app/config';
 
-export const getCytoscapeData = async (): Promise<any> => {
-    const response = await axios.get(`${API_URL}/api/cytoscape/items-summaries`);
+export const getCytoscapeData = async (layout: boolean = false): Promise<any> => {
+    const response = await axios.get(`${API_URL}/api/cytoscape/items-summaries`, {
+        params: layout ? { layout: true } : undefined
+    });
     return response.data;
 };
 
@@ -31,3 +33,97 @@ export const getGraphStats = async (): Promise<any> => {
     const response = await axios.get(`${API_URL}/api/cytoscape/stats`);
     return response.data;
 };
+
+// === Columnar graph encoding ===
+// Requested with Accept: application/vnd.genai.cytoscape-columnar on /api/cytoscape/stream/* endpoints.
+
+export const COLUMNAR_GRAPH_TYPE = 'application/vnd.genai.cytoscape-columnar';
+
+const NODE_PREFIXES = ['item-', 'summary-', 'model-'];
+
+export interface ColumnarGraph {
+    nodeIds: Float64Array;
+    nodeLabels: Int32Array;
+    nodeTypes: Int32Array;
+    nodeKinds: Uint8Array;
+    edgeIds: Float64Array;
+    edgeSources: Int32Array;
+    edgeTargets: Int32Array;
+    edgeLabels: Int32Array;
+    edgeKinds: Uint8Array;
+    dictionary: string[];
+}
+
+export const decodeColumnarGraph = (buffer: ArrayBuffer): ColumnarGraph => {
+    const header = new DataView(buffer, 0, 32);
+    const magic = String.fromCharCode(header.getUint8(0), header.getUint8(1), header.getUint8(2), header.getUint8(3));
+    if (magic !== 'CYG1') {
+        throw new Error(`Unexpected graph encoding: ${magic}`);
+    }
+    const nodeCount = header.getInt32(8, true);
+    const edgeCount = header.getInt32(12, true);
+    const dictCount = header.getInt32(16, true);
+
+    let offset = 32;
+    const take = <T>(make: (o: number) => T, bytes: number): T => {
+        const view = make(offset);
+        offset += bytes;
+        return view;
+    };
+    const nodeIds = take(o => new Float64Array(buffer, o, nodeCount), nodeCount * 8);
+    const edgeIds = take(o => new Float64Array(buffer, o, edgeCount), edgeCount * 8);
+    const nodeLabels = take(o => new Int32Array(buffer, o, nodeCount), nodeCount * 4);
+    const nodeTypes = take(o => new Int32Array(buffer, o, nodeCount), nodeCount * 4);
+    const edgeSources = take(o => new Int32Array(buffer, o, edgeCount), edgeCount * 4);
+    const edgeTargets = take(o => new Int32Array(buffer, o, edgeCount), edgeCount * 4);
+    const edgeLabels = take(o => new Int32Array(buffer, o, edgeCount), edgeCount * 4);
+    const nodeKinds = take(o => new Uint8Array(buffer, o, nodeCount), nodeCount);
+    const edgeKinds = take(o => new Uint8Array(buffer, o, edgeCount), edgeCount);
+    offset += (4 - (nodeCount + edgeCount) % 4) % 4;
+
+    const dictOffsets = take(o => new Int32Array(buffer, o, dictCount + 1), (dictCount + 1) * 4);
+    const decoder = new TextDecoder();
+    const bytes = new Uint8Array(buffer, offset);
+    const dictionary = new Array<string>(dictCount);
+    for (let i = 0; i < dictCount; i++) {
+        dictionary[i] = decoder.decode(bytes.subarray(dictOffsets[i], dictOffsets[i + 1]));
+    }
+
+    return { nodeIds, nodeLabels, nodeTypes, nodeKinds, edgeIds, edgeSources, edgeTargets, edgeLabels, edgeKinds, dictionary };
+};
+
+export const columnarNodeId = (graph: ColumnarGraph, index: number): string =>
+    graph.nodeKinds[index] === 2
+        ? NODE_PREFIXES[2] + graph.dictionary[graph.nodeIds[index]].replace(/\s+/g, '-').toLowerCase()
+        : NODE_PREFIXES[graph.nodeKinds[index]] + graph.nodeIds[index];
+
+// Expands the columnar graph into cytoscape element definitions (without details)
+export const toCytoscapeElements = (graph: ColumnarGraph) => {
+    const ids = Array.from({ length: graph.nodeIds.length }, (_, i) => columnarNodeId(graph, i));
+    const nodes = ids.map((id, i) => ({
+        data: { id, label: graph.dictionary[graph.nodeLabels[i]], type: graph.dictionary[graph.nodeTypes[i]] },
+        classes: graph.dictionary[graph.nodeTypes[i]]
+    }));
+    const edges = Array.from({ length: graph.edgeSources.length }, (_, e) => {
+        const source = ids[graph.edgeSources[e]];
+        const target = ids[graph.edgeTargets[e]];
+        const id = graph.edgeKinds[e] === 2 ? `rel-${graph.edgeIds[e]}`
+            : graph.edgeKinds[e] === 1 ? `edge-${target}-${source}` : `edge-${source}-${target}`;
+        return { data: { id, source, target, label: graph.dictionary[graph.edgeLabels[e]] } };
+    });
+    return { nodes, edges };
+};
+
+export const getColumnarGraph = async (path: string, params?: Record<string, any>): Promise<ColumnarGraph> => {
+    const response = await axios.get(`${API_URL}/api/cytoscape/stream/${path}`, {
+        params,
+        responseType: 'arraybuffer',
+        headers: { Accept: COLUMNAR_GRAPH_TYPE }
+    });
+    return decodeColumnarGraph(response.data);
+};
+
+export const getNodeDetails = async (nodeId: string): Promise<any> => {
+    const response = await axios.get(`${API_URL}/api/cytoscape/node/${nodeId}`);
+    return response.data;
+};
@@ -41,6 +41,7 @@ export interface ModelConfiguration {
     costPer1kInputTokens?: number;
     costPer1kOutputTokens?: number;
     contextLength?: number;
+    version?: number;
 }
 
 export interface ModelCallRequest {